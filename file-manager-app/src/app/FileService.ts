@@ -27,6 +27,13 @@ export class FileService {
         );
     }
 
+    // Asks the server to pull the original into its local cache before the preview is opened
+    prefetch(fileName: string): Observable<void> {
+        return this.http.post<void>(`${this.apiUrl}/prefetch/${encodeURIComponent(fileName)}`, null).pipe(
+            catchError(() => of(undefined))
+        );
+    }
+
     downloadFile(fileName: string): Observable<Blob> {
         return this.http.get(`${this.apiUrl}/download/${fileName}`, {
             responseType: 'blob'
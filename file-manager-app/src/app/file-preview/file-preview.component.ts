@@ -27,6 +27,7 @@ export class FilePreviewComponent implements OnChanges {
   ngOnChanges(changes: SimpleChanges) {
     if (changes['fileName'] && this.fileName) {
       this.isMultiPage = this.isMultiPageDocument(this.fileName);
+      this.fileService.prefetch(this.fileName).subscribe();
       this.resetPreview();
       this.loadPreview();
     }
@@ -180,6 +181,6 @@ export class FilePreviewComponent implements OnChanges {
 
   isMultiPageDocument(filename: string): boolean {
     const ext = filename.split('.').pop()?.toLowerCase();
-    return ['pdf', 'docx', 'doc', 'pptx', 'ppt'].includes(ext || '');
+    return ['pdf', 'docx', 'doc', 'pptx', 'ppt', 'tif', 'tiff'].includes(ext || '');
   }
 }
\ No newline at end of file
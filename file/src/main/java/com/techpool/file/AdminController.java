@@ -0,0 +1,77 @@
+package com.techpool.file;
+
+import com.techpool.file.render.RenderLimitStats;
+import com.techpool.file.render.RenderLimiter;
+import com.techpool.file.render.RenderQueueStats;
+import com.techpool.file.render.RenderScheduler;
+import com.techpool.file.worker.RenderWorkerPool;
+import com.techpool.file.worker.RenderWorkerStats;
+import java.util.List;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/admin")
+@CrossOrigin("http://localhost:4200")
+public class AdminController {
+    private final StorageMigrationService storageMigrationService;
+    private final PreviewReaper previewReaper;
+    private final RenderScheduler renderScheduler;
+    private final RenderLimiter renderLimiter;
+    private final RenderWorkerPool renderWorkerPool;
+
+    public AdminController(StorageMigrationService storageMigrationService, PreviewReaper previewReaper,
+            RenderScheduler renderScheduler, RenderLimiter renderLimiter, RenderWorkerPool renderWorkerPool) {
+        this.storageMigrationService = storageMigrationService;
+        this.previewReaper = previewReaper;
+        this.renderScheduler = renderScheduler;
+        this.renderLimiter = renderLimiter;
+        this.renderWorkerPool = renderWorkerPool;
+    }
+
+    @PostMapping("/storage/migrate")
+    public ResponseEntity<StorageMigrationReport> migrateStorage() {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(storageMigrationService.start());
+    }
+
+    @GetMapping("/storage/migration")
+    public ResponseEntity<StorageMigrationReport> getMigration() {
+        StorageMigrationReport report = storageMigrationService.getLastReport();
+        return report != null ? ResponseEntity.ok(report) : ResponseEntity.notFound().build();
+    }
+
+    @PostMapping("/previews/reap")
+    public ResponseEntity<PreviewReaperReport> reapPreviews() {
+        PreviewReaperReport report = previewReaper.reap();
+        return report != null ? ResponseEntity.ok(report) : ResponseEntity.status(HttpStatus.CONFLICT).build();
+    }
+
+    @GetMapping("/previews/reaper")
+    public ResponseEntity<PreviewReaperReport> getReaperReport() {
+        PreviewReaperReport report = previewReaper.getLastReport();
+        return report != null ? ResponseEntity.ok(report) : ResponseEntity.notFound().build();
+    }
+
+    // Queue depth, running renders and recent queue wait per resource and priority class
+    @GetMapping("/render/queues")
+    public ResponseEntity<List<RenderQueueStats>> getRenderQueues() {
+        return ResponseEntity.ok(renderScheduler.getStats());
+    }
+
+    // Current adaptive concurrency limit, in-flight renders and shed count per handler type
+    @GetMapping("/render/limits")
+    public ResponseEntity<List<RenderLimitStats>> getRenderLimits() {
+        return ResponseEntity.ok(renderLimiter.getStats());
+    }
+
+    // Worker JVMs alive and busy, and how many jobs failed, crashed, timed out or were recycled
+    @GetMapping("/render/workers")
+    public ResponseEntity<RenderWorkerStats> getRenderWorkers() {
+        return ResponseEntity.ok(renderWorkerPool.getStats());
+    }
+}
@@ -1,8 +1,13 @@
 package com.techpool.file;
 
+import com.techpool.file.render.Composite;
+import com.techpool.file.render.PageSource;
+import com.techpool.file.render.RenderContext;
 import com.techpool.file.util.FileTypeHandler;
+import com.techpool.file.util.PreviewUtils;
 
 import java.awt.Color;
+import java.awt.Dimension;
 import java.awt.Font;
 import java.awt.Graphics2D;
 import java.awt.RenderingHints;
@@ -125,29 +130,49 @@ public abstract class BaseFileHandler implements FileTypeHandler {
     }
 
     protected byte[] generateMultiPagePreview(List<BufferedImage> pages, File file) throws IOException {
-        int width = pages.get(0).getWidth();
-        int totalHeight = pages.stream().mapToInt(img -> img.getHeight()).sum() +
-                (pages.size() * MARGIN) + QR_WIDTH;
-
-        BufferedImage combined = new BufferedImage(width, totalHeight, BufferedImage.TYPE_INT_RGB);
-        Graphics2D g = combined.createGraphics();
-
-        // Draw pages vertically
-        int y = 0;
-        for (int i = 0; i < pages.size(); i++) {
-            g.drawImage(pages.get(i), 0, y, null);
-            y += pages.get(i).getHeight() + MARGIN;
+        List<Dimension> sizes = pages.stream().map(page -> new Dimension(page.getWidth(), page.getHeight())).toList();
+        return generateMultiPagePreview(sizes, PreviewUtils.compositeType(pages), pages::get, file);
+    }
 
-            // Page number
-            g.setColor(Color.GRAY);
-            g.drawString("Page " + (i + 1), 20, y - 10);
-        }
+    // Pages are rendered one at a time and drawn into their own strip of the composite, so a long
+    // document never has more than one rasterized page on the heap
+    protected byte[] generateMultiPagePreview(List<Dimension> sizes, int imageType, PageSource pages, File file)
+            throws IOException {
+        int width = sizes.get(0).width;
+        int totalHeight = sizes.stream().mapToInt(size -> size.height).sum() +
+                (sizes.size() * MARGIN) + QR_WIDTH;
 
-        // Add QR code
         BufferedImage qr = QrCodeUtil.generateQrCode(generateQrContent(file), QR_WIDTH);
-        g.drawImage(qr, (width - QR_WIDTH) / 2, y, null);
 
-        g.dispose();
-        return thumbnailService.convertToByteArray(combined);
+        try (Composite composite = thumbnailService.openComposite(width, totalHeight, imageType)) {
+            // Draw pages vertically
+            int y = 0;
+            for (int i = 0; i < sizes.size(); i++) {
+                RenderContext.checkpoint();
+                BufferedImage page = pages.render(i);
+                composite.widenFor(page);
+                int top = y;
+                int height = sizes.get(i).height;
+                String label = "Page " + (i + 1);
+                composite.paint(top, height + MARGIN, g -> {
+                    Graphics2D pageArea = (Graphics2D) g.create(0, top, width, height);
+                    try {
+                        pageArea.drawImage(page, 0, 0, null);
+                    } finally {
+                        pageArea.dispose();
+                    }
+
+                    // Page number
+                    g.setColor(Color.GRAY);
+                    g.drawString(label, 20, top + height + MARGIN - 10);
+                });
+                y += height + MARGIN;
+            }
+
+            // Add QR code
+            int qrTop = y;
+            composite.paint(qrTop, QR_WIDTH, g -> g.drawImage(qr, (width - QR_WIDTH) / 2, qrTop, null));
+            return composite.encode();
+        }
     }
 }
\ No newline at end of file
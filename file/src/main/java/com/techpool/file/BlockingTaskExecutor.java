@@ -0,0 +1,63 @@
+package com.techpool.file;
+
+import jakarta.annotation.PreDestroy;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// Runs preview requests off the servlet threads. The work is mostly waiting (disk, peers, a
+// queued render, a LibreOffice process), so on Java 21+ each task gets a virtual thread; on older
+// runtimes an elastic platform pool stands in. CPU-heavy work itself goes to the RenderScheduler.
+@Component
+public class BlockingTaskExecutor {
+    private static final Logger log = LoggerFactory.getLogger(BlockingTaskExecutor.class);
+
+    private final ExecutorService executor;
+
+    public BlockingTaskExecutor(@Value("${preview.blocking-threads.max:256}") int maxThreads) {
+        ExecutorService virtual = newVirtualThreadExecutor();
+        if (virtual != null) {
+            this.executor = virtual;
+            log.info("Preview requests run on virtual threads");
+        } else {
+            AtomicInteger threadCount = new AtomicInteger();
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(maxThreads, maxThreads, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), r -> {
+                        Thread thread = new Thread(r, "preview-io-" + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            // Threads come and go with load instead of sitting at the maximum
+            pool.allowCoreThreadTimeOut(true);
+            this.executor = pool;
+            log.info("Virtual threads unavailable; preview requests run on up to {} platform threads", maxThreads);
+        }
+    }
+
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // Looked up reflectively so the build can stay on Java 17
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
@@ -1,12 +1,27 @@
 package com.techpool.file;
 
+import java.util.Map;
+
 import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import com.techpool.file.batch.BatchRenderRunner;
 
 @SpringBootApplication
+@EnableScheduling
 public class FileApplication {
 
 	public static void main(String[] args) {
+		if (BatchRenderRunner.isBatchInvocation(args)) {
+			// Backfill mode: no web server, exit once the batch is done
+			SpringApplication application = new SpringApplication(FileApplication.class);
+			application.setWebApplicationType(WebApplicationType.NONE);
+			// Nothing interactive to keep slots free for
+			application.setDefaultProperties(Map.of("render.interactive-reserved-slots", "0"));
+			System.exit(SpringApplication.exit(application.run(args)));
+		}
 		SpringApplication.run(FileApplication.class, args);
 	}
 
@@ -1,20 +1,37 @@
 package com.techpool.file;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.function.BiFunction;
 
-import org.apache.pdfbox.Loader;
-import org.apache.pdfbox.pdmodel.PDDocument;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.core.io.Resource;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import com.techpool.file.cluster.ClusterPreviewService;
+import com.techpool.file.job.PreviewJob;
+import com.techpool.file.job.PreviewJobService;
+import com.techpool.file.render.RenderOverloadedException;
+import com.techpool.file.render.RenderScheduler;
+import com.techpool.file.util.LineIndex;
 
 @RestController
 @RequestMapping("/api/files")
@@ -23,77 +40,359 @@ public class FileController {
     private static final Logger log = LoggerFactory.getLogger(FileController.class);
     private final FileStorageService fileStorageService;
     private final PreviewService previewService;
+    private final UploadSessionService uploadSessionService;
+    private final RangeFileSender rangeFileSender;
+    private final ClusterPreviewService clusterPreviewService;
+    private final ExecutorService blockingExecutor;
+    private final PreviewJobService previewJobService;
+
+    @Value("${render.limit.degrade:true}")
+    private boolean degradeWhenOverloaded;
 
     public FileController(FileStorageService fileStorageService,
             PreviewService previewService,
-            ThumbnailService thumbnailService) {
+            ThumbnailService thumbnailService,
+            UploadSessionService uploadSessionService,
+            RangeFileSender rangeFileSender,
+            ClusterPreviewService clusterPreviewService,
+            BlockingTaskExecutor blockingTaskExecutor,
+            PreviewJobService previewJobService) {
         this.fileStorageService = fileStorageService;
         this.previewService = previewService;
+        this.uploadSessionService = uploadSessionService;
+        this.rangeFileSender = rangeFileSender;
+        this.clusterPreviewService = clusterPreviewService;
+        this.blockingExecutor = blockingTaskExecutor.getExecutor();
+        this.previewJobService = previewJobService;
     }
 
     @PostMapping("/upload")
     public ResponseEntity<FileUploadResponse> uploadFile(@RequestParam("file") MultipartFile file) {
-        String storedFileName = fileStorageService.storeFile(file);
-        return ResponseEntity.ok(new FileUploadResponse(storedFileName));
+        try {
+            StoredFile storedFile = fileStorageService.storeFile(file);
+            return ResponseEntity.ok(new FileUploadResponse(storedFile));
+        } catch (IllegalArgumentException e) {
+            log.warn("Rejected upload: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    // Raw request body straight to storage: no multipart spooling and no multipart size limit
+    @PutMapping("/upload-stream")
+    public ResponseEntity<FileUploadResponse> uploadStream(@RequestParam("name") String name, InputStream body) {
+        try {
+            StoredFile storedFile = fileStorageService.storeStream(body, name, fileStorageService.getMaxStreamSize());
+            return ResponseEntity.ok(new FileUploadResponse(storedFile));
+        } catch (IllegalArgumentException e) {
+            log.warn("Rejected streaming upload: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (UploadTooLargeException e) {
+            log.warn("Rejected streaming upload of {}: {}", name, e.getMessage());
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+        } catch (IOException e) {
+            log.error("Streaming upload failed for {}", name, e);
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
     }
 
+    // Chunked uploads: create a session, PUT chunks in any order, GET the session to see
+    // what is missing after a failure, then commit
+    @PostMapping("/uploads")
+    public ResponseEntity<UploadSession> createUploadSession(@RequestParam("name") String name,
+            @RequestParam("size") long size,
+            @RequestParam(value = "chunkSize", required = false) Integer chunkSize) {
+        try {
+            return ResponseEntity.status(HttpStatus.CREATED)
+                    .body(uploadSessionService.createSession(name, size, chunkSize));
+        } catch (IllegalArgumentException e) {
+            log.warn("Rejected upload session for {}: {}", name, e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (UploadTooLargeException e) {
+            log.warn("Rejected upload session for {}: {}", name, e.getMessage());
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+        } catch (IOException e) {
+            log.error("Failed to create upload session for {}", name, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @GetMapping("/uploads/{sessionId}")
+    public ResponseEntity<UploadSession> getUploadSession(@PathVariable String sessionId) {
+        try {
+            return ResponseEntity.ok(uploadSessionService.getSession(sessionId));
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    @PutMapping("/uploads/{sessionId}/chunks/{index}")
+    public ResponseEntity<UploadSession> uploadChunk(@PathVariable String sessionId,
+            @PathVariable int index,
+            @RequestHeader(value = "X-Chunk-SHA256", required = false) String sha256,
+            InputStream body) {
+        try {
+            return ResponseEntity.ok(uploadSessionService.writeChunk(sessionId, index, body, sha256));
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.notFound().build();
+        } catch (IllegalArgumentException e) {
+            log.warn("Rejected chunk {} of upload {}: {}", index, sessionId, e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (IOException e) {
+            log.error("Failed to write chunk {} of upload {}", index, sessionId, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @PostMapping("/uploads/{sessionId}/commit")
+    public ResponseEntity<FileUploadResponse> commitUpload(@PathVariable String sessionId) {
+        try {
+            return ResponseEntity.ok(new FileUploadResponse(uploadSessionService.commit(sessionId)));
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.notFound().build();
+        } catch (IllegalStateException e) {
+            log.warn("Cannot commit upload {}: {}", sessionId, e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (IOException e) {
+            log.error("Failed to commit upload {}", sessionId, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @DeleteMapping("/uploads/{sessionId}")
+    public ResponseEntity<Void> abortUpload(@PathVariable String sessionId) {
+        try {
+            uploadSessionService.abort(sessionId);
+            return ResponseEntity.noContent().build();
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.notFound().build();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+    }
+
+    // Preview endpoints complete asynchronously: the servlet thread is released while the
+    // render waits for its slot, so slow Office conversions cannot starve fast image previews
     @GetMapping("/preview/{fileName}")
-    public ResponseEntity<byte[]> getPreview(@PathVariable String fileName) {
+    public DeferredResult<ResponseEntity<byte[]>> getPreview(@PathVariable String fileName,
+            @RequestHeader(value = RenderScheduler.TENANT_HEADER, required = false) String tenant) {
         log.info("Generating preview for: {}", fileName); // Add this
+        // Thin wrapper over a preview job, so concurrent requests for the same content share a render
+        return respond(previewJobService.render(fileName, PreviewJob.Kind.PREVIEW, null, tenant),
+                (preview, e) -> {
+                    RenderOverloadedException overload = overload(e);
+                    if (overload != null) {
+                        return overloaded(fileName, overload);
+                    }
+                    if (e != null) {
+                        log.error("Failed to process preview request for file: {}", fileName, e);
+                        preview = previewService.generateErrorPreview("Preview unavailable: " + rootMessage(e));
+                    }
+                    return ResponseEntity.ok()
+                            .contentType(MediaType.IMAGE_PNG)
+                            .body(preview);
+                });
+    }
+
+    // Warms the server-side cache for an original the client is about to preview
+    @PostMapping("/prefetch/{fileName}")
+    public ResponseEntity<Void> prefetch(@PathVariable String fileName) {
+        fileStorageService.prefetch(fileName);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).build();
+    }
+
+    // Forces a re-render on next request, on every node when running clustered
+    @DeleteMapping("/preview-cache/{fileName}")
+    public ResponseEntity<Void> invalidatePreview(@PathVariable String fileName) {
         try {
-            // Generate new preview if needed
-            byte[] preview = previewService.generatePreview(fileName);
+            clusterPreviewService.invalidate(fileName);
+            return ResponseEntity.noContent().build();
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to invalidate preview for {}", fileName, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @GetMapping("/progressive-preview/{fileName}")
+    public CompletableFuture<ResponseEntity<byte[]>> getProgressivePreview(@PathVariable String fileName,
+            @RequestHeader(value = RenderScheduler.TENANT_HEADER, required = false) String tenant) {
+        return CompletableFuture.supplyAsync(() -> {
+            ProgressivePreview preview = previewService.generateProgressivePreview(fileName, tenant);
 
+            // Clients keep polling until X-Preview-Quality reports full, placeholder-final or error
             return ResponseEntity.ok()
                     .contentType(MediaType.IMAGE_PNG)
-                    .body(preview);
+                    .eTag(preview.getVersion())
+                    .header("X-Preview-Quality", preview.getQuality())
+                    .header("X-Preview-Version", preview.getVersion())
+                    .header(HttpHeaders.CACHE_CONTROL, preview.isCacheable() ? "private, max-age=3600" : "no-store")
+                    .body(preview.getImage());
+        }, blockingExecutor);
+    }
+
+    @GetMapping("/waveform/{fileName}")
+    public CompletableFuture<ResponseEntity<byte[]>> getWaveform(@PathVariable String fileName,
+            @RequestParam(defaultValue = "800") int width,
+            @RequestParam(defaultValue = "400") int height,
+            @RequestHeader(value = RenderScheduler.TENANT_HEADER, required = false) String tenant) {
+        return CompletableFuture.supplyAsync(() -> ResponseEntity.ok()
+                .contentType(MediaType.IMAGE_PNG)
+                .body(previewService.generateWaveform(fileName, width, height, tenant)), blockingExecutor);
+    }
+
+    @GetMapping("/archive-entry-preview/{fileName}")
+    public CompletableFuture<ResponseEntity<byte[]>> getArchiveEntryPreview(@PathVariable String fileName,
+            @RequestParam String entry,
+            @RequestHeader(value = RenderScheduler.TENANT_HEADER, required = false) String tenant) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return ResponseEntity.ok()
+                        .contentType(MediaType.IMAGE_PNG)
+                        .body(previewService.generateArchiveEntryPreview(fileName, entry, tenant));
+            } catch (NoSuchElementException e) {
+                return ResponseEntity.notFound().build();
+            }
+        }, blockingExecutor);
+    }
+
+    @GetMapping("/multipage-preview/{fileName}")
+    public DeferredResult<ResponseEntity<byte[]>> getMultiPagePreview(@PathVariable String fileName,
+            @RequestParam(required = false) Integer page,
+            @RequestHeader(value = RenderScheduler.TENANT_HEADER, required = false) String tenant) {
+        PreviewJob.Kind kind = page != null ? PreviewJob.Kind.PAGE : PreviewJob.Kind.MULTIPAGE;
+        return respond(previewJobService.render(fileName, kind, page, tenant),
+                (preview, e) -> {
+                    RenderOverloadedException overload = overload(e);
+                    if (overload != null) {
+                        return overloaded(fileName, overload);
+                    }
+                    if (e != null) {
+                        log.error("Multi-page preview failed for {}", fileName, e);
+                        preview = previewService.generateErrorPreview("Preview generation failed");
+                    }
+                    try {
+                        preview = previewService.validateImage(preview); // Add validation
+
+                        return ResponseEntity.ok()
+                                .contentType(MediaType.IMAGE_PNG)
+                                .header("X-Preview-Validated", "true")
+                                .body(preview);
+                    } catch (Exception invalid) {
+                        log.error("Multi-page preview failed for: {}", fileName, invalid);
+                        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                                .contentType(MediaType.TEXT_PLAIN)
+                                .body(("Preview generation failed: " + invalid.getMessage()).getBytes());
+                    }
+                });
+    }
+
+    @GetMapping("/page-count/{fileName}")
+    public ResponseEntity<Integer> getPdfPageCount(@PathVariable String fileName) {
+        try {
+            return ResponseEntity.ok(previewService.getPageCount(fileName));
         } catch (Exception e) {
-            log.error("Failed to process preview request for file: {}", fileName, e);
+            log.error("Failed to get page count", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
 
-    @GetMapping("/multipage-preview/{fileName}")
-    public ResponseEntity<byte[]> getMultiPagePreview(@PathVariable String fileName) {
+    // Arbitrary line window of a text file; a negative 'from' counts back from the end
+    @GetMapping("/lines/{fileName}")
+    public ResponseEntity<String> getLines(@PathVariable String fileName,
+            @RequestParam(defaultValue = "1") long from,
+            @RequestParam(defaultValue = "100") int count) {
         try {
-            byte[] preview = previewService.generateMultiPagePreview(fileName);
-            preview = previewService.validateImage(preview); // Add validation
+            File file = fileStorageService.loadFileAsResource(fileName).getFile();
+            LineIndex index = LineIndex.forFile(file);
+            long firstLine = from < 0 ? Math.max(1, index.getLineCount() + from + 1) : from;
+            List<String> lines = index.readLines(file, firstLine, Math.min(count, 1000));
 
             return ResponseEntity.ok()
-                    .contentType(MediaType.IMAGE_PNG)
-                    .header("X-Preview-Validated", "true")
-                    .body(preview);
+                    .contentType(MediaType.parseMediaType("text/plain;charset=UTF-8"))
+                    .header("X-Total-Lines", String.valueOf(index.getLineCount()))
+                    .header("X-First-Line", String.valueOf(firstLine))
+                    .body(String.join("\n", lines));
         } catch (Exception e) {
-            log.error("Multi-page preview failed for: {}", fileName, e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .contentType(MediaType.TEXT_PLAIN)
-                    .body(("Preview generation failed: " + e.getMessage()).getBytes());
+            log.error("Failed to read lines from {}", fileName, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
 
-    @GetMapping("/page-count/{fileName}")
-    public ResponseEntity<Integer> getPdfPageCount(@PathVariable String fileName) {
+    @RequestMapping(value = "/download/{fileName}", method = { RequestMethod.GET, RequestMethod.HEAD })
+    public void downloadFile(@PathVariable String fileName, HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        Path path;
         try {
-            Resource fileResource = fileStorageService.loadFileAsResource(fileName);
-            File file = fileResource.getFile();
+            path = fileStorageService.resolveOriginal(fileName);
+        } catch (RuntimeException e) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        String contentType = MediaTypeFactory.getMediaType(fileName)
+                .orElse(MediaType.APPLICATION_OCTET_STREAM).toString();
+        rangeFileSender.send(path, contentType, "attachment; filename=\"" + fileName + "\"", request, response);
+    }
+
+    // Fully rendered previews straight from the preview store, with the same range support
+    @RequestMapping(value = "/rendered-preview/{fileName}", method = { RequestMethod.GET, RequestMethod.HEAD })
+    public void getRenderedPreview(@PathVariable String fileName, HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        Path path = fileStorageService.getRenderedPreviewPath(fileName);
+        if (!path.startsWith(fileStorageService.getPreviewStorageLocation()) || !Files.isRegularFile(path)) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        fileStorageService.recordPreviewAccess(path);
+        rangeFileSender.send(path, MediaType.IMAGE_PNG_VALUE, null, request, response);
+    }
+
+    // Client disconnects and async timeouts give the render back instead of letting it run on;
+    // the job itself is only cancelled once no other request is waiting for the same preview
+    private static DeferredResult<ResponseEntity<byte[]>> respond(CompletableFuture<byte[]> render,
+            BiFunction<byte[], Throwable, ResponseEntity<byte[]>> toResponse) {
+        DeferredResult<ResponseEntity<byte[]>> result = new DeferredResult<>();
+        result.onTimeout(() -> render.cancel(false));
+        result.onError(e -> render.cancel(false));
+        render.handle(toResponse).thenAccept(result::setResult);
+        return result;
+    }
 
-            if (file.getName().toLowerCase().endsWith(".pdf")) {
-                try (PDDocument document = Loader.loadPDF(file)) {
-                    return ResponseEntity.ok(document.getNumberOfPages());
-                }
+    // Shed by the render limiter: an older or generic preview for now, kept out of browser caches,
+    // or 503 when degrading is switched off
+    private ResponseEntity<byte[]> overloaded(String fileName, RenderOverloadedException e) {
+        String retryAfter = Long.toString(e.getRetryAfterSeconds());
+        if (degradeWhenOverloaded) {
+            try {
+                return ResponseEntity.ok()
+                        .contentType(MediaType.IMAGE_PNG)
+                        .header(HttpHeaders.CACHE_CONTROL, "no-store")
+                        .header(HttpHeaders.RETRY_AFTER, retryAfter)
+                        .header("X-Preview-Degraded", "true")
+                        .body(previewService.generateDegradedPreview(fileName));
+            } catch (IOException | RuntimeException failed) {
+                log.warn("No degraded preview for {}", fileName, failed);
             }
-            return ResponseEntity.ok(1); // Non-PDF files are considered single-page
-        } catch (Exception e) {
-            log.error("Failed to get page count", e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, retryAfter)
+                .build();
     }
 
-    @GetMapping("/download/{fileName}")
-    public ResponseEntity<Resource> downloadFile(@PathVariable String fileName) {
-        Resource resource = fileStorageService.loadFileAsResource(fileName);
-        return ResponseEntity.ok()
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
-                .body(resource);
+    private static RenderOverloadedException overload(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof RenderOverloadedException overload) {
+                return overload;
+            }
+        }
+        return null;
+    }
+
+    private static String rootMessage(Throwable e) {
+        Throwable cause = e;
+        while (cause.getCause() != null && cause.getCause() != cause) {
+            cause = cause.getCause();
+        }
+        return cause.getMessage();
     }
-}
\ No newline at end of file
+}
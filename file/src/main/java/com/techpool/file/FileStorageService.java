@@ -2,12 +2,31 @@ package com.techpool.file;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.MalformedURLException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.UserDefinedFileAttributeView;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.tika.Tika;
+import com.techpool.file.storage.ReadThroughCache;
+import com.techpool.file.storage.StorageBackend;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -16,19 +35,61 @@ import org.springframework.core.io.UrlResource;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.springframework.util.StringUtils;
 
 @Service
 public class FileStorageService {
     private static final Logger log = LoggerFactory.getLogger(FileStorageService.class);
     private Path fileStorageLocation;
+    private static final int SNIFF_BYTES = 8 * 1024;
+    private static final String SHA256_ATTRIBUTE = "preview.sha256";
+    private static final String MIME_ATTRIBUTE = "preview.mime";
+    private static final String BLOB_PREFIX = "blobs/";
+    private static final String REF_PREFIX = "refs/";
+    private final Tika tika = new Tika();
     private Path previewStorageLocation;
+    // Previews written by the batch backfill; outside the reaper's reach, see storeBackfilledPreview
+    private Path backfillStorageLocation;
+    private Path blobStorageLocation;
 
     @Value("${file.storage-dir}")
     private String storageDir;
 
+    @Value("${file.upload.max-stream-size:5368709120}")
+    private long maxStreamSize;
+
+    @Value("${file.storage.layout:flat}")
+    private String layoutName;
+
+    @Value("${file.storage.shard-depth:2}")
+    private int shardDepth;
+
+    @Value("${file.storage.cache.max-bytes:10737418240}")
+    private long cacheMaxBytes;
+
+    @Value("${file.storage.cache.prefetch-threads:2}")
+    private int prefetchThreads;
+
+    private StorageLayout layout;
+    // Remote content store, or null when content lives on local disk
+    private final StorageBackend backend;
+    // Local tier in front of the remote backend; null with it
+    private ReadThroughCache cache;
+    // Preview reads since the reaper's last pass; filesystem atime is often disabled or lazy
+    private final Map<Path, Long> previewAccesses = new ConcurrentHashMap<>();
+
+    public FileStorageService(Optional<StorageBackend> backend) {
+        this.backend = backend.orElse(null);
+    }
+
     @PostConstruct
     public void init() {
+        this.layout = StorageLayout.valueOf(layoutName.trim().toUpperCase());
+        if (shardDepth < 1 || shardDepth > 4) {
+            throw new IllegalStateException("file.storage.shard-depth must be between 1 and 4");
+        }
+
         try {
             // Initialize original files storage
             this.fileStorageLocation = Paths.get(storageDir, "originals").toAbsolutePath().normalize();
@@ -37,42 +98,363 @@ public class FileStorageService {
             // Initialize previews storage
             this.previewStorageLocation = Paths.get(storageDir, "previews").toAbsolutePath().normalize();
             Files.createDirectories(previewStorageLocation);
+            this.backfillStorageLocation = Paths.get(storageDir, "backfill").toAbsolutePath().normalize();
+            Files.createDirectories(backfillStorageLocation);
+
+            // Content-addressed blobs that originals link to
+            this.blobStorageLocation = Paths.get(storageDir, "blobs").toAbsolutePath().normalize();
+            Files.createDirectories(blobStorageLocation);
 
             log.info("File storage initialized at: {}", fileStorageLocation);
             log.info("Preview storage initialized at: {}", previewStorageLocation);
+            log.info("Storage layout: {} (shard depth {})", layout, shardDepth);
+
+            if (backend != null) {
+                this.cache = new ReadThroughCache(Paths.get(storageDir, "cache"), cacheMaxBytes, prefetchThreads);
+            }
         } catch (IOException ex) {
             throw new RuntimeException("Could not initialize storage directories", ex);
         }
     }
 
+    @PreDestroy
+    public void shutdown() {
+        if (cache != null) {
+            cache.close();
+        }
+    }
+
     public Path getPreviewStorageLocation() {
         return this.previewStorageLocation;
     }
 
-    public String storeFile(MultipartFile file) {
+    public Path getBackfillStorageLocation() {
+        return this.backfillStorageLocation;
+    }
+
+    public Path getFileStorageLocation() {
+        return this.fileStorageLocation;
+    }
+
+    public Path getBlobStorageLocation() {
+        return this.blobStorageLocation;
+    }
+
+    public StorageLayout getLayout() {
+        return layout;
+    }
+
+    public int getShardDepth() {
+        return shardDepth;
+    }
+
+    // Where a name belongs under one of the storage directories in the configured layout
+    public Path layoutPath(Path root, String fileName) {
+        return checkedPath(root, layout.resolve(root, fileName, shardDepth));
+    }
+
+    // Finds a name in either layout so reads keep working while a migration moves files. The
+    // configured layout is checked again last, in case the file moved between the first two checks.
+    private Path locate(Path root, String fileName) {
+        Path primary = layoutPath(root, fileName);
+        if (Files.exists(primary)) {
+            return primary;
+        }
+        StorageLayout other = layout == StorageLayout.FLAT ? StorageLayout.SHARDED : StorageLayout.FLAT;
+        Path legacy = checkedPath(root, other.resolve(root, fileName, shardDepth));
+        if (Files.exists(legacy)) {
+            return legacy;
+        }
+        return primary;
+    }
+
+    private static Path checkedPath(Path root, Path path) {
+        Path normalized = path.normalize();
+        if (!normalized.startsWith(root) || normalized.equals(root)) {
+            throw new RuntimeException("Invalid file name: " + path.getFileName());
+        }
+        return normalized;
+    }
+
+    public Path getStorageRoot() {
+        return Paths.get(storageDir).toAbsolutePath().normalize();
+    }
+
+    public long getMaxStreamSize() {
+        return maxStreamSize;
+    }
+
+    public StoredFile storeFile(MultipartFile file) {
         if (file.isEmpty()) {
             throw new RuntimeException("Failed to store empty file");
         }
 
-        // Normalize file name
-        String fileName = StringUtils.cleanPath(file.getOriginalFilename());
+        try (InputStream in = file.getInputStream()) {
+            return storeStream(in, file.getOriginalFilename(), maxStreamSize);
+        } catch (IOException ex) {
+            throw new RuntimeException("Failed to store file " + file.getOriginalFilename(), ex);
+        }
+    }
+
+    // Last segment of the client's name. One that cleans to "", "/", "." or ".." names nothing.
+    public String uploadFileName(String originalFileName) {
+        Path name = originalFileName == null ? null : Paths.get(StringUtils.cleanPath(originalFileName)).getFileName();
+        String fileName = name == null ? "" : name.toString();
+        if (fileName.isBlank() || fileName.equals(".") || fileName.equals("..")) {
+            throw new IllegalArgumentException("Invalid file name: " + originalFileName);
+        }
+        return fileName;
+    }
+
+    // Single pass over the upload: hash, sniff the type from the first bytes and write the
+    // content-addressed blob. Identical content is kept once and shared through hard links.
+    public StoredFile storeStream(InputStream in, String originalFileName, long maxBytes) throws IOException {
+        String fileName = uploadFileName(originalFileName);
+
+        MessageDigest digest = newSha256();
+        byte[] head = new byte[SNIFF_BYTES];
+        int headLength = 0;
+        long size = 0;
+
+        Path temp = Files.createTempFile(blobStorageLocation, "ingest-", ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                byte[] buffer = new byte[64 * 1024];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    size += read;
+                    if (size > maxBytes) {
+                        throw new UploadTooLargeException(maxBytes);
+                    }
+                    if (headLength < head.length) {
+                        int copy = Math.min(read, head.length - headLength);
+                        System.arraycopy(buffer, 0, head, headLength, copy);
+                        headLength += copy;
+                    }
+                    digest.update(buffer, 0, read);
+                    out.write(buffer, 0, read);
+                }
+            }
+            if (size == 0) {
+                throw new IOException("Failed to store empty file");
+            }
+
+            String sha256 = HexFormat.of().formatHex(digest.digest());
+            String mimeType = tika.detect(Arrays.copyOf(head, headLength), fileName);
+            return adoptBlob(temp, sha256, mimeType, fileName, size);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // Stores a file that was assembled elsewhere on the storage volume (e.g. a chunked upload).
+    // It is read once for the hash and hard-linked into the blob store, never copied, and left
+    // in place: the caller deletes it once the store succeeded and can retry after a failure.
+    public StoredFile storeAssembledFile(Path assembled, String originalFileName) throws IOException {
+        String fileName = uploadFileName(originalFileName);
+
+        MessageDigest digest = newSha256();
+        byte[] head = new byte[SNIFF_BYTES];
+        int headLength = 0;
+        long size = 0;
+        try (InputStream in = Files.newInputStream(assembled)) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                size += read;
+                if (headLength < head.length) {
+                    int copy = Math.min(read, head.length - headLength);
+                    System.arraycopy(buffer, 0, head, headLength, copy);
+                    headLength += copy;
+                }
+                digest.update(buffer, 0, read);
+            }
+        }
+
+        String sha256 = HexFormat.of().formatHex(digest.digest());
+        String mimeType = tika.detect(Arrays.copyOf(head, headLength), fileName);
+        Path staged = blobStorageLocation.resolve("ingest-" + UUID.randomUUID() + ".tmp");
+        linkToBlob(assembled, staged);
+        try {
+            return adoptBlob(staged, sha256, mimeType, fileName, size);
+        } finally {
+            Files.deleteIfExists(staged);
+        }
+    }
+
+    // Moves a fully written file into the blob store (unless identical content is already
+    // there) and links a new original to it
+    private StoredFile adoptBlob(Path source, String sha256, String mimeType, String fileName, long size)
+            throws IOException {
         String uniqueFileName = UUID.randomUUID() + "_" + fileName;
+        if (backend != null) {
+            return adoptRemote(source, sha256, mimeType, uniqueFileName, size);
+        }
+
+        Path blob = getBlobPath(sha256);
+        boolean deduplicated = true;
+        if (!Files.exists(blob)) {
+            blob = layoutPath(blobStorageLocation, sha256);
+            Files.createDirectories(blob.getParent());
+            try {
+                Files.move(source, blob, StandardCopyOption.ATOMIC_MOVE);
+                deduplicated = false;
+                writeAttribute(blob, SHA256_ATTRIBUTE, sha256);
+                writeAttribute(blob, MIME_ATTRIBUTE, mimeType);
+            } catch (FileAlreadyExistsException e) {
+                // Lost a race with an identical concurrent upload; theirs is just as good
+            }
+        }
+
+        Path reference = layoutPath(fileStorageLocation, uniqueFileName);
+        Files.createDirectories(reference.getParent());
+        linkToBlob(blob, reference);
+
+        log.info("File stored: {} ({} bytes, {}, sha256 {}{})", uniqueFileName, size, mimeType, sha256,
+                deduplicated ? ", deduplicated" : "");
+        return new StoredFile(uniqueFileName, sha256, mimeType, size, deduplicated);
+    }
+
+    // Remote layout: blobs/<sha256> holds the content once, refs/<name> holds the hash for
+    // each stored name. The uploaded file stays local as the first cache entry.
+    private StoredFile adoptRemote(Path source, String sha256, String mimeType, String uniqueFileName, long size)
+            throws IOException {
+        String blobKey = BLOB_PREFIX + sha256;
+        boolean deduplicated = backend.exists(blobKey);
+        if (!deduplicated) {
+            backend.put(blobKey, source);
+        }
+        backend.putBytes(REF_PREFIX + uniqueFileName, sha256.getBytes(StandardCharsets.UTF_8));
+
+        writeAttribute(source, SHA256_ATTRIBUTE, sha256);
+        writeAttribute(source, MIME_ATTRIBUTE, mimeType);
+        cache.adopt(uniqueFileName, source);
+
+        log.info("File stored remotely: {} ({} bytes, {}, sha256 {}{})", uniqueFileName, size, mimeType, sha256,
+                deduplicated ? ", deduplicated" : "");
+        return new StoredFile(uniqueFileName, sha256, mimeType, size, deduplicated);
+    }
+
+    // Local file for an original: straight from disk, or through the cache for a remote backend
+    private Path originalPath(String fileName) throws IOException {
+        if (cache == null) {
+            return locate(fileStorageLocation, fileName);
+        }
+        checkedPath(fileStorageLocation, fileStorageLocation.resolve(fileName));
+        return cache.get(fileName, target -> downloadOriginal(fileName, target));
+    }
+
+    private void downloadOriginal(String fileName, Path target) throws IOException {
+        String sha256 = new String(backend.readBytes(REF_PREFIX + fileName), StandardCharsets.UTF_8).trim();
+        backend.download(BLOB_PREFIX + sha256, target);
+        writeAttribute(target, SHA256_ATTRIBUTE, sha256);
+    }
+
+    // Starts pulling an original into the local cache ahead of a render that will need it
+    public void prefetch(String fileName) {
+        if (cache != null) {
+            try {
+                checkedPath(fileStorageLocation, fileStorageLocation.resolve(fileName));
+                cache.prefetch(fileName, target -> downloadOriginal(fileName, target));
+            } catch (RuntimeException e) {
+                log.debug("Not prefetching {}", fileName, e);
+            }
+        }
+    }
 
+    private void linkToBlob(Path blob, Path reference) throws IOException {
         try {
-            // Copy file to target location
-            Path targetLocation = fileStorageLocation.resolve(uniqueFileName);
-            Files.copy(file.getInputStream(), targetLocation, StandardCopyOption.REPLACE_EXISTING);
+            // Hard links share the inode, so the reference also carries the blob's attributes
+            Files.createLink(reference, blob);
+        } catch (UnsupportedOperationException | IOException e) {
+            log.debug("Hard link unavailable for {}, copying instead", reference, e);
+            Files.copy(blob, reference, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
 
-            log.info("File stored successfully: {}", targetLocation);
-            return uniqueFileName;
-        } catch (IOException ex) {
-            throw new RuntimeException("Failed to store file " + fileName, ex);
+    public Path getBlobPath(String sha256) {
+        return locate(blobStorageLocation, sha256);
+    }
+
+    // Content hash if it is known without reading the file, otherwise null
+    public String getKnownContentHash(String fileName) throws IOException {
+        if (cache != null) {
+            return getContentHash(fileName);
+        }
+        return readAttribute(resolveOriginal(fileName), SHA256_ATTRIBUTE);
+    }
+
+    // SHA-256 of a stored file, from its attributes when recorded at ingest
+    public String getContentHash(String fileName) throws IOException {
+        if (cache != null) {
+            // The ref object is the hash; no need to pull the content
+            checkedPath(fileStorageLocation, fileStorageLocation.resolve(fileName));
+            try {
+                return new String(backend.readBytes(REF_PREFIX + fileName), StandardCharsets.UTF_8).trim();
+            } catch (NoSuchFileException e) {
+                throw new RuntimeException("File not found: " + fileName, e);
+            }
+        }
+
+        Path path = loadFileAsResource(fileName).getFile().toPath();
+        String cached = readAttribute(path, SHA256_ATTRIBUTE);
+        if (cached != null) {
+            return cached;
+        }
+
+        MessageDigest digest = newSha256();
+        try (InputStream in = Files.newInputStream(path)) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        String sha256 = HexFormat.of().formatHex(digest.digest());
+        writeAttribute(path, SHA256_ATTRIBUTE, sha256);
+        return sha256;
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static String readAttribute(Path path, String name) {
+        try {
+            UserDefinedFileAttributeView view = Files.getFileAttributeView(path, UserDefinedFileAttributeView.class);
+            if (view != null && view.list().contains(name)) {
+                ByteBuffer buffer = ByteBuffer.allocate(view.size(name));
+                view.read(name, buffer);
+                buffer.flip();
+                return StandardCharsets.UTF_8.decode(buffer).toString();
+            }
+        } catch (IOException | UnsupportedOperationException e) {
+            log.debug("Could not read attribute {} of {}", name, path, e);
+        }
+        return null;
+    }
+
+    private static void writeAttribute(Path path, String name, String value) {
+        if (value == null) {
+            return;
+        }
+        try {
+            UserDefinedFileAttributeView view = Files.getFileAttributeView(path, UserDefinedFileAttributeView.class);
+            if (view != null) {
+                view.write(name, StandardCharsets.UTF_8.encode(value));
+            }
+        } catch (IOException | UnsupportedOperationException e) {
+            log.debug("Could not write attribute {} of {}", name, path, e);
         }
     }
 
     public Resource loadFileAsResource(String fileName) {
         try {
-            Path filePath = fileStorageLocation.resolve(fileName).normalize();
+            Path filePath = originalPath(fileName);
             Resource resource = new UrlResource(filePath.toUri());
 
             if (resource.exists() || resource.isReadable()) {
@@ -84,14 +466,123 @@ public class FileStorageService {
         } catch (MalformedURLException ex) {
             log.error("File path is invalid: {}", fileName);
             throw new RuntimeException("File not found: " + fileName, ex);
+        } catch (IOException ex) {
+            log.error("File could not be fetched: {}", fileName, ex);
+            throw new RuntimeException("File not found: " + fileName, ex);
         }
     }
 
+    // Direct path to an original for streaming; refuses anything outside the originals directory
+    public Path resolveOriginal(String fileName) {
+        Path filePath;
+        try {
+            filePath = originalPath(fileName);
+        } catch (IOException ex) {
+            throw new RuntimeException("File not found: " + fileName, ex);
+        }
+        if (!Files.isRegularFile(filePath)) {
+            throw new RuntimeException("File not found: " + fileName);
+        }
+        return filePath;
+    }
+
     public String storePreview(byte[] previewBytes, String originalFileName) throws IOException {
         String previewFileName = "preview_" + UUID.randomUUID() + "_" + originalFileName + ".png";
-        Path targetLocation = previewStorageLocation.resolve(previewFileName);
+        Path targetLocation = layoutPath(previewStorageLocation, previewFileName);
+        Files.createDirectories(targetLocation.getParent());
         Files.write(targetLocation, previewBytes);
         return previewFileName;
     }
 
+    // Deterministic location for a fully rendered preview so it can be reused across requests
+    public Path getRenderedPreviewPath(String fileName) {
+        return locate(previewStorageLocation, "full_" + fileName + ".png");
+    }
+
+    public void recordPreviewAccess(Path preview) {
+        previewAccesses.put(preview, System.currentTimeMillis());
+    }
+
+    public Map<Path, Long> drainPreviewAccesses() {
+        Map<Path, Long> drained = new HashMap<>();
+        for (Path path : previewAccesses.keySet()) {
+            Long accessed = previewAccesses.remove(path);
+            if (accessed != null) {
+                drained.put(path, accessed);
+            }
+        }
+        return drained;
+    }
+
+    public void storeRenderedPreview(String fileName, byte[] previewBytes) throws IOException {
+        writePreview("full_" + fileName + ".png", previewBytes);
+    }
+
+    // Previews keyed by content hash rather than name, shared by every name with that content;
+    // a render in the preview store wins over a backfilled one
+    public Path getHashedPreviewPath(String sha256) {
+        Path path = locate(previewStorageLocation, sha256 + ".png");
+        if (!Files.exists(path)) {
+            Path backfilled = locate(backfillStorageLocation, sha256 + ".png");
+            if (Files.exists(backfilled)) {
+                return backfilled;
+            }
+        }
+        return path;
+    }
+
+    public void storeHashedPreview(String sha256, byte[] previewBytes) throws IOException {
+        writePreview(previewStorageLocation, sha256 + ".png", previewBytes);
+    }
+
+    // The backfill is rendered ahead of any request, so nothing may have read a preview by the
+    // time max-age-days passes; these are kept until invalidated instead of aging out
+    public void storeBackfilledPreview(String sha256, byte[] previewBytes) throws IOException {
+        writePreview(backfillStorageLocation, sha256 + ".png", previewBytes);
+    }
+
+    // Also drops the multipage and page renders (PreviewJobService result keys <sha256>-multipage
+    // and <sha256>-page<n>) stored as <sha256>-*.png next to it
+    public boolean deleteHashedPreview(String sha256) throws IOException {
+        return deleteHashedPreview(previewStorageLocation, sha256)
+                | deleteHashedPreview(backfillStorageLocation, sha256);
+    }
+
+    // Looks in the directory of either layout: while a migration runs the plain preview and its
+    // variants can sit in different ones
+    private boolean deleteHashedPreview(Path root, String sha256) throws IOException {
+        if (!sha256.matches("[0-9a-f]{64}")) {
+            return Files.deleteIfExists(locate(root, sha256 + ".png"));
+        }
+        boolean deleted = false;
+        for (StorageLayout candidate : StorageLayout.values()) {
+            Path dir = checkedPath(root, candidate.resolve(root, sha256 + ".png", shardDepth)).getParent();
+            if (!Files.isDirectory(dir)) {
+                continue;
+            }
+            try (DirectoryStream<Path> previews = Files.newDirectoryStream(dir, sha256 + "{.png,-*.png}")) {
+                for (Path preview : previews) {
+                    deleted |= Files.deleteIfExists(preview);
+                }
+            }
+        }
+        return deleted;
+    }
+
+    private void writePreview(String previewName, byte[] previewBytes) throws IOException {
+        writePreview(previewStorageLocation, previewName, previewBytes);
+    }
+
+    private void writePreview(Path root, String previewName, byte[] previewBytes) throws IOException {
+        Path target = layoutPath(root, previewName);
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(root, "render_", ".tmp");
+        try {
+            Files.write(temp, previewBytes);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
 }
\ No newline at end of file
@@ -2,12 +2,40 @@ package com.techpool.file;
 
 public class FileUploadResponse {
     private String fileName;
+    private String sha256;
+    private String mimeType;
+    private long size;
+    private boolean deduplicated;
     
     public FileUploadResponse(String fileName) {
         this.fileName = fileName;
     }
+
+    public FileUploadResponse(StoredFile storedFile) {
+        this.fileName = storedFile.getFileName();
+        this.sha256 = storedFile.getSha256();
+        this.mimeType = storedFile.getMimeType();
+        this.size = storedFile.getSize();
+        this.deduplicated = storedFile.isDeduplicated();
+    }
     
     public String getFileName() {
         return fileName;
     }
-}
\ No newline at end of file
+
+    public String getSha256() {
+        return sha256;
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public boolean isDeduplicated() {
+        return deduplicated;
+    }
+}
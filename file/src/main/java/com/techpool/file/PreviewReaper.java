@@ -0,0 +1,261 @@
+package com.techpool.file;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+// Keeps the preview store inside file.preview.max-age-days and file.preview.max-bytes.
+// Each pass walks the directory lazily at a bounded rate. The first walk deletes expired
+// files and builds an hourly histogram of last use. If the store is still over budget, a
+// second walk evicts everything older than the cutoff the histogram gives. Memory stays
+// constant however many previews there are. Backfilled previews live in their own root and
+// are left alone, and a batch run does not reap at all.
+@Service
+public class PreviewReaper {
+    private static final Logger log = LoggerFactory.getLogger(PreviewReaper.class);
+    private static final long BUCKET_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final long STALE_TEMP_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private final FileStorageService storageService;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicLong totalReclaimedBytes = new AtomicLong();
+    private volatile PreviewReaperReport lastReport;
+
+    @Value("${file.preview.max-age-days:7}")
+    private int maxAgeDays;
+
+    @Value("${file.preview.max-bytes:10737418240}")
+    private long maxBytes;
+
+    @Value("${file.preview.cleanup-on-start:false}")
+    private boolean cleanupOnStart;
+
+    @Value("${file.preview.reaper-max-files-per-second:2000}")
+    private int maxFilesPerSecond;
+
+    @Value("#{'${batch.source:}' != '' or '${batch.manifest:}' != ''}")
+    private boolean batchMode;
+
+    public PreviewReaper(FileStorageService storageService) {
+        this.storageService = storageService;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (cleanupOnStart && !batchMode) {
+            Thread thread = new Thread(this::reap, "preview-reaper-startup");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    @Scheduled(initialDelayString = "${file.preview.reaper-interval-ms:900000}",
+            fixedDelayString = "${file.preview.reaper-interval-ms:900000}")
+    public void scheduledReap() {
+        if (!batchMode) {
+            reap();
+        }
+    }
+
+    public PreviewReaperReport getLastReport() {
+        return lastReport;
+    }
+
+    // Returns null if a pass is already running
+    public PreviewReaperReport reap() {
+        if (!running.compareAndSet(false, true)) {
+            return null;
+        }
+        try {
+            return runPass();
+        } catch (IOException | RuntimeException e) {
+            log.error("Preview reaper pass failed", e);
+            return lastReport;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private PreviewReaperReport runPass() throws IOException {
+        Instant startedAt = Instant.now();
+        Path root = storageService.getPreviewStorageLocation();
+        flushAccessTimes();
+
+        long now = System.currentTimeMillis();
+        long expiry = now - TimeUnit.DAYS.toMillis(maxAgeDays);
+        int bucketCount = (int) Math.max(1, (now - expiry) / BUCKET_MILLIS + 1);
+        long[] bytesByAge = new long[bucketCount];
+        Pass scan = new Pass();
+
+        walkFiles(root, (path, attributes) -> {
+            scan.pace();
+            long lastUsed = lastUsed(attributes);
+            if (path.getFileName().toString().endsWith(".tmp")) {
+                // Leftovers from renders that died between write and rename
+                if (lastUsed < now - STALE_TEMP_MILLIS) {
+                    scan.delete(path, attributes.size(), false);
+                }
+            } else if (lastUsed < expiry) {
+                scan.delete(path, attributes.size(), false);
+            } else {
+                int bucket = (int) Math.min(bucketCount - 1, Math.max(0, (now - lastUsed) / BUCKET_MILLIS));
+                bytesByAge[bucket] += attributes.size();
+                scan.keep(attributes.size());
+            }
+        });
+
+        long cutoff = evictionCutoff(bytesByAge, now);
+        if (cutoff > 0) {
+            log.info("Preview store at {} exceeds budget of {}, evicting previews unused since {}",
+                    scan.footprintBytes, maxBytes, Instant.ofEpochMilli(cutoff));
+            walkFiles(root, (path, attributes) -> {
+                if (path.getFileName().toString().endsWith(".tmp")) {
+                    return;
+                }
+                scan.pace();
+                if (lastUsed(attributes) < cutoff && scan.delete(path, attributes.size(), true)) {
+                    scan.footprintBytes -= attributes.size();
+                    scan.footprintFiles--;
+                }
+            });
+        }
+
+        long total = totalReclaimedBytes.addAndGet(scan.reclaimedBytes);
+        PreviewReaperReport report = new PreviewReaperReport(startedAt, Instant.now(), scan.filesScanned,
+                scan.expiredFiles, scan.evictedFiles, scan.reclaimedBytes, scan.footprintBytes,
+                scan.footprintFiles, total);
+        lastReport = report;
+        log.info("Preview reaper reclaimed {} bytes ({} expired, {} evicted); store now {} files, {} bytes",
+                scan.reclaimedBytes, scan.expiredFiles, scan.evictedFiles, scan.footprintFiles, scan.footprintBytes);
+        return report;
+    }
+
+    // Oldest hour boundary such that everything used after it fits in the budget, or 0 if
+    // the store already fits. Previews used within the last hour are always kept, even when
+    // they alone exceed the budget: they are what is being served right now.
+    private long evictionCutoff(long[] bytesByAge, long now) {
+        long kept = 0;
+        for (int bucket = 0; bucket < bytesByAge.length; bucket++) {
+            kept += bytesByAge[bucket];
+            if (kept > maxBytes) {
+                if (bucket == 0) {
+                    log.warn("Previews used in the last hour alone take {} bytes, over the budget of {}",
+                            bytesByAge[0], maxBytes);
+                }
+                return now - Math.max(1, bucket) * BUCKET_MILLIS;
+            }
+        }
+        return 0;
+    }
+
+    // Regular files under root. Files that vanish or cannot be read while the store changes under
+    // the walk are skipped instead of ending the pass.
+    private static void walkFiles(Path root, BiConsumer<Path, BasicFileAttributes> action) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path path, BasicFileAttributes attributes) {
+                if (attributes.isRegularFile()) {
+                    action.accept(path, attributes);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path path, IOException e) {
+                if (!(e instanceof NoSuchFileException)) {
+                    log.debug("Preview reaper skipped {}", path, e);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    // Tracked reads are written back as the file's atime so they survive restarts
+    private void flushAccessTimes() {
+        for (Map.Entry<Path, Long> access : storageService.drainPreviewAccesses().entrySet()) {
+            try {
+                Files.getFileAttributeView(access.getKey(), BasicFileAttributeView.class)
+                        .setTimes(null, FileTime.fromMillis(access.getValue()), null);
+            } catch (NoSuchFileException e) {
+                // Already gone
+            } catch (IOException e) {
+                log.debug("Could not record access time of {}", access.getKey(), e);
+            }
+        }
+    }
+
+    private static long lastUsed(BasicFileAttributes attributes) {
+        return Math.max(attributes.lastModifiedTime().toMillis(), attributes.lastAccessTime().toMillis());
+    }
+
+    private class Pass {
+        private final long startNanos = System.nanoTime();
+        private long paced;
+        long filesScanned;
+        long expiredFiles;
+        long evictedFiles;
+        long reclaimedBytes;
+        long footprintBytes;
+        long footprintFiles;
+
+        // Sleeps whenever the walk gets ahead of maxFilesPerSecond
+        void pace() {
+            filesScanned++;
+            paced++;
+            if (maxFilesPerSecond <= 0) {
+                return;
+            }
+            long aheadNanos = paced * 1_000_000_000L / maxFilesPerSecond - (System.nanoTime() - startNanos);
+            if (aheadNanos > 10_000_000L) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(aheadNanos);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Preview reaper interrupted", e);
+                }
+            }
+        }
+
+        void keep(long size) {
+            footprintBytes += size;
+            footprintFiles++;
+        }
+
+        boolean delete(Path path, long size, boolean evicted) {
+            try {
+                if (!Files.deleteIfExists(path)) {
+                    return false;
+                }
+            } catch (IOException e) {
+                log.warn("Could not delete preview {}", path, e);
+                return false;
+            }
+            reclaimedBytes += size;
+            if (evicted) {
+                evictedFiles++;
+            } else {
+                expiredFiles++;
+            }
+            return true;
+        }
+    }
+}
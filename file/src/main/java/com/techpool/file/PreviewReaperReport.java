@@ -0,0 +1,65 @@
+package com.techpool.file;
+
+import java.time.Instant;
+
+public class PreviewReaperReport {
+    private final Instant startedAt;
+    private final Instant finishedAt;
+    private final long filesScanned;
+    private final long expiredFiles;
+    private final long evictedFiles;
+    private final long reclaimedBytes;
+    private final long footprintBytes;
+    private final long footprintFiles;
+    private final long totalReclaimedBytes;
+
+    PreviewReaperReport(Instant startedAt, Instant finishedAt, long filesScanned, long expiredFiles,
+            long evictedFiles, long reclaimedBytes, long footprintBytes, long footprintFiles,
+            long totalReclaimedBytes) {
+        this.startedAt = startedAt;
+        this.finishedAt = finishedAt;
+        this.filesScanned = filesScanned;
+        this.expiredFiles = expiredFiles;
+        this.evictedFiles = evictedFiles;
+        this.reclaimedBytes = reclaimedBytes;
+        this.footprintBytes = footprintBytes;
+        this.footprintFiles = footprintFiles;
+        this.totalReclaimedBytes = totalReclaimedBytes;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    public long getFilesScanned() {
+        return filesScanned;
+    }
+
+    public long getExpiredFiles() {
+        return expiredFiles;
+    }
+
+    public long getEvictedFiles() {
+        return evictedFiles;
+    }
+
+    public long getReclaimedBytes() {
+        return reclaimedBytes;
+    }
+
+    public long getFootprintBytes() {
+        return footprintBytes;
+    }
+
+    public long getFootprintFiles() {
+        return footprintFiles;
+    }
+
+    public long getTotalReclaimedBytes() {
+        return totalReclaimedBytes;
+    }
+}
@@ -5,56 +5,301 @@ import java.awt.*;
 import java.awt.image.BufferedImage;
 
 import javax.imageio.ImageIO;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
-
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.commons.io.input.BoundedInputStream;
 import org.apache.pdfbox.Loader; // Add this import
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
+import com.techpool.file.render.Composite;
+import com.techpool.file.render.CompositeRenderer;
+import com.techpool.file.render.PageSource;
+import com.techpool.file.render.PngEncoder;
+import com.techpool.file.render.RenderContext;
+import com.techpool.file.render.RenderPriority;
+import com.techpool.file.render.RenderResource;
+import com.techpool.file.render.RenderScheduler;
+import com.techpool.file.util.AudioWaveformHandler;
 import com.techpool.file.util.FileTypeHandler;
 import com.techpool.file.util.FileTypeHandlerFactory;
+import com.techpool.file.util.GenericHandler;
 import com.techpool.file.util.LibreOfficeHelper;
+import com.techpool.file.util.MultiPageHandler;
+import com.techpool.file.util.PdfPageRenderer;
+import com.techpool.file.util.PreviewUtils;
+import com.techpool.file.worker.RenderWorkerPool;
 
 import org.springframework.core.io.Resource;
 import org.apache.pdfbox.pdmodel.encryption.InvalidPasswordException;
 import org.apache.pdfbox.rendering.PDFRenderer;
 import org.apache.tika.Tika;
 
+
 @Service
 public class PreviewService {
     private static final Logger log = LoggerFactory.getLogger(PreviewService.class);
+    private static final long MAX_ARCHIVE_ENTRY_BYTES = 512L * 1024 * 1024;
+    private static final int PAGE_WIDTH = 1000;
+    private static final int PAGE_HEIGHT = 1400;
+    private static final int MAX_FAILED_FULL_RENDERS = 10000;
+    private static final long FAILED_FULL_RENDER_RETRY_MILLIS = TimeUnit.MINUTES.toMillis(10);
     private final FileStorageService storageService;
     private final FileTypeHandlerFactory handlerFactory;
     private final Tika tika = new Tika();
+    private final RenderScheduler renderScheduler;
+    private final PngEncoder pngEncoder;
+    private final CompositeRenderer compositeRenderer;
+    private final RenderWorkerPool workerPool;
+    private final Map<String, CompletableFuture<Void>> pendingFullRenders = new ConcurrentHashMap<>();
+    // When a full render of file@version failed. Forgotten after a while so a transient failure,
+    // e.g. a worker crash, gets another try, and bounded like the other per-file caches.
+    private final Map<String, Long> failedFullRenders = Collections.synchronizedMap(
+            new LinkedHashMap<String, Long>() {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                    return size() > MAX_FAILED_FULL_RENDERS;
+                }
+            });
 
-    public PreviewService(FileStorageService storageService, FileTypeHandlerFactory handlerFactory) {
+    public PreviewService(FileStorageService storageService, FileTypeHandlerFactory handlerFactory,
+            RenderScheduler renderScheduler, PngEncoder pngEncoder, CompositeRenderer compositeRenderer,
+            RenderWorkerPool workerPool) {
         this.storageService = storageService;
         this.handlerFactory = handlerFactory;
+        this.renderScheduler = renderScheduler;
+        this.pngEncoder = pngEncoder;
+        this.compositeRenderer = compositeRenderer;
+        this.workerPool = workerPool;
     }
 
     public byte[] generatePreview(String filename) {
+        return generatePreview(filename, RenderScheduler.DEFAULT_TENANT);
+    }
+
+    public byte[] generatePreview(String filename, String tenant) {
+        try {
+            return renderPreview(filename, RenderPriority.INTERACTIVE, tenant);
+        } catch (Exception e) {
+            log.error("Preview failed for {}", filename, e);
+            return generateErrorPreview("Preview unavailable: " + e.getMessage());
+        }
+    }
+
+    // Same as generatePreview but failures surface to the caller instead of as an error image
+    public byte[] renderPreview(String filename) throws Exception {
+        return renderPreview(filename, RenderPriority.INTERACTIVE, RenderScheduler.DEFAULT_TENANT);
+    }
+
+    public byte[] renderPreview(String filename, RenderPriority priority, String tenant) throws Exception {
+        Resource fileResource = storageService.loadFileAsResource(filename);
+        File file = fileResource.getFile();
+
+        if (!file.exists()) {
+            throw new FileNotFoundException("File not found in storage");
+        }
+
+        String mimeType = tika.detect(file);
+        FileTypeHandler handler = handlerFactory.getHandler(mimeType);
+
+        if (handler == null) {
+            throw new IllegalArgumentException("No handler for mimeType: " + mimeType);
+        }
+
+        return renderScheduler.run(RenderResource.of(handler), priority, tenant,
+                () -> workerPool.generatePreview(handler, file));
+    }
+
+    // Which handler renders this file; also the key its concurrency limit is tracked under
+    public String getHandlerType(String filename) throws IOException {
+        File file = storageService.loadFileAsResource(filename).getFile();
+        return handlerFactory.getHandler(tika.detect(file)).getClass().getSimpleName();
+    }
+
+    // Stands in while renders of this file's type are being shed: the last full preview from any
+    // earlier render, even a stale one, else the generic file-type card, which costs no render slot
+    public byte[] generateDegradedPreview(String filename) throws IOException {
+        List<Path> candidates = new ArrayList<>();
+        String sha256 = storageService.getKnownContentHash(filename);
+        if (sha256 != null) {
+            candidates.add(storageService.getHashedPreviewPath(sha256));
+        }
+        candidates.add(storageService.getRenderedPreviewPath(filename));
+        for (Path candidate : candidates) {
+            try {
+                byte[] bytes = Files.readAllBytes(candidate);
+                storageService.recordPreviewAccess(candidate);
+                return bytes;
+            } catch (NoSuchFileException e) {
+                // Try the next one
+            }
+        }
+        File file = storageService.loadFileAsResource(filename).getFile();
+        return handlerFactory.getHandler(GenericHandler.class).generatePreview(file);
+    }
+
+    public ProgressivePreview generateProgressivePreview(String filename) {
+        return generateProgressivePreview(filename, RenderScheduler.DEFAULT_TENANT);
+    }
+
+    public ProgressivePreview generateProgressivePreview(String filename, String tenant) {
         try {
-            Resource fileResource = storageService.loadFileAsResource(filename);
-            File file = fileResource.getFile();
+            File file = storageService.loadFileAsResource(filename).getFile();
+            String version = Long.toHexString(file.lastModified()) + "-" + Long.toHexString(file.length());
 
-            if (!file.exists()) {
-                throw new FileNotFoundException("File not found in storage");
+            byte[] rendered = readRenderedPreview(filename, file);
+            if (rendered != null) {
+                return new ProgressivePreview(rendered, ProgressivePreview.QUALITY_FULL, "full-" + version);
             }
 
-            String mimeType = tika.detect(file);
-            FileTypeHandler handler = handlerFactory.getHandler(mimeType);
+            FileTypeHandler handler = handlerFactory.getHandler(tika.detect(file));
+            byte[] placeholder = interactive(RenderResource.of(handler), tenant,
+                    () -> workerPool.generatePlaceholder(handler, file));
+
+            if (placeholder == null) {
+                // Cheap type: the full render is the fastest path to first paint
+                byte[] full = interactive(RenderResource.of(handler), tenant,
+                        () -> workerPool.generatePreview(handler, file));
+                storageService.storeRenderedPreview(filename, full);
+                return new ProgressivePreview(full, ProgressivePreview.QUALITY_FULL, "full-" + version);
+            }
 
-            if (handler == null) {
-                throw new IllegalArgumentException("No handler for mimeType: " + mimeType);
+            if (fullRenderFailed(filename + "@" + version)) {
+                // Stop clients from polling, but keep the placeholder out of their caches
+                return new ProgressivePreview(placeholder, ProgressivePreview.QUALITY_PLACEHOLDER_FINAL,
+                        "placeholder-" + version);
             }
 
-            return handler.generatePreview(file);
+            scheduleFullRender(filename, file, handler, version, tenant);
+            return new ProgressivePreview(placeholder, ProgressivePreview.QUALITY_PLACEHOLDER, "placeholder-" + version);
         } catch (Exception e) {
-            log.error("Preview failed for {}", filename, e);
+            log.error("Progressive preview failed for {}", filename, e);
+            return new ProgressivePreview(generateErrorPreview("Preview unavailable: " + e.getMessage()),
+                    ProgressivePreview.QUALITY_ERROR, "error");
+        }
+    }
+
+    private void scheduleFullRender(String filename, File file, FileTypeHandler handler, String version,
+            String tenant) {
+        CompletableFuture<Void> task = new CompletableFuture<>();
+        if (pendingFullRenders.putIfAbsent(filename, task) != null) {
+            return; // Already rendering
+        }
+
+        long queuedAt = System.currentTimeMillis();
+        renderScheduler.submit(RenderResource.of(handler), RenderPriority.PRERENDER, tenant, () -> {
+            storageService.storeRenderedPreview(filename, workerPool.generatePreview(handler, file));
+            return null;
+        }).whenComplete((ignored, e) -> {
+            if (e == null) {
+                log.info("Full preview for {} ready in {} ms", filename, System.currentTimeMillis() - queuedAt);
+                task.complete(null);
+            } else {
+                log.error("Background render failed for {}", filename, e);
+                failedFullRenders.put(filename + "@" + version, System.currentTimeMillis());
+                task.completeExceptionally(e);
+            }
+            pendingFullRenders.remove(filename, task);
+        });
+    }
+
+    private boolean fullRenderFailed(String key) {
+        Long failedAt = failedFullRenders.get(key);
+        if (failedAt == null) {
+            return false;
+        }
+        if (System.currentTimeMillis() - failedAt < FAILED_FULL_RENDER_RETRY_MILLIS) {
+            return true;
+        }
+        failedFullRenders.remove(key, failedAt);
+        return false;
+    }
+
+    private byte[] readRenderedPreview(String filename, File original) throws IOException {
+        Path rendered = storageService.getRenderedPreviewPath(filename);
+        try {
+            if (Files.getLastModifiedTime(rendered).toMillis() >= original.lastModified()) {
+                byte[] bytes = Files.readAllBytes(rendered);
+                storageService.recordPreviewAccess(rendered);
+                return bytes;
+            }
+        } catch (NoSuchFileException e) {
+            // Not rendered yet, or reclaimed by the preview reaper
+        }
+        return null;
+    }
+
+    public byte[] generateWaveform(String filename, int width, int height, String tenant) {
+        try {
+            File file = storageService.loadFileAsResource(filename).getFile();
+            AudioWaveformHandler handler = handlerFactory.getHandler(AudioWaveformHandler.class);
+            return interactive(RenderResource.CPU, tenant, () -> handler.generateWaveform(file,
+                    Math.max(100, Math.min(width, 4000)), Math.max(100, Math.min(height, 2000))));
+        } catch (Exception e) {
+            log.error("Waveform failed for {}", filename, e);
+            return generateErrorPreview("Waveform unavailable: " + e.getMessage());
+        }
+    }
+
+    // Streams a single archive member to a temp file and previews it with its own handler.
+    // A missing entry throws NoSuchElementException; other failures become an error image.
+    public byte[] generateArchiveEntryPreview(String filename, String entryName, String tenant) {
+        Path temp = null;
+        try {
+            File archive = storageService.loadFileAsResource(filename).getFile();
+            try (ZipFile zip = new ZipFile(archive)) {
+                ZipEntry entry = zip.getEntry(entryName);
+                if (entry == null || entry.isDirectory()) {
+                    throw new NoSuchElementException("No such entry: " + entryName);
+                }
+                if (entry.getSize() > MAX_ARCHIVE_ENTRY_BYTES) {
+                    throw new IOException("Entry too large to preview: " + entryName);
+                }
+
+                String baseName = entryName.substring(entryName.lastIndexOf('/') + 1);
+                int dot = baseName.lastIndexOf('.');
+                temp = Files.createTempFile("entry-", dot >= 0 ? baseName.substring(dot) : ".bin");
+                // The declared size is the archive's claim; count what actually inflates
+                try (InputStream in = new BoundedInputStream(zip.getInputStream(entry), MAX_ARCHIVE_ENTRY_BYTES + 1)) {
+                    if (Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING) > MAX_ARCHIVE_ENTRY_BYTES) {
+                        throw new IOException("Entry too large to preview: " + entryName);
+                    }
+                }
+            }
+
+            File entryFile = temp.toFile();
+            FileTypeHandler handler = handlerFactory.getHandler(tika.detect(entryFile));
+            return interactive(RenderResource.of(handler), tenant, () -> workerPool.generatePreview(handler, entryFile));
+        } catch (NoSuchElementException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Archive entry preview failed for {}!{}", filename, entryName, e);
             return generateErrorPreview("Preview unavailable: " + e.getMessage());
+        } finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException e) {
+                    log.warn("Failed to delete temp file {}", temp, e);
+                }
+            }
         }
     }
 
@@ -90,9 +335,7 @@ public class PreviewService {
 
             g.dispose();
 
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            ImageIO.write(image, "png", baos);
-            return baos.toByteArray();
+            return pngEncoder.encode(image);
         } catch (Exception e) {
             log.error("Critical error during error preview generation", e);
             return new byte[0];
@@ -110,22 +353,29 @@ public class PreviewService {
 
     public byte[] generateMultiPagePreview(String fileName) {
         try {
-            Resource fileResource = storageService.loadFileAsResource(fileName);
-            File file = fileResource.getFile();
-            String mimeType = tika.detect(file);
-
-            if (mimeType.contains("pdf")) {
-                return generatePdfMultiPagePreview(file);
-            } else if (mimeType.contains("word") || mimeType.contains("officedocument")) {
-                return generateOfficeMultiPagePreview(file);
-            }
-            return generatePreview(fileName); // Fallback for non-multi-page files
+            return renderMultiPagePreview(fileName, RenderScheduler.DEFAULT_TENANT);
         } catch (Exception e) {
             log.error("Multi-page preview failed for {}", fileName, e);
             return generateErrorPreview("Preview generation failed");
         }
     }
 
+    public byte[] renderMultiPagePreview(String fileName, String tenant) throws Exception {
+        Resource fileResource = storageService.loadFileAsResource(fileName);
+        File file = fileResource.getFile();
+        String mimeType = tika.detect(file);
+
+        if (mimeType.contains("pdf")) {
+            return interactive(RenderResource.CPU, tenant, () -> generatePdfMultiPagePreview(file));
+        } else if (mimeType.contains("word") || mimeType.contains("officedocument")) {
+            return interactive(RenderResource.LIBREOFFICE, tenant, () -> generateOfficeMultiPagePreview(file));
+        } else if (handlerFactory.getHandler(mimeType) instanceof MultiPageHandler) {
+            MultiPageHandler handler = (MultiPageHandler) handlerFactory.getHandler(mimeType);
+            return interactive(RenderResource.CPU, tenant, () -> generatePagedMultiPagePreview(handler, file));
+        }
+        return renderPreview(fileName, RenderPriority.INTERACTIVE, tenant); // Fallback for non-multi-page files
+    }
+
     private byte[] generatePdfMultiPagePreview(File file) throws IOException {
         try (PDDocument document = Loader.loadPDF(file)) {
             PDFRenderer renderer = new PDFRenderer(document);
@@ -134,17 +384,63 @@ public class PreviewService {
             // Configurable number of pages to render (default: 3)
             int pagesToRender = Math.min(pageCount, getMaxPreviewPages());
 
-            List<BufferedImage> pages = new ArrayList<>();
+            // Render configured number of pages, each drawn and dropped before the next; gray
+            // until a colour page turns up
+            return combinePages(PdfPageRenderer.pageSizes(document, pagesToRender, 1.0f),
+                    BufferedImage.TYPE_BYTE_GRAY, i -> {
+                        BufferedImage page = PdfPageRenderer.renderImage(document, renderer, i, 1.0f); // 1.0 = 100 DPI
+                        RenderContext.pageRendered(i + 1, pagesToRender);
+                        return page;
+                    }, file);
+        }
+    }
 
-            // Render configured number of pages
-            for (int i = 0; i < pagesToRender; i++) {
-                pages.add(renderer.renderImage(i, 1.0f)); // 1.0 = 100 DPI
-            }
+    private byte[] generatePagedMultiPagePreview(MultiPageHandler handler, File file) throws IOException {
+        int pagesToRender = Math.min(handler.getPageCount(file), getMaxPreviewPages());
+        List<BufferedImage> pages = new ArrayList<>();
+        for (int i = 0; i < pagesToRender; i++) {
+            RenderContext.checkpoint();
+            pages.add(handler.renderPage(file, i, PAGE_WIDTH, PAGE_HEIGHT));
+            RenderContext.pageRendered(i + 1, pagesToRender);
+        }
+        return combinePages(pages, file);
+    }
+
+    public int getPageCount(String fileName) throws IOException {
+        File file = storageService.loadFileAsResource(fileName).getFile();
+        FileTypeHandler handler = handlerFactory.getHandler(tika.detect(file));
+        // Non-paged files are considered single-page
+        return handler instanceof MultiPageHandler ? ((MultiPageHandler) handler).getPageCount(file) : 1;
+    }
 
-            return combinePages(pages, file);
+    // Single page (1-based) for paged formats; other files fall back to the multi-page preview
+    public byte[] generatePagePreview(String fileName, int page) {
+        try {
+            return renderPagePreview(fileName, page, RenderScheduler.DEFAULT_TENANT);
+        } catch (Exception e) {
+            log.error("Page {} preview failed for {}", page, fileName, e);
+            return generateErrorPreview("Preview generation failed");
         }
     }
 
+    public byte[] renderPagePreview(String fileName, int page, String tenant) throws Exception {
+        File file = storageService.loadFileAsResource(fileName).getFile();
+        FileTypeHandler handler = handlerFactory.getHandler(tika.detect(file));
+        if (!(handler instanceof MultiPageHandler)) {
+            return renderMultiPagePreview(fileName, tenant);
+        }
+        return interactive(RenderResource.CPU, tenant, () -> {
+            BufferedImage image = ((MultiPageHandler) handler).renderPage(file, page - 1, PAGE_WIDTH, PAGE_HEIGHT);
+            return pngEncoder.encode(image);
+        });
+    }
+
+    // Rasterizing and encoding run on the scheduler's platform threads, never on the request thread:
+    // PDFBox and Java2D hold monitors internally, which would pin a virtual carrier thread
+    private <T> T interactive(RenderResource resource, String tenant, Callable<T> work) throws Exception {
+        return renderScheduler.run(resource, RenderPriority.INTERACTIVE, tenant, work);
+    }
+
     // Get max pages from configuration
     private int getMaxPreviewPages() {
         // Read from application.properties or use default
@@ -169,51 +465,63 @@ public class PreviewService {
     }
 
     private byte[] combinePages(List<BufferedImage> pages, File file) throws IOException {
-        if (pages.isEmpty()) {
-            return generateErrorPreview("No pages found");
+        List<Dimension> sizes = pages.stream().map(page -> new Dimension(page.getWidth(), page.getHeight())).toList();
+        return combinePages(sizes, PreviewUtils.compositeType(pages), pages::get, file);
+    }
+
+    // Each page is rendered, drawn into its strip and dropped before the next, so only one is held
+    private byte[] combinePages(List<Dimension> sizes, int imageType, PageSource pages, File file) throws IOException {
+        if (sizes.isEmpty()) {
+            throw new IOException("No pages found in " + file.getName());
         }
 
         // Calculate dimensions
-        int width = pages.stream()
-                .mapToInt(BufferedImage::getWidth)
+        int width = sizes.stream()
+                .mapToInt(size -> size.width)
                 .max()
                 .orElse(800);
         int spacing = 20;
-        int totalHeight = pages.stream()
-                .mapToInt(img -> img.getHeight())
-                .sum() + (pages.size() * spacing);
-
-        // Create combined image
-        BufferedImage combined = new BufferedImage(width, totalHeight, BufferedImage.TYPE_INT_RGB);
-        Graphics2D g = combined.createGraphics();
-
-        // White background
-        g.setColor(Color.WHITE);
-        g.fillRect(0, 0, width, totalHeight);
-
-        // Draw pages with page numbers
-        int y = 0;
-        for (int i = 0; i < pages.size(); i++) {
-            BufferedImage page = pages.get(i);
-
-            // Center each page horizontally
-            int x = (width - page.getWidth()) / 2;
-            g.drawImage(page, x, y, null);
-
-            // Add page number
-            g.setColor(new Color(0, 0, 0, 150)); // Semi-transparent black
-            g.fillRect(x, y + page.getHeight() - 30, 50, 20);
-            g.setColor(Color.WHITE);
-            g.drawString("Page " + (i + 1), x + 5, y + page.getHeight() - 15);
-
-            y += page.getHeight() + spacing;
+        int totalHeight = sizes.stream()
+                .mapToInt(size -> size.height)
+                .sum() + (sizes.size() * spacing);
+
+        // Create combined image and convert to PNG; gray pages stay one byte per pixel throughout,
+        // very large composites are kept off-heap and tall ones are deflated in parallel bands
+        try (Composite composite = compositeRenderer.open(width, totalHeight, imageType)) {
+            // Draw pages with page numbers
+            int y = 0;
+            for (int i = 0; i < sizes.size(); i++) {
+                RenderContext.checkpoint();
+                BufferedImage page = pages.render(i);
+                composite.widenFor(page);
+                int top = y;
+                int pageWidth = sizes.get(i).width;
+                int pageHeight = sizes.get(i).height;
+                String label = "Page " + (i + 1);
+                composite.paint(top, pageHeight + spacing, g -> {
+                    // White background
+                    g.setColor(Color.WHITE);
+                    g.fillRect(0, top, width, pageHeight + spacing);
+
+                    // Center each page horizontally
+                    int x = (width - pageWidth) / 2;
+                    Graphics2D pageArea = (Graphics2D) g.create(x, top, pageWidth, pageHeight);
+                    try {
+                        pageArea.drawImage(page, 0, 0, null);
+                    } finally {
+                        pageArea.dispose();
+                    }
+
+                    // Add page number
+                    g.setColor(new Color(0, 0, 0, 150)); // Semi-transparent black
+                    g.fillRect(x, top + pageHeight - 30, 50, 20);
+                    g.setColor(Color.WHITE);
+                    g.drawString(label, x + 5, top + pageHeight - 15);
+                });
+                y += pageHeight + spacing;
+            }
+            return composite.encode();
         }
-        g.dispose();
-
-        // Convert to PNG
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        ImageIO.write(combined, "png", baos);
-        return baos.toByteArray();
     }
 
     // private String generateQrContent(File file) throws IOException {
@@ -0,0 +1,43 @@
+package com.techpool.file;
+
+public class ProgressivePreview {
+    public static final String QUALITY_PLACEHOLDER = "placeholder";
+    public static final String QUALITY_FULL = "full";
+    // The full render failed; nothing better is coming for this version
+    public static final String QUALITY_PLACEHOLDER_FINAL = "placeholder-final";
+    // The preview could not be produced; possibly transient, so never cached
+    public static final String QUALITY_ERROR = "error";
+
+    private final byte[] image;
+    private final String quality;
+    private final String version;
+
+    public ProgressivePreview(byte[] image, String quality, String version) {
+        this.image = image;
+        this.quality = quality;
+        this.version = version;
+    }
+
+    public byte[] getImage() {
+        return image;
+    }
+
+    public String getQuality() {
+        return quality;
+    }
+
+    // Opaque token that changes when a better rendition becomes available
+    public String getVersion() {
+        return version;
+    }
+
+    // Clients stop polling once the preview is final
+    public boolean isFinal() {
+        return QUALITY_FULL.equals(quality) || QUALITY_PLACEHOLDER_FINAL.equals(quality)
+                || QUALITY_ERROR.equals(quality);
+    }
+
+    public boolean isCacheable() {
+        return QUALITY_FULL.equals(quality);
+    }
+}
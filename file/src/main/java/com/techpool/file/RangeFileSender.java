@@ -0,0 +1,234 @@
+package com.techpool.file;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+
+// Serves files from disk with HTTP range support (single and multipart/byteranges) and hands
+// the bytes to the container's sendfile where possible, so they never pass through the heap
+@Component
+public class RangeFileSender {
+    private static final Logger log = LoggerFactory.getLogger(RangeFileSender.class);
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+    // More ranges than this is either a broken client or an amplification attempt
+    private static final int MAX_RANGES = 16;
+
+    public void send(Path path, String contentType, String contentDisposition,
+            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        long length = Files.size(path);
+        long lastModified = Files.getLastModifiedTime(path).toMillis();
+        String etag = "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+        if (contentDisposition != null) {
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, contentDisposition);
+        }
+
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null && (ifNoneMatch.trim().equals("*") || ifNoneMatch.contains(etag))) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        List<long[]> ranges = parseRanges(request.getHeader(HttpHeaders.RANGE), length);
+        if (ranges != null && !ifRangeMatches(request.getHeader(HttpHeaders.IF_RANGE), etag, lastModified)) {
+            // The client's partial copy is stale; it needs the whole file again
+            ranges = null;
+        }
+        boolean head = "HEAD".equalsIgnoreCase(request.getMethod());
+
+        if (ranges == null) {
+            response.setStatus(HttpServletResponse.SC_OK);
+            response.setContentType(contentType);
+            response.setContentLengthLong(length);
+            if (!head) {
+                transfer(path, 0, length, request, response);
+            }
+        } else if (ranges.isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+            response.setContentLengthLong(0);
+        } else if (ranges.size() == 1) {
+            long[] range = ranges.get(0);
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setContentType(contentType);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + range[0] + "-" + range[1] + "/" + length);
+            response.setContentLengthLong(range[1] - range[0] + 1);
+            if (!head) {
+                transfer(path, range[0], range[1] - range[0] + 1, request, response);
+            }
+        } else {
+            sendMultipart(path, contentType, length, ranges, head, response);
+        }
+    }
+
+    private void sendMultipart(Path path, String contentType, long length, List<long[]> ranges, boolean head,
+            HttpServletResponse response) throws IOException {
+        String boundary = UUID.randomUUID().toString().replace("-", "");
+        List<byte[]> partHeaders = new ArrayList<>(ranges.size());
+        byte[] trailer = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+
+        long contentLength = trailer.length;
+        for (long[] range : ranges) {
+            byte[] partHeader = ("\r\n--" + boundary + "\r\n"
+                    + "Content-Type: " + contentType + "\r\n"
+                    + "Content-Range: bytes " + range[0] + "-" + range[1] + "/" + length + "\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII);
+            partHeaders.add(partHeader);
+            contentLength += partHeader.length + range[1] - range[0] + 1;
+        }
+
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        response.setContentLengthLong(contentLength);
+        if (head) {
+            return;
+        }
+
+        ServletOutputStream out = response.getOutputStream();
+        WritableByteChannel target = Channels.newChannel(out);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            for (int i = 0; i < ranges.size(); i++) {
+                long[] range = ranges.get(i);
+                out.write(partHeaders.get(i));
+                out.flush();
+                transferTo(channel, range[0], range[1] - range[0] + 1, target);
+            }
+        }
+        out.write(trailer);
+        out.flush();
+    }
+
+    private void transfer(Path path, long position, long count, HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        if (count == 0) {
+            return;
+        }
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // Tomcat writes the range with sendfile(2) once the request returns
+            request.setAttribute(SENDFILE_FILENAME, path.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, position);
+            request.setAttribute(SENDFILE_END, position + count);
+            return;
+        }
+
+        ServletOutputStream out = response.getOutputStream();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            transferTo(channel, position, count, Channels.newChannel(out));
+        }
+        out.flush();
+    }
+
+    private static void transferTo(FileChannel channel, long position, long count, WritableByteChannel target)
+            throws IOException {
+        long end = position + count;
+        while (position < end) {
+            long sent = channel.transferTo(position, end - position, target);
+            if (sent <= 0) {
+                throw new IOException("File truncated while sending at offset " + position);
+            }
+            position += sent;
+        }
+    }
+
+    private static boolean ifRangeMatches(String ifRange, String etag, long lastModified) {
+        if (ifRange == null) {
+            return true;
+        }
+        String value = ifRange.trim();
+        if (value.startsWith("\"") || value.startsWith("W/")) {
+            // Ranges need a strong validator match
+            return value.equals(etag);
+        }
+        try {
+            long since = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME)
+                    .toInstant().toEpochMilli();
+            return lastModified / 1000 <= since / 1000;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    // Returns null when the header is absent or malformed (serve everything), an empty list when
+    // nothing is satisfiable, otherwise sorted and coalesced inclusive [first, last] ranges
+    static List<long[]> parseRanges(String header, long length) {
+        if (header == null || !header.regionMatches(true, 0, "bytes=", 0, 6)) {
+            return null;
+        }
+
+        String[] specs = header.substring(6).split(",");
+        if (specs.length > MAX_RANGES) {
+            log.debug("Ignoring range header with {} ranges", specs.length);
+            return null;
+        }
+
+        List<long[]> ranges = new ArrayList<>();
+        for (String spec : specs) {
+            spec = spec.trim();
+            int dash = spec.indexOf('-');
+            if (dash < 0) {
+                return null;
+            }
+            try {
+                long first;
+                long last;
+                if (dash == 0) {
+                    long suffix = Long.parseLong(spec.substring(1));
+                    if (suffix == 0) {
+                        continue;
+                    }
+                    first = Math.max(0, length - suffix);
+                    last = length - 1;
+                } else {
+                    first = Long.parseLong(spec.substring(0, dash));
+                    last = dash == spec.length() - 1 ? Long.MAX_VALUE : Long.parseLong(spec.substring(dash + 1));
+                    if (last < first) {
+                        return null;
+                    }
+                    last = Math.min(last, length - 1);
+                }
+                if (first < length) {
+                    ranges.add(new long[] { first, last });
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        ranges.sort(Comparator.comparingLong(range -> range[0]));
+        List<long[]> merged = new ArrayList<>();
+        for (long[] range : ranges) {
+            long[] previous = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (previous != null && range[0] <= previous[1] + 1) {
+                previous[1] = Math.max(previous[1], range[1]);
+            } else {
+                merged.add(range);
+            }
+        }
+        return merged;
+    }
+}
@@ -0,0 +1,60 @@
+package com.techpool.file;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+// Where a stored name lives under a storage directory. SHARDED fans names out over
+// <depth> levels of two hex characters taken from the UUID or content hash the name starts
+// with, so no directory grows past a few thousand entries.
+public enum StorageLayout {
+    FLAT,
+    SHARDED;
+
+    private static final String[] DERIVED_PREFIXES = { "full_", "preview_" };
+
+    public Path resolve(Path root, String fileName, int depth) {
+        if (this == FLAT) {
+            return root.resolve(fileName);
+        }
+        String key = shardKey(fileName, depth);
+        Path dir = root;
+        for (int level = 0; level < depth; level++) {
+            dir = dir.resolve(key.substring(level * 2, level * 2 + 2));
+        }
+        return dir.resolve(fileName);
+    }
+
+    // Keyed by what follows the preview store's prefixes: full_<stored name> lands in the same
+    // shard as its original, preview_<uuid>_<name> in the shard of its own random UUID
+    static String shardKey(String fileName, int depth) {
+        String name = fileName;
+        for (String prefix : DERIVED_PREFIXES) {
+            if (name.startsWith(prefix)) {
+                name = name.substring(prefix.length());
+            }
+        }
+
+        int hexChars = 0;
+        while (hexChars < name.length() && hexChars < depth * 2 && isHex(name.charAt(hexChars))) {
+            hexChars++;
+        }
+        if (hexChars == depth * 2) {
+            return name.substring(0, hexChars).toLowerCase();
+        }
+
+        // Names that don't start with a UUID or hash still need an even spread
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(name.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, depth);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static boolean isHex(char c) {
+        return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+    }
+}
@@ -0,0 +1,54 @@
+package com.techpool.file;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class StorageMigrationReport {
+    private final String layout;
+    private final Instant startedAt = Instant.now();
+    private volatile Instant finishedAt;
+    final AtomicLong scanned = new AtomicLong();
+    final AtomicLong moved = new AtomicLong();
+    final AtomicLong skipped = new AtomicLong();
+    final AtomicLong failed = new AtomicLong();
+
+    StorageMigrationReport(String layout) {
+        this.layout = layout;
+    }
+
+    public String getLayout() {
+        return layout;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    public boolean isRunning() {
+        return finishedAt == null;
+    }
+
+    public long getScanned() {
+        return scanned.get();
+    }
+
+    public long getMoved() {
+        return moved.get();
+    }
+
+    public long getSkipped() {
+        return skipped.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    void finish() {
+        finishedAt = Instant.now();
+    }
+}
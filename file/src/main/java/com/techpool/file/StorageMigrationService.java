@@ -0,0 +1,157 @@
+package com.techpool.file;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+// Online re-sharding: moves every stored file into the configured layout while the service
+// keeps running. Reads resolve both layouts (see FileStorageService.locate), and each move is
+// a link-then-unlink within one volume, so a file is always reachable under one of its paths.
+@Service
+public class StorageMigrationService {
+    private static final Logger log = LoggerFactory.getLogger(StorageMigrationService.class);
+
+    private final FileStorageService storageService;
+    private volatile StorageMigrationReport lastReport;
+
+    @Value("${file.storage.migration-threads:4}")
+    private int migrationThreads;
+
+    @Value("${file.storage.migrate-on-start:false}")
+    private boolean migrateOnStart;
+
+    public StorageMigrationService(FileStorageService storageService) {
+        this.storageService = storageService;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (migrateOnStart) {
+            start();
+        }
+    }
+
+    public synchronized StorageMigrationReport start() {
+        if (lastReport != null && lastReport.isRunning()) {
+            return lastReport;
+        }
+        StorageMigrationReport report = new StorageMigrationReport(storageService.getLayout().name());
+        lastReport = report;
+
+        Thread worker = new Thread(() -> migrate(report), "storage-migration");
+        worker.setDaemon(true);
+        worker.start();
+        return report;
+    }
+
+    public StorageMigrationReport getLastReport() {
+        return lastReport;
+    }
+
+    private void migrate(StorageMigrationReport report) {
+        log.info("Migrating storage to {} layout with {} threads", report.getLayout(), migrationThreads);
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, migrationThreads), r -> {
+            Thread thread = new Thread(r, "storage-migration-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Keeps the directory walk only slightly ahead of the movers
+        Semaphore inFlight = new Semaphore(Math.max(1, migrationThreads) * 64);
+
+        try {
+            List<Path> roots = List.of(storageService.getBlobStorageLocation(),
+                    storageService.getFileStorageLocation(),
+                    storageService.getPreviewStorageLocation(),
+                    storageService.getBackfillStorageLocation());
+            for (Path root : roots) {
+                // Unbounded: files may sit at any depth an earlier shard-depth setting left them at.
+                // Entries that vanish or cannot be read mid-walk are skipped, not fatal.
+                try {
+                    Files.walkFileTree(root, new SimpleFileVisitor<>() {
+                        @Override
+                        public FileVisitResult visitFile(Path path, BasicFileAttributes attributes) {
+                            if (attributes.isRegularFile() && !path.getFileName().toString().endsWith(".tmp")) {
+                                inFlight.acquireUninterruptibly();
+                                report.scanned.incrementAndGet();
+                                pool.execute(() -> {
+                                    try {
+                                        migrateFile(root, path, report);
+                                    } finally {
+                                        inFlight.release();
+                                    }
+                                });
+                            }
+                            return FileVisitResult.CONTINUE;
+                        }
+
+                        @Override
+                        public FileVisitResult visitFileFailed(Path path, IOException e) {
+                            if (!(e instanceof NoSuchFileException)) {
+                                log.warn("Cannot migrate {}: {}", path, e.toString());
+                                report.failed.incrementAndGet();
+                            }
+                            return FileVisitResult.CONTINUE;
+                        }
+                    });
+                } catch (IOException | RuntimeException e) {
+                    log.error("Storage migration of {} aborted", root, e);
+                }
+            }
+        } finally {
+            pool.shutdown();
+            try {
+                pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            report.finish();
+            log.info("Storage migration finished: {} scanned, {} moved, {} skipped, {} failed",
+                    report.getScanned(), report.getMoved(), report.getSkipped(), report.getFailed());
+        }
+    }
+
+    private void migrateFile(Path root, Path source, StorageMigrationReport report) {
+        try {
+            Path target = storageService.layoutPath(root, source.getFileName().toString());
+            if (target.equals(source)) {
+                report.skipped.incrementAndGet();
+                return;
+            }
+            Files.createDirectories(target.getParent());
+            try {
+                // Unlike rename, a link never replaces a file that already sits at the target
+                Files.createLink(target, source);
+                Files.delete(source);
+            } catch (FileAlreadyExistsException e) {
+                log.warn("Not migrating {}: {} already exists", source, target);
+                report.skipped.incrementAndGet();
+                return;
+            } catch (UnsupportedOperationException e) {
+                Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+            }
+            report.moved.incrementAndGet();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to migrate {}", source, e);
+            report.failed.incrementAndGet();
+        }
+    }
+}
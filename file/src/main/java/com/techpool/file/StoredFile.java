@@ -0,0 +1,38 @@
+package com.techpool.file;
+
+public class StoredFile {
+    private final String fileName;
+    private final String sha256;
+    private final String mimeType;
+    private final long size;
+    private final boolean deduplicated;
+
+    public StoredFile(String fileName, String sha256, String mimeType, long size, boolean deduplicated) {
+        this.fileName = fileName;
+        this.sha256 = sha256;
+        this.mimeType = mimeType;
+        this.size = size;
+        this.deduplicated = deduplicated;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public String getSha256() {
+        return sha256;
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    // True when identical content was already stored and only a new reference was created
+    public boolean isDeduplicated() {
+        return deduplicated;
+    }
+}
@@ -1,21 +1,31 @@
 package com.techpool.file;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.awt.image.BufferedImage;
 import java.awt.Graphics2D;
+import java.util.function.Consumer;
 import javax.imageio.ImageIO;
 import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
 
+import com.techpool.file.render.Composite;
+import com.techpool.file.render.CompositeRenderer;
+import com.techpool.file.render.PngEncoder;
+import com.techpool.file.render.RenderContext;
+
 @Service
 public class ThumbnailService {
     private final FileStorageService fileStorageService;
+    private final PngEncoder pngEncoder;
+    private final CompositeRenderer compositeRenderer;
 
     // Add constructor to initialize fileStorageService
-    public ThumbnailService(FileStorageService fileStorageService) {
+    public ThumbnailService(FileStorageService fileStorageService, PngEncoder pngEncoder,
+            CompositeRenderer compositeRenderer) {
         this.fileStorageService = fileStorageService;
+        this.pngEncoder = pngEncoder;
+        this.compositeRenderer = compositeRenderer;
     }
 
     // public byte[] generateThumbnail(String storedFileName, int width, int height) {
@@ -31,6 +41,7 @@ public class ThumbnailService {
     // }
 
     public BufferedImage resizeImage(BufferedImage image, int maxWidth, int maxHeight) {
+        RenderContext.checkpoint();
         int originalWidth = image.getWidth();
         int originalHeight = image.getHeight();
 
@@ -48,8 +59,18 @@ public class ThumbnailService {
     }
 
     public byte[] convertToByteArray(BufferedImage image) throws IOException {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        ImageIO.write(image, "png", baos);
-        return baos.toByteArray();
+        RenderContext.checkpoint();
+        return pngEncoder.encode(image);
+    }
+
+    // Paints a composite of the given size and type straight to PNG; large ones never sit on the heap
+    public byte[] renderComposite(int width, int height, int imageType, Consumer<Graphics2D> painter) throws IOException {
+        RenderContext.checkpoint();
+        return compositeRenderer.render(width, height, imageType, painter);
+    }
+
+    public Composite openComposite(int width, int height, int imageType) throws IOException {
+        RenderContext.checkpoint();
+        return compositeRenderer.open(width, height, imageType);
     }
 }
\ No newline at end of file
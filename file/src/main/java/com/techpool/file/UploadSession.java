@@ -0,0 +1,168 @@
+package com.techpool.file;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+public class UploadSession {
+    private final String id;
+    private final String fileName;
+    private final long size;
+    private final int chunkSize;
+    private final int chunkCount;
+    private final Path dataFile;
+    private final FileChannel channel;
+    private final BitSet received;
+    private volatile long lastActivity;
+    private boolean closed;
+    private boolean committing;
+    private boolean discarded;
+    private int writers;
+
+    UploadSession(String id, String fileName, long size, int chunkSize, Path dataFile, FileChannel channel) {
+        this.id = id;
+        this.fileName = fileName;
+        this.size = size;
+        this.chunkSize = chunkSize;
+        this.chunkCount = (int) Math.max(1, (size + chunkSize - 1) / chunkSize);
+        this.dataFile = dataFile;
+        this.channel = channel;
+        this.received = new BitSet(chunkCount);
+        this.lastActivity = System.currentTimeMillis();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public int getChunkCount() {
+        return chunkCount;
+    }
+
+    public synchronized List<Integer> getMissingChunks() {
+        List<Integer> missing = new ArrayList<>();
+        for (int i = received.nextClearBit(0); i < chunkCount; i = received.nextClearBit(i + 1)) {
+            missing.add(i);
+        }
+        return missing;
+    }
+
+    public synchronized long getReceivedBytes() {
+        long bytes = (long) received.cardinality() * chunkSize;
+        if (received.get(chunkCount - 1)) {
+            bytes -= (long) chunkCount * chunkSize - size;
+        }
+        return bytes;
+    }
+
+    public synchronized boolean isComplete() {
+        return received.cardinality() == chunkCount;
+    }
+
+    public long getLastActivity() {
+        return lastActivity;
+    }
+
+    long chunkOffset(int index) {
+        return (long) index * chunkSize;
+    }
+
+    long chunkLength(int index) {
+        return Math.min(chunkSize, size - chunkOffset(index));
+    }
+
+    FileChannel channel() {
+        return channel;
+    }
+
+    Path dataFile() {
+        return dataFile;
+    }
+
+    void touch() {
+        lastActivity = System.currentTimeMillis();
+    }
+
+    synchronized boolean isClosed() {
+        return closed;
+    }
+
+    synchronized boolean isCommitting() {
+        return committing;
+    }
+
+    synchronized void beginWrite() {
+        if (closed || committing) {
+            throw new IllegalStateException("Upload session " + id + " is " + (committing ? "committing" : "closed"));
+        }
+        writers++;
+    }
+
+    synchronized void endWrite() {
+        writers--;
+    }
+
+    // Only one commit at a time, and only once no chunk is still being written. Writes are closed
+    // for good: a failed commit can be retried, since the data file is left as it was.
+    synchronized void beginCommit() throws IOException {
+        if (committing || discarded) {
+            throw new IllegalStateException("Upload session " + id + " is "
+                    + (committing ? "already committing" : "discarded"));
+        }
+        if (writers > 0) {
+            throw new IllegalStateException("Upload session " + id + " has " + writers + " chunks in flight");
+        }
+        if (!isComplete()) {
+            throw new IllegalStateException("Upload session " + id + " is missing "
+                    + (chunkCount - received.cardinality()) + " chunks");
+        }
+        committing = true;
+        close();
+    }
+
+    synchronized void endCommit() {
+        committing = false;
+    }
+
+    // Aborted or expired; refused while a commit is moving the data file
+    synchronized void discard() throws IOException {
+        if (committing) {
+            throw new IllegalStateException("Upload session " + id + " is committing");
+        }
+        discarded = true;
+        close();
+    }
+
+    synchronized void markReceived(int index) {
+        if (closed) {
+            throw new IllegalStateException("Upload session " + id + " is closed");
+        }
+        received.set(index);
+        touch();
+    }
+
+    synchronized void markMissing(int index) {
+        received.clear(index);
+    }
+
+    // Stops accepting chunks; writes already in flight fail on the closed channel
+    synchronized void close() throws IOException {
+        closed = true;
+        channel.close();
+    }
+}
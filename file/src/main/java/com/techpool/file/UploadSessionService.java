@@ -0,0 +1,216 @@
+package com.techpool.file;
+
+import jakarta.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+// Resumable chunked uploads: chunks arrive in any order (and in parallel) and are written
+// straight to their offset in the session's data file, which becomes the stored file on commit
+@Service
+public class UploadSessionService {
+    private static final Logger log = LoggerFactory.getLogger(UploadSessionService.class);
+    private static final int MIN_CHUNK_SIZE = 256 * 1024;
+    private static final int MAX_CHUNK_SIZE = 64 * 1024 * 1024;
+
+    private final FileStorageService fileStorageService;
+    private final Map<String, UploadSession> sessions = new ConcurrentHashMap<>();
+    private Path uploadLocation;
+
+    @Value("${file.upload.chunk-size:8388608}")
+    private int defaultChunkSize;
+
+    @Value("${file.upload.session-ttl-minutes:60}")
+    private long sessionTtlMinutes;
+
+    public UploadSessionService(FileStorageService fileStorageService) {
+        this.fileStorageService = fileStorageService;
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        // Same volume as the blob store so commit is a rename
+        this.uploadLocation = fileStorageService.getStorageRoot().resolve("uploads");
+        Files.createDirectories(uploadLocation);
+
+        // Sessions live in memory, so data left by a previous run can't be resumed
+        try (Stream<Path> leftovers = Files.list(uploadLocation)) {
+            leftovers.forEach(this::deleteQuietly);
+        }
+    }
+
+    public UploadSession createSession(String fileName, long size, Integer chunkSize) throws IOException {
+        // Checked now so the commit cannot fail on it after every chunk has been sent
+        fileStorageService.uploadFileName(fileName);
+        if (size <= 0) {
+            throw new IllegalArgumentException("Upload size must be positive");
+        }
+        if (size > fileStorageService.getMaxStreamSize()) {
+            throw new UploadTooLargeException(fileStorageService.getMaxStreamSize());
+        }
+        int effectiveChunkSize = chunkSize != null ? chunkSize : defaultChunkSize;
+        if (effectiveChunkSize < MIN_CHUNK_SIZE || effectiveChunkSize > MAX_CHUNK_SIZE) {
+            throw new IllegalArgumentException("Chunk size must be between " + MIN_CHUNK_SIZE
+                    + " and " + MAX_CHUNK_SIZE + " bytes");
+        }
+
+        String id = UUID.randomUUID().toString();
+        Path dataFile = uploadLocation.resolve(id + ".part");
+        FileChannel channel = FileChannel.open(dataFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        UploadSession session = new UploadSession(id, fileName, size, effectiveChunkSize, dataFile, channel);
+        sessions.put(id, session);
+
+        log.info("Upload session {} created for {} ({} bytes in {} chunks)", id, fileName, size,
+                session.getChunkCount());
+        return session;
+    }
+
+    public UploadSession getSession(String id) {
+        UploadSession session = sessions.get(id);
+        if (session == null) {
+            throw new NoSuchElementException("Upload session not found: " + id);
+        }
+        return session;
+    }
+
+    // Streams one chunk to its offset. If a checksum is given the chunk only counts once it
+    // matches; a retry simply overwrites the same range.
+    public UploadSession writeChunk(String id, int index, InputStream body, String expectedSha256) throws IOException {
+        UploadSession session = getSession(id);
+        if (index < 0 || index >= session.getChunkCount()) {
+            throw new IllegalArgumentException("Chunk index " + index + " out of range 0-"
+                    + (session.getChunkCount() - 1));
+        }
+        session.beginWrite();
+        session.touch();
+
+        long offset = session.chunkOffset(index);
+        long expectedLength = session.chunkLength(index);
+        MessageDigest digest = newSha256();
+        FileChannel channel = session.channel();
+
+        try {
+            byte[] array = new byte[64 * 1024];
+            ByteBuffer buffer = ByteBuffer.wrap(array);
+            long written = 0;
+            int read;
+            while ((read = body.read(array)) != -1) {
+                if (written + read > expectedLength) {
+                    throw new IllegalArgumentException("Chunk " + index + " is longer than " + expectedLength + " bytes");
+                }
+                digest.update(array, 0, read);
+                buffer.clear().limit(read);
+                while (buffer.hasRemaining()) {
+                    written += channel.write(buffer, offset + written);
+                }
+            }
+            if (written != expectedLength) {
+                throw new IllegalArgumentException("Chunk " + index + " has " + written + " bytes, expected "
+                        + expectedLength);
+            }
+
+            if (expectedSha256 != null) {
+                String actual = HexFormat.of().formatHex(digest.digest());
+                if (!actual.equalsIgnoreCase(expectedSha256.trim())) {
+                    throw new IllegalArgumentException("Checksum mismatch for chunk " + index);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // Whatever was there before may be partly overwritten now
+            session.markMissing(index);
+            session.endWrite();
+            throw e;
+        }
+
+        try {
+            session.markReceived(index);
+        } finally {
+            session.endWrite();
+        }
+        return session;
+    }
+
+    public StoredFile commit(String id) throws IOException {
+        UploadSession session = getSession(id);
+        // Racing chunk writes and commits get IllegalStateException (409) from here on
+        session.beginCommit();
+        try {
+            StoredFile stored = fileStorageService.storeAssembledFile(session.dataFile(), session.getFileName());
+            // Only now is the session done; a failed store leaves it and its data in place for a retry
+            sessions.remove(id, session);
+            deleteQuietly(session.dataFile());
+            return stored;
+        } finally {
+            session.touch();
+            session.endCommit();
+        }
+    }
+
+    public void abort(String id) {
+        UploadSession session = getSession(id);
+        discard(session);
+        if (!sessions.remove(id, session)) {
+            throw new NoSuchElementException("Upload session not found: " + id);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${file.upload.session-sweep-ms:60000}")
+    public void expireSessions() {
+        long cutoff = System.currentTimeMillis() - sessionTtlMinutes * 60_000;
+        sessions.values().removeIf(session -> {
+            if (session.getLastActivity() >= cutoff || session.isCommitting()) {
+                return false;
+            }
+            log.info("Upload session {} for {} expired", session.getId(), session.getFileName());
+            try {
+                discard(session);
+                return true;
+            } catch (IllegalStateException e) {
+                // A commit started after the check above
+                return false;
+            }
+        });
+    }
+
+    private void discard(UploadSession session) {
+        try {
+            session.discard();
+        } catch (IOException e) {
+            log.warn("Failed to close upload session {}", session.getId(), e);
+        }
+        deleteQuietly(session.dataFile());
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Failed to delete upload data {}", path, e);
+        }
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.techpool.file;
+
+import java.io.IOException;
+
+// An upload past file.upload.max-stream-size; reported as 413 rather than a bad request
+public class UploadTooLargeException extends IOException {
+    public UploadTooLargeException(long maxBytes) {
+        super("Upload exceeds the limit of " + maxBytes + " bytes");
+    }
+}
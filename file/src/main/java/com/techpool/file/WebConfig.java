@@ -12,6 +12,8 @@ public class WebConfig implements WebMvcConfigurer {
                 .allowedOrigins("http://localhost:4200") // Your Angular dev server
                 .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS")
                 .allowedHeaders("*")
+                .exposedHeaders("X-Preview-Quality", "X-Preview-Version", "X-Preview-Validated",
+                        "X-Total-Lines", "X-First-Line", "Retry-After", "X-Preview-Degraded")
                 .allowCredentials(true);
     }
 }
\ No newline at end of file
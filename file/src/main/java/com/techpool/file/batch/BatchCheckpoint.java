@@ -0,0 +1,58 @@
+package com.techpool.file.batch;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Stream;
+
+// Append-only log of finished inputs. A crashed or interrupted run loses at most the lines
+// buffered since the last flush, and those inputs are simply rendered again.
+class BatchCheckpoint implements Closeable {
+    private static final long FLUSH_INTERVAL_MILLIS = 1000;
+
+    private final Set<String> done = new HashSet<>();
+    private final BufferedWriter writer;
+    private long lastFlush = System.currentTimeMillis();
+
+    BatchCheckpoint(Path file) throws IOException {
+        if (Files.exists(file)) {
+            try (Stream<String> lines = Files.lines(file, StandardCharsets.UTF_8)) {
+                lines.filter(line -> !line.isEmpty()).forEach(done::add);
+            }
+        }
+        this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    synchronized boolean isDone(String key) {
+        return done.contains(key);
+    }
+
+    synchronized int size() {
+        return done.size();
+    }
+
+    synchronized void markDone(String key) throws IOException {
+        if (!done.add(key)) {
+            return;
+        }
+        writer.write(key);
+        writer.newLine();
+        long now = System.currentTimeMillis();
+        if (now - lastFlush >= FLUSH_INTERVAL_MILLIS) {
+            writer.flush();
+            lastFlush = now;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+}
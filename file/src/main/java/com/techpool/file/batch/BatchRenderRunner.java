@@ -0,0 +1,194 @@
+package com.techpool.file.batch;
+
+import com.techpool.file.FileStorageService;
+import com.techpool.file.render.RenderPriority;
+import com.techpool.file.render.RenderResource;
+import com.techpool.file.render.RenderScheduler;
+import com.techpool.file.util.FileTypeHandler;
+import com.techpool.file.util.FileTypeHandlerFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import org.apache.tika.Tika;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.ExitCodeGenerator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+
+// Headless backfill: renders every file under batch.source (or listed in batch.manifest)
+// with the regular handlers and writes the PNGs keyed by content hash into the backfill
+// root, where /preview and cluster peers pick them up and the preview reaper does not
+// expire them. Started by FileApplication without the web server whenever one of those
+// properties is given.
+@Component
+@ConditionalOnExpression("'${batch.source:}' != '' or '${batch.manifest:}' != ''")
+public class BatchRenderRunner implements ApplicationRunner, ExitCodeGenerator {
+    private static final Logger log = LoggerFactory.getLogger(BatchRenderRunner.class);
+    private static final long PROGRESS_INTERVAL_MILLIS = 10_000;
+    private static final String BATCH_TENANT = "batch";
+
+    private final FileStorageService storageService;
+    private final FileTypeHandlerFactory handlerFactory;
+    private final RenderScheduler renderScheduler;
+    private final Tika tika = new Tika();
+    private int exitCode;
+
+    @Value("${batch.source:}")
+    private String source;
+
+    @Value("${batch.manifest:}")
+    private String manifest;
+
+    @Value("${batch.checkpoint:batch-checkpoint.log}")
+    private String checkpointFile;
+
+    @Value("${batch.threads:0}")
+    private int threads;
+
+    public BatchRenderRunner(FileStorageService storageService, FileTypeHandlerFactory handlerFactory,
+            RenderScheduler renderScheduler) {
+        this.storageService = storageService;
+        this.handlerFactory = handlerFactory;
+        this.renderScheduler = renderScheduler;
+    }
+
+    public static boolean isBatchInvocation(String[] args) {
+        for (String arg : args) {
+            if (arg.startsWith("--batch.source=") || arg.startsWith("--batch.manifest=")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public int getExitCode() {
+        return exitCode;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        int workers = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        BatchStats stats = new BatchStats();
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(workers, r -> {
+            Thread thread = new Thread(r, "batch-render-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // At most two queued files per worker: the input walk never runs ahead of rendering,
+        // so memory stays flat however large the tree is
+        Semaphore slots = new Semaphore(workers * 2);
+
+        try (BatchCheckpoint checkpoint = new BatchCheckpoint(Paths.get(checkpointFile));
+                Stream<Path> inputs = openInputs()) {
+            log.info("Batch render with {} workers; {} inputs already done per {}", workers, checkpoint.size(),
+                    checkpointFile);
+            long lastProgress = System.currentTimeMillis();
+            Iterator<Path> iterator = inputs.iterator();
+            while (iterator.hasNext()) {
+                Path file = iterator.next();
+                String key = file.toAbsolutePath().normalize().toString();
+                if (checkpoint.isDone(key)) {
+                    continue;
+                }
+                slots.acquire();
+                pool.execute(() -> {
+                    try {
+                        renderOne(file, key, stats, checkpoint);
+                    } finally {
+                        slots.release();
+                    }
+                });
+
+                long now = System.currentTimeMillis();
+                if (now - lastProgress >= PROGRESS_INTERVAL_MILLIS) {
+                    log.info("Batch render progress: {} processed, {} failed", stats.getProcessed(), stats.getFailed());
+                    lastProgress = now;
+                }
+            }
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (IOException | RuntimeException e) {
+            log.error("Batch render aborted", e);
+            exitCode = 2;
+            pool.shutdownNow();
+        }
+        stats.print(System.out);
+    }
+
+    private void renderOne(Path file, String key, BatchStats stats, BatchCheckpoint checkpoint) {
+        String mimeType = "unknown";
+        try {
+            String sha256 = sha256(file);
+            if (Files.exists(storageService.getHashedPreviewPath(sha256))) {
+                stats.recordCached();
+                checkpoint.markDone(key);
+                return;
+            }
+
+            mimeType = tika.detect(file.toFile());
+            FileTypeHandler handler = handlerFactory.getHandler(mimeType);
+            long start = System.nanoTime();
+            byte[] preview = renderScheduler.run(RenderResource.of(handler), RenderPriority.BACKGROUND, BATCH_TENANT,
+                    () -> handler.generatePreview(file.toFile()));
+            long millis = (System.nanoTime() - start) / 1_000_000;
+
+            storageService.storeBackfilledPreview(sha256, preview);
+            stats.recordRendered(mimeType, millis, Files.size(file));
+            checkpoint.markDone(key);
+        } catch (Exception e) {
+            // Left out of the checkpoint so the next run retries it
+            log.warn("Batch render failed for {} ({}): {}", file, mimeType, e.toString());
+            stats.recordFailed(mimeType);
+        }
+    }
+
+    private Stream<Path> openInputs() throws IOException {
+        if (!manifest.isBlank()) {
+            Path manifestPath = Paths.get(manifest).toAbsolutePath();
+            Path base = manifestPath.getParent();
+            return Files.lines(manifestPath, StandardCharsets.UTF_8)
+                    .map(String::trim)
+                    .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+                    .map(line -> base.resolve(line))
+                    .filter(Files::isRegularFile);
+        }
+        return Files.walk(Paths.get(source))
+                .filter(Files::isRegularFile);
+    }
+
+    private static String sha256(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
@@ -0,0 +1,85 @@
+package com.techpool.file.batch;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Per-MIME counters and latency samples for the end-of-run summary
+class BatchStats {
+    private final Map<String, MimeStats> byMime = new TreeMap<>();
+    private final long startNanos = System.nanoTime();
+    private long rendered;
+    private long cached;
+    private long failed;
+
+    synchronized void recordRendered(String mimeType, long millis, long bytes) {
+        rendered++;
+        byMime.computeIfAbsent(mimeType, k -> new MimeStats()).add(millis, bytes);
+    }
+
+    synchronized void recordFailed(String mimeType) {
+        failed++;
+        byMime.computeIfAbsent(mimeType, k -> new MimeStats()).failures++;
+    }
+
+    synchronized void recordCached() {
+        cached++;
+    }
+
+    synchronized long getProcessed() {
+        return rendered + cached + failed;
+    }
+
+    synchronized long getFailed() {
+        return failed;
+    }
+
+    synchronized void print(PrintStream out) {
+        double seconds = Math.max(0.001, (System.nanoTime() - startNanos) / 1e9);
+        out.printf("%nBatch render finished in %.1f s: %d rendered, %d already cached, %d failed (%.1f files/s)%n",
+                seconds, rendered, cached, failed, (rendered + cached + failed) / seconds);
+        out.printf("%-48s %8s %6s %9s %8s %8s %8s %10s%n",
+                "MIME type", "files", "failed", "files/s", "p50 ms", "p95 ms", "max ms", "MB/s");
+        for (Map.Entry<String, MimeStats> entry : byMime.entrySet()) {
+            MimeStats stats = entry.getValue();
+            long[] sorted = Arrays.copyOf(stats.latencies, stats.count);
+            Arrays.sort(sorted);
+            // Render time summed over workers, so per-type rates are per busy worker
+            double busySeconds = Math.max(0.001, stats.totalMillis / 1000.0);
+            out.printf("%-48s %8d %6d %9.1f %8d %8d %8d %10.1f%n",
+                    truncate(entry.getKey(), 48), stats.count, stats.failures,
+                    stats.count / busySeconds, percentile(sorted, 0.50), percentile(sorted, 0.95),
+                    sorted.length == 0 ? 0 : sorted[sorted.length - 1],
+                    stats.bytes / 1_048_576.0 / busySeconds);
+        }
+    }
+
+    private static long percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1)];
+    }
+
+    private static String truncate(String value, int width) {
+        return value.length() <= width ? value : value.substring(0, width - 3) + "...";
+    }
+
+    private static class MimeStats {
+        long[] latencies = new long[64];
+        int count;
+        long failures;
+        long totalMillis;
+        long bytes;
+
+        void add(long millis, long size) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = millis;
+            totalMillis += millis;
+            bytes += size;
+        }
+    }
+}
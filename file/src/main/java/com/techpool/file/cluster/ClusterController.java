@@ -0,0 +1,85 @@
+package com.techpool.file.cluster;
+
+import com.techpool.file.render.RenderScheduler;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+// Node-to-node endpoints; guarded by cluster.secret and refused while cluster mode is off
+@RestController
+@RequestMapping("/internal/cluster")
+public class ClusterController {
+    private static final Logger log = LoggerFactory.getLogger(ClusterController.class);
+    private final ClusterPreviewService clusterPreviewService;
+
+    public ClusterController(ClusterPreviewService clusterPreviewService) {
+        this.clusterPreviewService = clusterPreviewService;
+    }
+
+    @GetMapping("/previews/{sha256}")
+    public ResponseEntity<byte[]> getPreview(@PathVariable String sha256, @RequestParam("name") String name,
+            @RequestHeader(value = ClusterPreviewService.TOKEN_HEADER, required = false) String token,
+            @RequestHeader(value = RenderScheduler.TENANT_HEADER, required = false) String tenant) {
+        if (!clusterPreviewService.isAuthorized(token)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        if (!ClusterPreviewService.isContentHash(sha256)) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            return ResponseEntity.ok()
+                    .contentType(MediaType.IMAGE_PNG)
+                    .body(clusterPreviewService.serveToPeer(sha256, name, tenant));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (Exception e) {
+            log.error("Peer preview request for {} failed", name, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @PostMapping("/invalidate/{sha256}")
+    public ResponseEntity<Void> invalidate(@PathVariable String sha256,
+            @RequestParam(value = "name", required = false) String name,
+            @RequestHeader(value = ClusterPreviewService.TOKEN_HEADER, required = false) String token) {
+        if (!clusterPreviewService.isAuthorized(token)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        if (!ClusterPreviewService.isContentHash(sha256)) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            clusterPreviewService.invalidateLocal(sha256, name);
+            return ResponseEntity.noContent().build();
+        } catch (Exception e) {
+            log.error("Invalidation of {} failed", sha256, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @GetMapping("/ring")
+    public ResponseEntity<Map<String, Object>> getRing(@RequestParam(value = "key", required = false) String key,
+            @RequestHeader(value = ClusterPreviewService.TOKEN_HEADER, required = false) String token) {
+        if (!clusterPreviewService.isAuthorized(token)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        Map<String, Object> ring = new LinkedHashMap<>();
+        ring.put("self", clusterPreviewService.getSelf());
+        ring.put("members", clusterPreviewService.getMembers());
+        if (key != null) {
+            ring.put("owner", clusterPreviewService.ownerOf(key));
+        }
+        return ResponseEntity.ok(ring);
+    }
+}
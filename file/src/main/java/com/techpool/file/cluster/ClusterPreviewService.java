@@ -0,0 +1,296 @@
+package com.techpool.file.cluster;
+
+import com.techpool.file.FileStorageService;
+import com.techpool.file.PreviewService;
+import com.techpool.file.render.RenderContext;
+import com.techpool.file.render.RenderPriority;
+import com.techpool.file.render.RenderScheduler;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+// Render affinity across replicas: each preview is owned by one node on a consistent-hash
+// ring keyed by content hash. The owner renders once; everyone else fetches the PNG from it
+// and keeps a local copy. With cluster.enabled=false this is a plain pass-through.
+@Service
+public class ClusterPreviewService {
+    private static final Logger log = LoggerFactory.getLogger(ClusterPreviewService.class);
+    static final String TOKEN_HEADER = "X-Cluster-Token";
+    private static final Pattern CONTENT_HASH = Pattern.compile("[0-9a-f]{64}");
+
+    private final PreviewService previewService;
+    private final FileStorageService storageService;
+    private final boolean enabled;
+    private final String self;
+    private final ConsistentHashRing ring;
+    private final String secret;
+    private final Duration peerTimeout;
+    private final long peerRetryMillis;
+    private final HttpClient client;
+    private final Map<String, Long> downUntil = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<byte[]>> rendering = new ConcurrentHashMap<>();
+
+    public ClusterPreviewService(PreviewService previewService, FileStorageService storageService,
+            @Value("${cluster.enabled:false}") boolean enabled,
+            @Value("${cluster.self:http://localhost:${server.port:8080}}") String self,
+            @Value("${cluster.peers:}") String peers,
+            @Value("${cluster.virtual-nodes:256}") int virtualNodes,
+            @Value("${cluster.secret:}") String secret,
+            @Value("${cluster.peer-timeout-ms:60000}") long peerTimeoutMillis,
+            @Value("${cluster.peer-retry-ms:10000}") long peerRetryMillis) {
+        // The internal endpoints render and delete on request, so they never run unauthenticated
+        if (enabled && secret.isBlank()) {
+            throw new IllegalStateException("cluster.secret must be set when cluster.enabled=true");
+        }
+        this.previewService = previewService;
+        this.storageService = storageService;
+        this.enabled = enabled;
+        this.self = normalize(self);
+        this.secret = secret;
+        this.peerTimeout = Duration.ofMillis(peerTimeoutMillis);
+        this.peerRetryMillis = peerRetryMillis;
+        this.client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(2)).build();
+
+        List<String> members = Arrays.stream(peers.split(","))
+                .map(String::trim)
+                .filter(peer -> !peer.isEmpty())
+                .map(ClusterPreviewService::normalize)
+                .collect(Collectors.toCollection(ArrayList::new));
+        if (!members.contains(this.self)) {
+            members.add(this.self);
+        }
+        this.ring = new ConsistentHashRing(members, virtualNodes);
+        if (enabled) {
+            log.info("Cluster mode on as {} with members {}", this.self, ring.getNodes());
+        }
+    }
+
+    public byte[] getPreview(String fileName) {
+        return getPreview(fileName, RenderScheduler.DEFAULT_TENANT);
+    }
+
+    public byte[] getPreview(String fileName, String tenant) {
+        try {
+            return renderPreview(fileName, tenant);
+        } catch (Exception e) {
+            log.error("Preview failed for {}", fileName, e);
+            return previewService.generateErrorPreview("Preview unavailable: " + e.getMessage());
+        }
+    }
+
+    // Same as getPreview but failures surface to the caller instead of as an error image
+    public byte[] renderPreview(String fileName, String tenant) throws Exception {
+        if (!enabled) {
+            // Previews written by the batch backfill are reused when the hash is at hand
+            try {
+                String sha256 = storageService.getKnownContentHash(fileName);
+                byte[] cached = sha256 != null ? readLocal(sha256) : null;
+                if (cached != null) {
+                    return cached;
+                }
+            } catch (IOException | RuntimeException e) {
+                log.debug("No hashed preview lookup for {}", fileName, e);
+            }
+            return previewService.renderPreview(fileName, RenderPriority.INTERACTIVE, tenant);
+        }
+
+        String sha256 = storageService.getContentHash(fileName);
+        byte[] cached = readLocal(sha256);
+        if (cached != null) {
+            return cached;
+        }
+
+        // Owner first; if it is unreachable the next node on the ring takes over. A peer that answers
+        // with an error is up: its failure is the render's, and another node would fail the same way.
+        for (String node : ring.preferenceList(sha256)) {
+            if (node.equals(self)) {
+                return renderAsOwner(sha256, fileName, tenant);
+            }
+            if (isDown(node)) {
+                continue;
+            }
+            try {
+                RenderContext.stage("fetching-from-peer");
+                byte[] preview = fetchFromPeer(node, sha256, fileName, tenant);
+                storageService.storeHashedPreview(sha256, preview);
+                return preview;
+            } catch (ConnectException | HttpTimeoutException e) {
+                log.warn("Peer {} unreachable for preview {}: {}", node, sha256, e.toString());
+                downUntil.put(node, System.currentTimeMillis() + peerRetryMillis);
+            }
+        }
+        return renderAsOwner(sha256, fileName, tenant);
+    }
+
+    // Called by a peer that routed this content hash to us; renders at most once per hash
+    public byte[] serveToPeer(String sha256, String fileName, String tenant) throws Exception {
+        if (!sha256.equals(storageService.getContentHash(fileName))) {
+            throw new IllegalArgumentException("Content hash does not match " + fileName);
+        }
+        byte[] cached = readLocal(sha256);
+        return cached != null ? cached : renderAsOwner(sha256, fileName, tenant);
+    }
+
+    // Drops every node's copy, e.g. after a renderer fix or when content behind a name is replaced
+    public void invalidate(String fileName) throws IOException {
+        String sha256 = storageService.getContentHash(fileName);
+        invalidateLocal(sha256, fileName);
+        if (!enabled) {
+            return;
+        }
+        for (String node : ring.getNodes()) {
+            if (node.equals(self)) {
+                continue;
+            }
+            HttpRequest request = peerRequest(node + "/internal/cluster/invalidate/" + sha256
+                    + "?name=" + URLEncoder.encode(fileName, StandardCharsets.UTF_8))
+                    .POST(HttpRequest.BodyPublishers.noBody())
+                    .build();
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+                if (error != null || response.statusCode() / 100 != 2) {
+                    log.warn("Invalidation of {} on {} failed: {}", sha256, node,
+                            error != null ? error.getMessage() : "HTTP " + response.statusCode());
+                }
+            });
+        }
+    }
+
+    public void invalidateLocal(String sha256, String fileName) throws IOException {
+        storageService.deleteHashedPreview(sha256);
+        if (fileName != null) {
+            Files.deleteIfExists(storageService.getRenderedPreviewPath(fileName));
+        }
+    }
+
+    public boolean isAuthorized(String token) {
+        return enabled && token != null
+                && MessageDigest.isEqual(secret.getBytes(StandardCharsets.UTF_8), token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public String getSelf() {
+        return self;
+    }
+
+    public List<String> getMembers() {
+        return ring.getNodes();
+    }
+
+    // Peers address previews by hash in the path; anything else must not reach the preview store
+    public static boolean isContentHash(String value) {
+        return value != null && CONTENT_HASH.matcher(value).matches();
+    }
+
+    public String ownerOf(String sha256) {
+        return ring.ownerOf(sha256);
+    }
+
+    private byte[] renderAsOwner(String sha256, String fileName, String tenant) throws Exception {
+        CompletableFuture<byte[]> mine = new CompletableFuture<>();
+        CompletableFuture<byte[]> inFlight = rendering.putIfAbsent(sha256, mine);
+        if (inFlight != null) {
+            try {
+                return inFlight.join();
+            } catch (CancellationException e) {
+                // Whoever started that render gave up on it; this caller still wants the preview
+                RenderContext.checkpoint();
+                return renderAsOwner(sha256, fileName, tenant);
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof Exception cause ? cause : e;
+            }
+        }
+        try {
+            byte[] preview = readLocal(sha256);
+            if (preview == null) {
+                preview = previewService.renderPreview(fileName, RenderPriority.INTERACTIVE, tenant);
+                storageService.storeHashedPreview(sha256, preview);
+            }
+            mine.complete(preview);
+            return preview;
+        } catch (Exception e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            rendering.remove(sha256, mine);
+        }
+    }
+
+    private byte[] fetchFromPeer(String node, String sha256, String fileName, String tenant)
+            throws IOException {
+        HttpRequest request = peerRequest(node + "/internal/cluster/previews/" + sha256
+                + "?name=" + URLEncoder.encode(fileName, StandardCharsets.UTF_8))
+                // The owner queues the render under the same tenant as the original request
+                .header(RenderScheduler.TENANT_HEADER, tenant)
+                .GET()
+                .build();
+        try {
+            HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            if (response.statusCode() != 200) {
+                // 500 is a failed render, 409 a different file under this name on the owner
+                throw new IOException("Peer " + node + " could not render preview " + sha256 + ": HTTP "
+                        + response.statusCode());
+            }
+            return response.body();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted fetching from " + node, e);
+        }
+    }
+
+    private HttpRequest.Builder peerRequest(String url) {
+        return HttpRequest.newBuilder(URI.create(url))
+                .timeout(peerTimeout)
+                .header(TOKEN_HEADER, secret);
+    }
+
+    private byte[] readLocal(String sha256) throws IOException {
+        Path path = storageService.getHashedPreviewPath(sha256);
+        try {
+            byte[] preview = Files.readAllBytes(path);
+            storageService.recordPreviewAccess(path);
+            return preview;
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private boolean isDown(String node) {
+        Long until = downUntil.get(node);
+        if (until == null) {
+            return false;
+        }
+        if (until < System.currentTimeMillis()) {
+            downUntil.remove(node, until);
+            return false;
+        }
+        return true;
+    }
+
+    private static String normalize(String url) {
+        return url.trim().replaceAll("/+$", "");
+    }
+}
@@ -0,0 +1,66 @@
+package com.techpool.file.cluster;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+// Immutable ring of nodes with virtual points, so adding or removing a node only moves
+// about 1/n of the keys
+public class ConsistentHashRing {
+    private final TreeMap<Long, String> points = new TreeMap<>();
+    private final List<String> nodes;
+
+    public ConsistentHashRing(Collection<String> nodes, int virtualNodes) {
+        this.nodes = List.copyOf(new LinkedHashSet<>(nodes));
+        for (String node : this.nodes) {
+            for (int i = 0; i < virtualNodes; i++) {
+                points.put(hash(node + "#" + i), node);
+            }
+        }
+    }
+
+    public List<String> getNodes() {
+        return nodes;
+    }
+
+    // Distinct nodes in ring order starting at the key's owner; later entries are fallbacks
+    public List<String> preferenceList(String key) {
+        if (points.isEmpty()) {
+            return List.of();
+        }
+        Set<String> ordered = new LinkedHashSet<>();
+        SortedMap<Long, String> tail = points.tailMap(hash(key));
+        for (Map<Long, String> part : List.of(tail, points)) {
+            for (String node : part.values()) {
+                ordered.add(node);
+                if (ordered.size() == nodes.size()) {
+                    return new ArrayList<>(ordered);
+                }
+            }
+        }
+        return new ArrayList<>(ordered);
+    }
+
+    public String ownerOf(String key) {
+        List<String> owners = preferenceList(key);
+        return owners.isEmpty() ? null : owners.get(0);
+    }
+
+    static long hash(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            return ByteBuffer.wrap(digest).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
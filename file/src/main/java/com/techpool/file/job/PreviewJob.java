@@ -0,0 +1,200 @@
+package com.techpool.file.job;
+
+import com.techpool.file.render.RenderContext;
+import com.techpool.file.render.RenderListener;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+// Status of one asynchronous render; serialized as-is for polling and SSE events
+public class PreviewJob implements RenderListener {
+    public enum Kind {
+        PREVIEW,
+        MULTIPAGE,
+        PAGE
+    }
+
+    public enum Status {
+        QUEUED,
+        RUNNING,
+        DONE,
+        FAILED,
+        CANCELLED
+    }
+
+    private final String id;
+    private final String fileName;
+    private final Kind kind;
+    private final Integer page;
+    private final String resultKey;
+    private final Instant createdAt = Instant.now();
+    private final CompletableFuture<PreviewJob> completion = new CompletableFuture<>();
+    private final RenderContext context;
+    private final Consumer<PreviewJob> onProgress;
+    private final List<SseEmitter> subscribers = new ArrayList<>();
+    private Status status = Status.QUEUED;
+    private String stage = "queued";
+    private int pagesRendered;
+    private int totalPages;
+    private String resultUrl;
+    private String error;
+    private Instant updatedAt = createdAt;
+    // Synchronous requests currently waiting on this job; once the last one leaves, nobody wants it
+    private int waiters;
+    // Submitted through the job API: kept until done, cancelled or past its deadline
+    private boolean pinned;
+
+    PreviewJob(String id, String fileName, Kind kind, Integer page, String resultKey, long deadlineMillis,
+            Consumer<PreviewJob> onProgress) {
+        this.id = id;
+        this.fileName = fileName;
+        this.kind = kind;
+        this.page = page;
+        this.resultKey = resultKey;
+        this.onProgress = onProgress;
+        this.context = new RenderContext(this, deadlineMillis);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public Integer getPage() {
+        return page;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public synchronized Status getStatus() {
+        return status;
+    }
+
+    public synchronized String getStage() {
+        return stage;
+    }
+
+    public synchronized int getPagesRendered() {
+        return pagesRendered;
+    }
+
+    public synchronized int getTotalPages() {
+        return totalPages;
+    }
+
+    public synchronized String getResultUrl() {
+        return resultUrl;
+    }
+
+    public synchronized String getError() {
+        return error;
+    }
+
+    public synchronized Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
+    String resultKey() {
+        return resultKey;
+    }
+
+    CompletableFuture<PreviewJob> completion() {
+        return completion;
+    }
+
+    RenderContext context() {
+        return context;
+    }
+
+    synchronized boolean isFinished() {
+        return status == Status.DONE || status == Status.FAILED || status == Status.CANCELLED;
+    }
+
+    synchronized void pin() {
+        pinned = true;
+    }
+
+    synchronized void addWaiter() {
+        waiters++;
+    }
+
+    // True when this was the last interested party
+    synchronized boolean removeWaiter() {
+        waiters--;
+        return waiters <= 0 && !pinned;
+    }
+
+    @Override
+    public void onStage(String stage) {
+        stage(stage);
+        onProgress.accept(this);
+    }
+
+    @Override
+    public void onPageRendered(int pagesRendered, int totalPages) {
+        pages(pagesRendered, totalPages);
+        onProgress.accept(this);
+    }
+
+    synchronized void stage(String stage) {
+        if (!isFinished()) {
+            this.status = Status.RUNNING;
+            this.stage = stage;
+            this.updatedAt = Instant.now();
+        }
+    }
+
+    synchronized void pages(int pagesRendered, int totalPages) {
+        if (!isFinished()) {
+            this.pagesRendered = pagesRendered;
+            this.totalPages = totalPages;
+            this.updatedAt = Instant.now();
+        }
+    }
+
+    // Returns the subscribers still waiting, who need the final event
+    List<SseEmitter> finish(Status status, String resultUrl, String error) {
+        List<SseEmitter> waiting;
+        synchronized (this) {
+            this.status = status;
+            this.stage = status.name().toLowerCase();
+            this.resultUrl = resultUrl;
+            this.error = error;
+            this.updatedAt = Instant.now();
+            waiting = new ArrayList<>(subscribers);
+            subscribers.clear();
+        }
+        context.done();
+        completion.complete(this);
+        return waiting;
+    }
+
+    // False once the job has finished; the caller then sends the final event itself
+    synchronized boolean subscribe(SseEmitter emitter) {
+        if (isFinished()) {
+            return false;
+        }
+        subscribers.add(emitter);
+        return true;
+    }
+
+    synchronized void unsubscribe(SseEmitter emitter) {
+        subscribers.remove(emitter);
+    }
+
+    synchronized List<SseEmitter> subscribers() {
+        return new ArrayList<>(subscribers);
+    }
+}
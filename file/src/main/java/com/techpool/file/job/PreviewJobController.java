@@ -0,0 +1,117 @@
+package com.techpool.file.job;
+
+import com.techpool.file.RangeFileSender;
+import com.techpool.file.render.RenderOverloadedException;
+import com.techpool.file.render.RenderScheduler;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.NoSuchElementException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+// POST a render, then poll GET /{id} or follow GET /{id}/events until it reports the result URL
+@RestController
+@RequestMapping(PreviewJobService.BASE_PATH)
+@CrossOrigin("http://localhost:4200")
+public class PreviewJobController {
+    private static final Logger log = LoggerFactory.getLogger(PreviewJobController.class);
+    private final PreviewJobService previewJobService;
+    private final RangeFileSender rangeFileSender;
+
+    public PreviewJobController(PreviewJobService previewJobService, RangeFileSender rangeFileSender) {
+        this.previewJobService = previewJobService;
+        this.rangeFileSender = rangeFileSender;
+    }
+
+    @PostMapping
+    public ResponseEntity<PreviewJob> submit(@RequestParam("name") String name,
+            @RequestParam(value = "kind", defaultValue = "preview") String kind,
+            @RequestParam(value = "page", required = false) Integer page,
+            @RequestHeader(value = RenderScheduler.TENANT_HEADER, required = false) String tenant) {
+        try {
+            PreviewJob.Kind jobKind = page != null ? PreviewJob.Kind.PAGE : PreviewJob.Kind.valueOf(kind.toUpperCase());
+            PreviewJob job = previewJobService.submit(name, jobKind, page, tenant);
+            return ResponseEntity.accepted()
+                    .location(URI.create(PreviewJobService.BASE_PATH + "/" + job.getId()))
+                    .body(job);
+        } catch (RenderOverloadedException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, Long.toString(e.getRetryAfterSeconds()))
+                    .build();
+        } catch (IllegalArgumentException e) {
+            log.warn("Rejected preview job for {}: {}", name, e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to submit preview job for {}", name, e);
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+    }
+
+    @GetMapping("/{jobId}")
+    public ResponseEntity<PreviewJob> getJob(@PathVariable String jobId) {
+        try {
+            return ResponseEntity.ok(previewJobService.getJob(jobId));
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    // Stops the render at its next checkpoint (or kills LibreOffice); the job then reports CANCELLED
+    @DeleteMapping("/{jobId}")
+    public ResponseEntity<PreviewJob> cancel(@PathVariable String jobId) {
+        try {
+            return ResponseEntity.accepted().body(previewJobService.cancel(jobId));
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    @GetMapping(value = "/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> getEvents(@PathVariable String jobId) {
+        try {
+            return ResponseEntity.ok(previewJobService.subscribe(jobId));
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    @RequestMapping(value = "/{jobId}/result", method = { RequestMethod.GET, RequestMethod.HEAD })
+    public void getResult(@PathVariable String jobId, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        Path path;
+        try {
+            path = previewJobService.getResultPath(previewJobService.getJob(jobId));
+        } catch (NoSuchElementException e) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        } catch (IllegalStateException e) {
+            response.sendError(HttpServletResponse.SC_CONFLICT);
+            return;
+        }
+        if (!Files.isRegularFile(path)) {
+            // Reclaimed by the preview reaper; submitting again re-renders
+            response.sendError(HttpServletResponse.SC_GONE);
+            return;
+        }
+        rangeFileSender.send(path, MediaType.IMAGE_PNG_VALUE, null, request, response);
+    }
+}
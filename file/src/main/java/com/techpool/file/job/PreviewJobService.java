@@ -0,0 +1,265 @@
+package com.techpool.file.job;
+
+import com.techpool.file.BlockingTaskExecutor;
+import com.techpool.file.FileStorageService;
+import com.techpool.file.PreviewService;
+import com.techpool.file.cluster.ClusterPreviewService;
+import com.techpool.file.render.RenderContext;
+import com.techpool.file.render.RenderLimiter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+// Renders as jobs: callers get an id back at once and poll or subscribe for progress, instead of
+// holding a connection open through a long conversion. Jobs are deduplicated by content hash and
+// render parameters, so the same document requested twice (or by two users) renders once.
+@Service
+public class PreviewJobService {
+    private static final Logger log = LoggerFactory.getLogger(PreviewJobService.class);
+    public static final String BASE_PATH = "/api/files/preview-jobs";
+
+    private final FileStorageService storageService;
+    private final PreviewService previewService;
+    private final ClusterPreviewService clusterPreviewService;
+    private final ExecutorService executor;
+    private final RenderLimiter renderLimiter;
+    private final Map<String, PreviewJob> jobs = new ConcurrentHashMap<>();
+    private final Map<String, PreviewJob> jobsByKey = new ConcurrentHashMap<>();
+
+    @Value("${preview.jobs.ttl-minutes:30}")
+    private long jobTtlMinutes;
+
+    @Value("${preview.jobs.sse-timeout-ms:300000}")
+    private long sseTimeoutMillis;
+
+    // Wall-clock budget per job from submission, queueing included
+    @Value("${preview.jobs.deadline-ms:180000}")
+    private long deadlineMillis;
+
+    public PreviewJobService(FileStorageService storageService, PreviewService previewService,
+            ClusterPreviewService clusterPreviewService, BlockingTaskExecutor blockingTaskExecutor,
+            RenderLimiter renderLimiter) {
+        this.storageService = storageService;
+        this.previewService = previewService;
+        this.clusterPreviewService = clusterPreviewService;
+        this.executor = blockingTaskExecutor.getExecutor();
+        this.renderLimiter = renderLimiter;
+    }
+
+    // Through the job API: the job runs to completion even if nobody is polling it
+    public PreviewJob submit(String fileName, PreviewJob.Kind kind, Integer page, String tenant) throws IOException {
+        PreviewJob job = start(fileName, kind, page, tenant);
+        job.pin();
+        return job;
+    }
+
+    private PreviewJob start(String fileName, PreviewJob.Kind kind, Integer page, String tenant) throws IOException {
+        if (kind == PreviewJob.Kind.PAGE && (page == null || page < 1)) {
+            throw new IllegalArgumentException("Page must be 1 or greater");
+        }
+        String sha256 = storageService.getContentHash(fileName);
+        String resultKey = switch (kind) {
+            case PREVIEW -> sha256;
+            case MULTIPAGE -> sha256 + "-multipage";
+            case PAGE -> sha256 + "-page" + page;
+        };
+
+        String handlerType = previewService.getHandlerType(fileName);
+
+        PreviewJob[] created = new PreviewJob[1];
+        RenderLimiter.Permit[] permit = new RenderLimiter.Permit[1];
+        PreviewJob job = jobsByKey.compute(resultKey, (key, existing) -> {
+            // A job being cancelled is still running to its next checkpoint; do not join it
+            if (existing != null && !existing.isFinished() && !existing.context().isCancelled()) {
+                return existing;
+            }
+            boolean rendered = Files.exists(storageService.getHashedPreviewPath(key));
+            if (existing != null && existing.getStatus() == PreviewJob.Status.DONE && rendered) {
+                return existing;
+            }
+            if (!rendered) {
+                // Joining a running job costs nothing; only a new render needs a slot, and over the
+                // limit this throws instead of queueing
+                permit[0] = renderLimiter.acquire(handlerType);
+            }
+            created[0] = new PreviewJob(UUID.randomUUID().toString(), fileName, kind, page, key, deadlineMillis,
+                    this::publish);
+            return created[0];
+        });
+        if (created[0] == null) {
+            return job;
+        }
+
+        jobs.put(job.getId(), job);
+        if (permit[0] == null) {
+            // Rendered before, possibly by another node or the batch backfill
+            finish(job, PreviewJob.Status.DONE, null);
+        } else {
+            executor.execute(() -> run(job, tenant, permit[0]));
+        }
+        return job;
+    }
+
+    public PreviewJob cancel(String id) {
+        PreviewJob job = getJob(id);
+        job.context().cancel("cancelled by client");
+        return job;
+    }
+
+    // For the synchronous endpoints: the same job, awaited, with the image read back. Cancelling
+    // the returned future (the client went away) cancels the render once no one else waits for it.
+    public CompletableFuture<byte[]> render(String fileName, PreviewJob.Kind kind, Integer page, String tenant) {
+        PreviewJob submitted;
+        try {
+            submitted = start(fileName, kind, page, tenant);
+        } catch (IOException | RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        submitted.addWaiter();
+        CompletableFuture<byte[]> result = submitted.completion().thenApplyAsync(job -> {
+            if (job.getStatus() != PreviewJob.Status.DONE) {
+                throw new IllegalStateException(job.getError());
+            }
+            try {
+                return readResult(job);
+            } catch (IOException e) {
+                throw new IllegalStateException("Result of job " + job.getId() + " is gone", e);
+            }
+        }, executor);
+        result.whenComplete((image, e) -> {
+            if (submitted.removeWaiter() && result.isCancelled()) {
+                submitted.context().cancel("abandoned by client");
+            }
+        });
+        return result;
+    }
+
+    public PreviewJob getJob(String id) {
+        PreviewJob job = jobs.get(id);
+        if (job == null) {
+            throw new NoSuchElementException("No preview job " + id);
+        }
+        return job;
+    }
+
+    public Path getResultPath(PreviewJob job) {
+        if (job.getStatus() != PreviewJob.Status.DONE) {
+            throw new IllegalStateException("Job " + job.getId() + " is " + job.getStatus());
+        }
+        Path path = storageService.getHashedPreviewPath(job.resultKey());
+        storageService.recordPreviewAccess(path);
+        return path;
+    }
+
+    public SseEmitter subscribe(String id) {
+        PreviewJob job = getJob(id);
+        SseEmitter emitter = new SseEmitter(sseTimeoutMillis);
+        emitter.onCompletion(() -> job.unsubscribe(emitter));
+        emitter.onTimeout(() -> job.unsubscribe(emitter));
+        emitter.onError(e -> job.unsubscribe(emitter));
+
+        if (job.subscribe(emitter)) {
+            send(job, emitter, "progress");
+        } else {
+            sendFinal(job, List.of(emitter));
+        }
+        return emitter;
+    }
+
+    @Scheduled(fixedDelayString = "${preview.jobs.sweep-ms:60000}")
+    public void expireJobs() {
+        Instant cutoff = Instant.now().minusSeconds(jobTtlMinutes * 60);
+        jobs.values().removeIf(job -> {
+            if (!job.isFinished() || job.getUpdatedAt().isAfter(cutoff)) {
+                return false;
+            }
+            jobsByKey.remove(job.resultKey(), job);
+            return true;
+        });
+    }
+
+    private void run(PreviewJob job, String tenant, RenderLimiter.Permit permit) {
+        try (RenderContext.Scope scope = job.context().open()) {
+            RenderContext.checkpoint();
+            byte[] image = switch (job.getKind()) {
+                case PREVIEW -> clusterPreviewService.renderPreview(job.getFileName(), tenant);
+                case MULTIPAGE -> previewService.renderMultiPagePreview(job.getFileName(), tenant);
+                case PAGE -> previewService.renderPagePreview(job.getFileName(), job.getPage(), tenant);
+            };
+            if (image == null) {
+                throw new IOException("Render of " + job.getFileName() + " produced no image");
+            }
+            // Cluster renders are already stored under the same key. Renderers throw rather than
+            // return an error image, so only a real render is kept under the content hash.
+            if (!Files.exists(storageService.getHashedPreviewPath(job.resultKey()))) {
+                storageService.storeHashedPreview(job.resultKey(), image);
+            }
+            permit.completed();
+            finish(job, PreviewJob.Status.DONE, null);
+        } catch (CancellationException e) {
+            // Running out of time is what overload looks like; a client cancelling is not
+            if (job.context().isPastDeadline()) {
+                permit.dropped();
+            } else {
+                permit.ignored();
+            }
+            log.info("Preview job {} for {} stopped: {}", job.getId(), job.getFileName(), e.getMessage());
+            finish(job, PreviewJob.Status.CANCELLED, e.getMessage() != null ? e.getMessage() : "cancelled");
+        } catch (Exception e) {
+            permit.ignored();
+            log.error("Preview job {} for {} failed", job.getId(), job.getFileName(), e);
+            finish(job, PreviewJob.Status.FAILED, e.getMessage() != null ? e.getMessage() : e.toString());
+        }
+    }
+
+    private void finish(PreviewJob job, PreviewJob.Status status, String error) {
+        String resultUrl = status == PreviewJob.Status.DONE ? BASE_PATH + "/" + job.getId() + "/result" : null;
+        sendFinal(job, job.finish(status, resultUrl, error));
+    }
+
+    private byte[] readResult(PreviewJob job) throws IOException {
+        return Files.readAllBytes(getResultPath(job));
+    }
+
+    private void publish(PreviewJob job) {
+        for (SseEmitter emitter : job.subscribers()) {
+            send(job, emitter, "progress");
+        }
+    }
+
+    private void sendFinal(PreviewJob job, List<SseEmitter> emitters) {
+        String event = job.getStatus().name().toLowerCase();
+        for (SseEmitter emitter : emitters) {
+            if (send(job, emitter, event)) {
+                emitter.complete();
+            }
+        }
+    }
+
+    // Events are a few hundred bytes, so writing them from the render thread does not hold it up
+    private boolean send(PreviewJob job, SseEmitter emitter, String event) {
+        try {
+            emitter.send(SseEmitter.event().name(event).id(job.getId()).data(job));
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            log.debug("Dropping subscriber of job {}: {}", job.getId(), e.toString());
+            job.unsubscribe(emitter);
+            return false;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.techpool.file.render;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.function.Consumer;
+
+// A composite being painted strip by strip, so a caller can render one page, draw it and drop it
+// before rendering the next. Backed by a heap BufferedImage or, for large ones, a MappedImage;
+// close() releases the mapping and must follow encode(). A gray composite can be widened to RGB
+// once the first colour page turns up, so callers need not know every page's colour in advance.
+public class Composite implements AutoCloseable {
+    private final CompositeRenderer renderer;
+    private final PngEncoder pngEncoder;
+    private BufferedImage heap;
+    private MappedImage mapped;
+
+    Composite(CompositeRenderer renderer, PngEncoder pngEncoder, BufferedImage heap, MappedImage mapped) {
+        this.renderer = renderer;
+        this.pngEncoder = pngEncoder;
+        this.heap = heap;
+        this.mapped = mapped;
+    }
+
+    public int getWidth() {
+        return heap != null ? heap.getWidth() : mapped.getWidth();
+    }
+
+    public int getHeight() {
+        return heap != null ? heap.getHeight() : mapped.getHeight();
+    }
+
+    public int getType() {
+        return heap != null ? heap.getType() : mapped.getType();
+    }
+
+    // Call before painting a page: a colour page turns a gray composite into an RGB one, copying
+    // what was painted so far. Gray pages and RGB composites are left as they are.
+    public void widenFor(BufferedImage page) throws IOException {
+        if (page.getType() == BufferedImage.TYPE_BYTE_GRAY || getType() != BufferedImage.TYPE_BYTE_GRAY) {
+            return;
+        }
+        int width = getWidth();
+        int height = getHeight();
+        Composite rgb = renderer.open(width, height, BufferedImage.TYPE_INT_RGB);
+        try {
+            byte[] samples = new byte[width];
+            int[] pixels = new int[width];
+            for (int y = 0; y < height; y++) {
+                if (y % 256 == 0) {
+                    RenderContext.checkpoint();
+                }
+                if (heap != null) {
+                    heap.getRaster().getDataElements(0, y, width, 1, samples);
+                } else {
+                    mapped.readRow(y, samples);
+                }
+                for (int x = 0; x < width; x++) {
+                    int sample = samples[x] & 0xff;
+                    pixels[x] = sample << 16 | sample << 8 | sample;
+                }
+                if (rgb.heap != null) {
+                    rgb.heap.getRaster().setDataElements(0, y, width, 1, pixels);
+                } else {
+                    rgb.mapped.writeRow(y, pixels);
+                }
+            }
+        } catch (RuntimeException e) {
+            rgb.close();
+            throw e;
+        }
+        close();
+        heap = rgb.heap;
+        mapped = rgb.mapped;
+    }
+
+    // The painter draws in image coordinates and only rows [top, top + rows) are kept; it may run
+    // more than once, see MappedImage.paint
+    public void paint(int top, int rows, Consumer<Graphics2D> painter) {
+        if (mapped != null) {
+            mapped.paint(top, rows, painter);
+            return;
+        }
+        Graphics2D g = heap.createGraphics();
+        try {
+            g.clipRect(0, top, heap.getWidth(), rows);
+            painter.accept(g);
+        } finally {
+            g.dispose();
+        }
+    }
+
+    public byte[] encode() throws IOException {
+        RenderContext.checkpoint();
+        return pngEncoder.encode(heap != null ? heap : mapped.getImage());
+    }
+
+    @Override
+    public void close() {
+        if (mapped != null) {
+            mapped.close();
+        }
+    }
+}
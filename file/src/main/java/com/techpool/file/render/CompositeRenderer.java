@@ -0,0 +1,51 @@
+package com.techpool.file.render;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// Paints and encodes multi-page composites. Above render.offheap.min-bytes the pixels go to a
+// MappedImage instead of the heap, so a long document neither needs an oversized -Xmx nor leaves
+// a huge int[] for the GC; the mapping is released as soon as the PNG is written.
+@Component
+public class CompositeRenderer {
+    private static final Logger log = LoggerFactory.getLogger(CompositeRenderer.class);
+
+    private final PngEncoder pngEncoder;
+    private final long offHeapMinBytes;
+    private final Path scratchDir;
+
+    public CompositeRenderer(PngEncoder pngEncoder,
+            @Value("${render.offheap.min-bytes:67108864}") long offHeapMinBytes,
+            @Value("${render.offheap.scratch-dir:${java.io.tmpdir}}") String scratchDir) throws IOException {
+        this.pngEncoder = pngEncoder;
+        this.offHeapMinBytes = offHeapMinBytes;
+        this.scratchDir = Files.createDirectories(Paths.get(scratchDir));
+    }
+
+    // imageType is TYPE_INT_RGB or TYPE_BYTE_GRAY; the painter may run more than once, see MappedImage.paint
+    public byte[] render(int width, int height, int imageType, Consumer<Graphics2D> painter) throws IOException {
+        try (Composite composite = open(width, height, imageType)) {
+            composite.paint(0, height, painter);
+            return composite.encode();
+        }
+    }
+
+    // For callers that paint page by page, so only one rendered page is held at a time
+    public Composite open(int width, int height, int imageType) throws IOException {
+        long bytes = (long) width * height * (imageType == BufferedImage.TYPE_BYTE_GRAY ? 1 : 4);
+        if (bytes < offHeapMinBytes) {
+            return new Composite(this, pngEncoder, new BufferedImage(width, height, imageType), null);
+        }
+        log.debug("Composite of {}x{} ({} MB) is mapped off-heap", width, height, bytes >> 20);
+        return new Composite(this, pngEncoder, null, MappedImage.create(width, height, imageType, scratchDir));
+    }
+}
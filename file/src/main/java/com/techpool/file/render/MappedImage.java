@@ -0,0 +1,304 @@
+package com.techpool.file.render;
+
+import java.awt.Graphics2D;
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// An RGB or 8-bit gray image whose pixels live in a memory-mapped scratch file instead of the
+// Java heap. The file is unlinked once mapped, so the kernel can page it out under pressure and a
+// crash leaves nothing behind. paint() draws band by band on a small heap image that is copied in,
+// which keeps Java2D on its fast loops; getImage() exposes the pixels to readers such as PngEncoder.
+// close() unmaps at once instead of waiting for the GC; any use after that throws
+// IllegalStateException instead of touching the unmapped memory.
+public class MappedImage implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(MappedImage.class);
+    private static final long SEGMENT_BYTES = 1L << 30;
+    private static final int BAND_BYTES = 4 * 1024 * 1024;
+    private static final Method INVOKE_CLEANER;
+    private static final Object UNSAFE;
+
+    static {
+        Method invokeCleaner = null;
+        Object unsafe = null;
+        try {
+            Class<?> type = Class.forName("sun.misc.Unsafe");
+            Field field = type.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            invokeCleaner = type.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.warn("Mapped images cannot be unmapped explicitly and are released by the GC: {}", e.toString());
+        }
+        INVOKE_CLEANER = invokeCleaner;
+        UNSAFE = unsafe;
+    }
+
+    private final int width;
+    private final int height;
+    private final int type;
+    private final int rowsPerSegment;
+    private final Path file;
+    private MappedByteBuffer[] segments;
+    private IntBuffer[] ints;
+    private BufferedImage view;
+
+    private MappedImage(int width, int height, int type, Path directory) throws IOException {
+        if (type != BufferedImage.TYPE_INT_RGB && type != BufferedImage.TYPE_BYTE_GRAY) {
+            throw new IllegalArgumentException("Only TYPE_INT_RGB and TYPE_BYTE_GRAY can be mapped");
+        }
+        if ((long) width * height > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Image of " + width + "x" + height + " is too large");
+        }
+        this.width = width;
+        this.height = height;
+        this.type = type;
+        long rowBytes = (long) width * bytesPerPixel();
+        this.rowsPerSegment = (int) Math.max(1, Math.min(height, SEGMENT_BYTES / rowBytes));
+
+        int count = (height + rowsPerSegment - 1) / rowsPerSegment;
+        segments = new MappedByteBuffer[count];
+        ints = new IntBuffer[count];
+        Path scratch = Files.createTempFile(directory, "composite-", ".raw");
+        try (FileChannel channel = FileChannel.open(scratch, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            for (int i = 0; i < count; i++) {
+                int rows = Math.min(rowsPerSegment, height - i * rowsPerSegment);
+                segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, i * rowsPerSegment * rowBytes, rows * rowBytes);
+                segments[i].order(ByteOrder.nativeOrder());
+                ints[i] = segments[i].asIntBuffer();
+            }
+        } catch (IOException | RuntimeException e) {
+            unmap();
+            Files.deleteIfExists(scratch);
+            throw e;
+        }
+        // Windows refuses to delete a mapped file; it is removed on close instead
+        Path undeleted = null;
+        try {
+            Files.delete(scratch);
+        } catch (IOException e) {
+            undeleted = scratch;
+        }
+        this.file = undeleted;
+    }
+
+    public static MappedImage create(int width, int height, int type, Path directory) throws IOException {
+        return new MappedImage(width, height, type, directory);
+    }
+
+    // The painter draws the whole image in image coordinates and is called once per band, clipped
+    // to it; like a new BufferedImage, pixels it leaves alone are black
+    public void paint(Consumer<Graphics2D> painter) {
+        paint(0, height, painter);
+    }
+
+    // Same for rows [top, top + rows) only; the rest of the image is left as it is
+    public void paint(int top, int rows, Consumer<Graphics2D> painter) {
+        checkOpen();
+        int end = Math.min(height, top + rows);
+        int bandRows = Math.max(1, Math.min(end - top, BAND_BYTES / (width * bytesPerPixel())));
+        BufferedImage band = new BufferedImage(width, bandRows, type);
+        DataBuffer data = band.getRaster().getDataBuffer();
+        for (int bandTop = Math.max(0, top); bandTop < end; bandTop += bandRows) {
+            RenderContext.checkpoint();
+            int count = Math.min(bandRows, end - bandTop);
+            if (data instanceof DataBufferInt pixels) {
+                Arrays.fill(pixels.getData(), 0);
+            } else {
+                Arrays.fill(((DataBufferByte) data).getData(), (byte) 0);
+            }
+            Graphics2D g = band.createGraphics();
+            try {
+                g.clipRect(0, 0, width, count);
+                g.translate(0, -bandTop);
+                painter.accept(g);
+            } finally {
+                g.dispose();
+            }
+            for (int y = 0; y < count; y++) {
+                if (data instanceof DataBufferInt pixels) {
+                    writeRow(bandTop + y, pixels.getData(), y * width);
+                } else {
+                    writeRow(bandTop + y, ((DataBufferByte) data).getData(), y * width);
+                }
+            }
+        }
+    }
+
+    public BufferedImage getImage() {
+        if (view == null) {
+            SampleModel model;
+            ColorModel colors;
+            if (type == BufferedImage.TYPE_INT_RGB) {
+                int[] masks = { 0xff0000, 0xff00, 0xff };
+                model = new SinglePixelPackedSampleModel(DataBuffer.TYPE_INT, width, height, masks);
+                colors = new DirectColorModel(24, masks[0], masks[1], masks[2]);
+            } else {
+                model = new PixelInterleavedSampleModel(DataBuffer.TYPE_BYTE, width, height, 1, width, new int[] { 0 });
+                colors = new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_GRAY), false, false,
+                        Transparency.OPAQUE, DataBuffer.TYPE_BYTE);
+            }
+            view = new BufferedImage(colors, Raster.createWritableRaster(model, new Pixels(), null), false, null);
+        }
+        return view;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    // TYPE_INT_RGB or TYPE_BYTE_GRAY; getImage() itself reports TYPE_CUSTOM
+    public int getType() {
+        return type;
+    }
+
+    // The mapped image behind a view returned by getImage(), or null for any other image
+    static MappedImage of(BufferedImage image) {
+        return image.getRaster().getDataBuffer() instanceof Pixels pixels ? pixels.owner() : null;
+    }
+
+    // xRGB pixels of one row; TYPE_INT_RGB only
+    void readRow(int y, int[] pixels) {
+        ints(y).get((y % rowsPerSegment) * width, pixels, 0, width);
+    }
+
+    // Gray samples of one row; TYPE_BYTE_GRAY only
+    void readRow(int y, byte[] samples) {
+        segment(y).get((y % rowsPerSegment) * width, samples, 0, width);
+    }
+
+    // xRGB pixels of one row; TYPE_INT_RGB only
+    void writeRow(int y, int[] pixels) {
+        writeRow(y, pixels, 0);
+    }
+
+    private void writeRow(int y, int[] pixels, int offset) {
+        ints(y).put((y % rowsPerSegment) * width, pixels, offset, width);
+    }
+
+    private void writeRow(int y, byte[] samples, int offset) {
+        segment(y).put((y % rowsPerSegment) * width, samples, offset, width);
+    }
+
+    private MappedByteBuffer segment(int y) {
+        MappedByteBuffer[] mapped = segments;
+        if (mapped == null) {
+            throw closed();
+        }
+        return mapped[y / rowsPerSegment];
+    }
+
+    private IntBuffer ints(int y) {
+        IntBuffer[] mapped = ints;
+        if (mapped == null) {
+            throw closed();
+        }
+        return mapped[y / rowsPerSegment];
+    }
+
+    private void checkOpen() {
+        if (segments == null) {
+            throw closed();
+        }
+    }
+
+    private IllegalStateException closed() {
+        return new IllegalStateException("Mapped image of " + width + "x" + height + " is closed");
+    }
+
+    private int bytesPerPixel() {
+        return type == BufferedImage.TYPE_INT_RGB ? 4 : 1;
+    }
+
+    @Override
+    public void close() {
+        unmap();
+        if (file != null) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.warn("Failed to delete scratch file {}", file, e);
+            }
+        }
+    }
+
+    private void unmap() {
+        MappedByteBuffer[] mapped = segments;
+        // Later access finds these gone and throws rather than touching unmapped memory
+        segments = null;
+        ints = null;
+        if (mapped == null || INVOKE_CLEANER == null) {
+            return;
+        }
+        for (MappedByteBuffer segment : mapped) {
+            if (segment != null) {
+                try {
+                    INVOKE_CLEANER.invoke(UNSAFE, segment);
+                } catch (ReflectiveOperationException e) {
+                    log.debug("Could not unmap scratch segment", e);
+                }
+            }
+        }
+    }
+
+    // Per-pixel access for Java2D's generic loops and other raster readers; PngEncoder and paint()
+    // go through the row methods instead
+    private class Pixels extends DataBuffer {
+        Pixels() {
+            super(type == BufferedImage.TYPE_INT_RGB ? TYPE_INT : TYPE_BYTE, width * height);
+        }
+
+        MappedImage owner() {
+            return MappedImage.this;
+        }
+
+        @Override
+        public int getElem(int bank, int i) {
+            int y = i / width;
+            int offset = (y % rowsPerSegment) * width + i - y * width;
+            return type == BufferedImage.TYPE_INT_RGB
+                    ? ints(y).get(offset)
+                    : segment(y).get(offset) & 0xff;
+        }
+
+        @Override
+        public void setElem(int bank, int i, int value) {
+            int y = i / width;
+            int offset = (y % rowsPerSegment) * width + i - y * width;
+            if (type == BufferedImage.TYPE_INT_RGB) {
+                ints(y).put(offset, value);
+            } else {
+                segment(y).put(offset, (byte) value);
+            }
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.techpool.file.render;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+// Renders page `index` of a composite on demand, so the caller can draw it and let it go before
+// the next one is rendered
+@FunctionalInterface
+public interface PageSource {
+    BufferedImage render(int index) throws IOException;
+}
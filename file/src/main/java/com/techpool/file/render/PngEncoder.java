@@ -0,0 +1,725 @@
+package com.techpool.file.render;
+
+import jakarta.annotation.PreDestroy;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// PNG writer for previews. Tall images are cut into bands of rows that are filtered and deflated
+// in parallel, pigz style: each band is primed with the 32 KB of filtered data before it, so the
+// ratio stays close to a single stream, the raw deflate streams are joined with sync flushes, and
+// the Adler-32 of the whole is combined from the bands'. Deflaters and row buffers are pooled and
+// reused across images; small images are encoded on the calling thread. Text-like previews with few
+// colours or only grays come out as indexed or grayscale PNGs, a third of the RGB size or less.
+@Component
+public class PngEncoder {
+    private static final Logger log = LoggerFactory.getLogger(PngEncoder.class);
+    private static final byte[] SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n' };
+    private static final int WINDOW = 32 * 1024;
+    private static final int ADLER_BASE = 65521;
+    // Up first: on document pages most rows repeat the one above, and a zero sum ends the search
+    private static final int[] ADAPTIVE_ORDER = { 2, 1, 0, 3, 4 };
+
+    // The first five are the PNG filter types in order; ADAPTIVE picks one per row
+    public enum Filter {
+        NONE, SUB, UP, AVERAGE, PAETH, ADAPTIVE
+    }
+
+    enum Layout {
+        GRAY(0, 1), RGB(2, 3), PALETTE(3, 1), RGBA(6, 4);
+
+        final int colorType;
+        final int bytesPerPixel;
+
+        Layout(int colorType, int bytesPerPixel) {
+            this.colorType = colorType;
+            this.bytesPerPixel = bytesPerPixel;
+        }
+    }
+
+    // How an image is written: layout, bits per sample, palette when indexed, and the row filter
+    private record Format(Layout layout, int bitDepth, ColorTable palette, Filter filter) {
+        Format(Layout layout, Filter filter) {
+            this(layout, 8, null, filter);
+        }
+
+        int rowBytes(int width) {
+            return bitDepth < 8 ? (width * bitDepth + 7) / 8 : width * layout.bytesPerPixel;
+        }
+    }
+
+    private final int level;
+    private final Filter filter;
+    private final int bandBytes;
+    private final long parallelMinBytes;
+    private final int threads;
+    private final boolean reduceColors;
+    private final ExecutorService pool;
+    private final Deque<BandEncoder> idle = new ConcurrentLinkedDeque<>();
+
+    public PngEncoder(@Value("${png.compression-level:2}") int level,
+            @Value("${png.filter:adaptive}") String filter,
+            @Value("${png.band-bytes:262144}") int bandBytes,
+            @Value("${png.parallel-min-bytes:1048576}") long parallelMinBytes,
+            @Value("${png.threads:0}") int threads,
+            @Value("${png.reduce-colors:true}") boolean reduceColors) {
+        if (level < 0 || level > 9) {
+            throw new IllegalArgumentException("png.compression-level must be between 0 and 9");
+        }
+        this.level = level;
+        this.filter = Filter.valueOf(filter.trim().toUpperCase());
+        this.bandBytes = Math.max(WINDOW, bandBytes);
+        this.parallelMinBytes = parallelMinBytes;
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.reduceColors = reduceColors;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.pool = Executors.newFixedThreadPool(this.threads, r -> {
+            Thread thread = new Thread(r, "png-encoder-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        log.info("PNG encoder at level {} with {} filter on {} threads", level, this.filter, this.threads);
+    }
+
+    public byte[] encode(BufferedImage image) throws IOException {
+        long pixels = (long) image.getHeight() * image.getWidth();
+        ByteArrayOutputStream out = new ByteArrayOutputStream((int) Math.min(Integer.MAX_VALUE - 8, pixels / 2 + 1024));
+        encode(image, out);
+        return out.toByteArray();
+    }
+
+    public void encode(BufferedImage image, OutputStream out) throws IOException {
+        Format format = analyze(image);
+        Layout layout = format.layout();
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int stride = format.rowBytes(width) + 1;
+        int rowsPerBand = Math.max(1, bandBytes / stride);
+        int bands = (height + rowsPerBand - 1) / rowsPerBand;
+        boolean parallel = bands > 1 && threads > 1 && (long) height * stride >= parallelMinBytes;
+        if (!parallel) {
+            rowsPerBand = height;
+            bands = 1;
+        }
+
+        out.write(SIGNATURE);
+        byte[] header = new byte[13];
+        putInt(header, 0, width);
+        putInt(header, 4, height);
+        header[8] = (byte) format.bitDepth();
+        header[9] = (byte) layout.colorType;
+        writeChunk(out, "IHDR", header);
+        if (format.palette() != null) {
+            writePalette(out, format.palette());
+        }
+
+        if (!parallel) {
+            Band band = encodeBand(image, format, 0, height, true);
+            writeChunk(out, "IDAT", zlibHeader(), band.data, adlerTrailer(band.adler));
+        } else {
+            List<Future<Band>> pending = new ArrayList<>(bands);
+            AtomicBoolean abandoned = new AtomicBoolean();
+            for (int i = 0; i < bands; i++) {
+                int from = i * rowsPerBand;
+                int to = Math.min(height, from + rowsPerBand);
+                boolean last = to == height;
+                pending.add(pool.submit(() -> abandoned.get() ? null : encodeBand(image, format, from, to, last)));
+            }
+            // Bands are written as they come in, in order; each one is its own IDAT chunk
+            long adler = 1;
+            boolean written = false;
+            try {
+                for (int i = 0; i < bands; i++) {
+                    Band band = await(pending.get(i));
+                    adler = combineAdler(adler, band.adler, band.length);
+                    writeChunk(out, "IDAT", i == 0 ? zlibHeader() : null, band.data,
+                            i == bands - 1 ? adlerTrailer(adler) : null);
+                }
+                written = true;
+            } finally {
+                if (!written) {
+                    // Queued bands are skipped, and running ones finish before the caller gets the image
+                    // back; a MappedImage may be unmapped as soon as this returns
+                    abandoned.set(true);
+                    awaitQuietly(pending);
+                }
+            }
+        }
+        writeChunk(out, "IEND");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+        BandEncoder encoder;
+        while ((encoder = idle.poll()) != null) {
+            encoder.deflater.end();
+        }
+    }
+
+    // Picks the smallest lossless layout. Opaque all-gray images are written as grayscale. Images
+    // with at most 256 colours are indexed. Otherwise RGB is used, or RGBA only when some pixel is
+    // translucent. Runs of equal pixels skip the lookup, and the scan stops once nothing can be saved.
+    private Format analyze(BufferedImage image) {
+        if (isGray(image)) {
+            return new Format(Layout.GRAY, filter);
+        }
+        boolean hasAlpha = image.getColorModel().hasAlpha();
+        if (!reduceColors) {
+            return new Format(hasAlpha ? Layout.RGBA : Layout.RGB, filter);
+        }
+
+        int width = image.getWidth();
+        int[] pixels = new int[width];
+        ColorTable colors = new ColorTable();
+        boolean gray = true;
+        boolean opaque = true;
+        int previous = 0;
+        boolean first = true;
+        scan:
+        for (int y = 0; y < image.getHeight(); y++) {
+            readPixels(image, y, pixels);
+            for (int x = 0; x < width; x++) {
+                int pixel = pixels[x];
+                if (pixel == previous && !first) {
+                    continue;
+                }
+                first = false;
+                previous = pixel;
+                if (pixel >>> 24 != 0xff) {
+                    opaque = false;
+                    gray = false;
+                } else if (gray && ((((pixel >>> 16) ^ pixel) | ((pixel >>> 8) ^ pixel)) & 0xff) != 0) {
+                    gray = false;
+                }
+                if (colors != null && !colors.add(pixel)) {
+                    colors = null;
+                }
+                if (colors == null && !gray && (!hasAlpha || !opaque)) {
+                    break scan;
+                }
+            }
+        }
+
+        // Filters predict neighbouring sample values, which palette indices are not; libpng also
+        // leaves palette images unfiltered. Up to 16 colours pack several pixels per byte, which
+        // beats 8-bit grayscale even for gray images.
+        int colorCount = colors != null ? colors.colors().length : Integer.MAX_VALUE;
+        if (colorCount <= 16) {
+            int bitDepth = colorCount <= 2 ? 1 : colorCount <= 4 ? 2 : 4;
+            return new Format(Layout.PALETTE, bitDepth, colors, Filter.NONE);
+        }
+        if (gray) {
+            return new Format(Layout.GRAY, filter);
+        }
+        if (colors != null) {
+            return new Format(Layout.PALETTE, 8, colors, Filter.NONE);
+        }
+        return new Format(hasAlpha && !opaque ? Layout.RGBA : Layout.RGB, filter);
+    }
+
+    private static boolean isGray(BufferedImage image) {
+        MappedImage mapped = MappedImage.of(image);
+        return image.getType() == BufferedImage.TYPE_BYTE_GRAY
+                || mapped != null && mapped.getType() == BufferedImage.TYPE_BYTE_GRAY;
+    }
+
+    // ARGB pixels of one row, opaque when the image has no alpha
+    private static void readPixels(BufferedImage image, int y, int[] pixels) {
+        int width = image.getWidth();
+        int type = image.getType();
+        MappedImage mapped = MappedImage.of(image);
+        if (mapped != null && mapped.getType() == BufferedImage.TYPE_INT_RGB) {
+            mapped.readRow(y, pixels);
+            for (int x = 0; x < width; x++) {
+                pixels[x] |= 0xff000000;
+            }
+        } else if (type == BufferedImage.TYPE_INT_RGB) {
+            image.getRaster().getDataElements(0, y, width, 1, pixels);
+            for (int x = 0; x < width; x++) {
+                pixels[x] |= 0xff000000;
+            }
+        } else if (type == BufferedImage.TYPE_INT_ARGB) {
+            image.getRaster().getDataElements(0, y, width, 1, pixels);
+        } else {
+            image.getRGB(0, y, width, 1, pixels, 0, width);
+        }
+    }
+
+    private static void writePalette(OutputStream out, ColorTable palette) throws IOException {
+        int[] colors = palette.colors();
+        byte[] rgb = new byte[colors.length * 3];
+        byte[] alpha = new byte[colors.length];
+        boolean translucent = false;
+        for (int i = 0; i < colors.length; i++) {
+            rgb[i * 3] = (byte) (colors[i] >>> 16);
+            rgb[i * 3 + 1] = (byte) (colors[i] >>> 8);
+            rgb[i * 3 + 2] = (byte) colors[i];
+            alpha[i] = (byte) (colors[i] >>> 24);
+            translucent |= colors[i] >>> 24 != 0xff;
+        }
+        writeChunk(out, "PLTE", rgb);
+        if (translucent) {
+            writeChunk(out, "tRNS", alpha);
+        }
+    }
+
+    private Band encodeBand(BufferedImage image, Format format, int from, int to, boolean last) {
+        BandEncoder encoder = idle.poll();
+        if (encoder == null) {
+            encoder = new BandEncoder();
+        }
+        try {
+            return encoder.encode(image, format, from, to, last);
+        } finally {
+            // Keep about one per thread that encodes concurrently; native memory of the rest is freed
+            if (idle.size() < threads * 2) {
+                idle.push(encoder);
+            } else {
+                encoder.deflater.end();
+            }
+        }
+    }
+
+    private static void awaitQuietly(List<Future<Band>> pending) {
+        boolean interrupted = false;
+        for (Future<Band> future : pending) {
+            while (true) {
+                try {
+                    future.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException | CancellationException e) {
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Band await(Future<Band> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while encoding PNG");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IOException("PNG band encoding failed", e.getCause());
+        }
+    }
+
+    private byte[] zlibHeader() {
+        int compressionLevel = level < 2 ? 0 : level < 6 ? 1 : level == 6 ? 2 : 3;
+        int cmf = 0x78; // deflate, 32 KB window
+        int flg = compressionLevel << 6;
+        flg += 31 - ((cmf << 8) + flg) % 31;
+        return new byte[] { (byte) cmf, (byte) flg };
+    }
+
+    private static byte[] adlerTrailer(long adler) {
+        byte[] trailer = new byte[4];
+        putInt(trailer, 0, (int) adler);
+        return trailer;
+    }
+
+    // zlib's adler32_combine: the checksum of a followed by b, from both checksums and b's length
+    static long combineAdler(long adler1, long adler2, long length2) {
+        long remainder = length2 % ADLER_BASE;
+        long sum1 = adler1 & 0xffff;
+        long sum2 = (remainder * sum1) % ADLER_BASE;
+        sum1 += (adler2 & 0xffff) + ADLER_BASE - 1;
+        sum2 += ((adler1 >>> 16) & 0xffff) + ((adler2 >>> 16) & 0xffff) + ADLER_BASE - remainder;
+        if (sum1 >= ADLER_BASE) {
+            sum1 -= ADLER_BASE;
+        }
+        if (sum1 >= ADLER_BASE) {
+            sum1 -= ADLER_BASE;
+        }
+        if (sum2 >= ((long) ADLER_BASE << 1)) {
+            sum2 -= ((long) ADLER_BASE << 1);
+        }
+        if (sum2 >= ADLER_BASE) {
+            sum2 -= ADLER_BASE;
+        }
+        return sum1 | (sum2 << 16);
+    }
+
+    private static void writeChunk(OutputStream out, String type, byte[]... parts) throws IOException {
+        int length = 0;
+        for (byte[] part : parts) {
+            length += part != null ? part.length : 0;
+        }
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        byte[] lengthBytes = new byte[4];
+        putInt(lengthBytes, 0, length);
+        out.write(lengthBytes);
+        out.write(typeBytes);
+        for (byte[] part : parts) {
+            if (part != null) {
+                crc.update(part);
+                out.write(part);
+            }
+        }
+        byte[] crcBytes = new byte[4];
+        putInt(crcBytes, 0, (int) crc.getValue());
+        out.write(crcBytes);
+    }
+
+    private static void putInt(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) (value >>> 24);
+        buffer[offset + 1] = (byte) (value >>> 16);
+        buffer[offset + 2] = (byte) (value >>> 8);
+        buffer[offset + 3] = (byte) value;
+    }
+
+    private record Band(byte[] data, long adler, long length) {
+    }
+
+    // Up to 256 distinct ARGB colours with their palette indices, in an open-addressing table
+    // small enough to stay in L1 while a row is mapped
+    private static final class ColorTable {
+        private static final int SLOTS = 1024;
+        private final int[] keys = new int[SLOTS];
+        private final short[] indices = new short[SLOTS];
+        private final int[] colors = new int[256];
+        private int size;
+
+        ColorTable() {
+            Arrays.fill(indices, (short) -1);
+        }
+
+        // False when the colour would be the 257th
+        boolean add(int argb) {
+            int slot = slot(argb);
+            while (indices[slot] >= 0) {
+                if (keys[slot] == argb) {
+                    return true;
+                }
+                slot = (slot + 1) & (SLOTS - 1);
+            }
+            if (size == colors.length) {
+                return false;
+            }
+            keys[slot] = argb;
+            indices[slot] = (short) size;
+            colors[size++] = argb;
+            return true;
+        }
+
+        int indexOf(int argb) {
+            int slot = slot(argb);
+            while (keys[slot] != argb || indices[slot] < 0) {
+                slot = (slot + 1) & (SLOTS - 1);
+            }
+            return indices[slot];
+        }
+
+        int[] colors() {
+            return Arrays.copyOf(colors, size);
+        }
+
+        private static int slot(int argb) {
+            return (argb * 0x9E3779B1 >>> 22) & (SLOTS - 1);
+        }
+    }
+
+    // Deflater, checksum and row buffers for one band at a time
+    private final class BandEncoder {
+        private final Deflater deflater = new Deflater(level, true);
+        private final Adler32 adler = new Adler32();
+        private final byte[][] candidates = new byte[5][];
+        private byte[] current = new byte[0];
+        private byte[] previous = new byte[0];
+        private int[] pixels = new int[0];
+        private byte[] dictionary = new byte[0];
+        private byte[] out = new byte[64 * 1024];
+        private int size;
+
+        private int strategy = Deflater.DEFAULT_STRATEGY;
+        private Format format;
+
+        Band encode(BufferedImage image, Format format, int from, int to, boolean last) {
+            this.format = format;
+            Layout layout = format.layout();
+            int rowBytes = format.rowBytes(image.getWidth());
+            ensureCapacity(image.getWidth(), rowBytes);
+            deflater.reset();
+            int wanted = format.filter() == Filter.NONE ? Deflater.DEFAULT_STRATEGY : Deflater.FILTERED;
+            if (wanted != strategy) {
+                deflater.setStrategy(wanted);
+                strategy = wanted;
+            }
+            adler.reset();
+            size = 0;
+
+            if (from == 0) {
+                Arrays.fill(previous, 0, rowBytes, (byte) 0);
+            } else if (level > 0) {
+                prime(image, from, rowBytes);
+            } else {
+                readRow(image, from - 1, previous);
+            }
+
+            for (int y = from; y < to; y++) {
+                readRow(image, y, current);
+                byte[] row = filterRow(rowBytes, layout.bytesPerPixel);
+                adler.update(row, 0, rowBytes + 1);
+                deflater.setInput(row, 0, rowBytes + 1);
+                while (!deflater.needsInput()) {
+                    drain(Deflater.NO_FLUSH);
+                }
+                byte[] swap = previous;
+                previous = current;
+                current = swap;
+            }
+
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    drain(Deflater.NO_FLUSH);
+                }
+            } else {
+                // Ends byte-aligned without a final block, so the next band's stream can follow
+                while (drain(Deflater.SYNC_FLUSH)) {
+                    // Output buffer was full; more to flush
+                }
+            }
+            return new Band(Arrays.copyOf(out, size), adler.getValue(), (long) (to - from) * (rowBytes + 1));
+        }
+
+        // Filters the rows just before the band exactly as the previous band did and hands their
+        // last 32 KB to the deflater, so matches can reach back across the band boundary
+        private void prime(BufferedImage image, int from, int rowBytes) {
+            int rows = Math.min(from, (WINDOW + rowBytes) / (rowBytes + 1) + 1);
+            int start = from - rows;
+            if (start == 0) {
+                Arrays.fill(previous, 0, rowBytes, (byte) 0);
+            } else {
+                readRow(image, start - 1, previous);
+            }
+            int length = 0;
+            for (int y = start; y < from; y++) {
+                readRow(image, y, current);
+                byte[] row = filterRow(rowBytes, format.layout().bytesPerPixel);
+                System.arraycopy(row, 0, dictionary, length, rowBytes + 1);
+                length += rowBytes + 1;
+                byte[] swap = previous;
+                previous = current;
+                current = swap;
+            }
+            int dictionaryLength = Math.min(length, WINDOW);
+            deflater.setDictionary(dictionary, length - dictionaryLength, dictionaryLength);
+        }
+
+        private void ensureCapacity(int width, int rowBytes) {
+            if (current.length < rowBytes) {
+                current = new byte[rowBytes];
+                previous = new byte[rowBytes];
+                for (int i = 0; i < candidates.length; i++) {
+                    candidates[i] = new byte[rowBytes + 1];
+                }
+                dictionary = new byte[((WINDOW + rowBytes) / (rowBytes + 1) + 1) * (rowBytes + 1)];
+            }
+            if (pixels.length < width) {
+                pixels = new int[width];
+            }
+        }
+
+        // True when the output buffer filled up, i.e. the deflater may have more to give
+        private boolean drain(int flush) {
+            if (out.length - size < 8192) {
+                out = Arrays.copyOf(out, out.length * 2);
+            }
+            int available = out.length - size;
+            int written = deflater.deflate(out, size, available, flush);
+            size += written;
+            return written == available;
+        }
+
+        private void readRow(BufferedImage image, int y, byte[] row) {
+            int width = image.getWidth();
+            Layout layout = format.layout();
+            if (image.getType() == BufferedImage.TYPE_BYTE_GRAY) {
+                image.getRaster().getDataElements(0, y, width, 1, row);
+                return;
+            }
+            MappedImage mapped = MappedImage.of(image);
+            if (mapped != null && mapped.getType() == BufferedImage.TYPE_BYTE_GRAY) {
+                mapped.readRow(y, row);
+                return;
+            }
+            readPixels(image, y, pixels);
+            switch (layout) {
+                case GRAY -> {
+                    for (int x = 0; x < width; x++) {
+                        row[x] = (byte) pixels[x];
+                    }
+                }
+                case PALETTE -> {
+                    ColorTable palette = format.palette();
+                    int bitDepth = format.bitDepth();
+                    int previousPixel = pixels[0];
+                    int index = palette.indexOf(previousPixel);
+                    if (bitDepth < 8) {
+                        // Leftmost pixel in the high bits
+                        int perByte = 8 / bitDepth;
+                        Arrays.fill(row, 0, format.rowBytes(width), (byte) 0);
+                        for (int x = 0; x < width; x++) {
+                            int pixel = pixels[x];
+                            if (pixel != previousPixel) {
+                                previousPixel = pixel;
+                                index = palette.indexOf(pixel);
+                            }
+                            row[x / perByte] |= (byte) (index << (8 - bitDepth * (x % perByte + 1)));
+                        }
+                        return;
+                    }
+                    for (int x = 0; x < width; x++) {
+                        int pixel = pixels[x];
+                        if (pixel != previousPixel) {
+                            previousPixel = pixel;
+                            index = palette.indexOf(pixel);
+                        }
+                        row[x] = (byte) index;
+                    }
+                }
+                case RGBA -> {
+                    int i = 0;
+                    for (int x = 0; x < width; x++) {
+                        int pixel = pixels[x];
+                        row[i++] = (byte) (pixel >>> 16);
+                        row[i++] = (byte) (pixel >>> 8);
+                        row[i++] = (byte) pixel;
+                        row[i++] = (byte) (pixel >>> 24);
+                    }
+                }
+                default -> {
+                    int i = 0;
+                    for (int x = 0; x < width; x++) {
+                        int pixel = pixels[x];
+                        row[i++] = (byte) (pixel >>> 16);
+                        row[i++] = (byte) (pixel >>> 8);
+                        row[i++] = (byte) pixel;
+                    }
+                }
+            }
+        }
+
+        // Filters current against previous; adaptive keeps the candidate with the smallest sum
+        // of absolute values, the usual libpng heuristic
+        private byte[] filterRow(int rowBytes, int bpp) {
+            Filter filter = format.filter();
+            if (filter != Filter.ADAPTIVE) {
+                applyFilter(filter.ordinal(), candidates[0], rowBytes, bpp);
+                return candidates[0];
+            }
+            byte[] best = null;
+            int bestSum = Integer.MAX_VALUE;
+            for (int type : ADAPTIVE_ORDER) {
+                applyFilter(type, candidates[type], rowBytes, bpp);
+                int sum = sumOfAbsolutes(candidates[type], rowBytes);
+                if (sum < bestSum) {
+                    bestSum = sum;
+                    best = candidates[type];
+                    if (sum == 0) {
+                        break; // Nothing beats a row of zeros
+                    }
+                }
+            }
+            return best;
+        }
+
+        private void applyFilter(int type, byte[] target, int rowBytes, int bpp) {
+            target[0] = (byte) type;
+            switch (type) {
+                case 1 -> sub(current, target, rowBytes, bpp);
+                case 2 -> up(current, previous, target, rowBytes);
+                case 3 -> average(current, previous, target, rowBytes, bpp);
+                case 4 -> paeth(current, previous, target, rowBytes, bpp);
+                default -> System.arraycopy(current, 0, target, 1, rowBytes);
+            }
+        }
+    }
+
+    // One small loop per filter type, with the first pixel split off, so the JIT can compile each
+    // without branches on the filter or the row position
+
+    private static void sub(byte[] cur, byte[] target, int rowBytes, int bpp) {
+        System.arraycopy(cur, 0, target, 1, Math.min(bpp, rowBytes));
+        for (int i = bpp; i < rowBytes; i++) {
+            target[i + 1] = (byte) (cur[i] - cur[i - bpp]);
+        }
+    }
+
+    private static void up(byte[] cur, byte[] prev, byte[] target, int rowBytes) {
+        for (int i = 0; i < rowBytes; i++) {
+            target[i + 1] = (byte) (cur[i] - prev[i]);
+        }
+    }
+
+    private static void average(byte[] cur, byte[] prev, byte[] target, int rowBytes, int bpp) {
+        int head = Math.min(bpp, rowBytes);
+        for (int i = 0; i < head; i++) {
+            target[i + 1] = (byte) (cur[i] - ((prev[i] & 0xff) >>> 1));
+        }
+        for (int i = bpp; i < rowBytes; i++) {
+            target[i + 1] = (byte) (cur[i] - (((cur[i - bpp] & 0xff) + (prev[i] & 0xff)) >>> 1));
+        }
+    }
+
+    private static void paeth(byte[] cur, byte[] prev, byte[] target, int rowBytes, int bpp) {
+        // With a and c zero the predictor is always b
+        int head = Math.min(bpp, rowBytes);
+        for (int i = 0; i < head; i++) {
+            target[i + 1] = (byte) (cur[i] - prev[i]);
+        }
+        for (int i = bpp; i < rowBytes; i++) {
+            int a = cur[i - bpp] & 0xff;
+            int b = prev[i] & 0xff;
+            int c = prev[i - bpp] & 0xff;
+            int pa = Math.abs(b - c);
+            int pb = Math.abs(a - c);
+            int pc = Math.abs(a + b - c - c);
+            target[i + 1] = (byte) (cur[i] - (pa <= pb && pa <= pc ? a : pb <= pc ? b : c));
+        }
+    }
+
+    private static int sumOfAbsolutes(byte[] filtered, int rowBytes) {
+        int sum = 0;
+        for (int i = 1; i <= rowBytes; i++) {
+            sum += Math.abs(filtered[i]);
+        }
+        return sum;
+    }
+}
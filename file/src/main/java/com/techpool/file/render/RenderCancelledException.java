@@ -0,0 +1,9 @@
+package com.techpool.file.render;
+
+import java.util.concurrent.CancellationException;
+
+public class RenderCancelledException extends CancellationException {
+    public RenderCancelledException(String reason) {
+        super(reason);
+    }
+}
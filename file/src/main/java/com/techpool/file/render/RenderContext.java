@@ -0,0 +1,135 @@
+package com.techpool.file.render;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+// Per-render state that follows the work from the requesting thread onto the scheduler's workers,
+// so handlers deep in the call stack can report progress and notice cancellation without
+// threading extra parameters. Without a current context every call here is a no-op.
+public class RenderContext {
+    private static final ThreadLocal<RenderContext> CURRENT = new ThreadLocal<>();
+    private static final ScheduledExecutorService DEADLINES = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "render-deadlines");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final RenderListener listener;
+    private final long deadlineNanos;
+    private final List<Runnable> cancelHooks = new CopyOnWriteArrayList<>();
+    private final ScheduledFuture<?> deadlineTimer;
+    private volatile String cancelReason;
+
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    public RenderContext(RenderListener listener) {
+        this(listener, 0);
+    }
+
+    // A positive timeout cancels the render that long from now, even while it sits in a queue
+    public RenderContext(RenderListener listener, long timeoutMillis) {
+        this.listener = listener;
+        if (timeoutMillis > 0) {
+            this.deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            this.deadlineTimer = DEADLINES.schedule(() -> cancel("deadline of " + timeoutMillis + " ms exceeded"),
+                    timeoutMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.deadlineNanos = Long.MAX_VALUE;
+            this.deadlineTimer = null;
+        }
+    }
+
+    public static RenderContext current() {
+        return CURRENT.get();
+    }
+
+    // Makes this the current context until the scope is closed
+    public Scope open() {
+        RenderContext previous = CURRENT.get();
+        CURRENT.set(this);
+        return () -> {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        };
+    }
+
+    public void cancel(String reason) {
+        synchronized (this) {
+            if (cancelReason != null) {
+                return;
+            }
+            cancelReason = reason;
+        }
+        if (deadlineTimer != null) {
+            deadlineTimer.cancel(false);
+        }
+        for (Runnable hook : cancelHooks) {
+            hook.run();
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelReason != null;
+    }
+
+    public boolean isPastDeadline() {
+        return System.nanoTime() - deadlineNanos > 0;
+    }
+
+    // The render is over either way; stops the deadline timer
+    public void done() {
+        if (deadlineTimer != null) {
+            deadlineTimer.cancel(false);
+        }
+    }
+
+    // Runs the hook on cancellation (at once if already cancelled) until the returned scope closes;
+    // used for work that checkpoints cannot reach, such as an external process
+    public Scope onCancel(Runnable hook) {
+        cancelHooks.add(hook);
+        if (isCancelled()) {
+            hook.run();
+        }
+        return () -> cancelHooks.remove(hook);
+    }
+
+    // Called between units of work (a page, a resize, an encode); throws once the render has
+    // been cancelled or is past its deadline, so abandoned work stops within one unit
+    public static void checkpoint() {
+        RenderContext context = CURRENT.get();
+        if (context == null) {
+            return;
+        }
+        if (context.cancelReason == null && System.nanoTime() - context.deadlineNanos > 0) {
+            context.cancel("deadline exceeded");
+        }
+        String reason = context.cancelReason;
+        if (reason != null) {
+            throw new RenderCancelledException(reason);
+        }
+    }
+
+    public static void stage(String stage) {
+        RenderContext context = CURRENT.get();
+        if (context != null && context.listener != null) {
+            context.listener.onStage(stage);
+        }
+    }
+
+    public static void pageRendered(int pagesRendered, int totalPages) {
+        RenderContext context = CURRENT.get();
+        if (context != null && context.listener != null) {
+            context.listener.onPageRendered(pagesRendered, totalPages);
+        }
+    }
+}
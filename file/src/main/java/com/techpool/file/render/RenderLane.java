@@ -0,0 +1,203 @@
+package com.techpool.file.render;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// A fixed set of workers for one resource. Queued work is taken strictly by priority class and
+// round-robin across tenants within a class, so one tenant's backlog cannot starve another's.
+class RenderLane {
+    private static final Logger log = LoggerFactory.getLogger(RenderLane.class);
+    private static final int WAIT_SAMPLES = 1024;
+
+    private final RenderResource resource;
+    private final int slots;
+    // Slots only interactive work may take, so a click never waits behind a lane full of backfill
+    private final int interactiveReserve;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final Map<RenderPriority, ClassQueue> classes = new EnumMap<>(RenderPriority.class);
+    private final List<Thread> workers = new ArrayList<>();
+    private int runningDeferrable;
+    private boolean stopped;
+
+    RenderLane(RenderResource resource, int slots, int interactiveReserve) {
+        this.resource = resource;
+        this.slots = slots;
+        this.interactiveReserve = Math.max(0, Math.min(interactiveReserve, slots - 1));
+        for (RenderPriority priority : RenderPriority.values()) {
+            classes.put(priority, new ClassQueue());
+        }
+        for (int i = 1; i <= slots; i++) {
+            Thread worker = new Thread(this::workLoop, "render-" + resource.name().toLowerCase() + "-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+    }
+
+    void submit(RenderTask<?> task) {
+        lock.lock();
+        try {
+            if (stopped) {
+                task.future.completeExceptionally(new CancellationException("Render scheduler is shut down"));
+                return;
+            }
+            classes.get(task.priority).add(task);
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    List<RenderQueueStats> stats() {
+        List<RenderQueueStats> stats = new ArrayList<>();
+        lock.lock();
+        try {
+            for (Map.Entry<RenderPriority, ClassQueue> entry : classes.entrySet()) {
+                ClassQueue queue = entry.getValue();
+                long[] waits = Arrays.copyOf(queue.waitNanos, (int) Math.min(queue.waitCount, WAIT_SAMPLES));
+                Arrays.sort(waits);
+                stats.add(new RenderQueueStats(resource, entry.getKey(), slots, queue.size, queue.tenants.size(),
+                        queue.running, queue.completed, percentileMillis(waits, 50), percentileMillis(waits, 95),
+                        waits.length == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(waits[waits.length - 1])));
+            }
+        } finally {
+            lock.unlock();
+        }
+        return stats;
+    }
+
+    void shutdown() {
+        List<RenderTask<?>> dropped = new ArrayList<>();
+        lock.lock();
+        try {
+            stopped = true;
+            for (ClassQueue queue : classes.values()) {
+                queue.tenants.values().forEach(dropped::addAll);
+                queue.tenants.clear();
+                queue.size = 0;
+            }
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        workers.forEach(Thread::interrupt);
+        dropped.forEach(task -> task.future.completeExceptionally(
+                new CancellationException("Render scheduler is shut down")));
+    }
+
+    private void workLoop() {
+        while (true) {
+            RenderTask<?> task;
+            lock.lock();
+            try {
+                while ((task = next()) == null) {
+                    if (stopped) {
+                        return;
+                    }
+                    changed.await();
+                }
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                task.run();
+            } finally {
+                lock.lock();
+                try {
+                    ClassQueue queue = classes.get(task.priority);
+                    queue.running--;
+                    queue.completed++;
+                    if (task.priority != RenderPriority.INTERACTIVE) {
+                        runningDeferrable--;
+                    }
+                    changed.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    // Caller holds the lock
+    private RenderTask<?> next() {
+        for (RenderPriority priority : RenderPriority.values()) {
+            if (priority != RenderPriority.INTERACTIVE && runningDeferrable >= slots - interactiveReserve) {
+                break;
+            }
+            ClassQueue queue = classes.get(priority);
+            RenderTask<?> task = queue.poll();
+            if (task != null) {
+                queue.running++;
+                queue.recordWait(System.nanoTime() - task.enqueuedNanos);
+                if (priority != RenderPriority.INTERACTIVE) {
+                    runningDeferrable++;
+                }
+                return task;
+            }
+        }
+        return null;
+    }
+
+    private static long percentileMillis(long[] sorted, int percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return TimeUnit.NANOSECONDS.toMillis(sorted[Math.max(0, index)]);
+    }
+
+    private static class ClassQueue {
+        // Insertion order is the round-robin order; a tenant goes to the back after each turn
+        final Map<String, ArrayDeque<RenderTask<?>>> tenants = new LinkedHashMap<>();
+        final long[] waitNanos = new long[WAIT_SAMPLES];
+        long waitCount;
+        int size;
+        int running;
+        long completed;
+
+        void add(RenderTask<?> task) {
+            tenants.computeIfAbsent(task.tenant, tenant -> new ArrayDeque<>()).add(task);
+            size++;
+        }
+
+        RenderTask<?> poll() {
+            while (size > 0) {
+                Iterator<Map.Entry<String, ArrayDeque<RenderTask<?>>>> turn = tenants.entrySet().iterator();
+                Map.Entry<String, ArrayDeque<RenderTask<?>>> entry = turn.next();
+                ArrayDeque<RenderTask<?>> queue = entry.getValue();
+                RenderTask<?> task = queue.poll();
+                turn.remove();
+                if (!queue.isEmpty()) {
+                    tenants.put(entry.getKey(), queue);
+                }
+                size--;
+                if (!task.isCancelled()) {
+                    return task;
+                }
+                log.debug("Dropping cancelled render for tenant {}", task.tenant);
+            }
+            return null;
+        }
+
+        void recordWait(long nanos) {
+            waitNanos[(int) (waitCount % WAIT_SAMPLES)] = nanos;
+            waitCount++;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.techpool.file.render;
+
+// One row per handler type with an adaptive limit
+public class RenderLimitStats {
+    private final String type;
+    private final double limit;
+    private final int inFlight;
+    private final long recentMillis;
+    private final long baselineMillis;
+    private final long completed;
+    private final long rejected;
+
+    RenderLimitStats(String type, double limit, int inFlight, long recentMillis, long baselineMillis, long completed,
+            long rejected) {
+        this.type = type;
+        this.limit = limit;
+        this.inFlight = inFlight;
+        this.recentMillis = recentMillis;
+        this.baselineMillis = baselineMillis;
+        this.completed = completed;
+        this.rejected = rejected;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public double getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    public long getRecentMillis() {
+        return recentMillis;
+    }
+
+    public long getBaselineMillis() {
+        return baselineMillis;
+    }
+
+    public long getCompleted() {
+        return completed;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+}
@@ -0,0 +1,202 @@
+package com.techpool.file.render;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// Adaptive (AIMD) concurrency limit per handler type. While recent latency stays within tolerance x
+// the type's long-term latency the limit grows by 1/limit per render, so about one per limit's
+// worth of renders; once recent latency rises above that, or a render runs past its deadline, it
+// shrinks by the backoff factor. Both latencies are decaying averages: a single large document
+// does not register as overload, and the baseline is not pinned to the fastest render ever seen.
+// Requests over the limit are shed rather than queued, so a burst cannot push every caller past
+// its timeout, and a saturated LibreOffice lane has no effect on how many image previews are admitted.
+@Component
+public class RenderLimiter {
+    private static final Logger log = LoggerFactory.getLogger(RenderLimiter.class);
+    // Weight of each render in the recent average (about the last 5) and in the baseline (about the last 100)
+    private static final double RECENT_WEIGHT = 0.2;
+    private static final double BASELINE_WEIGHT = 0.01;
+
+    private final boolean enabled;
+    private final double initialLimit;
+    private final double minLimit;
+    private final double maxLimit;
+    private final double tolerance;
+    private final double backoff;
+    private final Map<String, Limit> limits = new ConcurrentHashMap<>();
+
+    public RenderLimiter(@Value("${render.limit.enabled:true}") boolean enabled,
+            @Value("${render.limit.initial:8}") int initialLimit,
+            @Value("${render.limit.min:1}") int minLimit,
+            @Value("${render.limit.max:64}") int maxLimit,
+            @Value("${render.limit.latency-tolerance:2.0}") double tolerance,
+            @Value("${render.limit.backoff:0.75}") double backoff) {
+        this.enabled = enabled;
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.initialLimit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+        this.tolerance = tolerance;
+        this.backoff = backoff;
+    }
+
+    // Throws RenderOverloadedException when the type is at its limit
+    public Permit acquire(String type) {
+        return acquire(type, System.nanoTime());
+    }
+
+    Permit acquire(String type, long nowNanos) {
+        Limit limit = limits.computeIfAbsent(type, Limit::new);
+        if (!limit.tryAcquire()) {
+            long retryAfter = limit.retryAfterSeconds();
+            log.warn("Shedding {} render: limit {} reached, retry in {} s", type, limit.getLimit(), retryAfter);
+            throw new RenderOverloadedException(type, retryAfter);
+        }
+        return new Permit(limit, nowNanos);
+    }
+
+    public List<RenderLimitStats> getStats() {
+        List<RenderLimitStats> stats = new ArrayList<>();
+        for (Limit limit : limits.values()) {
+            stats.add(limit.stats());
+        }
+        stats.sort(Comparator.comparing(RenderLimitStats::getType));
+        return stats;
+    }
+
+    // Exactly one of the methods below should be called, once the render is over
+    public static final class Permit {
+        private final Limit limit;
+        private final long startNanos;
+        private boolean released;
+
+        private Permit(Limit limit, long startNanos) {
+            this.limit = limit;
+            this.startNanos = startNanos;
+        }
+
+        // Rendered: the latency feeds the limit
+        public void completed() {
+            release(Outcome.COMPLETED, System.nanoTime());
+        }
+
+        // Ran out of time: counts as overload whatever the latency
+        public void dropped() {
+            release(Outcome.DROPPED, System.nanoTime());
+        }
+
+        // Failed or was cancelled by the client; says nothing about load, just frees the slot
+        public void ignored() {
+            release(Outcome.IGNORED, System.nanoTime());
+        }
+
+        void completed(long endNanos) {
+            release(Outcome.COMPLETED, endNanos);
+        }
+
+        void dropped(long endNanos) {
+            release(Outcome.DROPPED, endNanos);
+        }
+
+        private void release(Outcome outcome, long endNanos) {
+            synchronized (this) {
+                if (released) {
+                    return;
+                }
+                released = true;
+            }
+            limit.release(startNanos, endNanos, outcome);
+        }
+    }
+
+    private enum Outcome {
+        COMPLETED, DROPPED, IGNORED
+    }
+
+    private final class Limit {
+        private final String type;
+        private double limit = initialLimit;
+        private int inFlight;
+        private double recentNanos;
+        private double baselineNanos;
+        private long lastDecreaseNanos = System.nanoTime();
+        private long completed;
+        private long rejected;
+
+        Limit(String type) {
+            this.type = type;
+        }
+
+        synchronized boolean tryAcquire() {
+            if (enabled && inFlight >= (int) limit) {
+                rejected++;
+                return false;
+            }
+            inFlight++;
+            return true;
+        }
+
+        synchronized void release(long startNanos, long endNanos, Outcome outcome) {
+            inFlight--;
+            if (outcome == Outcome.IGNORED) {
+                return;
+            }
+            long latency = endNanos - startNanos;
+            boolean overloaded = outcome == Outcome.DROPPED;
+            if (outcome == Outcome.COMPLETED) {
+                completed++;
+                if (completed == 1) {
+                    recentNanos = latency;
+                    baselineNanos = latency;
+                } else {
+                    recentNanos += (latency - recentNanos) * RECENT_WEIGHT;
+                    overloaded = recentNanos > baselineNanos * tolerance;
+                    // While overloaded the latencies include queueing, which must not become the new
+                    // normal; at the minimum limit a type that really got slower is followed upwards
+                    if (!overloaded || limit <= minLimit) {
+                        baselineNanos += (latency - baselineNanos) * BASELINE_WEIGHT;
+                    }
+                }
+            }
+
+            if (overloaded) {
+                // Back off once per generation of renders, not once per slow render already in
+                // flight when the limit was last cut
+                if (startNanos - lastDecreaseNanos > 0) {
+                    double previous = limit;
+                    limit = Math.max(minLimit, limit * backoff);
+                    lastDecreaseNanos = endNanos;
+                    log.info("{} render limit {} -> {} (recent {} ms, baseline {} ms)", type, (int) previous,
+                            (int) limit, TimeUnit.NANOSECONDS.toMillis((long) recentNanos),
+                            TimeUnit.NANOSECONDS.toMillis((long) baselineNanos));
+                }
+            } else if (inFlight + 1 >= limit / 2) {
+                // Only grow a limit that is actually being used
+                limit = Math.min(maxLimit, limit + 1 / limit);
+            }
+        }
+
+        // Roughly when a slot frees up: one baseline render, at least a second
+        synchronized long retryAfterSeconds() {
+            long seconds = (long) Math.ceil(baselineNanos * tolerance / TimeUnit.SECONDS.toNanos(1));
+            return Math.min(60, Math.max(1, seconds));
+        }
+
+        synchronized int getLimit() {
+            return (int) limit;
+        }
+
+        synchronized RenderLimitStats stats() {
+            return new RenderLimitStats(type, Math.round(limit * 100) / 100.0, inFlight,
+                    TimeUnit.NANOSECONDS.toMillis((long) recentNanos),
+                    TimeUnit.NANOSECONDS.toMillis((long) baselineNanos), completed, rejected);
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.techpool.file.render;
+
+public interface RenderListener {
+    // Coarse milestones: "rendering", "libreoffice-started", "libreoffice-finished", ...
+    void onStage(String stage);
+
+    void onPageRendered(int pagesRendered, int totalPages);
+}
@@ -0,0 +1,21 @@
+package com.techpool.file.render;
+
+// Thrown instead of queueing when a handler type is at its concurrency limit
+public class RenderOverloadedException extends RuntimeException {
+    private final String type;
+    private final long retryAfterSeconds;
+
+    public RenderOverloadedException(String type, long retryAfterSeconds) {
+        super(type + " renders are at their concurrency limit");
+        this.type = type;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,11 @@
+package com.techpool.file.render;
+
+// Declaration order is dequeue order: a free slot always goes to the first non-empty class
+public enum RenderPriority {
+    // Someone is waiting on the response
+    INTERACTIVE,
+    // Full renders kicked off ahead of need (progressive previews, uploads)
+    PRERENDER,
+    // Bulk backfills
+    BACKGROUND
+}
@@ -0,0 +1,69 @@
+package com.techpool.file.render;
+
+// One row per resource lane and priority class
+public class RenderQueueStats {
+    private final RenderResource resource;
+    private final RenderPriority priority;
+    private final int slots;
+    private final int queued;
+    private final int queuedTenants;
+    private final int running;
+    private final long completed;
+    private final long waitP50Millis;
+    private final long waitP95Millis;
+    private final long waitMaxMillis;
+
+    RenderQueueStats(RenderResource resource, RenderPriority priority, int slots, int queued, int queuedTenants,
+            int running, long completed, long waitP50Millis, long waitP95Millis, long waitMaxMillis) {
+        this.resource = resource;
+        this.priority = priority;
+        this.slots = slots;
+        this.queued = queued;
+        this.queuedTenants = queuedTenants;
+        this.running = running;
+        this.completed = completed;
+        this.waitP50Millis = waitP50Millis;
+        this.waitP95Millis = waitP95Millis;
+        this.waitMaxMillis = waitMaxMillis;
+    }
+
+    public RenderResource getResource() {
+        return resource;
+    }
+
+    public RenderPriority getPriority() {
+        return priority;
+    }
+
+    public int getSlots() {
+        return slots;
+    }
+
+    public int getQueued() {
+        return queued;
+    }
+
+    public int getQueuedTenants() {
+        return queuedTenants;
+    }
+
+    public int getRunning() {
+        return running;
+    }
+
+    public long getCompleted() {
+        return completed;
+    }
+
+    public long getWaitP50Millis() {
+        return waitP50Millis;
+    }
+
+    public long getWaitP95Millis() {
+        return waitP95Millis;
+    }
+
+    public long getWaitMaxMillis() {
+        return waitMaxMillis;
+    }
+}
@@ -0,0 +1,13 @@
+package com.techpool.file.render;
+
+import com.techpool.file.util.FileTypeHandler;
+
+// Renders are limited per resource: Java2D/PDFBox work by cores, LibreOffice by process slots
+public enum RenderResource {
+    CPU,
+    LIBREOFFICE;
+
+    public static RenderResource of(FileTypeHandler handler) {
+        return handler.usesLibreOffice() ? LIBREOFFICE : CPU;
+    }
+}
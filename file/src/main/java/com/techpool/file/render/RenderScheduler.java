@@ -0,0 +1,89 @@
+package com.techpool.file.render;
+
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+// Every preview render goes through here instead of running on whichever thread asked for it.
+// Interactive requests are dequeued ahead of pre-renders and backfills, and LibreOffice
+// conversions get their own, smaller slot count than the CPU-bound renderers.
+@Service
+public class RenderScheduler {
+    private static final Logger log = LoggerFactory.getLogger(RenderScheduler.class);
+    public static final String TENANT_HEADER = "X-Tenant-Id";
+    public static final String DEFAULT_TENANT = "default";
+    private static final int MAX_TENANT_LENGTH = 64;
+
+    private final Map<RenderResource, RenderLane> lanes = new EnumMap<>(RenderResource.class);
+
+    public RenderScheduler(@Value("${render.cpu-slots:0}") int cpuSlots,
+            @Value("${render.libreoffice-slots:2}") int libreOfficeSlots,
+            @Value("${render.interactive-reserved-slots:1}") int interactiveReserve) {
+        int cpu = cpuSlots > 0 ? cpuSlots : Runtime.getRuntime().availableProcessors();
+        int libreOffice = Math.max(1, libreOfficeSlots);
+        lanes.put(RenderResource.CPU, new RenderLane(RenderResource.CPU, cpu, interactiveReserve));
+        lanes.put(RenderResource.LIBREOFFICE,
+                new RenderLane(RenderResource.LIBREOFFICE, libreOffice, interactiveReserve));
+        log.info("Render scheduler with {} CPU slots and {} LibreOffice slots", cpu, libreOffice);
+    }
+
+    public <T> CompletableFuture<T> submit(RenderResource resource, RenderPriority priority, String tenant,
+            Callable<T> work) {
+        RenderTask<T> task = new RenderTask<>(priority, normalizeTenant(tenant), work);
+        lanes.get(resource).submit(task);
+        return task.future;
+    }
+
+    // Blocks the caller until its turn comes and the render finishes. Must not be called from
+    // inside a render, which would hold one slot while waiting for another.
+    public <T> T run(RenderResource resource, RenderPriority priority, String tenant, Callable<T> work)
+            throws Exception {
+        CompletableFuture<T> future = submit(resource, priority, tenant, work);
+        try {
+            return future.get();
+        } catch (CancellationException e) {
+            // Report why, when it was this render's own context that gave up
+            RenderContext.checkpoint();
+            throw e;
+        } catch (InterruptedException e) {
+            // Still queued: drop it. Already running: let it finish, nobody reads the result.
+            future.cancel(false);
+            Thread.currentThread().interrupt();
+            throw e;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    public List<RenderQueueStats> getStats() {
+        List<RenderQueueStats> stats = new ArrayList<>();
+        lanes.values().forEach(lane -> stats.addAll(lane.stats()));
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        lanes.values().forEach(RenderLane::shutdown);
+    }
+
+    private static String normalizeTenant(String tenant) {
+        if (tenant == null || tenant.isBlank()) {
+            return DEFAULT_TENANT;
+        }
+        String trimmed = tenant.trim();
+        return trimmed.length() > MAX_TENANT_LENGTH ? trimmed.substring(0, MAX_TENANT_LENGTH) : trimmed;
+    }
+}
@@ -0,0 +1,50 @@
+package com.techpool.file.render;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+
+class RenderTask<T> {
+    final RenderPriority priority;
+    final String tenant;
+    final CompletableFuture<T> future = new CompletableFuture<>();
+    final long enqueuedNanos = System.nanoTime();
+    private final Callable<T> work;
+    // Captured on the submitting thread, re-established on the worker
+    private final RenderContext context = RenderContext.current();
+
+    RenderTask(RenderPriority priority, String tenant, Callable<T> work) {
+        this.priority = priority;
+        this.tenant = tenant;
+        this.work = work;
+        if (context != null) {
+            // Cancelled while queued: never starts. Running: the caller stops waiting at once and
+            // the work itself stops at its next checkpoint.
+            context.onCancel(() -> future.cancel(false));
+        }
+    }
+
+    boolean isCancelled() {
+        return future.isDone();
+    }
+
+    void run() {
+        if (future.isDone()) {
+            return;
+        }
+        try {
+            if (context == null) {
+                future.complete(work.call());
+                return;
+            }
+            try (RenderContext.Scope scope = context.open()) {
+                RenderContext.checkpoint();
+                RenderContext.stage("rendering");
+                future.complete(work.call());
+            }
+        } catch (Throwable t) {
+            // Errors from a renderer (OOM on a huge page, a broken native lib) must not take
+            // the worker thread down with them
+            future.completeExceptionally(t);
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package com.techpool.file.storage;
+
+import com.techpool.file.StorageLayout;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// Bounded local-disk copy of remote objects, so renderers keep working on plain files.
+// Entries are evicted least recently used first once the byte budget is exceeded; concurrent
+// misses for the same name share one download.
+public class ReadThroughCache implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(ReadThroughCache.class);
+    // A file handed out this recently may not have been opened yet, so it is never evicted
+    private static final long EVICTION_GRACE_MILLIS = 30_000;
+    private static final int SHARD_DEPTH = 2;
+
+    private final Path root;
+    private final Path tempDir;
+    private final long maxBytes;
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, CompletableFuture<Path>> loading = new ConcurrentHashMap<>();
+    private final ExecutorService prefetchPool;
+    private long footprintBytes;
+
+    @FunctionalInterface
+    public interface Loader {
+        void load(Path target) throws IOException;
+    }
+
+    public ReadThroughCache(Path root, long maxBytes, int prefetchThreads) throws IOException {
+        this.root = root.toAbsolutePath().normalize();
+        this.tempDir = this.root.resolve("tmp");
+        this.maxBytes = maxBytes;
+        Files.createDirectories(tempDir);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.prefetchPool = Executors.newFixedThreadPool(Math.max(1, prefetchThreads), r -> {
+            Thread thread = new Thread(r, "cache-prefetch-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        loadExisting();
+    }
+
+    public Path get(String name, Loader loader) throws IOException {
+        Path cached = lookup(name);
+        if (cached != null) {
+            return cached;
+        }
+
+        CompletableFuture<Path> mine = new CompletableFuture<>();
+        CompletableFuture<Path> inFlight = loading.putIfAbsent(name, mine);
+        if (inFlight != null) {
+            return await(inFlight);
+        }
+        try {
+            // A download may have finished between the lookup and claiming the slot
+            Path path = lookup(name);
+            if (path == null) {
+                path = fetch(name, loader);
+            }
+            mine.complete(path);
+            return path;
+        } catch (IOException | RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(name, mine);
+        }
+    }
+
+    // Warms the cache in the background; failures only matter to whoever asks for it later
+    public void prefetch(String name, Loader loader) {
+        if (lookup(name) != null || loading.containsKey(name)) {
+            return;
+        }
+        prefetchPool.execute(() -> {
+            try {
+                get(name, loader);
+            } catch (IOException | RuntimeException e) {
+                log.debug("Prefetch of {} failed", name, e);
+            }
+        });
+    }
+
+    // Takes over a file that is already local (e.g. a fresh upload) without downloading it again
+    public Path adopt(String name, Path file) throws IOException {
+        Path target = pathFor(name);
+        Files.createDirectories(target.getParent());
+        Files.move(file, target, StandardCopyOption.REPLACE_EXISTING);
+        register(name, target, Files.size(target));
+        return target;
+    }
+
+    public void invalidate(String name) {
+        Entry removed;
+        synchronized (this) {
+            removed = entries.remove(name);
+            if (removed != null) {
+                footprintBytes -= removed.size;
+            }
+        }
+        if (removed != null) {
+            deleteQuietly(removed.path);
+        }
+    }
+
+    public synchronized long getFootprintBytes() {
+        return footprintBytes;
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    @Override
+    public void close() {
+        prefetchPool.shutdownNow();
+    }
+
+    private Path lookup(String name) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(name);
+        }
+        if (entry == null) {
+            return null;
+        }
+        // Stat outside the monitor: disk I/O under it would pin a virtual thread's carrier
+        if (!Files.exists(entry.path)) {
+            synchronized (this) {
+                if (entries.remove(name, entry)) {
+                    footprintBytes -= entry.size;
+                }
+            }
+            return null;
+        }
+        synchronized (this) {
+            entry.lastAccess = System.currentTimeMillis();
+        }
+        return entry.path;
+    }
+
+    private Path fetch(String name, Loader loader) throws IOException {
+        Path temp = Files.createTempFile(tempDir, "fetch-", ".tmp");
+        try {
+            long start = System.currentTimeMillis();
+            loader.load(temp);
+            Path target = pathFor(name);
+            Files.createDirectories(target.getParent());
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            long size = Files.size(target);
+            log.debug("Cached {} ({} bytes) in {} ms", name, size, System.currentTimeMillis() - start);
+            register(name, target, size);
+            return target;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private void register(String name, Path path, long size) {
+        List<Path> evicted = new ArrayList<>();
+        synchronized (this) {
+            Entry previous = entries.put(name, new Entry(path, size, System.currentTimeMillis()));
+            if (previous != null) {
+                footprintBytes -= previous.size;
+            }
+            footprintBytes += size;
+
+            long now = System.currentTimeMillis();
+            Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+            while (footprintBytes > maxBytes && eldest.hasNext()) {
+                Entry candidate = eldest.next().getValue();
+                if (now - candidate.lastAccess < EVICTION_GRACE_MILLIS) {
+                    // Access order: everything after this is even more recent
+                    break;
+                }
+                eldest.remove();
+                footprintBytes -= candidate.size;
+                evicted.add(candidate.path);
+            }
+        }
+        evicted.forEach(this::deleteQuietly);
+    }
+
+    private Path pathFor(String name) {
+        Path path = StorageLayout.SHARDED.resolve(root, name, SHARD_DEPTH).normalize();
+        if (!path.startsWith(root) || path.startsWith(tempDir)) {
+            throw new IllegalArgumentException("Invalid cache name: " + name);
+        }
+        return path;
+    }
+
+    // Rebuilds the LRU order from file times so a restart keeps a warm cache
+    private void loadExisting() throws IOException {
+        List<Object[]> found = new ArrayList<>();
+        try (Stream<Path> files = Files.walk(root, SHARD_DEPTH + 1)) {
+            files.filter(path -> !path.startsWith(tempDir)).forEach(path -> {
+                try {
+                    BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                    if (attributes.isRegularFile()) {
+                        long lastUsed = Math.max(attributes.lastAccessTime().toMillis(),
+                                attributes.lastModifiedTime().toMillis());
+                        found.add(new Object[] { path, attributes.size(), lastUsed });
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+        try (Stream<Path> stale = Files.list(tempDir)) {
+            stale.forEach(this::deleteQuietly);
+        }
+
+        found.sort(Comparator.comparingLong(entry -> (Long) entry[2]));
+        synchronized (this) {
+            for (Object[] entry : found) {
+                Path path = (Path) entry[0];
+                // Loaded entries are old enough to evict right away if the budget shrank
+                entries.put(path.getFileName().toString(), new Entry(path, (Long) entry[1], 0));
+                footprintBytes += (Long) entry[1];
+            }
+        }
+        log.info("Read-through cache at {} holds {} files, {} bytes (budget {})", root, found.size(),
+                footprintBytes, maxBytes);
+    }
+
+    private static Path await(CompletableFuture<Path> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw e;
+        }
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Could not delete cached file {}", path, e);
+        }
+    }
+
+    private static class Entry {
+        final Path path;
+        final long size;
+        long lastAccess;
+
+        Entry(Path path, long size, long lastAccess) {
+            this.path = path;
+            this.size = size;
+            this.lastAccess = lastAccess;
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package com.techpool.file.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// S3-compatible object storage (AWS, MinIO, Ceph RGW) over path-style URLs with SigV4.
+// Large objects go up as parallel multipart uploads and come down as parallel ranged GETs.
+public class S3StorageBackend implements StorageBackend, AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(S3StorageBackend.class);
+    // S3 rejects multipart parts under 5 MiB (except the last)
+    static final long MIN_PART_SIZE = 5L * 1024 * 1024;
+    private static final Pattern UPLOAD_ID = Pattern.compile("<UploadId>([^<]+)</UploadId>");
+
+    private final URI endpoint;
+    private final String bucket;
+    private final long partSize;
+    private final S3RequestSigner signer;
+    private final HttpClient client;
+    private final ExecutorService transferPool;
+
+    public S3StorageBackend(URI endpoint, String bucket, String region, String accessKey, String secretKey,
+            long partSize, int transferThreads) {
+        this.endpoint = URI.create(endpoint.toString().replaceAll("/+$", ""));
+        this.bucket = bucket;
+        this.partSize = Math.max(MIN_PART_SIZE, partSize);
+        this.signer = new S3RequestSigner(accessKey, secretKey, region);
+        this.client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        AtomicInteger threadCount = new AtomicInteger();
+        this.transferPool = Executors.newFixedThreadPool(Math.max(1, transferThreads), r -> {
+            Thread thread = new Thread(r, "s3-transfer-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void put(String key, Path source) throws IOException {
+        long size = Files.size(source);
+        if (size <= partSize) {
+            HttpRequest.BodyPublisher body = HttpRequest.BodyPublishers.ofFile(source);
+            send(request("PUT", key, Map.of(), Map.of(), S3RequestSigner.UNSIGNED_PAYLOAD, body), key);
+            return;
+        }
+        putMultipart(key, source, size);
+    }
+
+    @Override
+    public void putBytes(String key, byte[] content) throws IOException {
+        send(request("PUT", key, Map.of(), Map.of(), S3RequestSigner.sha256Hex(content),
+                HttpRequest.BodyPublishers.ofByteArray(content)), key);
+    }
+
+    @Override
+    public InputStream openRange(String key, long offset, long length) throws IOException {
+        Map<String, String> headers = new LinkedHashMap<>();
+        if (offset > 0 || length >= 0) {
+            headers.put("range", "bytes=" + offset + "-" + (length >= 0 ? String.valueOf(offset + length - 1) : ""));
+        }
+        HttpRequest request = request("GET", key, Map.of(), headers, S3RequestSigner.EMPTY_PAYLOAD_HASH,
+                HttpRequest.BodyPublishers.noBody());
+        HttpResponse<InputStream> response = execute(request, HttpResponse.BodyHandlers.ofInputStream());
+        if (response.statusCode() / 100 != 2) {
+            try (InputStream body = response.body()) {
+                throw failure(response.statusCode(), key, new String(body.readNBytes(512), StandardCharsets.UTF_8));
+            }
+        }
+        return response.body();
+    }
+
+    @Override
+    public long size(String key) throws IOException {
+        HttpResponse<Void> response = head(key);
+        if (response.statusCode() / 100 != 2) {
+            throw failure(response.statusCode(), key, "");
+        }
+        return response.headers().firstValueAsLong("content-length")
+                .orElseThrow(() -> new IOException("No Content-Length for " + key));
+    }
+
+    @Override
+    public boolean exists(String key) throws IOException {
+        int status = head(key).statusCode();
+        if (status == 404) {
+            return false;
+        }
+        if (status / 100 != 2) {
+            throw failure(status, key, "");
+        }
+        return true;
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        HttpResponse<String> response = execute(request("DELETE", key, Map.of(), Map.of(),
+                S3RequestSigner.EMPTY_PAYLOAD_HASH, HttpRequest.BodyPublishers.noBody()),
+                HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() / 100 != 2 && response.statusCode() != 404) {
+            throw failure(response.statusCode(), key, response.body());
+        }
+    }
+
+    // Splits the object into part-sized ranges fetched concurrently and written in place
+    @Override
+    public void download(String key, Path target) throws IOException {
+        long size = size(key);
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            List<CompletableFuture<Void>> parts = new ArrayList<>();
+            for (long offset = 0; offset < size; offset += partSize) {
+                long start = offset;
+                long length = Math.min(partSize, size - offset);
+                parts.add(CompletableFuture.runAsync(() -> {
+                    try (InputStream in = openRange(key, start, length)) {
+                        writeAt(channel, in, start, length);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, transferPool));
+            }
+            join(parts);
+        }
+    }
+
+    @Override
+    public void close() {
+        transferPool.shutdownNow();
+    }
+
+    private void putMultipart(String key, Path source, long size) throws IOException {
+        HttpResponse<String> created = send(request("POST", key, Map.of("uploads", ""), Map.of(),
+                S3RequestSigner.EMPTY_PAYLOAD_HASH, HttpRequest.BodyPublishers.noBody()), key);
+        Matcher matcher = UPLOAD_ID.matcher(created.body());
+        if (!matcher.find()) {
+            throw new IOException("No UploadId in multipart response for " + key);
+        }
+        String uploadId = matcher.group(1);
+
+        int partCount = (int) ((size + partSize - 1) / partSize);
+        String[] etags = new String[partCount];
+        List<CompletableFuture<Void>> parts = new ArrayList<>(partCount);
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            for (int i = 0; i < partCount; i++) {
+                int partNumber = i + 1;
+                long offset = i * partSize;
+                int length = (int) Math.min(partSize, size - offset);
+                parts.add(CompletableFuture.runAsync(() -> {
+                    try {
+                        etags[partNumber - 1] = uploadPart(key, uploadId, partNumber, channel, offset, length);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, transferPool));
+            }
+            join(parts);
+        } catch (IOException | RuntimeException e) {
+            abortMultipart(key, uploadId);
+            throw e;
+        }
+
+        StringBuilder complete = new StringBuilder("<CompleteMultipartUpload>");
+        for (int i = 0; i < partCount; i++) {
+            complete.append("<Part><PartNumber>").append(i + 1).append("</PartNumber><ETag>")
+                    .append(etags[i]).append("</ETag></Part>");
+        }
+        complete.append("</CompleteMultipartUpload>");
+        byte[] body = complete.toString().getBytes(StandardCharsets.UTF_8);
+        HttpResponse<String> response = send(request("POST", key, Map.of("uploadId", uploadId), Map.of(),
+                S3RequestSigner.sha256Hex(body), HttpRequest.BodyPublishers.ofByteArray(body)), key);
+        // S3 can report a failed completion inside a 200 response
+        if (response.body().contains("<Error>")) {
+            throw new IOException("Multipart completion failed for " + key + ": " + response.body());
+        }
+        log.debug("Uploaded {} in {} parts", key, partCount);
+    }
+
+    private String uploadPart(String key, String uploadId, int partNumber, FileChannel channel, long offset,
+            int length) throws IOException {
+        // One part in memory per transfer thread; positional reads let parts share the channel
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of file uploading " + key);
+            }
+        }
+        HttpResponse<String> response = send(request("PUT", key,
+                Map.of("partNumber", String.valueOf(partNumber), "uploadId", uploadId), Map.of(),
+                S3RequestSigner.UNSIGNED_PAYLOAD, HttpRequest.BodyPublishers.ofByteArray(buffer.array())), key);
+        return response.headers().firstValue("etag")
+                .orElseThrow(() -> new IOException("No ETag for part " + partNumber + " of " + key));
+    }
+
+    private void abortMultipart(String key, String uploadId) {
+        try {
+            execute(request("DELETE", key, Map.of("uploadId", uploadId), Map.of(),
+                    S3RequestSigner.EMPTY_PAYLOAD_HASH, HttpRequest.BodyPublishers.noBody()),
+                    HttpResponse.BodyHandlers.discarding());
+        } catch (IOException e) {
+            log.warn("Could not abort multipart upload {} for {}", uploadId, key, e);
+        }
+    }
+
+    private HttpResponse<Void> head(String key) throws IOException {
+        return execute(request("HEAD", key, Map.of(), Map.of(), S3RequestSigner.EMPTY_PAYLOAD_HASH,
+                HttpRequest.BodyPublishers.noBody()), HttpResponse.BodyHandlers.discarding());
+    }
+
+    private HttpRequest request(String method, String key, Map<String, String> query, Map<String, String> extraHeaders,
+            String payloadHash, HttpRequest.BodyPublisher body) {
+        String path = "/" + S3RequestSigner.uriEncode(bucket, true) + "/" + S3RequestSigner.uriEncode(key, false);
+        String queryString = query.entrySet().stream()
+                .map(e -> S3RequestSigner.uriEncode(e.getKey(), true)
+                        + (e.getValue().isEmpty() ? "" : "=" + S3RequestSigner.uriEncode(e.getValue(), true)))
+                .collect(Collectors.joining("&"));
+        URI uri = URI.create(endpoint + path + (queryString.isEmpty() ? "" : "?" + queryString));
+
+        Map<String, String> headers = new LinkedHashMap<>(extraHeaders);
+        headers.put("host", uri.getPort() == -1 ? uri.getHost() : uri.getHost() + ":" + uri.getPort());
+        headers.put("x-amz-date", S3RequestSigner.amzDate(Instant.now()));
+        headers.put("x-amz-content-sha256", payloadHash);
+        String authorization = signer.authorization(method, endpoint.getRawPath() + path, query, headers,
+                payloadHash);
+
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri)
+                .timeout(Duration.ofMinutes(5))
+                .method(method, body)
+                .header("Authorization", authorization);
+        // The client sets Host itself from the URI
+        headers.forEach((name, value) -> {
+            if (!name.equals("host")) {
+                builder.header(name, value);
+            }
+        });
+        return builder.build();
+    }
+
+    private HttpResponse<String> send(HttpRequest request, String key) throws IOException {
+        HttpResponse<String> response = execute(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() / 100 != 2) {
+            throw failure(response.statusCode(), key, response.body());
+        }
+        return response;
+    }
+
+    private <T> HttpResponse<T> execute(HttpRequest request, HttpResponse.BodyHandler<T> handler)
+            throws IOException {
+        try {
+            return client.send(request, handler);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted talking to object storage", e);
+        }
+    }
+
+    private static IOException failure(int status, String key, String body) {
+        if (status == 404) {
+            return new NoSuchFileException(key);
+        }
+        return new IOException("Object storage returned " + status + " for " + key
+                + (body == null || body.isEmpty() ? "" : ": " + body));
+    }
+
+    private static void writeAt(FileChannel channel, InputStream in, long position, long length) throws IOException {
+        byte[] array = new byte[64 * 1024];
+        ByteBuffer buffer = ByteBuffer.wrap(array);
+        long written = 0;
+        int read;
+        while (written < length && (read = in.read(array, 0, (int) Math.min(array.length, length - written))) != -1) {
+            buffer.clear().limit(read);
+            while (buffer.hasRemaining()) {
+                written += channel.write(buffer, position + written);
+            }
+        }
+        if (written != length) {
+            throw new IOException("Short read: got " + written + " of " + length + " bytes");
+        }
+    }
+
+    private static void join(List<CompletableFuture<Void>> futures) throws IOException {
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            futures.forEach(future -> future.cancel(true));
+            if (e.getCause() instanceof UncheckedIOException unchecked) {
+                throw unchecked.getCause();
+            }
+            throw e;
+        }
+    }
+}
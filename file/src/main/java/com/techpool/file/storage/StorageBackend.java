@@ -0,0 +1,44 @@
+package com.techpool.file.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+// Remote durable home of uploaded content, fronted by a local read-through cache so renderers
+// still get files. Local storage needs no backend: FileStorageService keeps originals on disk
+// itself, hard-linked to content-addressed blobs. Keys are '/'-separated relative names such as
+// "blobs/<sha256>"; a missing key is reported as NoSuchFileException.
+public interface StorageBackend {
+
+    void put(String key, Path source) throws IOException;
+
+    void putBytes(String key, byte[] content) throws IOException;
+
+    // length < 0 reads to the end of the object
+    InputStream openRange(String key, long offset, long length) throws IOException;
+
+    long size(String key) throws IOException;
+
+    boolean exists(String key) throws IOException;
+
+    void delete(String key) throws IOException;
+
+    default InputStream open(String key) throws IOException {
+        return openRange(key, 0, -1);
+    }
+
+    default byte[] readBytes(String key) throws IOException {
+        try (InputStream in = open(key)) {
+            return in.readAllBytes();
+        }
+    }
+
+    // Copies an object into a local file; backends may override this with parallel ranged reads
+    default void download(String key, Path target) throws IOException {
+        try (InputStream in = open(key)) {
+            Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.techpool.file.storage;
+
+import java.net.URI;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class StorageBackendConfig {
+
+    // file.storage.backend=local keeps everything under file.storage-dir; s3 stores content in
+    // an S3-compatible bucket and keeps only a bounded read-through cache on local disk. Local
+    // storage has no backend bean; FileStorageService gets an empty Optional.
+    public StorageBackendConfig(@Value("${file.storage.backend:local}") String backend) {
+        String name = backend.trim().toLowerCase();
+        if (!name.equals("local") && !name.equals("s3")) {
+            throw new IllegalStateException("Unknown file.storage.backend: " + backend);
+        }
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "file.storage.backend", havingValue = "s3")
+    public StorageBackend storageBackend(@Value("${file.storage.s3.endpoint:http://localhost:9000}") String endpoint,
+            @Value("${file.storage.s3.bucket:files}") String bucket,
+            @Value("${file.storage.s3.region:us-east-1}") String region,
+            @Value("${file.storage.s3.access-key:}") String accessKey,
+            @Value("${file.storage.s3.secret-key:}") String secretKey,
+            @Value("${file.storage.s3.part-size:8388608}") long partSize,
+            @Value("${file.storage.s3.transfer-threads:4}") int transferThreads) {
+        return new S3StorageBackend(URI.create(endpoint), bucket, region, accessKey, secretKey,
+                partSize, transferThreads);
+    }
+}
@@ -0,0 +1,162 @@
+package com.techpool.file.util;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.techpool.file.ThumbnailService;
+
+// Lists zip/jar contents from the central directory alone; nothing is decompressed
+public class ArchiveHandler implements FileTypeHandler {
+    private static final int MAX_TREE_ENTRIES = 20000;
+    private static final int VISIBLE_LINES = 38;
+    private static final int MAX_NAME_CHARS = 60;
+    private static final int LINE_HEIGHT = 18;
+
+    private final ThumbnailService thumbnailService;
+
+    public ArchiveHandler(ThumbnailService thumbnailService) {
+        this.thumbnailService = thumbnailService;
+    }
+
+    @Override
+    public boolean supports(String mimeType) {
+        return mimeType.equals("application/zip")
+                || mimeType.equals("application/x-zip-compressed")
+                || mimeType.equals("application/java-archive")
+                || mimeType.equals("application/x-java-archive")
+                || mimeType.equals("application/epub+zip");
+    }
+
+    @Override
+    public byte[] generatePreview(File file) throws IOException {
+        ZipCentralDirectory directory = ZipCentralDirectory.read(file, MAX_TREE_ENTRIES);
+
+        Node root = new Node("", true);
+        for (ZipCentralDirectory.Entry entry : directory.getEntries()) {
+            root.add(entry);
+        }
+        List<String[]> rows = new ArrayList<>();
+        root.collect(rows, 0, VISIBLE_LINES);
+
+        BufferedImage image = new BufferedImage(800, 800, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, 800, 800);
+
+        g.setColor(Color.BLACK);
+        g.setFont(new Font("Arial", Font.BOLD, 16));
+        g.drawString(file.getName(), 20, 28);
+        g.setFont(new Font("Arial", Font.PLAIN, 13));
+        g.setColor(Color.DARK_GRAY);
+        g.drawString(String.format("%,d entries, %s uncompressed, %s compressed (%s)",
+                directory.getTotalEntries(),
+                PreviewUtils.formatSize(directory.getTotalUncompressed()),
+                PreviewUtils.formatSize(directory.getTotalCompressed()),
+                ratio(directory.getTotalCompressed(), directory.getTotalUncompressed(), false)), 20, 50);
+
+        g.setFont(new Font(Font.MONOSPACED, Font.BOLD, 12));
+        g.setColor(Color.GRAY);
+        int y = 80;
+        g.drawString("Name", 20, y);
+        g.drawString("Size", 560, y);
+        g.drawString("Ratio", 680, y);
+        g.drawLine(20, y + 6, 780, y + 6);
+
+        g.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        for (String[] row : rows) {
+            y += LINE_HEIGHT;
+            g.setColor(row[0].endsWith("/") ? new Color(30, 80, 160) : Color.BLACK);
+            g.drawString(row[0], 20, y);
+            g.setColor(Color.DARK_GRAY);
+            g.drawString(row[1], 560, y);
+            g.drawString(row[2], 680, y);
+        }
+
+        if (directory.getTotalEntries() > directory.getEntries().size() || root.lineCount() > rows.size()) {
+            y += LINE_HEIGHT;
+            g.setColor(Color.GRAY);
+            g.drawString("... more entries not shown", 20, y);
+        }
+
+        g.dispose();
+        return thumbnailService.convertToByteArray(image);
+    }
+
+    private static String ratio(long compressed, long size, boolean stored) {
+        if (stored) return "stored";
+        if (size == 0) return "-";
+        return Math.round(100.0 - compressed * 100.0 / size) + "% saved";
+    }
+
+    private static final class Node {
+        private final String name;
+        private final boolean directory;
+        private final Map<String, Node> children = new LinkedHashMap<>();
+        private long size;
+        private long compressed;
+        private boolean stored;
+        private int files;
+
+        Node(String name, boolean directory) {
+            this.name = name;
+            this.directory = directory;
+        }
+
+        void add(ZipCentralDirectory.Entry entry) {
+            String[] parts = entry.getName().split("/");
+            Node node = this;
+            for (int i = 0; i < parts.length; i++) {
+                if (parts[i].isEmpty()) continue;
+                boolean last = i == parts.length - 1;
+                boolean isDirectory = !last || entry.isDirectory();
+                node.accumulate(entry);
+                node = node.children.computeIfAbsent(parts[i], n -> new Node(n, isDirectory));
+            }
+            node.accumulate(entry);
+            if (!entry.isDirectory()) {
+                node.stored = entry.isStored();
+            }
+        }
+
+        private void accumulate(ZipCentralDirectory.Entry entry) {
+            if (entry.isDirectory()) return;
+            size += entry.getSize();
+            compressed += entry.getCompressedSize();
+            files++;
+        }
+
+        // Depth-first rows (name, size, ratio), directories before files
+        void collect(List<String[]> rows, int depth, int limit) {
+            List<Node> sorted = new ArrayList<>(children.values());
+            sorted.sort(Comparator.comparing((Node n) -> !n.directory).thenComparing(n -> n.name));
+            for (Node child : sorted) {
+                if (rows.size() >= limit) return;
+                String label = "  ".repeat(depth) + child.name + (child.directory ? "/" : "");
+                if (label.length() > MAX_NAME_CHARS) label = label.substring(0, MAX_NAME_CHARS - 3) + "...";
+                String sizeText = PreviewUtils.formatSize(child.size)
+                        + (child.directory ? " (" + child.files + ")" : "");
+                rows.add(new String[] { label, sizeText, ratio(child.compressed, child.size, child.stored) });
+                if (child.directory) {
+                    child.collect(rows, depth + 1, limit);
+                }
+            }
+        }
+
+        int lineCount() {
+            int count = children.size();
+            for (Node child : children.values()) {
+                count += child.lineCount();
+            }
+            return count;
+        }
+    }
+}
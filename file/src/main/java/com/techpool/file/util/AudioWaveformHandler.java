@@ -0,0 +1,93 @@
+package com.techpool.file.util;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.techpool.file.ThumbnailService;
+
+public class AudioWaveformHandler implements FileTypeHandler {
+    private static final Logger log = LoggerFactory.getLogger(AudioWaveformHandler.class);
+    private static final int DEFAULT_WIDTH = 800;
+    private static final int DEFAULT_HEIGHT = 400;
+    private static final int HEADER_HEIGHT = 50;
+    private static final Color BACKGROUND = new Color(30, 30, 30);
+    private static final Color WAVE = new Color(86, 156, 214);
+
+    private final ThumbnailService thumbnailService;
+
+    public AudioWaveformHandler(ThumbnailService thumbnailService) {
+        this.thumbnailService = thumbnailService;
+    }
+
+    @Override
+    public boolean supports(String mimeType) {
+        return mimeType.startsWith("audio/");
+    }
+
+    @Override
+    public byte[] generatePreview(File file) throws IOException {
+        return generateWaveform(file, DEFAULT_WIDTH, DEFAULT_HEIGHT);
+    }
+
+    // Peaks are cached per file, so other sizes are drawn without decoding again
+    public byte[] generateWaveform(File file, int width, int height) throws IOException {
+        WaveformPeaks peaks;
+        try {
+            peaks = WaveformPeaks.forFile(file);
+        } catch (UnsupportedAudioFileException | IllegalArgumentException e) {
+            // No decoder installed for this format (e.g. MP3 without an SPI)
+            log.info("No audio decoder for {}: {}", file.getName(), e.getMessage());
+            return new GenericHandler(thumbnailService).generatePreview(file);
+        }
+
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+
+        g.setColor(BACKGROUND);
+        g.fillRect(0, 0, width, height);
+
+        AudioFormat format = peaks.getFormat();
+        g.setColor(Color.WHITE);
+        g.setFont(new Font("Arial", Font.BOLD, 14));
+        g.drawString(file.getName(), 20, 22);
+        g.setColor(Color.LIGHT_GRAY);
+        g.setFont(new Font("Arial", Font.PLAIN, 12));
+        g.drawString(String.format("%s, %.0f Hz, %d-bit, %d channel%s", formatDuration(peaks.getDurationSeconds()),
+                format.getSampleRate(), format.getSampleSizeInBits(), peaks.getChannels(),
+                peaks.getChannels() == 1 ? "" : "s"), 20, 40);
+
+        int channels = peaks.getChannels();
+        int laneHeight = (height - HEADER_HEIGHT) / Math.max(1, channels);
+        for (int c = 0; c < channels; c++) {
+            float[][] envelope = peaks.resample(c, width);
+            int center = HEADER_HEIGHT + c * laneHeight + laneHeight / 2;
+            int amplitude = laneHeight / 2 - 4;
+
+            g.setColor(Color.DARK_GRAY);
+            g.drawLine(0, center, width, center);
+            g.setColor(WAVE);
+            for (int x = 0; x < width; x++) {
+                int top = center - Math.round(envelope[1][x] * amplitude);
+                int bottom = center - Math.round(envelope[0][x] * amplitude);
+                g.drawLine(x, top, x, bottom);
+            }
+        }
+
+        g.dispose();
+        return thumbnailService.convertToByteArray(image);
+    }
+
+    private static String formatDuration(double seconds) {
+        long millis = Math.round(seconds * 1000);
+        return String.format("%d:%02d.%03d", millis / 60000, (millis / 1000) % 60, millis % 1000);
+    }
+}
@@ -2,15 +2,23 @@ package com.techpool.file.util;
 
 import java.awt.*;
 import java.awt.image.BufferedImage;
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import com.techpool.file.ThumbnailService;
+import com.techpool.file.util.CsvProfile.ColumnProfile;
 
 public class CsvHandler implements FileTypeHandler {
+    private static final int HEAD_ROWS = 25;
+    private static final int MAX_CELL_CHARS = 24;
+    private static final int MAX_WIDTH = 1600;
+    private static final int LINE_HEIGHT = 18;
+    private static final int MARGIN = 20;
+
     private final ThumbnailService thumbnailService;
+    private final CsvProfiler profiler = new CsvProfiler();
 
     public CsvHandler(ThumbnailService thumbnailService) {
         this.thumbnailService = thumbnailService;
@@ -18,33 +26,135 @@ public class CsvHandler implements FileTypeHandler {
 
     @Override
     public boolean supports(String mimeType) {
-        return mimeType.equals("text/csv") || mimeType.equals("application/csv");
+        return mimeType.equals("text/csv") || mimeType.equals("application/csv")
+                || mimeType.equals("text/tab-separated-values");
     }
 
     @Override
     public byte[] generatePreview(File file) throws IOException {
-        BufferedImage image = new BufferedImage(800, 800, BufferedImage.TYPE_INT_RGB);
+        CsvProfile profile = profiler.profile(file);
+        List<List<String>> head = profiler.readHead(file, HEAD_ROWS + 1);
+        List<ColumnProfile> columns = profile.getColumns();
+
+        // Drop the header row from the sample; the profile already carries the column names
+        boolean hasHeader = !head.isEmpty() && !columns.isEmpty()
+                && columns.get(0).getName().equals(head.get(0).isEmpty() ? null : head.get(0).get(0));
+        List<List<String>> rows = hasHeader ? head.subList(1, head.size()) : head;
+        if (rows.size() > HEAD_ROWS) rows = rows.subList(0, HEAD_ROWS);
+
+        // Table layout: a label gutter, then one fixed-width column per CSV column
+        String[] labels = { "", "type", "nulls", "min", "max" };
+        int gutterChars = Math.max(5, String.valueOf(rows.size()).length());
+        List<Integer> widths = new ArrayList<>();
+        for (int c = 0; c < columns.size(); c++) {
+            ColumnProfile column = columns.get(c);
+            int width = Math.max(4, Math.max(column.getName().length(), column.getType().name().length()));
+            width = Math.max(width, Math.max(column.getMin().length(), column.getMax().length()));
+            for (List<String> row : rows) {
+                if (c < row.size()) width = Math.max(width, row.get(c).length());
+            }
+            widths.add(Math.min(MAX_CELL_CHARS, width));
+        }
+
+        Font mono = new Font(Font.MONOSPACED, Font.PLAIN, 12);
+        Font monoBold = mono.deriveFont(Font.BOLD);
+        int charWidth = measureCharWidth(mono);
+
+        int usedChars = gutterChars + 1;
+        int shownColumns = 0;
+        while (shownColumns < widths.size()
+                && MARGIN * 2 + (usedChars + widths.get(shownColumns) + 1) * charWidth <= MAX_WIDTH) {
+            usedChars += widths.get(shownColumns) + 1;
+            shownColumns++;
+        }
+
+        int width = Math.max(800, MARGIN * 2 + usedChars * charWidth);
+        int tableTop = 70;
+        int height = tableTop + (labels.length + rows.size() + 2) * LINE_HEIGHT + MARGIN;
+
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
         Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
 
-        // Draw background and content
         g.setColor(Color.WHITE);
-        g.fillRect(0, 0, 800, 800);
+        g.fillRect(0, 0, width, height);
+
         g.setColor(Color.BLACK);
-        g.setFont(new Font("Arial", Font.PLAIN, 14));
-
-        int y = 50;
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line;
-            int lineCount = 0;
-            while ((line = reader.readLine()) != null && lineCount < 30) {
-                if (line.length() > 100) line = line.substring(0, 100) + "...";
-                g.drawString(line, 50, y);
-                y += 20;
-                lineCount++;
+        g.setFont(new Font("Arial", Font.BOLD, 16));
+        g.drawString(file.getName(), MARGIN, 28);
+        g.setFont(new Font("Arial", Font.PLAIN, 13));
+        g.setColor(Color.DARK_GRAY);
+        String delimiter = profile.getDelimiter() == '\t' ? "tab" : "'" + profile.getDelimiter() + "'";
+        String summary = String.format("%,d rows x %d columns, delimiter %s, profiled in %d ms",
+                profile.getRowCount(), profile.getColumnCount(), delimiter, profile.getScanMillis());
+        if (shownColumns < columns.size()) {
+            summary += ", " + (columns.size() - shownColumns) + " more columns not shown";
+        }
+        g.drawString(summary, MARGIN, 50);
+
+        // Column names and statistics band
+        g.setColor(new Color(232, 240, 254));
+        g.fillRect(0, tableTop, width, LINE_HEIGHT);
+        g.setColor(new Color(245, 245, 245));
+        g.fillRect(0, tableTop + LINE_HEIGHT, width, (labels.length - 1) * LINE_HEIGHT);
+
+        int y = tableTop;
+        for (int r = 0; r < labels.length; r++) {
+            y += LINE_HEIGHT;
+            g.setFont(r == 0 ? monoBold : mono);
+            g.setColor(Color.GRAY);
+            g.drawString(labels[r], MARGIN, y - 5);
+            int x = MARGIN + (gutterChars + 1) * charWidth;
+            for (int c = 0; c < shownColumns; c++) {
+                ColumnProfile column = columns.get(c);
+                String value = switch (r) {
+                    case 0 -> column.getName();
+                    case 1 -> column.getType().name().toLowerCase();
+                    case 2 -> String.format("%,d", column.getNullCount());
+                    case 3 -> column.getMin();
+                    default -> column.getMax();
+                };
+                g.setColor(r == 0 ? Color.BLACK : new Color(90, 90, 90));
+                g.drawString(fit(value, widths.get(c)), x, y - 5);
+                x += (widths.get(c) + 1) * charWidth;
+            }
+        }
+
+        g.setColor(Color.LIGHT_GRAY);
+        g.drawLine(MARGIN, y + 4, width - MARGIN, y + 4);
+        y += 8;
+
+        g.setFont(mono);
+        for (int r = 0; r < rows.size(); r++) {
+            y += LINE_HEIGHT;
+            List<String> row = rows.get(r);
+            g.setColor(Color.GRAY);
+            g.drawString(String.valueOf(r + 1), MARGIN, y - 5);
+            g.setColor(Color.BLACK);
+            int x = MARGIN + (gutterChars + 1) * charWidth;
+            for (int c = 0; c < shownColumns; c++) {
+                if (c < row.size()) {
+                    g.drawString(fit(row.get(c), widths.get(c)), x, y - 5);
+                }
+                x += (widths.get(c) + 1) * charWidth;
             }
         }
 
         g.dispose();
         return thumbnailService.convertToByteArray(image);
     }
-}
\ No newline at end of file
+
+    private static int measureCharWidth(Font font) {
+        BufferedImage scratch = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = scratch.createGraphics();
+        try {
+            return g.getFontMetrics(font).charWidth('M');
+        } finally {
+            g.dispose();
+        }
+    }
+
+    private static String fit(String value, int maxChars) {
+        return value.length() <= maxChars ? value : value.substring(0, maxChars - 1) + "~";
+    }
+}
@@ -0,0 +1,107 @@
+package com.techpool.file.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class CsvProfile {
+    private final long rowCount;
+    private final char delimiter;
+    private final List<ColumnProfile> columns;
+    private final long scanMillis;
+
+    public CsvProfile(long rowCount, char delimiter, List<ColumnProfile> columns, long scanMillis) {
+        this.rowCount = rowCount;
+        this.delimiter = delimiter;
+        this.columns = columns;
+        this.scanMillis = scanMillis;
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public int getColumnCount() {
+        return columns.size();
+    }
+
+    public char getDelimiter() {
+        return delimiter;
+    }
+
+    public List<ColumnProfile> getColumns() {
+        return columns;
+    }
+
+    public long getScanMillis() {
+        return scanMillis;
+    }
+
+    // Compact line format used to cache the profile in the file's extended attributes
+    public String serialize() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(rowCount).append('\t').append((int) delimiter).append('\t').append(scanMillis).append('\n');
+        for (ColumnProfile c : columns) {
+            sb.append(clean(c.name)).append('\t').append(c.type).append('\t').append(c.nullCount)
+                    .append('\t').append(clean(c.min)).append('\t').append(clean(c.max)).append('\n');
+        }
+        return sb.toString();
+    }
+
+    public static CsvProfile deserialize(String data) {
+        String[] lines = data.split("\n");
+        String[] head = lines[0].split("\t", -1);
+        List<ColumnProfile> columns = new ArrayList<>();
+        for (int i = 1; i < lines.length; i++) {
+            String[] f = lines[i].split("\t", -1);
+            columns.add(new ColumnProfile(f[0], ColumnType.valueOf(f[1]), Long.parseLong(f[2]), f[3], f[4]));
+        }
+        return new CsvProfile(Long.parseLong(head[0]), (char) Integer.parseInt(head[1]), columns,
+                Long.parseLong(head[2]));
+    }
+
+    private static String clean(String s) {
+        if (s == null) return "";
+        String flat = s.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+        return flat.length() > 64 ? flat.substring(0, 64) : flat;
+    }
+
+    public enum ColumnType {
+        EMPTY, INTEGER, DECIMAL, BOOLEAN, DATE, TEXT
+    }
+
+    public static class ColumnProfile {
+        private final String name;
+        private final ColumnType type;
+        private final long nullCount;
+        private final String min;
+        private final String max;
+
+        public ColumnProfile(String name, ColumnType type, long nullCount, String min, String max) {
+            this.name = name;
+            this.type = type;
+            this.nullCount = nullCount;
+            this.min = min;
+            this.max = max;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public ColumnType getType() {
+            return type;
+        }
+
+        public long getNullCount() {
+            return nullCount;
+        }
+
+        public String getMin() {
+            return min;
+        }
+
+        public String getMax() {
+            return max;
+        }
+    }
+}
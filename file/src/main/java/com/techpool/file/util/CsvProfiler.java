@@ -0,0 +1,614 @@
+package com.techpool.file.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.UserDefinedFileAttributeView;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.techpool.file.util.CsvProfile.ColumnProfile;
+import com.techpool.file.util.CsvProfile.ColumnType;
+
+// Profiles delimited files of any size by scanning memory-mapped chunks in parallel.
+// Memory use is bounded by the mapping window and the per-column statistics, not the file size.
+public class CsvProfiler {
+    private static final Logger log = LoggerFactory.getLogger(CsvProfiler.class);
+    private static final String PROFILE_ATTRIBUTE = "preview.csv-profile";
+    private static final int MAX_COLUMNS = 256;
+    private static final int MAX_TEXT_BYTES = 64;
+    private static final int MAX_CELL_BYTES = 256;
+    private static final int SAMPLE_BYTES = 64 * 1024;
+    private static final long WINDOW_SIZE = 16L * 1024 * 1024;
+    private static final long WINDOW_LOOKBEHIND = 64 * 1024;
+    private static final long MIN_CHUNK_SIZE = 8L * 1024 * 1024;
+
+    // Fallback for filesystems without user-defined attributes
+    private final Map<String, CsvProfile> memoryCache = Collections.synchronizedMap(
+            new LinkedHashMap<String, CsvProfile>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CsvProfile> eldest) {
+                    return size() > 256;
+                }
+            });
+
+    public CsvProfile profile(File file) throws IOException {
+        Path path = file.toPath();
+        String cacheKey = file.length() + ":" + file.lastModified();
+        CsvProfile cached = readCachedProfile(path, cacheKey);
+        if (cached != null) {
+            return cached;
+        }
+
+        long start = System.currentTimeMillis();
+        CsvProfile profile;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            Layout layout = detectLayout(channel);
+            List<ChunkScan> scans = scanParallel(channel, layout);
+
+            long rows = 0;
+            int columnCount = layout.header.size();
+            ColumnStats[] merged = new ColumnStats[MAX_COLUMNS];
+            for (ChunkScan scan : scans) {
+                rows += scan.rows;
+                columnCount = Math.max(columnCount, scan.maxColumns);
+                for (int i = 0; i < scan.maxColumns; i++) {
+                    if (scan.columns[i] == null) continue;
+                    if (merged[i] == null) merged[i] = new ColumnStats();
+                    merged[i].merge(scan.columns[i]);
+                }
+            }
+
+            List<ColumnProfile> columns = new ArrayList<>();
+            for (int i = 0; i < columnCount; i++) {
+                String name = i < layout.header.size() ? layout.header.get(i) : "Column " + (i + 1);
+                ColumnStats stats = merged[i] != null ? merged[i] : new ColumnStats();
+                // Rows that stop short of this column count as nulls too
+                long missing = rows - stats.nonNull - stats.nulls;
+                columns.add(stats.toProfile(name, stats.nulls + Math.max(0, missing), layout.charset));
+            }
+            profile = new CsvProfile(rows, (char) layout.delimiter, columns, System.currentTimeMillis() - start);
+        }
+
+        log.info("Profiled {} ({} rows, {} columns) in {} ms", file.getName(), profile.getRowCount(),
+                profile.getColumnCount(), profile.getScanMillis());
+        writeCachedProfile(path, cacheKey, profile);
+        return profile;
+    }
+
+    // First rows decoded as text, header row first
+    public List<List<String>> readHead(File file, int maxRows) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            Layout layout = detectLayout(channel);
+            MappedCursor cursor = new MappedCursor(channel);
+            List<List<String>> rows = new ArrayList<>();
+            long pos = layout.bomLength;
+            while (pos < cursor.length && rows.size() < maxRows) {
+                if (isBlankLine(cursor, pos)) {
+                    pos = skipLine(cursor, pos);
+                    continue;
+                }
+                List<String> row = new ArrayList<>();
+                pos = parseRecord(cursor, pos, layout.delimiter,
+                        (column, from, to, quoted) -> row.add(decodeField(cursor, from, to, quoted, layout.charset)));
+                rows.add(row);
+            }
+            return rows;
+        }
+    }
+
+    private List<ChunkScan> scanParallel(FileChannel channel, Layout layout) throws IOException {
+        long length = channel.size();
+        long span = length - layout.dataStart;
+        if (span <= 0) {
+            return List.of();
+        }
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        long chunkSize = Math.max(MIN_CHUNK_SIZE, (span + cores * 4L - 1) / (cores * 4L));
+        int chunks = (int) ((span + chunkSize - 1) / chunkSize);
+
+        try {
+            return IntStream.range(0, chunks)
+                    .parallel()
+                    .mapToObj(i -> {
+                        long from = layout.dataStart + i * chunkSize;
+                        long to = Math.min(length, from + chunkSize);
+                        try {
+                            return scanChunk(channel, layout, from, to);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    })
+                    .collect(Collectors.toList());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // Scans every record that starts inside [from, to); the last one may run past 'to'
+    private ChunkScan scanChunk(FileChannel channel, Layout layout, long from, long to) throws IOException {
+        MappedCursor cursor = new MappedCursor(channel);
+        ChunkScan scan = new ChunkScan(cursor);
+
+        long pos = from;
+        if (from > layout.dataStart && cursor.get(from - 1) != '\n') {
+            // Mid-record: the previous chunk owns it
+            pos = skipLine(cursor, from);
+        }
+
+        while (pos < to) {
+            if (isBlankLine(cursor, pos)) {
+                pos = skipLine(cursor, pos);
+                continue;
+            }
+            pos = parseRecord(cursor, pos, layout.delimiter, scan);
+            scan.rows++;
+        }
+        return scan;
+    }
+
+    private Layout detectLayout(FileChannel channel) throws IOException {
+        MappedCursor cursor = new MappedCursor(channel);
+        int sampleLength = (int) Math.min(SAMPLE_BYTES, cursor.length);
+        byte[] sample = new byte[sampleLength];
+        for (int i = 0; i < sampleLength; i++) {
+            sample[i] = cursor.get(i);
+        }
+
+        Layout layout = new Layout();
+        layout.bomLength = PreviewUtils.hasUtf8Bom(sample) ? 3 : 0;
+        layout.charset = PreviewUtils.detectCharset(sample);
+        layout.delimiter = detectDelimiter(sample, layout.bomLength);
+
+        List<String> first = new ArrayList<>();
+        long afterFirst = layout.bomLength < cursor.length
+                ? parseRecord(cursor, layout.bomLength, layout.delimiter,
+                        (column, from, to, quoted) -> first.add(decodeField(cursor, from, to, quoted, layout.charset)))
+                : layout.bomLength;
+
+        // A first row containing numbers is data, not a header
+        boolean hasHeader = first.stream().noneMatch(v -> !v.isBlank() && isNumeric(v.trim()));
+        if (hasHeader) {
+            layout.header = first;
+            layout.dataStart = afterFirst;
+        } else {
+            layout.header = List.of();
+            layout.dataStart = layout.bomLength;
+        }
+        return layout;
+    }
+
+    private static byte detectDelimiter(byte[] sample, int offset) {
+        byte[] candidates = { ',', ';', '\t', '|' };
+        int[] counts = new int[candidates.length];
+        boolean inQuotes = false;
+        for (int i = offset; i < sample.length && sample[i] != '\n'; i++) {
+            if (sample[i] == '"') inQuotes = !inQuotes;
+            if (inQuotes) continue;
+            for (int c = 0; c < candidates.length; c++) {
+                if (sample[i] == candidates[c]) counts[c]++;
+            }
+        }
+        int best = 0;
+        for (int c = 1; c < candidates.length; c++) {
+            if (counts[c] > counts[best]) best = c;
+        }
+        return candidates[best];
+    }
+
+    interface FieldSink {
+        void field(int column, long from, long to, boolean quoted) throws IOException;
+    }
+
+    // Parses one record starting at pos and returns the offset just past its line terminator
+    static long parseRecord(MappedCursor cursor, long pos, byte delimiter, FieldSink sink) throws IOException {
+        long length = cursor.length;
+        int column = 0;
+        long fieldStart = pos;
+        boolean inQuotes = false;
+        boolean quoted = false;
+
+        while (pos < length) {
+            byte b = cursor.get(pos);
+            if (inQuotes) {
+                if (b == '"') {
+                    if (pos + 1 < length && cursor.get(pos + 1) == '"') {
+                        pos++;
+                    } else {
+                        inQuotes = false;
+                    }
+                }
+            } else if (b == '"') {
+                inQuotes = true;
+                quoted = true;
+            } else if (b == delimiter) {
+                sink.field(column++, fieldStart, pos, quoted);
+                fieldStart = pos + 1;
+                quoted = false;
+            } else if (b == '\n') {
+                break;
+            }
+            pos++;
+        }
+
+        long fieldEnd = pos;
+        if (fieldEnd > fieldStart && cursor.get(fieldEnd - 1) == '\r') {
+            fieldEnd--;
+        }
+        sink.field(column, fieldStart, fieldEnd, quoted);
+        return pos + 1;
+    }
+
+    private static boolean isBlankLine(MappedCursor cursor, long pos) throws IOException {
+        byte b = cursor.get(pos);
+        return b == '\n' || (b == '\r' && (pos + 1 >= cursor.length || cursor.get(pos + 1) == '\n'));
+    }
+
+    private static long skipLine(MappedCursor cursor, long pos) throws IOException {
+        while (pos < cursor.length && cursor.get(pos) != '\n') {
+            pos++;
+        }
+        return pos + 1;
+    }
+
+    private static String decodeField(MappedCursor cursor, long from, long to, boolean quoted, Charset charset)
+            throws IOException {
+        if (quoted && to - from >= 2 && cursor.get(from) == '"' && cursor.get(to - 1) == '"') {
+            from++;
+            to--;
+        }
+        int length = (int) Math.min(MAX_CELL_BYTES, to - from);
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = cursor.get(from + i);
+        }
+        String value = new String(bytes, charset);
+        return quoted ? value.replace("\"\"", "\"") : value;
+    }
+
+    private static boolean isNumeric(String value) {
+        try {
+            Double.parseDouble(value);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private CsvProfile readCachedProfile(Path path, String cacheKey) {
+        try {
+            UserDefinedFileAttributeView view = Files.getFileAttributeView(path, UserDefinedFileAttributeView.class);
+            if (view != null && view.list().contains(PROFILE_ATTRIBUTE)) {
+                ByteBuffer buffer = ByteBuffer.allocate(view.size(PROFILE_ATTRIBUTE));
+                view.read(PROFILE_ATTRIBUTE, buffer);
+                buffer.flip();
+                String data = StandardCharsets.UTF_8.decode(buffer).toString();
+                if (data.startsWith(cacheKey + "\n")) {
+                    return CsvProfile.deserialize(data.substring(cacheKey.length() + 1));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            log.debug("Could not read cached CSV profile for {}", path, e);
+        }
+        return memoryCache.get(path + "|" + cacheKey);
+    }
+
+    private void writeCachedProfile(Path path, String cacheKey, CsvProfile profile) {
+        memoryCache.put(path + "|" + cacheKey, profile);
+        try {
+            UserDefinedFileAttributeView view = Files.getFileAttributeView(path, UserDefinedFileAttributeView.class);
+            if (view != null) {
+                view.write(PROFILE_ATTRIBUTE, StandardCharsets.UTF_8.encode(cacheKey + "\n" + profile.serialize()));
+            }
+        } catch (IOException | RuntimeException e) {
+            log.debug("Could not cache CSV profile in attributes of {}", path, e);
+        }
+    }
+
+    private static final class Layout {
+        Charset charset;
+        int bomLength;
+        byte delimiter;
+        List<String> header;
+        long dataStart;
+    }
+
+    // Sliding read-only mapping so a scan never maps more than two windows at a time. Fields are
+    // read forwards and then trimmed from the end, so a new window starts a little before the
+    // byte that moved it, and the one it replaced is kept for reads that step back further.
+    static final class MappedCursor {
+        private final FileChannel channel;
+        final long length;
+        private MappedByteBuffer window;
+        private long windowStart;
+        private int windowLength;
+        private MappedByteBuffer previous;
+        private long previousStart;
+        private int previousLength;
+
+        MappedCursor(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.length = channel.size();
+        }
+
+        byte get(long pos) throws IOException {
+            if (window == null || pos < windowStart || pos >= windowStart + windowLength) {
+                slide(pos);
+            }
+            return window.get((int) (pos - windowStart));
+        }
+
+        private void slide(long pos) throws IOException {
+            MappedByteBuffer replaced = window;
+            long replacedStart = windowStart;
+            int replacedLength = windowLength;
+            if (previous != null && pos >= previousStart && pos < previousStart + previousLength) {
+                window = previous;
+                windowStart = previousStart;
+                windowLength = previousLength;
+            } else {
+                windowStart = Math.max(0, pos - WINDOW_LOOKBEHIND);
+                windowLength = (int) Math.min(WINDOW_SIZE, length - windowStart);
+                window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowLength);
+            }
+            previous = replaced;
+            previousStart = replacedStart;
+            previousLength = replacedLength;
+        }
+    }
+
+    private static final class ChunkScan implements FieldSink {
+        private final MappedCursor cursor;
+        private final ColumnStats[] columns = new ColumnStats[MAX_COLUMNS];
+        private int maxColumns;
+        private long rows;
+
+        ChunkScan(MappedCursor cursor) {
+            this.cursor = cursor;
+        }
+
+        @Override
+        public void field(int column, long from, long to, boolean quoted) throws IOException {
+            if (column >= MAX_COLUMNS) return;
+            maxColumns = Math.max(maxColumns, column + 1);
+            ColumnStats stats = columns[column];
+            if (stats == null) {
+                stats = columns[column] = new ColumnStats();
+            }
+
+            if (quoted && to - from >= 2 && cursor.get(from) == '"' && cursor.get(to - 1) == '"') {
+                from++;
+                to--;
+            }
+            while (from < to && cursor.get(from) == ' ') from++;
+            while (to > from && cursor.get(to - 1) == ' ') to--;
+
+            if (isNullMarker(from, to)) {
+                stats.nulls++;
+                return;
+            }
+            stats.nonNull++;
+            stats.accept(cursor, from, to);
+        }
+
+        private boolean isNullMarker(long from, long to) throws IOException {
+            long length = to - from;
+            if (length == 0) return true;
+            if (length > 4) return false;
+            return equalsIgnoreCase(cursor, from, to, "na") || equalsIgnoreCase(cursor, from, to, "n/a")
+                    || equalsIgnoreCase(cursor, from, to, "null");
+        }
+    }
+
+    private static boolean equalsIgnoreCase(MappedCursor cursor, long from, long to, String ascii) throws IOException {
+        if (to - from != ascii.length()) return false;
+        for (int i = 0; i < ascii.length(); i++) {
+            if (Character.toLowerCase((char) cursor.get(from + i)) != ascii.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private static final class ColumnStats {
+        private long nonNull;
+        private long nulls;
+        private boolean integer = true;
+        private boolean decimal = true;
+        private boolean bool = true;
+        private boolean date = true;
+        private double numMin = Double.POSITIVE_INFINITY;
+        private double numMax = Double.NEGATIVE_INFINITY;
+        // Exact while every value is an integer; doubles stop at 2^53
+        private long intMin = Long.MAX_VALUE;
+        private long intMax = Long.MIN_VALUE;
+        private byte[] textMin;
+        private byte[] textMax;
+
+        void accept(MappedCursor cursor, long from, long to) throws IOException {
+            int length = (int) Math.min(to - from, MAX_TEXT_BYTES);
+
+            if (integer || decimal) {
+                double value = parseNumber(cursor, from, to);
+                if (Double.isNaN(value)) {
+                    integer = false;
+                    decimal = false;
+                } else {
+                    if (integer && !isInteger(cursor, from, to)) integer = false;
+                    if (integer) {
+                        long whole = parseInteger(cursor, from, to);
+                        intMin = Math.min(intMin, whole);
+                        intMax = Math.max(intMax, whole);
+                    }
+                    numMin = Math.min(numMin, value);
+                    numMax = Math.max(numMax, value);
+                }
+            }
+            if (bool) {
+                bool = equalsIgnoreCase(cursor, from, to, "true") || equalsIgnoreCase(cursor, from, to, "false");
+            }
+            if (date) {
+                date = isIsoDate(cursor, from, to);
+            }
+
+            // UTF-8 byte order matches code point order, so compare raw bytes
+            if (textMin == null || compare(cursor, from, length, textMin) < 0) {
+                textMin = copy(cursor, from, length);
+            }
+            if (textMax == null || compare(cursor, from, length, textMax) > 0) {
+                textMax = copy(cursor, from, length);
+            }
+        }
+
+        void merge(ColumnStats other) {
+            nonNull += other.nonNull;
+            nulls += other.nulls;
+            if (other.nonNull == 0) return;
+            integer &= other.integer;
+            decimal &= other.decimal;
+            bool &= other.bool;
+            date &= other.date;
+            numMin = Math.min(numMin, other.numMin);
+            numMax = Math.max(numMax, other.numMax);
+            intMin = Math.min(intMin, other.intMin);
+            intMax = Math.max(intMax, other.intMax);
+            if (textMin == null || compareBytes(other.textMin, textMin) < 0) textMin = other.textMin;
+            if (textMax == null || compareBytes(other.textMax, textMax) > 0) textMax = other.textMax;
+        }
+
+        ColumnProfile toProfile(String name, long nullCount, Charset charset) {
+            if (nonNull == 0) {
+                return new ColumnProfile(name, ColumnType.EMPTY, nullCount, "", "");
+            }
+            if (integer) {
+                return new ColumnProfile(name, ColumnType.INTEGER, nullCount,
+                        String.valueOf(intMin), String.valueOf(intMax));
+            }
+            if (decimal) {
+                return new ColumnProfile(name, ColumnType.DECIMAL, nullCount,
+                        String.valueOf(numMin), String.valueOf(numMax));
+            }
+            ColumnType type = bool ? ColumnType.BOOLEAN : date ? ColumnType.DATE : ColumnType.TEXT;
+            return new ColumnProfile(name, type, nullCount, new String(textMin, charset), new String(textMax, charset));
+        }
+
+        private static double parseNumber(MappedCursor cursor, long from, long to) throws IOException {
+            int length = (int) (to - from);
+            if (length > 32) return Double.NaN;
+
+            // Fast path for plain [-+]digits[.digits] without allocating
+            long pos = from;
+            byte first = cursor.get(pos);
+            boolean negative = first == '-';
+            if (negative || first == '+') pos++;
+            long mantissa = 0;
+            int digits = 0;
+            int scale = -1;
+            for (; pos < to; pos++) {
+                byte b = cursor.get(pos);
+                if (b >= '0' && b <= '9') {
+                    mantissa = mantissa * 10 + (b - '0');
+                    digits++;
+                    if (scale >= 0) scale++;
+                } else if (b == '.' && scale < 0) {
+                    scale = 0;
+                } else {
+                    break;
+                }
+            }
+            if (pos == to && digits > 0 && digits <= 15) {
+                double value = scale > 0 ? mantissa / Math.pow(10, scale) : mantissa;
+                return negative ? -value : value;
+            }
+
+            char[] chars = new char[length];
+            for (int i = 0; i < length; i++) {
+                char c = (char) cursor.get(from + i);
+                if (!(Character.isDigit(c) || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E')) {
+                    return Double.NaN;
+                }
+                chars[i] = c;
+            }
+            try {
+                return Double.parseDouble(new String(chars));
+            } catch (NumberFormatException e) {
+                return Double.NaN;
+            }
+        }
+
+        private static boolean isInteger(MappedCursor cursor, long from, long to) throws IOException {
+            long start = from;
+            byte first = cursor.get(from);
+            if (first == '-' || first == '+') start++;
+            if (start == to || to - start > 18) return false;
+            for (long p = start; p < to; p++) {
+                byte b = cursor.get(p);
+                if (b < '0' || b > '9') return false;
+            }
+            return true;
+        }
+
+        // Only after isInteger: at most 18 digits, so it cannot overflow
+        private static long parseInteger(MappedCursor cursor, long from, long to) throws IOException {
+            byte first = cursor.get(from);
+            boolean negative = first == '-';
+            long value = 0;
+            for (long p = negative || first == '+' ? from + 1 : from; p < to; p++) {
+                value = value * 10 + (cursor.get(p) - '0');
+            }
+            return negative ? -value : value;
+        }
+
+        // yyyy-MM-dd, optionally followed by a time part
+        private static boolean isIsoDate(MappedCursor cursor, long from, long to) throws IOException {
+            if (to - from < 10) return false;
+            for (int i = 0; i < 10; i++) {
+                byte b = cursor.get(from + i);
+                boolean ok = (i == 4 || i == 7) ? b == '-' : (b >= '0' && b <= '9');
+                if (!ok) return false;
+            }
+            return true;
+        }
+
+        private static int compare(MappedCursor cursor, long from, int length, byte[] other) throws IOException {
+            int n = Math.min(length, other.length);
+            for (int i = 0; i < n; i++) {
+                int diff = (cursor.get(from + i) & 0xFF) - (other[i] & 0xFF);
+                if (diff != 0) return diff;
+            }
+            return length - other.length;
+        }
+
+        private static int compareBytes(byte[] a, byte[] b) {
+            int n = Math.min(a.length, b.length);
+            for (int i = 0; i < n; i++) {
+                int diff = (a[i] & 0xFF) - (b[i] & 0xFF);
+                if (diff != 0) return diff;
+            }
+            return a.length - b.length;
+        }
+
+        private static byte[] copy(MappedCursor cursor, long from, int length) throws IOException {
+            byte[] bytes = new byte[length];
+            for (int i = 0; i < length; i++) {
+                bytes[i] = cursor.get(from + i);
+            }
+            return bytes;
+        }
+    }
+}
@@ -21,6 +21,8 @@ import org.slf4j.LoggerFactory;
 
 
 import com.techpool.file.ThumbnailService;
+import com.techpool.file.render.RenderCancelledException;
+import com.techpool.file.render.RenderContext;
 
 public class ExcelHandler implements FileTypeHandler {
     private static final Logger log = LoggerFactory.getLogger(ExcelHandler.class);
@@ -32,6 +34,11 @@ public class ExcelHandler implements FileTypeHandler {
         this.thumbnailService = thumbnailService;
     }
 
+    @Override
+    public boolean usesLibreOffice() {
+        return true;
+    }
+
     @Override
     public boolean supports(String mimeType) {
         return mimeType.contains("excel") || mimeType.contains("spreadsheetml");
@@ -41,11 +48,18 @@ public class ExcelHandler implements FileTypeHandler {
     public byte[] generatePreview(File file) throws IOException {
         try {
             return generateWithLibreOffice(file);
+        } catch (RenderCancelledException e) {
+            throw e;
         } catch (Exception e) {
             return generateWithPoi(file);
         }
     }
 
+    @Override
+    public byte[] generatePlaceholder(File file) throws IOException {
+        return PreviewUtils.officePlaceholder(file, thumbnailService);
+    }
+
     public byte[] generateWithLibreOffice(File file) throws Exception {
         Path tempDir = Files.createTempDirectory("lo-preview-");
         try {
@@ -64,15 +78,17 @@ public class ExcelHandler implements FileTypeHandler {
             pb.redirectErrorStream(true);
             pb.redirectOutput(ProcessBuilder.Redirect.appendTo(logFile));
 
+            RenderContext.stage("libreoffice-started");
             Process process = pb.start();
-            boolean success = process.waitFor(2, TimeUnit.MINUTES);
+            boolean success = LibreOfficeHelper.awaitExit(process, 2, TimeUnit.MINUTES);
+            RenderContext.stage("libreoffice-finished");
 
             // Read the log file regardless of success
             String logContent = Files.readString(logFile.toPath());
             log.info("LibreOffice conversion log:\n{}", logContent);
 
             if (!success) {
-                process.destroyForcibly();
+                ProcessUtils.destroyTree(process);
                 throw new IOException("Conversion timed out after 2 minutes");
             }
 
@@ -6,4 +6,15 @@ import java.io.IOException;
 public interface FileTypeHandler {
     boolean supports(String mimeType);
     byte[] generatePreview(File file) throws IOException;
-}
\ No newline at end of file
+
+    // Cheap first-paint image for handlers whose full render is slow.
+    // Returning null means the full preview is cheap enough to render inline.
+    default byte[] generatePlaceholder(File file) throws IOException {
+        return null;
+    }
+
+    // Renders that shell out to LibreOffice are scheduled against its own, smaller slot count
+    default boolean usesLibreOffice() {
+        return false;
+    }
+}
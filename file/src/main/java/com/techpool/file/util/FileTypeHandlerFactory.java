@@ -24,12 +24,16 @@ public class FileTypeHandlerFactory {
 
     private void initializeHandlers() {
         this.handlers = List.of(
+            new TiffHandler(thumbnailService),
             new ImageHandler(thumbnailService),
             new PdfHandler(thumbnailService),
             new WordHandler(thumbnailService, libreOfficePath),
             new ExcelHandler(thumbnailService, libreOfficePath, libreOfficeTimeout),
             new CsvHandler(thumbnailService),
             new XmlHandler(thumbnailService),
+            new ArchiveHandler(thumbnailService),
+            new AudioWaveformHandler(thumbnailService),
+            new TextHandler(thumbnailService),
             new GenericHandler(thumbnailService)
         );
     }
@@ -40,4 +44,12 @@ public class FileTypeHandlerFactory {
                 .findFirst()
                 .orElseThrow(() -> new IllegalArgumentException("No handler found for mimeType: " + mimeType));
     }
+
+    public <T extends FileTypeHandler> T getHandler(Class<T> type) {
+        return handlers.stream()
+                .filter(type::isInstance)
+                .map(type::cast)
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("No handler registered of type: " + type.getSimpleName()));
+    }
 }
\ No newline at end of file
@@ -17,18 +17,10 @@ public class ImageHandler extends BaseFileHandler {
 
     @Override
     public byte[] generatePreview(File file) throws IOException {
-        try {
-            BufferedImage image = ImageIO.read(file);
-            BufferedImage enhancedPreview = createEnhancedPreview(image, file);
-            return thumbnailService.convertToByteArray(enhancedPreview);
-        } catch (Exception e) {
-            return createErrorPreview("Image preview error: " + e.getMessage());
-        }
-    }
-
-    private byte[] createErrorPreview(String string) {
-        // TODO Auto-generated method stub
-        throw new UnsupportedOperationException("Unimplemented method 'createErrorPreview'");
+        // Unreadable bytes (e.g. application/octet-stream) get the info card; read errors propagate
+        BufferedImage image = ImageIO.read(file);
+        BufferedImage enhancedPreview = createEnhancedPreview(image, file);
+        return thumbnailService.convertToByteArray(enhancedPreview);
     }
 
     @Override
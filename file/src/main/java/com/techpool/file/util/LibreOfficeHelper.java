@@ -7,15 +7,20 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Stream;
 import javax.imageio.ImageIO;
 import org.apache.commons.io.FileUtils;
 
+import com.techpool.file.render.RenderContext;
+
 public class LibreOfficeHelper {
     public static List<BufferedImage> convertToImages(File inputFile, String libreOfficePath) throws Exception {
         Path tempDir = Files.createTempDirectory("lo-preview-");
         try {
+            RenderContext.stage("libreoffice-started");
             Process process = new ProcessBuilder(
                     libreOfficePath,
                     "--headless",
@@ -24,9 +29,11 @@ public class LibreOfficeHelper {
                     inputFile.getAbsolutePath())
                 .start();
             
-            if (!process.waitFor(2, TimeUnit.MINUTES)) {
+            if (!awaitExit(process, 2, TimeUnit.MINUTES)) {
+                ProcessUtils.destroyTree(process);
                 throw new IOException("Conversion timeout");
             }
+            RenderContext.stage("libreoffice-finished");
             
             List<BufferedImage> pages = new ArrayList<>();
             try (Stream<Path> files = Files.list(tempDir)) {
@@ -45,4 +52,23 @@ public class LibreOfficeHelper {
             FileUtils.deleteDirectory(tempDir.toFile());
         }
     }
+
+    // Waits through onExit() instead of Process.waitFor(), which parks inside a monitor and so
+    // would pin a virtual thread's carrier for the whole conversion. If the render is cancelled or
+    // runs past its deadline meanwhile, soffice is killed and the cancellation is thrown.
+    public static boolean awaitExit(Process process, long timeout, TimeUnit unit) throws InterruptedException {
+        RenderContext context = RenderContext.current();
+        try (RenderContext.Scope kill = context != null ? context.onCancel(() -> ProcessUtils.destroyTree(process)) : null) {
+            process.onExit().get(timeout, unit);
+        } catch (TimeoutException e) {
+            return false;
+        } catch (ExecutionException e) {
+            return !process.isAlive();
+        } catch (InterruptedException e) {
+            ProcessUtils.destroyTree(process);
+            throw e;
+        }
+        RenderContext.checkpoint();
+        return true;
+    }
 }
\ No newline at end of file
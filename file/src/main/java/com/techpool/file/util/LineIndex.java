@@ -0,0 +1,270 @@
+package com.techpool.file.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Sparse line-offset index: remembers where every STRIDE-th line starts, so any
+// window of lines is reached by seeking to a checkpoint and scanning at most STRIDE lines.
+public class LineIndex {
+    private static final int STRIDE = 1024;
+    private static final long SCAN_WINDOW = 64L * 1024 * 1024;
+    private static final int SAMPLE_BYTES = 64 * 1024;
+    private static final int MAX_LINE_BYTES = 4096;
+
+    private static final Map<String, LineIndex> CACHE = Collections.synchronizedMap(
+            new LinkedHashMap<String, LineIndex>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, LineIndex> eldest) {
+                    return size() > 64;
+                }
+            });
+
+    // Locks rather than synchronized: both are held across file reads, which would pin the
+    // carrier of a virtual request thread
+    private static final ReentrantLock CACHE_LOCK = new ReentrantLock();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Charset charset;
+    private final int bomLength;
+    private long[] checkpoints;
+    private int checkpointCount;
+    private long lineCount;
+    private long indexedBytes;
+    private long lastModified;
+    private boolean endsWithNewline;
+
+    private LineIndex(Charset charset, int bomLength) {
+        this.charset = charset;
+        this.bomLength = bomLength;
+        this.checkpoints = new long[64];
+    }
+
+    public static LineIndex forFile(File file) throws IOException {
+        String key = file.getCanonicalPath();
+        LineIndex index;
+        CACHE_LOCK.lock();
+        try {
+            index = CACHE.get(key);
+            long length = file.length();
+            if (index == null || length < index.indexedBytes
+                    || (length == index.indexedBytes && file.lastModified() != index.lastModified)) {
+                // New, truncated or rewritten in place: start over
+                byte[] sample = readSample(file);
+                index = new LineIndex(PreviewUtils.detectCharset(sample), PreviewUtils.hasUtf8Bom(sample) ? 3 : 0);
+                index.indexedBytes = index.bomLength;
+                index.addCheckpoint(index.bomLength);
+                CACHE.put(key, index);
+            }
+        } finally {
+            CACHE_LOCK.unlock();
+        }
+        // Appended data (a growing log) only needs the new tail scanned
+        index.extend(file);
+        return index;
+    }
+
+    public static byte[] readSample(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            int length = (int) Math.min(SAMPLE_BYTES, channel.size());
+            byte[] sample = new byte[length];
+            if (length > 0) {
+                channel.map(FileChannel.MapMode.READ_ONLY, 0, length).get(sample);
+            }
+            return sample;
+        }
+    }
+
+    public Charset getCharset() {
+        return charset;
+    }
+
+    public long getLineCount() {
+        lock.lock();
+        try {
+            return lineCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Lines [firstLine, firstLine + count), 1-based
+    public List<String> readLines(File file, long firstLine, int count) throws IOException {
+        lock.lock();
+        try {
+            return readLinesLocked(file, firstLine, count);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private List<String> readLinesLocked(File file, long firstLine, int count) throws IOException {
+        List<String> lines = new ArrayList<>();
+        if (firstLine < 1 || firstLine > lineCount || count <= 0) {
+            return lines;
+        }
+
+        long target = firstLine - 1;
+        int checkpoint = (int) Math.min(target / STRIDE, checkpointCount - 1);
+        long line = (long) checkpoint * STRIDE;
+        long pos = checkpoints[checkpoint];
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long length = Math.min(channel.size(), indexedBytes);
+            Window window = new Window(channel, length);
+
+            while (line < target && pos < length) {
+                pos = window.nextLineStart(pos);
+                line++;
+            }
+            while (lines.size() < count && pos < length) {
+                long end = window.nextLineStart(pos);
+                lines.add(window.decode(pos, end, charset));
+                pos = end;
+            }
+        }
+        return lines;
+    }
+
+    private void extend(File file) throws IOException {
+        lock.lock();
+        try {
+            extendLocked(file);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void extendLocked(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length <= indexedBytes) {
+                lastModified = file.lastModified();
+                return;
+            }
+
+            // A previously unterminated last line continues into the new data
+            if (indexedBytes > bomLength && !endsWithNewline) {
+                lineCount--;
+            }
+
+            long pos = indexedBytes;
+            while (pos < length) {
+                long size = Math.min(SCAN_WINDOW, length - pos);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, pos, size);
+                for (int i = 0; i < size; i++) {
+                    if (buffer.get(i) == '\n') {
+                        lineCount++;
+                        if (lineCount % STRIDE == 0) {
+                            addCheckpoint(pos + i + 1);
+                        }
+                    }
+                }
+                pos += size;
+            }
+
+            MappedByteBuffer last = channel.map(FileChannel.MapMode.READ_ONLY, length - 1, 1);
+            endsWithNewline = last.get(0) == '\n';
+            if (!endsWithNewline) {
+                lineCount++;
+            }
+            indexedBytes = length;
+            lastModified = file.lastModified();
+        }
+    }
+
+    private void addCheckpoint(long offset) {
+        if (checkpointCount == checkpoints.length) {
+            checkpoints = Arrays.copyOf(checkpoints, checkpoints.length * 2);
+        }
+        checkpoints[checkpointCount++] = offset;
+    }
+
+    // Reads head or tail windows without building an index
+    public static List<String> readHead(File file, Charset charset, int maxLines, int maxBytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long length = Math.min(channel.size(), maxBytes);
+            Window window = new Window(channel, length);
+            long pos = PreviewUtils.hasUtf8Bom(readSample(file)) ? 3 : 0;
+            List<String> lines = new ArrayList<>();
+            while (lines.size() < maxLines && pos < length) {
+                long end = window.nextLineStart(pos);
+                lines.add(window.decode(pos, end, charset));
+                pos = end;
+            }
+            return lines;
+        }
+    }
+
+    public static List<String> readTail(File file, Charset charset, int maxLines, int maxBytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long length = channel.size();
+            long start = Math.max(0, length - maxBytes);
+            Window window = new Window(channel, length);
+            long pos = start;
+            if (start > 0) {
+                // Skip the partial line cut by the window
+                pos = window.nextLineStart(start - 1);
+            }
+            List<String> lines = new ArrayList<>();
+            while (pos < length) {
+                long end = window.nextLineStart(pos);
+                lines.add(window.decode(pos, end, charset));
+                pos = end;
+            }
+            return lines.size() > maxLines ? lines.subList(lines.size() - maxLines, lines.size()) : lines;
+        }
+    }
+
+    private static final class Window {
+        private final FileChannel channel;
+        private final long length;
+        private MappedByteBuffer buffer;
+        private long start;
+        private long size;
+
+        Window(FileChannel channel, long length) {
+            this.channel = channel;
+            this.length = length;
+        }
+
+        byte get(long pos) throws IOException {
+            if (buffer == null || pos < start || pos >= start + size) {
+                start = pos;
+                size = Math.min(SCAN_WINDOW, length - pos);
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+            }
+            return buffer.get((int) (pos - start));
+        }
+
+        long nextLineStart(long pos) throws IOException {
+            while (pos < length && get(pos) != '\n') {
+                pos++;
+            }
+            return pos + 1;
+        }
+
+        String decode(long from, long nextLineStart, Charset charset) throws IOException {
+            long end = Math.min(nextLineStart, length);
+            while (end > from && (get(end - 1) == '\n' || get(end - 1) == '\r')) {
+                end--;
+            }
+            int size = (int) Math.min(MAX_LINE_BYTES, end - from);
+            byte[] bytes = new byte[size];
+            for (int i = 0; i < size; i++) {
+                bytes[i] = get(from + i);
+            }
+            return new String(bytes, charset);
+        }
+    }
+}
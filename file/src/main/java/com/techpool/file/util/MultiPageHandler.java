@@ -0,0 +1,13 @@
+package com.techpool.file.util;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+// Handlers for paged formats, used by the page-count and per-page preview paths
+public interface MultiPageHandler extends FileTypeHandler {
+    int getPageCount(File file) throws IOException;
+
+    // Renders a single page (0-based) scaled to fit within maxWidth x maxHeight
+    BufferedImage renderPage(File file, int pageIndex, int maxWidth, int maxHeight) throws IOException;
+}
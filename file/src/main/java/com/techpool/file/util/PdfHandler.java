@@ -1,25 +1,27 @@
 package com.techpool.file.util;
 
-import java.awt.Color;
-import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
 
 import org.apache.pdfbox.Loader;
 import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
 import org.apache.pdfbox.rendering.PDFRenderer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.techpool.file.BaseFileHandler;
 import com.techpool.file.ThumbnailService;
+import com.techpool.file.render.RenderCancelledException;
+import com.techpool.file.render.RenderContext;
 
-public class PdfHandler extends BaseFileHandler {
+public class PdfHandler extends BaseFileHandler implements MultiPageHandler {
     private static final Logger log = LoggerFactory.getLogger(PdfHandler.class);
     private static final float PDF_DPI = 150f;
+    private static final float PLACEHOLDER_DPI = 36f;
+    // Below this size a full render is quick enough to serve directly
+    private static final long PLACEHOLDER_MIN_BYTES = 2L * 1024 * 1024;
 
     public PdfHandler(ThumbnailService thumbnailService) {
         super(thumbnailService);
@@ -35,29 +37,62 @@ public class PdfHandler extends BaseFileHandler {
             }
 
             PDFRenderer renderer = new PDFRenderer(document);
-            List<BufferedImage> pages = new ArrayList<BufferedImage>();
+            int pageCount = document.getNumberOfPages();
+            float scale = PDF_DPI / 72f;
 
-            // Render all pages
-            for (int i = 0; i < document.getNumberOfPages(); i++) {
-                pages.add(renderer.renderImageWithDPI(i, PDF_DPI));
+            // Sizes are known up front, so every page is drawn into the composite as soon as it is
+            // rendered and only one is ever held; the composite starts gray and turns RGB at the
+            // first colour page
+            return generateMultiPagePreview(PdfPageRenderer.pageSizes(document, pageCount, scale),
+                    BufferedImage.TYPE_BYTE_GRAY, i -> {
+                        BufferedImage page = PdfPageRenderer.renderImage(document, renderer, i, scale);
+                        RenderContext.pageRendered(i + 1, pageCount);
+                        return page;
+                    }, file);
+        } catch (RenderCancelledException | IOException e) {
+            throw e;
+        } catch (Exception e) {
+            // Callers store whatever comes back under the content hash, so a failure must not look
+            // like a rendered page
+            throw new IOException("PDF preview failed: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public byte[] generatePlaceholder(File file) throws IOException {
+        if (file.length() < PLACEHOLDER_MIN_BYTES) {
+            return null;
+        }
+
+        try (PDDocument document = Loader.loadPDF(file)) {
+            if (document.getNumberOfPages() == 0) {
+                return null;
             }
+            BufferedImage firstPage = PdfPageRenderer.renderImage(document, new PDFRenderer(document), 0,
+                    PLACEHOLDER_DPI / 72f);
+            return thumbnailService.convertToByteArray(firstPage);
+        }
+    }
 
-            return generateMultiPagePreview(pages, file);
-        } catch (Exception e) {
-            log.error("PDF preview generation failed", e);
-            return createErrorImage("PDF preview error: " + e.getMessage());
+    @Override
+    public int getPageCount(File file) throws IOException {
+        try (PDDocument document = Loader.loadPDF(file)) {
+            return document.getNumberOfPages();
         }
     }
 
-    private byte[] createErrorImage(String message) throws IOException {
-        BufferedImage image = new BufferedImage(800, 200, BufferedImage.TYPE_INT_RGB);
-        Graphics2D g = image.createGraphics();
-        g.setColor(Color.WHITE);
-        g.fillRect(0, 0, 800, 200);
-        g.setColor(Color.RED);
-        g.drawString(message, 20, 100);
-        g.dispose();
-        return thumbnailService.convertToByteArray(image);
+    @Override
+    public BufferedImage renderPage(File file, int pageIndex, int maxWidth, int maxHeight) throws IOException {
+        try (PDDocument document = Loader.loadPDF(file)) {
+            if (pageIndex < 0 || pageIndex >= document.getNumberOfPages()) {
+                throw new IOException("Page " + (pageIndex + 1) + " out of range");
+            }
+            // PDF user space is 72 units per inch; never exceed the normal preview DPI
+            PDRectangle box = document.getPage(pageIndex).getCropBox();
+            float scale = Math.min(maxWidth / box.getWidth(), maxHeight / box.getHeight());
+            return PdfPageRenderer.renderImage(document, new PDFRenderer(document), pageIndex,
+                    Math.min(scale, PDF_DPI / 72f));
+        }
     }
 
     @Override
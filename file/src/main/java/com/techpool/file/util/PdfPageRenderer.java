@@ -0,0 +1,236 @@
+package com.techpool.file.util;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.pdfbox.contentstream.PDContentStream;
+import org.apache.pdfbox.contentstream.operator.Operator;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSBoolean;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSNumber;
+import org.apache.pdfbox.pdfparser.PDFStreamParser;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType3Font;
+import org.apache.pdfbox.pdmodel.graphics.PDXObject;
+import org.apache.pdfbox.pdmodel.graphics.color.PDColorSpace;
+import org.apache.pdfbox.pdmodel.graphics.color.PDDeviceCMYK;
+import org.apache.pdfbox.pdmodel.graphics.color.PDDeviceGray;
+import org.apache.pdfbox.pdmodel.graphics.color.PDDeviceRGB;
+import org.apache.pdfbox.pdmodel.graphics.color.PDICCBased;
+import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// Most of what we preview is black-and-white text. A page whose content stream provably paints
+// nothing but neutral colours is rasterized straight into an 8-bit gray image, a quarter of the
+// memory and fill work of RGB. Colour spaces alone are no proof either way: gray text is routinely
+// painted with rg, so colour operands count as neutral when their channels are equal. Pages the
+// scan cannot vouch for (colour images, shadings, patterns, annotations) are rendered in RGB and
+// still come back gray when every pixel turns out neutral, e.g. scans stored as RGB JPEGs.
+public class PdfPageRenderer {
+    private static final Logger log = LoggerFactory.getLogger(PdfPageRenderer.class);
+    // Largest channel spread still counted as gray; absorbs chroma noise in scanned JPEG pages
+    private static final int GRAY_TOLERANCE = 6;
+    // Same idea for colour operands, which run from 0 to 1
+    private static final float NEUTRAL_OPERAND_TOLERANCE = 0.005f;
+    private static final COSName INLINE_COLOR_SPACE = COSName.getPDFName("CS");
+    private static final COSName INLINE_IMAGE_MASK = COSName.getPDFName("IM");
+
+    public static BufferedImage renderImage(PDDocument document, PDFRenderer renderer, int pageIndex, float scale)
+            throws IOException {
+        if (isGrayPage(document.getPage(pageIndex))) {
+            return renderer.renderImage(pageIndex, scale, ImageType.GRAY);
+        }
+        return toGrayIfNeutral(renderer.renderImage(pageIndex, scale, ImageType.RGB));
+    }
+
+    // True only when every colour the page can paint is neutral. Reads operators and resource
+    // dictionaries; no image is decoded.
+    static boolean isGrayPage(PDPage page) {
+        try {
+            // Annotation appearances are painted too and are not part of the page content
+            return page.getAnnotations().isEmpty() && isGrayContent(page, page.getResources(), new HashSet<>());
+        } catch (IOException | RuntimeException e) {
+            log.debug("Could not scan page colours; rendering in RGB", e);
+            return false;
+        }
+    }
+
+    private static boolean isGrayContent(PDContentStream content, PDResources resources, Set<COSBase> visited)
+            throws IOException {
+        if (resources != null) {
+            // Type 3 glyphs are content streams of their own and may set colours
+            for (COSName name : resources.getFontNames()) {
+                if (resources.getFont(name) instanceof PDType3Font) {
+                    return false;
+                }
+            }
+        }
+        List<COSBase> operands = new ArrayList<>();
+        PDFStreamParser parser = new PDFStreamParser(content);
+        for (Object token = parser.parseNextToken(); token != null; token = parser.parseNextToken()) {
+            if (token instanceof Operator operator) {
+                if (!isGrayOperation(operator, operands, resources, visited)) {
+                    return false;
+                }
+                operands.clear();
+            } else if (token instanceof COSBase operand) {
+                operands.add(operand);
+            }
+        }
+        return true;
+    }
+
+    private static boolean isGrayOperation(Operator operator, List<COSBase> operands, PDResources resources,
+            Set<COSBase> visited) throws IOException {
+        switch (operator.getName()) {
+            case "rg", "RG", "k", "K", "sc", "SC", "scn", "SCN":
+                return isNeutral(operands);
+            case "cs", "CS":
+                return !operands.isEmpty() && operands.get(0) instanceof COSName name
+                        && isSupportedColorSpace(name, resources);
+            case "sh":
+                return false;
+            case "BI":
+                return isGrayInlineImage(operator.getImageParameters());
+            case "Do":
+                if (resources == null || operands.isEmpty() || !(operands.get(0) instanceof COSName name)) {
+                    return true;
+                }
+                PDXObject xobject = resources.getXObject(name);
+                if (xobject instanceof PDImageXObject image) {
+                    return isGrayImage(image);
+                }
+                if (xobject instanceof PDFormXObject form && visited.add(form.getCOSObject())) {
+                    PDResources formResources = form.getResources();
+                    return isGrayContent(form, formResources != null ? formResources : resources, visited);
+                }
+                return true;
+            default:
+                return true;
+        }
+    }
+
+    // The colour spaces left after isSupportedColorSpace are told apart by their component count:
+    // gray, RGB with equal channels, or CMYK with only black
+    private static boolean isNeutral(List<COSBase> operands) {
+        float[] values = new float[operands.size()];
+        for (int i = 0; i < values.length; i++) {
+            if (!(operands.get(i) instanceof COSNumber number)) {
+                return false; // A pattern name
+            }
+            values[i] = number.floatValue();
+        }
+        switch (values.length) {
+            case 1:
+                return true;
+            case 3:
+                return Math.max(values[0], Math.max(values[1], values[2]))
+                        - Math.min(values[0], Math.min(values[1], values[2])) <= NEUTRAL_OPERAND_TOLERANCE;
+            case 4:
+                return values[0] <= NEUTRAL_OPERAND_TOLERANCE && values[1] <= NEUTRAL_OPERAND_TOLERANCE
+                        && values[2] <= NEUTRAL_OPERAND_TOLERANCE;
+            default:
+                return false;
+        }
+    }
+
+    // Device and ICC spaces only; separations, indexed palettes, Lab and patterns bring their own colours
+    private static boolean isSupportedColorSpace(COSName name, PDResources resources) throws IOException {
+        switch (name.getName()) {
+            case "DeviceGray", "DeviceRGB", "DeviceCMYK":
+                return true;
+            default:
+                if (resources == null) {
+                    return false;
+                }
+                PDColorSpace space = resources.getColorSpace(name);
+                return space instanceof PDDeviceGray || space instanceof PDDeviceRGB || space instanceof PDDeviceCMYK
+                        || space instanceof PDICCBased;
+        }
+    }
+
+    private static boolean isGrayImage(PDImageXObject image) throws IOException {
+        if (image.isStencil()) {
+            return true; // Painted in the fill colour, which is checked on its own
+        }
+        // JPEG 2000 images may carry their colour space in the codestream; finding out means decoding
+        if (image.getCOSObject().getDictionaryObject(COSName.COLORSPACE) == null) {
+            return false;
+        }
+        PDColorSpace space = image.getColorSpace();
+        return space instanceof PDDeviceGray || (space instanceof PDICCBased && space.getNumberOfComponents() == 1);
+    }
+
+    private static boolean isGrayInlineImage(COSDictionary parameters) {
+        if (parameters == null) {
+            return false;
+        }
+        if (COSBoolean.TRUE.equals(parameters.getDictionaryObject(INLINE_IMAGE_MASK, COSName.IMAGE_MASK))) {
+            return true;
+        }
+        COSBase space = parameters.getDictionaryObject(INLINE_COLOR_SPACE, COSName.COLORSPACE);
+        return space instanceof COSName name && (name.getName().equals("G") || name.getName().equals("DeviceGray"));
+    }
+
+    // The same pixels as 8-bit luma if no pixel has a channel spread above GRAY_TOLERANCE, else
+    // the image itself
+    static BufferedImage toGrayIfNeutral(BufferedImage rgb) {
+        int width = rgb.getWidth();
+        int height = rgb.getHeight();
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            rgb.getRGB(0, y, width, 1, row, 0, width);
+            for (int pixel : row) {
+                int red = (pixel >> 16) & 0xff;
+                int green = (pixel >> 8) & 0xff;
+                int blue = pixel & 0xff;
+                int spread = Math.max(red, Math.max(green, blue)) - Math.min(red, Math.min(green, blue));
+                if (spread > GRAY_TOLERANCE) {
+                    return rgb;
+                }
+            }
+        }
+
+        BufferedImage gray = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        byte[] samples = new byte[width];
+        for (int y = 0; y < height; y++) {
+            rgb.getRGB(0, y, width, 1, row, 0, width);
+            for (int x = 0; x < width; x++) {
+                int pixel = row[x];
+                samples[x] = (byte) ((77 * ((pixel >> 16) & 0xff) + 150 * ((pixel >> 8) & 0xff) + 29 * (pixel & 0xff)
+                        + 128) >> 8);
+            }
+            gray.getRaster().setDataElements(0, y, width, 1, samples);
+        }
+        return gray;
+    }
+
+    // The pixel sizes PDFRenderer will produce at this scale, known without rendering: the crop
+    // box scaled and floored, turned by the page rotation
+    public static List<Dimension> pageSizes(PDDocument document, int pageCount, float scale) {
+        List<Dimension> sizes = new ArrayList<>(pageCount);
+        for (int i = 0; i < pageCount; i++) {
+            PDPage page = document.getPage(i);
+            PDRectangle box = page.getCropBox();
+            int width = (int) Math.max(Math.floor(box.getWidth() * scale), 1);
+            int height = (int) Math.max(Math.floor(box.getHeight() * scale), 1);
+            int rotation = page.getRotation();
+            sizes.add(rotation == 90 || rotation == 270 ? new Dimension(height, width) : new Dimension(width, height));
+        }
+        return sizes;
+    }
+}
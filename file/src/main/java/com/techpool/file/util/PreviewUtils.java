@@ -3,10 +3,32 @@ package com.techpool.file.util;
 import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import javax.imageio.ImageIO;
 
 import com.techpool.file.QrCodeUtil;
+import com.techpool.file.ThumbnailService;
 
 public class PreviewUtils {
+    // Thumbnails saved by Office (OOXML) and LibreOffice (ODF) inside the package
+    private static final String[] EMBEDDED_THUMBNAILS = {
+            "docProps/thumbnail.png",
+            "docProps/thumbnail.jpeg",
+            "docProps/thumbnail.jpg",
+            "Thumbnails/thumbnail.png"
+    };
+
     public static BufferedImage addQrCodeToPreview(BufferedImage originalImage, File file) {
         try {
             String qrContent = "File: " + file.getName() + "\n" +
@@ -52,4 +74,68 @@ public class PreviewUtils {
         if (filename.endsWith(".mp4") || filename.endsWith(".avi")) return "Video";
         return "File";
     }
+
+    public static BufferedImage readEmbeddedThumbnail(File file) {
+        try (ZipFile zip = new ZipFile(file)) {
+            for (String name : EMBEDDED_THUMBNAILS) {
+                ZipEntry entry = zip.getEntry(name);
+                if (entry == null) continue;
+                try (InputStream in = zip.getInputStream(entry)) {
+                    BufferedImage image = ImageIO.read(in);
+                    if (image != null) return image;
+                }
+            }
+        } catch (IOException e) {
+            // Legacy binary formats (.doc, .xls) are not zip packages
+        }
+        return null;
+    }
+
+    // LibreOffice takes seconds; show the thumbnail saved inside the document instead
+    public static byte[] officePlaceholder(File file, ThumbnailService thumbnailService) throws IOException {
+        BufferedImage thumbnail = readEmbeddedThumbnail(file);
+        if (thumbnail != null) {
+            return thumbnailService.convertToByteArray(thumbnail);
+        }
+        return new GenericHandler(thumbnailService).generatePreview(file);
+    }
+
+    // Composites of gray pages stay gray; one colour page makes the whole composite RGB
+    public static int compositeType(List<BufferedImage> pages) {
+        for (BufferedImage page : pages) {
+            if (page.getType() != BufferedImage.TYPE_BYTE_GRAY) {
+                return BufferedImage.TYPE_INT_RGB;
+            }
+        }
+        return BufferedImage.TYPE_BYTE_GRAY;
+    }
+
+    public static boolean hasUtf8Bom(byte[] sample) {
+        return sample.length >= 3 && sample[0] == (byte) 0xEF && sample[1] == (byte) 0xBB && sample[2] == (byte) 0xBF;
+    }
+
+    // UTF-8 when the sample decodes cleanly, otherwise Latin-1 which accepts any byte
+    public static Charset detectCharset(byte[] sample) {
+        if (hasUtf8Bom(sample)) {
+            return StandardCharsets.UTF_8;
+        }
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        // endOfInput=false tolerates a multi-byte sequence cut off by the sample boundary
+        boolean valid = !decoder.decode(ByteBuffer.wrap(sample), CharBuffer.allocate(sample.length), false).isError();
+        return valid ? StandardCharsets.UTF_8 : StandardCharsets.ISO_8859_1;
+    }
+
+    public static String formatSize(long bytes) {
+        if (bytes < 1024) return bytes + " B";
+        String[] units = { "KB", "MB", "GB", "TB" };
+        double value = bytes;
+        int unit = -1;
+        while (value >= 1024 && unit < units.length - 1) {
+            value /= 1024;
+            unit++;
+        }
+        return String.format("%.1f %s", value, units[unit]);
+    }
 }
\ No newline at end of file
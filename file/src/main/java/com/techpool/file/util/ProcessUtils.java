@@ -0,0 +1,11 @@
+package com.techpool.file.util;
+
+public class ProcessUtils {
+    // Kills the process and everything it started. soffice, for one, is a launcher that runs the
+    // real soffice.bin as a child, which destroyForcibly() on the launcher alone would leave behind.
+    // Children are collected first: once their parent is gone they are no longer its descendants.
+    public static void destroyTree(Process process) {
+        process.descendants().forEach(ProcessHandle::destroyForcibly);
+        process.destroyForcibly();
+    }
+}
@@ -0,0 +1,87 @@
+package com.techpool.file.util;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.List;
+
+import com.techpool.file.ThumbnailService;
+
+// Plain text, logs and source code. Only the bytes behind the visible lines are read:
+// the head for ordinary text, the tail for logs where the newest entries matter.
+public class TextHandler implements FileTypeHandler {
+    private static final int VISIBLE_LINES = 40;
+    private static final int WINDOW_BYTES = 64 * 1024;
+    private static final int MAX_LINE_CHARS = 100;
+    private static final int LINE_HEIGHT = 18;
+
+    private final ThumbnailService thumbnailService;
+
+    public TextHandler(ThumbnailService thumbnailService) {
+        this.thumbnailService = thumbnailService;
+    }
+
+    @Override
+    public boolean supports(String mimeType) {
+        return mimeType.startsWith("text/")
+                || mimeType.equals("application/json")
+                || mimeType.equals("application/javascript")
+                || mimeType.equals("application/x-sh")
+                || mimeType.equals("application/x-yaml")
+                || mimeType.equals("application/sql");
+    }
+
+    @Override
+    public byte[] generatePreview(File file) throws IOException {
+        Charset charset = PreviewUtils.detectCharset(LineIndex.readSample(file));
+        boolean tail = isLog(file);
+        List<String> lines = tail
+                ? LineIndex.readTail(file, charset, VISIBLE_LINES, WINDOW_BYTES)
+                : LineIndex.readHead(file, charset, VISIBLE_LINES, WINDOW_BYTES);
+
+        BufferedImage image = new BufferedImage(800, 800, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, 800, 800);
+
+        g.setColor(Color.DARK_GRAY);
+        g.setFont(new Font("Arial", Font.PLAIN, 12));
+        String header = String.format("%s  (%,d KB, %s, %s)", file.getName(), file.length() / 1024,
+                charset.name(), tail ? "last " + lines.size() + " lines" : "first " + lines.size() + " lines");
+        g.drawString(header, 20, 24);
+        g.setColor(Color.LIGHT_GRAY);
+        g.drawLine(20, 32, 780, 32);
+
+        g.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        int y = 50;
+        for (String line : lines) {
+            String text = line.replace("\t", "    ");
+            if (text.length() > MAX_LINE_CHARS) text = text.substring(0, MAX_LINE_CHARS) + "...";
+            g.setColor(tail ? colorForLogLine(text) : Color.BLACK);
+            g.drawString(text, 20, y);
+            y += LINE_HEIGHT;
+        }
+
+        g.dispose();
+        return thumbnailService.convertToByteArray(image);
+    }
+
+    private static boolean isLog(File file) {
+        String name = file.getName().toLowerCase();
+        return name.endsWith(".log") || name.endsWith(".out") || name.matches(".*\\.log\\.\\d+$");
+    }
+
+    private static Color colorForLogLine(String line) {
+        if (line.contains("ERROR") || line.contains("FATAL") || line.contains("Exception")) {
+            return new Color(200, 30, 30);
+        }
+        if (line.contains("WARN")) {
+            return new Color(190, 120, 0);
+        }
+        return Color.BLACK;
+    }
+}
@@ -0,0 +1,113 @@
+package com.techpool.file.util;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import com.techpool.file.BaseFileHandler;
+import com.techpool.file.ThumbnailService;
+
+// Multi-page TIFF via the JDK TIFF reader. Only the IFD chain is walked to count pages,
+// and only the requested page is decoded, subsampled on read to the target size.
+public class TiffHandler extends BaseFileHandler implements MultiPageHandler {
+    private static final int PREVIEW_SIZE = 800;
+
+    public TiffHandler(ThumbnailService thumbnailService) {
+        super(thumbnailService);
+    }
+
+    @Override
+    public boolean supports(String mimeType) {
+        return mimeType != null && mimeType.equals("image/tiff");
+    }
+
+    @Override
+    public byte[] generatePreview(File file) throws IOException {
+        try (TiffReader tiff = new TiffReader(file)) {
+            BufferedImage firstPage = tiff.read(0, PREVIEW_SIZE, PREVIEW_SIZE);
+            BufferedImage preview = createEnhancedPreview(firstPage, file);
+
+            int pages = tiff.reader.getNumImages(true);
+            Graphics2D g = preview.createGraphics();
+            g.setColor(Color.DARK_GRAY);
+            g.setFont(new Font("Arial", Font.PLAIN, 12));
+            g.drawString("Page 1 of " + pages, MARGIN, preview.getHeight() - MARGIN);
+            g.dispose();
+
+            return thumbnailService.convertToByteArray(preview);
+        }
+    }
+
+    @Override
+    public int getPageCount(File file) throws IOException {
+        try (TiffReader tiff = new TiffReader(file)) {
+            return tiff.reader.getNumImages(true);
+        }
+    }
+
+    @Override
+    public BufferedImage renderPage(File file, int pageIndex, int maxWidth, int maxHeight) throws IOException {
+        try (TiffReader tiff = new TiffReader(file)) {
+            return tiff.read(pageIndex, maxWidth, maxHeight);
+        }
+    }
+
+    private final class TiffReader implements AutoCloseable {
+        private final ImageInputStream input;
+        private final ImageReader reader;
+
+        TiffReader(File file) throws IOException {
+            Iterator<ImageReader> readers = ImageIO.getImageReadersByFormatName("tiff");
+            if (!readers.hasNext()) {
+                throw new IOException("No TIFF reader available");
+            }
+            this.input = ImageIO.createImageInputStream(file);
+            this.reader = readers.next();
+            // Random access so any page can be reached; metadata is not needed for previews
+            reader.setInput(input, false, true);
+        }
+
+        BufferedImage read(int pageIndex, int maxWidth, int maxHeight) throws IOException {
+            int width = reader.getWidth(pageIndex);
+            int height = reader.getHeight(pageIndex);
+
+            // Decode every n-th pixel so a 300 DPI scan never lands on the heap at full size
+            int step = Math.max(1, Math.min(width / maxWidth, height / maxHeight));
+            ImageReadParam param = reader.getDefaultReadParam();
+            param.setSourceSubsampling(step, step, 0, 0);
+            BufferedImage page = reader.read(pageIndex, param);
+
+            if (page.getWidth() > maxWidth || page.getHeight() > maxHeight) {
+                page = thumbnailService.resizeImage(toRgb(page), maxWidth, maxHeight);
+            }
+            return page;
+        }
+
+        // Bilevel and indexed pages have no usable type for resizeImage
+        private BufferedImage toRgb(BufferedImage image) {
+            if (image.getType() == BufferedImage.TYPE_INT_RGB) {
+                return image;
+            }
+            BufferedImage rgb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = rgb.createGraphics();
+            g.drawImage(image, 0, 0, null);
+            g.dispose();
+            return rgb;
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.dispose();
+            input.close();
+        }
+    }
+}
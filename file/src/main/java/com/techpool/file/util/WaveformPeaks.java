@@ -0,0 +1,314 @@
+package com.techpool.file.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+// Per-channel min/max envelope of an audio file at a fixed bucket resolution.
+// Decoding streams through a small pool of reusable buffers, so memory is constant
+// whatever the duration; any display width is then derived from the buckets.
+public class WaveformPeaks {
+    private static final int MAX_BUCKETS = 4096;
+    private static final int TARGET_BLOCK_BYTES = 1024 * 1024;
+    private static final int THREADS = Runtime.getRuntime().availableProcessors();
+    // Own threads rather than the common pool: the decoding thread blocks until a worker hands a
+    // buffer back, which never happens if that thread is itself the pool's only free worker
+    private static final ExecutorService WORKERS = Executors.newFixedThreadPool(THREADS, r -> {
+        Thread thread = new Thread(r, "waveform-peaks");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final Map<String, WaveformPeaks> CACHE = Collections.synchronizedMap(
+            new LinkedHashMap<String, WaveformPeaks>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, WaveformPeaks> eldest) {
+                    return size() > 64;
+                }
+            });
+
+    private final float[][] min;
+    private final float[][] max;
+    private final AudioFormat format;
+    // Both settle once decoding has counted the frames actually delivered
+    private int buckets;
+    private double durationSeconds;
+
+    private WaveformPeaks(int channels, int buckets, AudioFormat format, double durationSeconds) {
+        this.min = new float[channels][buckets];
+        this.max = new float[channels][buckets];
+        // A bucket no sample reached keeps min > max and is skipped when resampling
+        for (int c = 0; c < channels; c++) {
+            Arrays.fill(min[c], Float.MAX_VALUE);
+            Arrays.fill(max[c], -Float.MAX_VALUE);
+        }
+        this.buckets = buckets;
+        this.format = format;
+        this.durationSeconds = durationSeconds;
+    }
+
+    public static WaveformPeaks forFile(File file) throws IOException, UnsupportedAudioFileException {
+        String key = file.getCanonicalPath() + "|" + file.length() + "|" + file.lastModified();
+        WaveformPeaks cached = CACHE.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        WaveformPeaks peaks = compute(file);
+        CACHE.put(key, peaks);
+        return peaks;
+    }
+
+    private static WaveformPeaks compute(File file) throws IOException, UnsupportedAudioFileException {
+        AudioFileFormat fileFormat = AudioSystem.getAudioFileFormat(file);
+        try (AudioInputStream in = openPcm(file)) {
+            long frames = in.getFrameLength();
+            if (frames == AudioSystem.NOT_SPECIFIED) {
+                frames = declaredFrames(fileFormat, in.getFormat());
+            }
+            if (frames > 0) {
+                return decode(in, fileFormat.getFormat(), frames);
+            }
+        }
+        // Neither the stream nor the file header knows the length: decode once to count it
+        long frames;
+        try (AudioInputStream in = openPcm(file)) {
+            frames = countFrames(in);
+        }
+        try (AudioInputStream in = openPcm(file)) {
+            return decode(in, fileFormat.getFormat(), Math.max(1, frames));
+        }
+    }
+
+    // Closing the returned stream also closes the encoded one under it
+    private static AudioInputStream openPcm(File file) throws IOException, UnsupportedAudioFileException {
+        AudioInputStream source = AudioSystem.getAudioInputStream(file);
+        AudioFormat sourceFormat = source.getFormat();
+        if (isDirectlyReadable(sourceFormat)) {
+            return source;
+        }
+        // Let an installed codec decode to 16-bit PCM
+        AudioFormat target = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, sourceFormat.getSampleRate(), 16,
+                sourceFormat.getChannels(), sourceFormat.getChannels() * 2, sourceFormat.getSampleRate(), false);
+        try {
+            return AudioSystem.getAudioInputStream(target, source);
+        } catch (IllegalArgumentException e) {
+            source.close();
+            throw e;
+        }
+    }
+
+    // Decoded streams (e.g. MP3 through an SPI) have no frame length, but their readers usually
+    // record the duration in microseconds
+    private static long declaredFrames(AudioFileFormat fileFormat, AudioFormat pcmFormat) {
+        if (fileFormat.getProperty("duration") instanceof Long micros && micros > 0) {
+            return Math.round(micros / 1_000_000.0 * pcmFormat.getFrameRate());
+        }
+        return AudioSystem.NOT_SPECIFIED;
+    }
+
+    private static long countFrames(AudioInputStream in) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        long bytes = 0;
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            bytes += read;
+        }
+        return bytes / Math.max(1, in.getFormat().getFrameSize());
+    }
+
+    private static boolean isDirectlyReadable(AudioFormat format) {
+        boolean pcm = format.getEncoding().equals(AudioFormat.Encoding.PCM_SIGNED)
+                || format.getEncoding().equals(AudioFormat.Encoding.PCM_UNSIGNED);
+        int bits = format.getSampleSizeInBits();
+        return pcm && (bits == 8 || bits == 16 || bits == 24 || bits == 32);
+    }
+
+    // frames is exact or a close estimate; any excess lands in the last bucket
+    private static WaveformPeaks decode(AudioInputStream in, AudioFormat sourceFormat, long frames)
+            throws IOException {
+        AudioFormat format = in.getFormat();
+        int channels = format.getChannels();
+        int frameSize = format.getFrameSize();
+
+        int buckets = (int) Math.min(MAX_BUCKETS, frames);
+        long framesPerBucket = (frames + buckets - 1) / buckets;
+        double duration = frames / (double) format.getFrameRate();
+        WaveformPeaks peaks = new WaveformPeaks(channels, buckets, sourceFormat, duration);
+
+        // Blocks hold whole buckets so concurrent tasks never write the same slot
+        long bucketsPerBlock = Math.max(1, TARGET_BLOCK_BYTES / (framesPerBucket * frameSize));
+        int blockBytes = (int) Math.min(Integer.MAX_VALUE - 8, bucketsPerBlock * framesPerBucket * frameSize);
+
+        BlockingQueue<byte[]> bufferPool = new ArrayBlockingQueue<>(THREADS + 1);
+        for (int i = 0; i <= THREADS; i++) {
+            bufferPool.add(new byte[blockBytes]);
+        }
+
+        CompletableFuture<Void> pending = CompletableFuture.completedFuture(null);
+        long frameOffset = 0;
+        try {
+            while (true) {
+                byte[] buffer = bufferPool.take();
+                int filled = readFully(in, buffer);
+                if (filled <= 0) {
+                    bufferPool.add(buffer);
+                    break;
+                }
+
+                int blockFrames = filled / frameSize;
+                long firstFrame = frameOffset;
+                frameOffset += blockFrames;
+
+                // One task per channel; the buffer returns to the pool when all have finished
+                AtomicInteger remaining = new AtomicInteger(channels);
+                CompletableFuture<?>[] tasks = new CompletableFuture<?>[channels];
+                for (int c = 0; c < channels; c++) {
+                    int channel = c;
+                    tasks[c] = CompletableFuture.runAsync(() -> {
+                        try {
+                            peaks.accumulate(buffer, blockFrames, channel, format, firstFrame, framesPerBucket);
+                        } finally {
+                            if (remaining.decrementAndGet() == 0) bufferPool.add(buffer);
+                        }
+                    }, WORKERS);
+                }
+                pending = CompletableFuture.allOf(pending, CompletableFuture.allOf(tasks));
+
+                if (filled < buffer.length) break;
+            }
+            pending.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Waveform decoding interrupted", e);
+        }
+
+        // A short estimate leaves empty buckets at the end; drop them and time what was decoded
+        if (frameOffset > 0) {
+            peaks.buckets = (int) Math.min(buckets, (frameOffset + framesPerBucket - 1) / framesPerBucket);
+            peaks.durationSeconds = frameOffset / (double) format.getFrameRate();
+        }
+        return peaks;
+    }
+
+    private static int readFully(InputStream in, byte[] buffer) throws IOException {
+        int filled = 0;
+        while (filled < buffer.length) {
+            int read = in.read(buffer, filled, buffer.length - filled);
+            if (read < 0) break;
+            filled += read;
+        }
+        return filled;
+    }
+
+    private void accumulate(byte[] data, int frames, int channel, AudioFormat format, long firstFrame,
+            long framesPerBucket) {
+        int frameSize = format.getFrameSize();
+        int bytesPerSample = format.getSampleSizeInBits() / 8;
+        boolean bigEndian = format.isBigEndian();
+        boolean signed = format.getEncoding().equals(AudioFormat.Encoding.PCM_SIGNED);
+        float[] mins = min[channel];
+        float[] maxs = max[channel];
+
+        int bucket = -1;
+        float lo = 0;
+        float hi = 0;
+        for (int f = 0; f < frames; f++) {
+            int b = (int) Math.min(buckets - 1, (firstFrame + f) / framesPerBucket);
+            if (b != bucket) {
+                if (bucket >= 0) {
+                    store(mins, maxs, bucket, lo, hi);
+                }
+                bucket = b;
+                lo = Float.MAX_VALUE;
+                hi = -Float.MAX_VALUE;
+            }
+            float sample = readSample(data, f * frameSize + channel * bytesPerSample, bytesPerSample, bigEndian, signed);
+            if (sample < lo) lo = sample;
+            if (sample > hi) hi = sample;
+        }
+        if (bucket >= 0) {
+            store(mins, maxs, bucket, lo, hi);
+        }
+    }
+
+    private void store(float[] mins, float[] maxs, int bucket, float lo, float hi) {
+        if (bucket == buckets - 1) {
+            // Only the last bucket can be shared between blocks, when the frame count was estimated
+            synchronized (mins) {
+                mins[bucket] = Math.min(mins[bucket], lo);
+                maxs[bucket] = Math.max(maxs[bucket], hi);
+            }
+        } else {
+            mins[bucket] = Math.min(mins[bucket], lo);
+            maxs[bucket] = Math.max(maxs[bucket], hi);
+        }
+    }
+
+    private static float readSample(byte[] data, int offset, int bytes, boolean bigEndian, boolean signed) {
+        int value = 0;
+        for (int i = 0; i < bytes; i++) {
+            int b = data[offset + (bigEndian ? i : bytes - 1 - i)] & 0xFF;
+            value = (value << 8) | b;
+        }
+        int bits = bytes * 8;
+        if (signed) {
+            value = (value << (32 - bits)) >> (32 - bits);
+        } else {
+            value -= 1 << (bits - 1);
+        }
+        return value / (float) (1L << (bits - 1));
+    }
+
+    public int getChannels() {
+        return min.length;
+    }
+
+    public AudioFormat getFormat() {
+        return format;
+    }
+
+    public double getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    // Envelope for one channel resampled to the given width: [0] = minima, [1] = maxima
+    public float[][] resample(int channel, int width) {
+        float[][] result = new float[2][width];
+        for (int x = 0; x < width; x++) {
+            int from = (int) ((long) x * buckets / width);
+            int to = Math.max(from + 1, (int) ((long) (x + 1) * buckets / width));
+            float lo = Float.MAX_VALUE;
+            float hi = -Float.MAX_VALUE;
+            for (int b = from; b < to && b < buckets; b++) {
+                if (min[channel][b] <= max[channel][b]) {
+                    lo = Math.min(lo, min[channel][b]);
+                    hi = Math.max(hi, max[channel][b]);
+                }
+            }
+            if (lo > hi) {
+                // Nothing decoded here: draw silence
+                lo = 0;
+                hi = 0;
+            }
+            result[0][x] = lo;
+            result[1][x] = hi;
+        }
+        return result;
+    }
+}
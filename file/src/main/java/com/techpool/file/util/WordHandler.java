@@ -19,6 +19,8 @@ import org.slf4j.LoggerFactory;
 
 import com.techpool.file.BaseFileHandler;
 import com.techpool.file.ThumbnailService;
+import com.techpool.file.render.RenderCancelledException;
+import com.techpool.file.render.RenderContext;
 
 public class WordHandler extends BaseFileHandler {
     private static final Logger log = LoggerFactory.getLogger(WordHandler.class);
@@ -30,6 +32,11 @@ public class WordHandler extends BaseFileHandler {
         this.libreOfficePath = libreOfficePath;
     }
 
+    @Override
+    public boolean usesLibreOffice() {
+        return true;
+    }
+
     @Override
     public boolean supports(String mimeType) {
         return mimeType.contains("word") || mimeType.contains("officedocument.wordprocessingml");
@@ -49,6 +56,8 @@ public class WordHandler extends BaseFileHandler {
         try {
             List<BufferedImage> pages = LibreOfficeHelper.convertToImages(file, libreOfficePath);
             return generateMultiPagePreview(pages, file);
+        } catch (RenderCancelledException e) {
+            throw e;
         } catch (Exception e) {
             // Fallback to single page
             BufferedImage fallback = createEnhancedPreview(null, file);
@@ -56,6 +65,11 @@ public class WordHandler extends BaseFileHandler {
         }
     }
 
+    @Override
+    public byte[] generatePlaceholder(File file) throws IOException {
+        return PreviewUtils.officePlaceholder(file, thumbnailService);
+    }
+
     public byte[] generateWithLibreOffice(File file) throws Exception {
         Path tempDir = Files.createTempDirectory("lo-preview-");
         try {
@@ -74,15 +88,17 @@ public class WordHandler extends BaseFileHandler {
             pb.redirectErrorStream(true);
             pb.redirectOutput(ProcessBuilder.Redirect.appendTo(logFile));
 
+            RenderContext.stage("libreoffice-started");
             Process process = pb.start();
-            boolean success = process.waitFor(2, TimeUnit.MINUTES);
+            boolean success = LibreOfficeHelper.awaitExit(process, 2, TimeUnit.MINUTES);
+            RenderContext.stage("libreoffice-finished");
 
             // Read the log file regardless of success
             String logContent = Files.readString(logFile.toPath());
             log.info("LibreOffice conversion log:\n{}", logContent);
 
             if (!success) {
-                process.destroyForcibly();
+                ProcessUtils.destroyTree(process);
                 throw new IOException("Conversion timed out after 2 minutes");
             }
 
@@ -2,18 +2,52 @@ package com.techpool.file.util;
 
 import java.awt.*;
 import java.awt.image.BufferedImage;
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
 import java.io.File;
-import java.io.FileReader;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.commons.io.input.BoundedInputStream;
 
 import com.techpool.file.ThumbnailService;
 
+// Pretty-prints the start of an XML document by pulling StAX events, so minified
+// single-line files are never materialised as one giant String.
 public class XmlHandler implements FileTypeHandler {
+    private static final long MAX_BYTES = 4L * 1024 * 1024;
+    private static final int MAX_LINES = 40;
+    private static final int MAX_LINE_CHARS = 105;
+    private static final int LINE_HEIGHT = 18;
+    private static final String INDENT = "  ";
+
+    private static final Color BACKGROUND = new Color(30, 30, 30);
+    private static final Color TAG = new Color(86, 156, 214);
+    private static final Color ATTRIBUTE = new Color(156, 220, 254);
+    private static final Color VALUE = new Color(206, 145, 120);
+    private static final Color TEXT = Color.WHITE;
+    private static final Color COMMENT = new Color(106, 153, 85);
+    private static final Color DECLARATION = new Color(197, 134, 192);
+    private static final Color NOTE = Color.LIGHT_GRAY;
+    private static final Color ERROR = new Color(244, 135, 113);
+
     private final ThumbnailService thumbnailService;
+    private final XMLInputFactory inputFactory;
 
     public XmlHandler(ThumbnailService thumbnailService) {
         this.thumbnailService = thumbnailService;
+        this.inputFactory = XMLInputFactory.newFactory();
+        // Previews never resolve DTDs or external entities
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        inputFactory.setProperty(XMLInputFactory.IS_COALESCING, false);
     }
 
     @Override
@@ -23,36 +57,227 @@ public class XmlHandler implements FileTypeHandler {
 
     @Override
     public byte[] generatePreview(File file) throws IOException {
+        Listing listing = new Listing();
+        String encoding = null;
+
+        try (BoundedInputStream in = new BoundedInputStream(
+                new BufferedInputStream(new FileInputStream(file)), MAX_BYTES)) {
+            try {
+                // Passing bytes lets the parser honour the BOM and the declared encoding
+                XMLStreamReader reader = inputFactory.createXMLStreamReader(in);
+                try {
+                    encoding = reader.getEncoding();
+                    prettyPrint(reader, listing);
+                } finally {
+                    reader.close();
+                }
+            } catch (XMLStreamException e) {
+                listing.flush();
+                if (in.getCount() >= MAX_BYTES) {
+                    listing.note("... preview stopped after " + (MAX_BYTES / (1024 * 1024)) + " MB", NOTE);
+                } else if (!listing.isFull()) {
+                    listing.note("Parse error: " + e.getMessage(), ERROR);
+                }
+            }
+        }
+
+        return render(file, encoding, listing);
+    }
+
+    private void prettyPrint(XMLStreamReader reader, Listing listing) throws XMLStreamException {
+        int depth = 0;
+
+        while (reader.hasNext() && !listing.isFull()) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_DOCUMENT:
+                    break;
+                case XMLStreamConstants.START_ELEMENT:
+                    listing.flush();
+                    listing.startLine(depth);
+                    listing.add("<" + qualifiedName(reader.getPrefix(), reader.getLocalName()), TAG);
+                    for (int i = 0; i < reader.getNamespaceCount(); i++) {
+                        String prefix = reader.getNamespacePrefix(i);
+                        listing.add(prefix == null ? " xmlns" : " xmlns:" + prefix, ATTRIBUTE);
+                        listing.add("=\"" + reader.getNamespaceURI(i) + "\"", VALUE);
+                    }
+                    for (int i = 0; i < reader.getAttributeCount(); i++) {
+                        listing.add(" " + qualifiedName(reader.getAttributePrefix(i), reader.getAttributeLocalName(i)),
+                                ATTRIBUTE);
+                        listing.add("=\"" + reader.getAttributeValue(i) + "\"", VALUE);
+                    }
+                    listing.add(">", TAG);
+                    listing.openElement();
+                    depth++;
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    depth--;
+                    String closing = qualifiedName(reader.getPrefix(), reader.getLocalName());
+                    if (listing.isElementOpen()) {
+                        // <a></a> collapses to <a/>; <a>short text</a> stays on one line
+                        if (listing.lastTokenIs(">")) {
+                            listing.replaceLast("/>", TAG);
+                        } else {
+                            listing.add("</" + closing + ">", TAG);
+                        }
+                        listing.flush();
+                    } else {
+                        listing.flush();
+                        listing.startLine(depth);
+                        listing.add("</" + closing + ">", TAG);
+                        listing.flush();
+                    }
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.SPACE:
+                    String text = reader.getText().strip();
+                    if (text.isEmpty()) break;
+                    if (listing.isElementOpen() && text.length() <= MAX_LINE_CHARS / 2 && listing.lastTokenIs(">")) {
+                        listing.add(text, TEXT);
+                    } else {
+                        listing.flush();
+                        listing.startLine(depth);
+                        listing.add(text, TEXT);
+                        listing.flush();
+                    }
+                    break;
+                case XMLStreamConstants.CDATA:
+                    listing.flush();
+                    listing.startLine(depth);
+                    listing.add("<![CDATA[" + reader.getText().strip() + "]]>", NOTE);
+                    listing.flush();
+                    break;
+                case XMLStreamConstants.COMMENT:
+                    listing.flush();
+                    listing.startLine(depth);
+                    listing.add("<!--" + reader.getText() + "-->", COMMENT);
+                    listing.flush();
+                    break;
+                case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                    listing.flush();
+                    listing.startLine(depth);
+                    String data = reader.getPIData();
+                    listing.add("<?" + reader.getPITarget() + (data == null ? "" : " " + data) + "?>", DECLARATION);
+                    listing.flush();
+                    break;
+                case XMLStreamConstants.DTD:
+                    listing.flush();
+                    listing.startLine(depth);
+                    listing.add(reader.getText(), DECLARATION);
+                    listing.flush();
+                    break;
+                default:
+                    break;
+            }
+        }
+        listing.flush();
+        if (listing.isFull() && reader.hasNext()) {
+            listing.note("... more content not shown", NOTE);
+        }
+    }
+
+    private static String qualifiedName(String prefix, String localName) {
+        return prefix == null || prefix.isEmpty() ? localName : prefix + ":" + localName;
+    }
+
+    private byte[] render(File file, String encoding, Listing listing) throws IOException {
         BufferedImage image = new BufferedImage(800, 800, BufferedImage.TYPE_INT_RGB);
         Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
 
         // Dark background for code
-        g.setColor(new Color(30, 30, 30));
+        g.setColor(BACKGROUND);
         g.fillRect(0, 0, 800, 800);
 
+        g.setColor(Color.GRAY);
+        g.setFont(new Font("Arial", Font.PLAIN, 12));
+        g.drawString(file.getName() + (encoding != null ? "  (" + encoding + ")" : ""), 20, 24);
+
+        g.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        FontMetrics metrics = g.getFontMetrics();
         int y = 50;
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line;
-            int lineCount = 0;
-            while ((line = reader.readLine()) != null && lineCount < 30) {
-                line = line.trim();
-                if (line.isEmpty()) continue;
-                
-                // Simple syntax highlighting
-                if (line.startsWith("<")) {
-                    g.setColor(new Color(86, 156, 214)); // Blue for tags
-                } else {
-                    g.setColor(Color.WHITE);
-                }
-                
-                if (line.length() > 100) line = line.substring(0, 100) + "...";
-                g.drawString(line, 50, y);
-                y += 20;
-                lineCount++;
+        for (List<Token> line : listing.lines) {
+            int x = 20;
+            for (Token token : line) {
+                g.setColor(token.color);
+                g.drawString(token.text, x, y);
+                x += metrics.stringWidth(token.text);
             }
+            y += LINE_HEIGHT;
         }
 
         g.dispose();
         return thumbnailService.convertToByteArray(image);
     }
-}
\ No newline at end of file
+
+    private static final class Token {
+        private String text;
+        private final Color color;
+
+        Token(String text, Color color) {
+            this.text = text;
+            this.color = color;
+        }
+    }
+
+    // Accumulates coloured lines and enforces the viewport and line-width limits
+    private static final class Listing {
+        private final List<List<Token>> lines = new ArrayList<>();
+        private List<Token> current;
+        private int currentChars;
+        private boolean elementOpen;
+
+        boolean isFull() {
+            return lines.size() >= MAX_LINES;
+        }
+
+        void startLine(int depth) {
+            current = new ArrayList<>();
+            currentChars = 0;
+            elementOpen = false;
+            if (depth > 0) {
+                add(INDENT.repeat(Math.min(depth, 20)), TEXT);
+            }
+        }
+
+        void add(String text, Color color) {
+            if (current == null || currentChars >= MAX_LINE_CHARS) return;
+            String flat = text.replace('\n', ' ').replace('\r', ' ').replace('\t', ' ');
+            int room = MAX_LINE_CHARS - currentChars;
+            if (flat.length() > room) {
+                flat = flat.substring(0, Math.max(0, room - 3)) + "...";
+            }
+            current.add(new Token(flat, color));
+            currentChars += flat.length();
+        }
+
+        void openElement() {
+            elementOpen = true;
+        }
+
+        boolean isElementOpen() {
+            return current != null && elementOpen;
+        }
+
+        boolean lastTokenIs(String text) {
+            return current != null && !current.isEmpty() && current.get(current.size() - 1).text.equals(text);
+        }
+
+        void replaceLast(String text, Color color) {
+            current.remove(current.size() - 1);
+            currentChars -= 1;
+            add(text, color);
+        }
+
+        void flush() {
+            if (current != null && !isFull()) {
+                lines.add(current);
+            }
+            current = null;
+            elementOpen = false;
+        }
+
+        void note(String text, Color color) {
+            lines.add(List.of(new Token(text, color)));
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.techpool.file.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+// Reads a zip's end-of-central-directory record and central directory straight from the
+// channel. Entry data is never touched, so cost depends on entry count, not archive size.
+public class ZipCentralDirectory {
+    private static final int EOCD_SIGNATURE = 0x06054b50;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int ZIP64_EOCD_SIGNATURE = 0x06064b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int EOCD_MIN_SIZE = 22;
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+    private static final long WINDOW_SIZE = 64L * 1024 * 1024;
+    private static final Charset CP437 = Charset.isSupported("IBM437")
+            ? Charset.forName("IBM437") : StandardCharsets.ISO_8859_1;
+
+    private final List<Entry> entries = new ArrayList<>();
+    private long totalEntries;
+    private long totalCompressed;
+    private long totalUncompressed;
+
+    private ZipCentralDirectory() {
+    }
+
+    // Keeps at most maxEntries entries; totals always cover the whole archive
+    public static ZipCentralDirectory read(File file, int maxEntries) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            int tailLength = (int) Math.min(size, EOCD_MIN_SIZE + MAX_COMMENT_SIZE);
+            if (tailLength < EOCD_MIN_SIZE) {
+                throw new IOException("Not a zip archive: too small");
+            }
+            ByteBuffer tail = readAt(channel, size - tailLength, tailLength);
+
+            int eocd = -1;
+            for (int i = tailLength - EOCD_MIN_SIZE; i >= 0; i--) {
+                if (tail.getInt(i) == EOCD_SIGNATURE) {
+                    eocd = i;
+                    break;
+                }
+            }
+            if (eocd < 0) {
+                throw new IOException("Not a zip archive: end of central directory not found");
+            }
+
+            long entryCount = tail.getShort(eocd + 10) & 0xFFFF;
+            long directorySize = tail.getInt(eocd + 12) & 0xFFFFFFFFL;
+            long directoryOffset = tail.getInt(eocd + 16) & 0xFFFFFFFFL;
+
+            long eocdPosition = size - tailLength + eocd;
+            if ((entryCount == 0xFFFF || directorySize == 0xFFFFFFFFL || directoryOffset == 0xFFFFFFFFL)
+                    && eocdPosition >= 20) {
+                ByteBuffer locator = readAt(channel, eocdPosition - 20, 20);
+                if (locator.getInt(0) == ZIP64_LOCATOR_SIGNATURE) {
+                    ByteBuffer zip64 = readAt(channel, locator.getLong(8), 56);
+                    if (zip64.getInt(0) != ZIP64_EOCD_SIGNATURE) {
+                        throw new IOException("Corrupt zip64 end of central directory");
+                    }
+                    entryCount = zip64.getLong(32);
+                    directorySize = zip64.getLong(40);
+                    directoryOffset = zip64.getLong(48);
+                }
+            }
+            if (directoryOffset + directorySize > size) {
+                throw new IOException("Central directory lies outside the file");
+            }
+
+            ZipCentralDirectory directory = new ZipCentralDirectory();
+            directory.parseEntries(channel, directoryOffset, directorySize, entryCount, maxEntries);
+            return directory;
+        }
+    }
+
+    private void parseEntries(FileChannel channel, long offset, long length, long expected, int maxEntries)
+            throws IOException {
+        long end = offset + length;
+        long pos = offset;
+        MappedByteBuffer window = null;
+        long windowStart = 0;
+
+        while (pos + 46 <= end && totalEntries < expected) {
+            // Remap when the next header (fixed part plus variable fields) may cross the window
+            if (window == null || Math.min(pos + 46 + 3 * 0xFFFF, end) > windowStart + window.capacity()) {
+                windowStart = pos;
+                window = channel.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(WINDOW_SIZE, end - pos));
+                window.order(ByteOrder.LITTLE_ENDIAN);
+            }
+            int p = (int) (pos - windowStart);
+            if (window.getInt(p) != CENTRAL_HEADER_SIGNATURE) {
+                throw new IOException("Corrupt central directory at offset " + pos);
+            }
+
+            int flags = window.getShort(p + 8) & 0xFFFF;
+            int method = window.getShort(p + 10) & 0xFFFF;
+            long compressed = window.getInt(p + 20) & 0xFFFFFFFFL;
+            long uncompressed = window.getInt(p + 24) & 0xFFFFFFFFL;
+            int nameLength = window.getShort(p + 28) & 0xFFFF;
+            int extraLength = window.getShort(p + 30) & 0xFFFF;
+            int commentLength = window.getShort(p + 32) & 0xFFFF;
+
+            if (uncompressed == 0xFFFFFFFFL || compressed == 0xFFFFFFFFL) {
+                // Zip64 extended information extra field (id 0x0001)
+                int extra = p + 46 + nameLength;
+                int extraEnd = extra + extraLength;
+                while (extra + 4 <= extraEnd) {
+                    int id = window.getShort(extra) & 0xFFFF;
+                    int dataSize = window.getShort(extra + 2) & 0xFFFF;
+                    if (id == 0x0001) {
+                        int field = extra + 4;
+                        if (uncompressed == 0xFFFFFFFFL && field + 8 <= extra + 4 + dataSize) {
+                            uncompressed = window.getLong(field);
+                            field += 8;
+                        }
+                        if (compressed == 0xFFFFFFFFL && field + 8 <= extra + 4 + dataSize) {
+                            compressed = window.getLong(field);
+                        }
+                        break;
+                    }
+                    extra += 4 + dataSize;
+                }
+            }
+
+            totalEntries++;
+            totalCompressed += compressed;
+            totalUncompressed += uncompressed;
+
+            if (entries.size() < maxEntries) {
+                byte[] nameBytes = new byte[nameLength];
+                window.get(p + 46, nameBytes);
+                // General purpose bit 11 marks UTF-8 names; otherwise the spec says CP437
+                String name = new String(nameBytes, (flags & 0x800) != 0 ? StandardCharsets.UTF_8 : CP437);
+                entries.add(new Entry(name, method, compressed, uncompressed));
+            }
+
+            pos += 46 + nameLength + extraLength + commentLength;
+        }
+    }
+
+    private static ByteBuffer readAt(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of zip file");
+            }
+        }
+        return buffer.flip();
+    }
+
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    public long getTotalEntries() {
+        return totalEntries;
+    }
+
+    public long getTotalCompressed() {
+        return totalCompressed;
+    }
+
+    public long getTotalUncompressed() {
+        return totalUncompressed;
+    }
+
+    public static class Entry {
+        private final String name;
+        private final int method;
+        private final long compressedSize;
+        private final long size;
+
+        Entry(String name, int method, long compressedSize, long size) {
+            this.name = name;
+            this.method = method;
+            this.compressedSize = compressedSize;
+            this.size = size;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isDirectory() {
+            return name.endsWith("/");
+        }
+
+        public boolean isStored() {
+            return method == 0;
+        }
+
+        public long getCompressedSize() {
+            return compressedSize;
+        }
+
+        public long getSize() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.techpool.file.worker;
+
+import com.techpool.file.util.FileTypeHandler;
+import com.techpool.file.util.ProcessUtils;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// One forked worker JVM and its connection. Used by one job at a time; once a job fails on the
+// transport (crash, timeout, kill) the worker is broken and must be discarded.
+class RenderWorker {
+    private static final AtomicInteger IDS = new AtomicInteger();
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final int id;
+    private final Process process;
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private int jobs;
+    private volatile boolean broken;
+    private volatile boolean timedOut;
+
+    private RenderWorker(int id, Process process, Socket socket) throws IOException {
+        this.id = id;
+        this.process = process;
+        this.socket = socket;
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    }
+
+    // Starts the JVM and waits until it has loaded its handlers and connected back. The token goes
+    // over stdin rather than the command line, where other local users could read it.
+    static RenderWorker start(List<String> command, long startTimeoutMillis) throws IOException {
+        int id = IDS.incrementAndGet();
+        byte[] secret = new byte[16];
+        RANDOM.nextBytes(secret);
+        String token = HexFormat.of().formatHex(secret);
+
+        try (ServerSocket server = new ServerSocket(0, 4, InetAddress.getLoopbackAddress())) {
+            server.setSoTimeout((int) startTimeoutMillis);
+            List<String> arguments = new ArrayList<>(command);
+            arguments.add(String.valueOf(server.getLocalPort()));
+            Process process = new ProcessBuilder(arguments)
+                    .redirectOutput(ProcessBuilder.Redirect.INHERIT)
+                    .redirectError(ProcessBuilder.Redirect.INHERIT)
+                    .start();
+            try {
+                try (OutputStream stdin = process.getOutputStream()) {
+                    stdin.write((token + "\n").getBytes(StandardCharsets.UTF_8));
+                }
+                // Anything else that finds the port is dropped; accept() gives up at the start timeout
+                while (true) {
+                    Socket socket = server.accept();
+                    try {
+                        socket.setSoTimeout((int) startTimeoutMillis);
+                        socket.setTcpNoDelay(true);
+                        RenderWorker worker = new RenderWorker(id, process, socket);
+                        byte[] presented = worker.in.readUTF().getBytes(StandardCharsets.UTF_8);
+                        if (MessageDigest.isEqual(presented, token.getBytes(StandardCharsets.UTF_8))) {
+                            return worker;
+                        }
+                    } catch (IOException e) {
+                        // Not our worker
+                    }
+                    socket.close();
+                }
+            } catch (SocketTimeoutException e) {
+                ProcessUtils.destroyTree(process);
+                throw new IOException("Render worker " + id + " did not connect within " + startTimeoutMillis
+                        + " ms" + (process.isAlive() ? "" : "; it exited with code " + process.exitValue()), e);
+            } catch (IOException | RuntimeException e) {
+                ProcessUtils.destroyTree(process);
+                throw e;
+            }
+        }
+    }
+
+    // Blocks until the worker answers, fails or runs past the timeout. Handler failures inside the
+    // worker come back as IOExceptions and leave the worker usable.
+    byte[] render(byte kind, FileTypeHandler handler, File file, long timeoutMillis) throws IOException {
+        jobs++;
+        String failure = null;
+        byte[] result = null;
+        try {
+            socket.setSoTimeout((int) Math.min(Integer.MAX_VALUE, timeoutMillis));
+            out.writeByte(kind);
+            out.writeUTF(handler.getClass().getName());
+            out.writeUTF(file.getAbsolutePath());
+            out.flush();
+
+            byte status = in.readByte();
+            if (status == RenderWorkerProtocol.RESULT) {
+                result = new byte[in.readInt()];
+                in.readFully(result);
+            } else if (status == RenderWorkerProtocol.FAILED) {
+                String type = in.readUTF();
+                failure = type.substring(type.lastIndexOf('.') + 1) + ": " + in.readUTF();
+            }
+        } catch (SocketTimeoutException e) {
+            timedOut = true;
+            broken = true;
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            broken = true;
+            throw e;
+        }
+        if (failure != null) {
+            throw new IOException(failure);
+        }
+        return result;
+    }
+
+    int getId() {
+        return id;
+    }
+
+    int getJobs() {
+        return jobs;
+    }
+
+    boolean isBroken() {
+        return broken;
+    }
+
+    boolean isTimedOut() {
+        return timedOut;
+    }
+
+    boolean isAlive() {
+        return !broken && process.isAlive();
+    }
+
+    String describeFailure() {
+        if (timedOut) {
+            return "timed out";
+        }
+        try {
+            // A worker that just closed its socket is usually still on its way out
+            process.onExit().get(1, TimeUnit.SECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            // Still running, or its exit code is unknown
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return process.isAlive() ? "stopped responding" : "exited with code " + process.exitValue();
+    }
+
+    // Graceful end: the worker exits when its connection closes
+    void close() {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Closing anyway
+        }
+        process.destroy();
+    }
+
+    // Also used as the cancel hook of a running render. A worker that shells out, e.g. to
+    // LibreOffice, takes its children with it.
+    void kill() {
+        broken = true;
+        ProcessUtils.destroyTree(process);
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Already gone
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.techpool.file.worker;
+
+import com.techpool.file.ThumbnailService;
+import com.techpool.file.render.CompositeRenderer;
+import com.techpool.file.render.PngEncoder;
+import com.techpool.file.util.FileTypeHandler;
+import com.techpool.file.util.FileTypeHandlerFactory;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// Entry point of a forked render worker. Builds the same handlers as the application, without
+// Spring, from the -D properties the pool forwards, connects back to the pool and renders one job
+// at a time until the connection closes. Out of memory ends the JVM (-XX:+ExitOnOutOfMemoryError),
+// and the pool starts a fresh one.
+public class RenderWorkerMain {
+    private static final Logger log = LoggerFactory.getLogger(RenderWorkerMain.class);
+
+    public static void main(String[] args) throws IOException {
+        int port = Integer.parseInt(args[0]);
+        String token = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)).readLine();
+        FileTypeHandlerFactory handlers = createHandlers();
+
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            out.writeUTF(token);
+            out.flush();
+            log.info("Render worker {} ready", ProcessHandle.current().pid());
+
+            while (true) {
+                byte kind;
+                try {
+                    kind = in.readByte();
+                } catch (EOFException e) {
+                    // Recycled, or the application shut down
+                    return;
+                }
+                String handlerClass = in.readUTF();
+                File file = new File(in.readUTF());
+                try {
+                    FileTypeHandler handler = handlers.getHandler(
+                            Class.forName(handlerClass).asSubclass(FileTypeHandler.class));
+                    byte[] result = kind == RenderWorkerProtocol.PLACEHOLDER
+                            ? handler.generatePlaceholder(file)
+                            : handler.generatePreview(file);
+                    if (result == null) {
+                        out.writeByte(RenderWorkerProtocol.NO_RESULT);
+                    } else {
+                        out.writeByte(RenderWorkerProtocol.RESULT);
+                        out.writeInt(result.length);
+                        out.write(result);
+                    }
+                } catch (Exception | StackOverflowError e) {
+                    log.error("Render of {} failed in worker", file, e);
+                    String message = String.valueOf(e.getMessage());
+                    out.writeByte(RenderWorkerProtocol.FAILED);
+                    out.writeUTF(e.getClass().getName());
+                    out.writeUTF(message.substring(0, Math.min(message.length(), RenderWorkerProtocol.MAX_MESSAGE_LENGTH)));
+                }
+                out.flush();
+            }
+        }
+    }
+
+    // Defaults match the @Value defaults of the application's beans
+    private static FileTypeHandlerFactory createHandlers() throws IOException {
+        PngEncoder pngEncoder = new PngEncoder(
+                Integer.getInteger("png.compression-level", 2),
+                System.getProperty("png.filter", "adaptive"),
+                Integer.getInteger("png.band-bytes", 262144),
+                Long.getLong("png.parallel-min-bytes", 1048576),
+                Integer.getInteger("png.threads", 0),
+                Boolean.parseBoolean(System.getProperty("png.reduce-colors", "true")));
+        CompositeRenderer compositeRenderer = new CompositeRenderer(pngEncoder,
+                Long.getLong("render.offheap.min-bytes", 67108864),
+                System.getProperty("render.offheap.scratch-dir", System.getProperty("java.io.tmpdir")));
+        // Handlers only encode and composite; storage stays with the application
+        ThumbnailService thumbnailService = new ThumbnailService(null, pngEncoder, compositeRenderer);
+        return new FileTypeHandlerFactory(thumbnailService,
+                System.getProperty("libreoffice.path", ""),
+                Long.getLong("libreoffice.timeout", 120000));
+    }
+}
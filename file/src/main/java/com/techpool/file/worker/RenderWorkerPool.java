@@ -0,0 +1,239 @@
+package com.techpool.file.worker;
+
+import com.techpool.file.render.RenderContext;
+import com.techpool.file.util.FileTypeHandler;
+import jakarta.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+// Runs FileTypeHandler renders in forked JVMs so a malformed file that exhausts memory or hangs
+// takes down one worker instead of the application. Each worker has its own -Xmx, is killed on
+// timeout or cancellation and replaced, and is recycled after max-jobs renders to shed whatever
+// native memory or state a long-lived PDFBox/ImageIO process accumulates. With
+// render.workers.enabled=false handlers run in this JVM as before.
+@Component
+public class RenderWorkerPool {
+    private static final Logger log = LoggerFactory.getLogger(RenderWorkerPool.class);
+    // Settings the worker's handlers read; everything else stays with the application
+    private static final List<String> FORWARDED_PROPERTIES = List.of(
+            "png.compression-level", "png.filter", "png.band-bytes", "png.parallel-min-bytes", "png.threads",
+            "png.reduce-colors", "render.offheap.min-bytes", "render.offheap.scratch-dir",
+            "libreoffice.path", "libreoffice.timeout");
+    private static final String BOOT_LAUNCHER = "org.springframework.boot.loader.launch.PropertiesLauncher";
+
+    private final boolean enabled;
+    private final int size;
+    private final int maxJobs;
+    private final long jobTimeoutMillis;
+    private final long startTimeoutMillis;
+    private final List<String> command;
+    private final Semaphore slots;
+    private final Deque<RenderWorker> idle = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger live = new AtomicInteger();
+    private final ExecutorService spawner;
+    private final AtomicLong jobs = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong crashes = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong recycled = new AtomicLong();
+
+    public RenderWorkerPool(Environment environment,
+            @Value("${render.workers.enabled:false}") boolean enabled,
+            @Value("${render.workers.count:2}") int size,
+            @Value("${render.workers.heap:1g}") String heap,
+            @Value("${render.workers.max-jobs:200}") int maxJobs,
+            @Value("${render.workers.job-timeout-ms:180000}") long jobTimeoutMillis,
+            @Value("${render.workers.start-timeout-ms:30000}") long startTimeoutMillis,
+            @Value("${render.workers.jvm-args:}") String jvmArgs) {
+        this.enabled = enabled;
+        this.size = Math.max(1, size);
+        this.maxJobs = Math.max(1, maxJobs);
+        this.jobTimeoutMillis = jobTimeoutMillis;
+        this.startTimeoutMillis = startTimeoutMillis;
+        this.slots = new Semaphore(this.size, true);
+        this.command = buildCommand(environment, heap, jvmArgs);
+        this.spawner = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "render-worker-spawner");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (enabled) {
+            log.info("Rendering in {} worker JVMs with -Xmx{}, recycled after {} jobs", this.size, heap, this.maxJobs);
+            for (int i = 0; i < this.size; i++) {
+                spawner.execute(this::replenish);
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public byte[] generatePreview(FileTypeHandler handler, File file) throws IOException {
+        return enabled ? run(RenderWorkerProtocol.PREVIEW, handler, file) : handler.generatePreview(file);
+    }
+
+    public byte[] generatePlaceholder(FileTypeHandler handler, File file) throws IOException {
+        return enabled ? run(RenderWorkerProtocol.PLACEHOLDER, handler, file) : handler.generatePlaceholder(file);
+    }
+
+    public RenderWorkerStats getStats() {
+        return new RenderWorkerStats(enabled, size, live.get(), size - slots.availablePermits(), jobs.get(),
+                failures.get(), crashes.get(), timeouts.get(), recycled.get());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        spawner.shutdownNow();
+        RenderWorker worker;
+        while ((worker = idle.poll()) != null) {
+            worker.close();
+        }
+    }
+
+    private byte[] run(byte kind, FileTypeHandler handler, File file) throws IOException {
+        try {
+            slots.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for a render worker");
+        }
+        RenderWorker worker = null;
+        try {
+            worker = take();
+            jobs.incrementAndGet();
+            RenderContext context = RenderContext.current();
+            try (RenderContext.Scope kill = context != null ? context.onCancel(worker::kill) : null) {
+                RenderContext.stage("render-worker");
+                return worker.render(kind, handler, file, jobTimeoutMillis);
+            }
+        } catch (IOException e) {
+            if (worker == null) {
+                throw e;
+            }
+            if (!worker.isBroken()) {
+                failures.incrementAndGet();
+                throw e;
+            }
+            // Killed because the render was cancelled: report that, not a crash
+            RenderContext.checkpoint();
+            (worker.isTimedOut() ? timeouts : crashes).incrementAndGet();
+            throw new IOException("Render worker " + worker.getId() + " " + worker.describeFailure()
+                    + " while rendering " + file.getName(), e);
+        } finally {
+            if (worker != null) {
+                release(worker);
+            }
+            slots.release();
+        }
+    }
+
+    private RenderWorker take() throws IOException {
+        RenderWorker worker;
+        while ((worker = idle.poll()) != null) {
+            if (worker.isAlive()) {
+                return worker;
+            }
+            log.warn("Idle render worker {} died: {}", worker.getId(), worker.describeFailure());
+            crashes.incrementAndGet();
+            discard(worker);
+        }
+        // None warm yet, e.g. right after a crash; start one on this thread
+        live.incrementAndGet();
+        try {
+            return RenderWorker.start(command, startTimeoutMillis);
+        } catch (IOException e) {
+            live.decrementAndGet();
+            throw e;
+        }
+    }
+
+    private void release(RenderWorker worker) {
+        if (worker.isBroken()) {
+            discard(worker);
+        } else if (worker.getJobs() >= maxJobs || live.get() > size) {
+            recycled.incrementAndGet();
+            worker.close();
+            live.decrementAndGet();
+            replace();
+        } else {
+            idle.push(worker);
+        }
+    }
+
+    private void discard(RenderWorker worker) {
+        worker.kill();
+        live.decrementAndGet();
+        replace();
+    }
+
+    private void replace() {
+        try {
+            spawner.execute(this::replenish);
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+        }
+    }
+
+    // Keeps a warm replacement ready so the next job does not pay for JVM startup
+    private void replenish() {
+        if (live.get() >= size) {
+            return;
+        }
+        live.incrementAndGet();
+        try {
+            idle.push(RenderWorker.start(command, startTimeoutMillis));
+        } catch (IOException e) {
+            live.decrementAndGet();
+            log.warn("Could not start a render worker: {}", e.getMessage());
+        }
+    }
+
+    // Same java and classpath as this JVM. From a Boot fat jar the worker main class is started
+    // through the loader, which puts BOOT-INF/classes and BOOT-INF/lib on its classpath.
+    private static List<String> buildCommand(Environment environment, String heap, String jvmArgs) {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-Xmx" + heap);
+        command.add("-XX:+ExitOnOutOfMemoryError");
+        command.add("-Djava.awt.headless=true");
+        for (String key : FORWARDED_PROPERTIES) {
+            String value = environment.getProperty(key);
+            if (value != null) {
+                command.add("-D" + key + "=" + value);
+            }
+        }
+        Arrays.stream(jvmArgs.trim().split("\\s+"))
+                .filter(arg -> !arg.isEmpty())
+                .forEach(command::add);
+
+        String classPath = System.getProperty("java.class.path");
+        command.add("-cp");
+        command.add(classPath);
+        if (classPath.endsWith(".jar") && !classPath.contains(File.pathSeparator)) {
+            command.add("-Dloader.main=" + RenderWorkerMain.class.getName());
+            command.add(BOOT_LAUNCHER);
+        } else {
+            command.add(RenderWorkerMain.class.getName());
+        }
+        return command;
+    }
+}
@@ -0,0 +1,18 @@
+package com.techpool.file.worker;
+
+// Frames between the pool and a worker JVM over a loopback socket. The worker connects to the port
+// it was given and first sends the token it read from stdin; after that every job is one request
+// and one response:
+//   request:  kind, handler class name, absolute path of the file
+//   response: RESULT, length and PNG bytes | NO_RESULT | FAILED, exception class and message
+class RenderWorkerProtocol {
+    static final byte PREVIEW = 1;
+    static final byte PLACEHOLDER = 2;
+
+    static final byte RESULT = 0;
+    static final byte NO_RESULT = 1;
+    static final byte FAILED = 2;
+
+    // writeUTF takes at most 64 KB; exception messages are cut well before that
+    static final int MAX_MESSAGE_LENGTH = 2000;
+}
@@ -0,0 +1,64 @@
+package com.techpool.file.worker;
+
+// Worker JVMs alive and busy, and how jobs ended since startup
+public class RenderWorkerStats {
+    private final boolean enabled;
+    private final int size;
+    private final int live;
+    private final int busy;
+    private final long jobs;
+    private final long failures;
+    private final long crashes;
+    private final long timeouts;
+    private final long recycled;
+
+    RenderWorkerStats(boolean enabled, int size, int live, int busy, long jobs, long failures, long crashes,
+            long timeouts, long recycled) {
+        this.enabled = enabled;
+        this.size = size;
+        this.live = live;
+        this.busy = busy;
+        this.jobs = jobs;
+        this.failures = failures;
+        this.crashes = crashes;
+        this.timeouts = timeouts;
+        this.recycled = recycled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getLive() {
+        return live;
+    }
+
+    public int getBusy() {
+        return busy;
+    }
+
+    public long getJobs() {
+        return jobs;
+    }
+
+    // Handler errors reported by a healthy worker
+    public long getFailures() {
+        return failures;
+    }
+
+    public long getCrashes() {
+        return crashes;
+    }
+
+    public long getTimeouts() {
+        return timeouts;
+    }
+
+    public long getRecycled() {
+        return recycled;
+    }
+}
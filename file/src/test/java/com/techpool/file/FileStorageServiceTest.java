@@ -0,0 +1,94 @@
+package com.techpool.file;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class FileStorageServiceTest {
+
+	@TempDir
+	Path tempDir;
+
+	private FileStorageService storageService;
+
+	@BeforeEach
+	void setUp() {
+		storageService = new FileStorageService(Optional.empty());
+		ReflectionTestUtils.setField(storageService, "storageDir", tempDir.resolve("storage").toString());
+		ReflectionTestUtils.setField(storageService, "maxStreamSize", 1L << 20);
+		ReflectionTestUtils.setField(storageService, "layoutName", "flat");
+		ReflectionTestUtils.setField(storageService, "shardDepth", 2);
+		storageService.init();
+	}
+
+	@Test
+	void keepsOnlyTheLastSegmentOfTheName() throws IOException {
+		StoredFile stored = storageService.storeStream(content("hello"), "../docs/report.txt", 1024);
+
+		assertEquals("report.txt", stored.getFileName().substring(stored.getFileName().indexOf('_') + 1));
+	}
+
+	@Test
+	void rejectsNamesWithoutAFileName() throws IOException {
+		for (String name : new String[] { "", "/", "//", ".", "..", "a/..", "   " }) {
+			assertThrows(IllegalArgumentException.class,
+					() -> storageService.storeStream(content("hello"), name, 1024), name);
+		}
+		assertEquals(0, files(storageService.getStorageRoot()), "nothing stored");
+	}
+
+	@Test
+	void reportsUploadsOverTheLimitAsTooLarge() throws IOException {
+		assertThrows(UploadTooLargeException.class,
+				() -> storageService.storeStream(content("x".repeat(2048)), "big.txt", 1024));
+		assertEquals(0, files(storageService.getStorageRoot()), "temporary file removed");
+	}
+
+	@Test
+	void deletingAHashedPreviewDropsEveryDerivedResult() throws IOException {
+		String sha = "ab".repeat(32);
+		String other = "ac".repeat(32);
+		byte[] png = { 1, 2, 3 };
+		storageService.storeHashedPreview(sha, png);
+		storageService.storeHashedPreview(sha + "-multipage", png);
+		storageService.storeBackfilledPreview(sha, png);
+		storageService.storeHashedPreview(other + "-page1", png);
+		// Written after switching layouts, as during a migration
+		ReflectionTestUtils.setField(storageService, "layout", StorageLayout.SHARDED);
+		storageService.storeHashedPreview(sha + "-page2", png);
+
+		assertTrue(storageService.deleteHashedPreview(sha));
+
+		for (String key : new String[] { sha, sha + "-multipage", sha + "-page2" }) {
+			assertFalse(Files.exists(storageService.getHashedPreviewPath(key)), key);
+		}
+		ReflectionTestUtils.setField(storageService, "layout", StorageLayout.FLAT);
+		for (String key : new String[] { sha, sha + "-multipage", sha + "-page2" }) {
+			assertFalse(Files.exists(storageService.getHashedPreviewPath(key)), key);
+		}
+		assertTrue(Files.exists(storageService.getHashedPreviewPath(other + "-page1")));
+	}
+
+	private static ByteArrayInputStream content(String text) {
+		return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static long files(Path root) throws IOException {
+		try (Stream<Path> walk = Files.walk(root)) {
+			return walk.filter(Files::isRegularFile).count();
+		}
+	}
+}
@@ -0,0 +1,96 @@
+package com.techpool.file;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.FileTime;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class PreviewReaperTest {
+
+	private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+	@TempDir
+	Path tempDir;
+
+	private FileStorageService storageService;
+	private PreviewReaper reaper;
+	private Path previews;
+
+	@BeforeEach
+	void setUp() {
+		storageService = new FileStorageService(Optional.empty());
+		ReflectionTestUtils.setField(storageService, "storageDir", tempDir.resolve("storage").toString());
+		ReflectionTestUtils.setField(storageService, "maxStreamSize", 1L << 20);
+		ReflectionTestUtils.setField(storageService, "layoutName", "flat");
+		ReflectionTestUtils.setField(storageService, "shardDepth", 2);
+		storageService.init();
+		previews = storageService.getPreviewStorageLocation();
+
+		reaper = new PreviewReaper(storageService);
+		ReflectionTestUtils.setField(reaper, "maxAgeDays", 7);
+		ReflectionTestUtils.setField(reaper, "maxFilesPerSecond", 0);
+	}
+
+	@Test
+	void evictsLeastRecentlyUsedHoursFirst() throws IOException {
+		ReflectionTestUtils.setField(reaper, "maxBytes", 2500L);
+		Path current = preview("current", 0);
+		Path recent = preview("recent", 2 * HOUR);
+		Path older = preview("older", 5 * HOUR);
+		Path oldest = preview("oldest", 10 * HOUR);
+
+		PreviewReaperReport report = reaper.reap();
+
+		assertTrue(Files.exists(current));
+		assertTrue(Files.exists(recent));
+		assertFalse(Files.exists(older));
+		assertFalse(Files.exists(oldest));
+		assertEquals(2000, report.getFootprintBytes());
+	}
+
+	@Test
+	void keepsPreviewsUsedThisHourEvenOverBudget() throws IOException {
+		ReflectionTestUtils.setField(reaper, "maxBytes", 1500L);
+		Path first = preview("first", 0);
+		Path second = preview("second", 60_000);
+		Path stale = preview("stale", 3 * HOUR);
+
+		reaper.reap();
+
+		assertTrue(Files.exists(first));
+		assertTrue(Files.exists(second));
+		assertFalse(Files.exists(stale));
+	}
+
+	@Test
+	void expiresPreviewsPastMaxAge() throws IOException {
+		ReflectionTestUtils.setField(reaper, "maxBytes", 1L << 30);
+		Path fresh = preview("fresh", 0);
+		Path expired = preview("expired", TimeUnit.DAYS.toMillis(8));
+
+		PreviewReaperReport report = reaper.reap();
+
+		assertTrue(Files.exists(fresh));
+		assertFalse(Files.exists(expired));
+		assertEquals(1, report.getExpiredFiles());
+	}
+
+	// A 1000-byte preview last used `age` ago
+	private Path preview(String name, long age) throws IOException {
+		Path path = Files.write(previews.resolve("full_" + name + ".png"), new byte[1000]);
+		FileTime used = FileTime.fromMillis(System.currentTimeMillis() - age);
+		Files.getFileAttributeView(path, BasicFileAttributeView.class).setTimes(used, used, null);
+		return path;
+	}
+}
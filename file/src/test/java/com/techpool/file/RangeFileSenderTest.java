@@ -0,0 +1,187 @@
+package com.techpool.file;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+class RangeFileSenderTest {
+
+	private static final int LENGTH = 1000;
+
+	@TempDir
+	Path tempDir;
+
+	private final RangeFileSender sender = new RangeFileSender();
+	private Path file;
+	private byte[] content;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		content = new byte[LENGTH];
+		for (int i = 0; i < LENGTH; i++) {
+			content[i] = (byte) (i * 7 + (i >> 8));
+		}
+		file = Files.write(tempDir.resolve("data.bin"), content);
+	}
+
+	@Test
+	void parsesSingleAndOpenEndedRanges() {
+		assertRanges("bytes=0-99", 0, 99);
+		assertRanges("Bytes=0-0", 0, 0);
+		assertRanges("bytes=900-", 900, 999);
+		assertRanges("bytes=900-5000", 900, 999);
+		assertRanges("bytes=999-999", 999, 999);
+	}
+
+	@Test
+	void parsesSuffixRanges() {
+		assertRanges("bytes=-100", 900, 999);
+		assertRanges("bytes=-1", 999, 999);
+		assertRanges("bytes=-5000", 0, 999);
+	}
+
+	@Test
+	void sortsAndCoalescesOverlappingAndAdjacentRanges() {
+		assertRanges("bytes=500-599, 0-99,90-199, 200-299", 0, 299, 500, 599);
+		assertRanges("bytes=0-9,11-19", 0, 9, 11, 19);
+		assertRanges("bytes=-100,950-", 900, 999);
+	}
+
+	@Test
+	void unsatisfiableRangesLeaveAnEmptyList() {
+		assertRanges("bytes=1000-");
+		assertRanges("bytes=1000-1999,5000-");
+		assertRanges("bytes=-0");
+	}
+
+	@Test
+	void malformedHeadersAreIgnored() {
+		assertNull(RangeFileSender.parseRanges(null, LENGTH));
+		assertNull(RangeFileSender.parseRanges("items=0-9", LENGTH));
+		assertNull(RangeFileSender.parseRanges("bytes=abc", LENGTH));
+		assertNull(RangeFileSender.parseRanges("bytes=10", LENGTH));
+		assertNull(RangeFileSender.parseRanges("bytes=20-10", LENGTH));
+		assertNull(RangeFileSender.parseRanges("bytes=0-9,x-y", LENGTH));
+		StringBuilder many = new StringBuilder("bytes=0-0");
+		for (int i = 1; i <= 16; i++) {
+			many.append(',').append(i * 2).append('-').append(i * 2);
+		}
+		assertNull(RangeFileSender.parseRanges(many.toString(), LENGTH));
+	}
+
+	@Test
+	void sendsASingleRange() throws IOException {
+		MockHttpServletResponse response = send("GET", "bytes=10-19", null);
+
+		assertEquals(206, response.getStatus());
+		assertEquals("bytes 10-19/1000", response.getHeader(HttpHeaders.CONTENT_RANGE));
+		assertEquals(10, response.getContentLengthLong());
+		assertArrayEquals(Arrays.copyOfRange(content, 10, 20), response.getContentAsByteArray());
+	}
+
+	@Test
+	void sendsMultipleRangesAsByteranges() throws IOException {
+		MockHttpServletResponse response = send("GET", "bytes=0-9,-5,20-29", null);
+
+		assertEquals(206, response.getStatus());
+		String contentType = response.getContentType();
+		assertTrue(contentType.startsWith("multipart/byteranges; boundary="), contentType);
+		String boundary = contentType.substring(contentType.indexOf('=') + 1);
+
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		part(expected, boundary, 0, 9);
+		part(expected, boundary, 20, 29);
+		part(expected, boundary, 995, 999);
+		expected.writeBytes(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+
+		assertArrayEquals(expected.toByteArray(), response.getContentAsByteArray());
+		assertEquals(expected.size(), response.getContentLengthLong());
+	}
+
+	@Test
+	void headOfMultipleRangesAnnouncesTheBodyLength() throws IOException {
+		MockHttpServletResponse get = send("GET", "bytes=0-9,20-29", null);
+		MockHttpServletResponse head = send("HEAD", "bytes=0-9,20-29", null);
+
+		assertEquals(206, head.getStatus());
+		assertEquals(0, head.getContentAsByteArray().length);
+		assertEquals(get.getContentLengthLong(), head.getContentLengthLong());
+	}
+
+	@Test
+	void unsatisfiableRangeIs416() throws IOException {
+		MockHttpServletResponse response = send("GET", "bytes=1000-", null);
+
+		assertEquals(416, response.getStatus());
+		assertEquals("bytes */1000", response.getHeader(HttpHeaders.CONTENT_RANGE));
+		assertEquals(0, response.getContentAsByteArray().length);
+	}
+
+	@Test
+	void ifRangeWithTheCurrentValidatorServesTheRange() throws IOException {
+		String etag = send("GET", null, null).getHeader(HttpHeaders.ETAG);
+		String lastModified = DateTimeFormatter.RFC_1123_DATE_TIME.format(
+				Files.getLastModifiedTime(file).toInstant().atOffset(ZoneOffset.UTC));
+
+		assertEquals(206, send("GET", "bytes=0-9", etag).getStatus());
+		assertEquals(206, send("GET", "bytes=0-9", lastModified).getStatus());
+	}
+
+	@Test
+	void staleIfRangeServesTheWholeFile() throws IOException {
+		String older = DateTimeFormatter.RFC_1123_DATE_TIME.format(
+				Files.getLastModifiedTime(file).toInstant().minusSeconds(3600).atOffset(ZoneOffset.UTC));
+
+		for (String ifRange : new String[] { "\"other\"", "W/\"weak\"", older, "not a date" }) {
+			MockHttpServletResponse response = send("GET", "bytes=0-9", ifRange);
+
+			assertEquals(200, response.getStatus(), ifRange);
+			assertNull(response.getHeader(HttpHeaders.CONTENT_RANGE), ifRange);
+			assertArrayEquals(content, response.getContentAsByteArray(), ifRange);
+		}
+	}
+
+	private MockHttpServletResponse send(String method, String range, String ifRange) throws IOException {
+		MockHttpServletRequest request = new MockHttpServletRequest(method, "/files/data.bin");
+		if (range != null) {
+			request.addHeader(HttpHeaders.RANGE, range);
+		}
+		if (ifRange != null) {
+			request.addHeader(HttpHeaders.IF_RANGE, ifRange);
+		}
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		sender.send(file, "application/octet-stream", null, request, response);
+		return response;
+	}
+
+	private void part(ByteArrayOutputStream out, String boundary, int first, int last) {
+		out.writeBytes(("\r\n--" + boundary + "\r\nContent-Type: application/octet-stream\r\n"
+				+ "Content-Range: bytes " + first + "-" + last + "/" + LENGTH + "\r\n\r\n")
+				.getBytes(StandardCharsets.US_ASCII));
+		out.write(content, first, last - first + 1);
+	}
+
+	// Expected ranges as first, last pairs
+	private static void assertRanges(String header, long... bounds) {
+		List<long[]> ranges = RangeFileSender.parseRanges(header, LENGTH);
+		long[] actual = ranges.stream().flatMapToLong(Arrays::stream).toArray();
+		assertArrayEquals(bounds, actual, header);
+	}
+}
@@ -0,0 +1,272 @@
+package com.techpool.file;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.techpool.file.storage.StorageBackend;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class UploadSessionServiceTest {
+
+	private static final int CHUNK = 256 * 1024;
+
+	@TempDir
+	Path tempDir;
+
+	private final MemoryBackend backend = new MemoryBackend();
+	private FileStorageService storageService;
+	private UploadSessionService uploads;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		storageService = new FileStorageService(Optional.of(backend));
+		ReflectionTestUtils.setField(storageService, "storageDir", tempDir.resolve("storage").toString());
+		ReflectionTestUtils.setField(storageService, "maxStreamSize", 16L << 20);
+		ReflectionTestUtils.setField(storageService, "layoutName", "flat");
+		ReflectionTestUtils.setField(storageService, "shardDepth", 2);
+		ReflectionTestUtils.setField(storageService, "cacheMaxBytes", 64L << 20);
+		ReflectionTestUtils.setField(storageService, "prefetchThreads", 1);
+		storageService.init();
+
+		uploads = new UploadSessionService(storageService);
+		ReflectionTestUtils.setField(uploads, "defaultChunkSize", CHUNK);
+		ReflectionTestUtils.setField(uploads, "sessionTtlMinutes", 60L);
+		uploads.init();
+	}
+
+	@AfterEach
+	void tearDown() {
+		storageService.shutdown();
+	}
+
+	@Test
+	void commitCanBeRetriedAfterAFailedStore() throws IOException {
+		byte[] content = content(CHUNK + 1000);
+		UploadSession session = upload("retry.bin", content);
+		backend.failPuts.set(1);
+
+		assertThrows(IOException.class, () -> uploads.commit(session.getId()));
+		assertEquals(session, uploads.getSession(session.getId()));
+
+		StoredFile stored = uploads.commit(session.getId());
+
+		assertArrayEquals(content, Files.readAllBytes(storageService.resolveOriginal(stored.getFileName())));
+		assertThrows(NoSuchElementException.class, () -> uploads.getSession(session.getId()));
+		assertFalse(Files.exists(tempDir.resolve("storage").resolve("uploads").resolve(session.getId() + ".part")));
+	}
+
+	@Test
+	void chunksWrittenOutOfOrderAssembleAtTheirOffsets() throws IOException {
+		byte[] content = content(2 * CHUNK + 123);
+		UploadSession session = uploads.createSession("order.bin", content.length, CHUNK);
+		assertEquals(3, session.getChunkCount());
+
+		uploads.writeChunk(session.getId(), 2, chunk(content, 2), null);
+		uploads.writeChunk(session.getId(), 0, chunk(content, 0), null);
+		assertEquals(List.of(1), session.getMissingChunks());
+		assertEquals(CHUNK + 123L, session.getReceivedBytes());
+
+		// A resent chunk simply overwrites its range
+		uploads.writeChunk(session.getId(), 0, chunk(content, 0), null);
+		uploads.writeChunk(session.getId(), 1, chunk(content, 1), null);
+		assertTrue(session.isComplete());
+
+		StoredFile stored = uploads.commit(session.getId());
+
+		assertArrayEquals(content, Files.readAllBytes(storageService.resolveOriginal(stored.getFileName())));
+	}
+
+	@Test
+	void chunksOfTheWrongLengthOrIndexAreRejected() throws IOException {
+		byte[] content = content(CHUNK + 10);
+		UploadSession session = uploads.createSession("length.bin", content.length, CHUNK);
+
+		assertThrows(IllegalArgumentException.class,
+				() -> uploads.writeChunk(session.getId(), 2, chunk(content, 0), null));
+		assertThrows(IllegalArgumentException.class,
+				() -> uploads.writeChunk(session.getId(), 1, chunk(content, 0), null));
+		assertThrows(IllegalArgumentException.class,
+				() -> uploads.writeChunk(session.getId(), 0, chunk(content, 1), null));
+		assertEquals(List.of(0, 1), session.getMissingChunks());
+	}
+
+	@Test
+	void checksumMismatchLeavesTheChunkMissing() throws IOException {
+		byte[] content = content(CHUNK + 10);
+		UploadSession session = uploads.createSession("checksum.bin", content.length, CHUNK);
+		String sha = sha256(Arrays.copyOfRange(content, 0, CHUNK));
+		String wrong = sha256(Arrays.copyOfRange(content, CHUNK, content.length));
+
+		assertThrows(IllegalArgumentException.class,
+				() -> uploads.writeChunk(session.getId(), 0, chunk(content, 0), wrong));
+		assertEquals(List.of(0, 1), session.getMissingChunks());
+
+		uploads.writeChunk(session.getId(), 0, chunk(content, 0), sha.toUpperCase());
+		assertEquals(List.of(1), session.getMissingChunks());
+	}
+
+	@Test
+	void incompleteUploadCannotBeCommitted() throws IOException {
+		byte[] content = content(CHUNK + 10);
+		UploadSession session = uploads.createSession("partial.bin", content.length, CHUNK);
+		uploads.writeChunk(session.getId(), 1, chunk(content, 1), null);
+
+		assertThrows(IllegalStateException.class, () -> uploads.commit(session.getId()));
+
+		uploads.writeChunk(session.getId(), 0, chunk(content, 0), null);
+		assertArrayEquals(content, Files.readAllBytes(
+				storageService.resolveOriginal(uploads.commit(session.getId()).getFileName())));
+	}
+
+	@Test
+	void writesAndCommitsConflictWithACommitInProgress() throws IOException {
+		byte[] content = content(CHUNK + 10);
+		UploadSession session = upload("busy.bin", content);
+		session.beginCommit();
+		try {
+			assertThrows(IllegalStateException.class,
+					() -> uploads.writeChunk(session.getId(), 0, chunk(content, 0), null));
+			assertThrows(IllegalStateException.class, () -> uploads.commit(session.getId()));
+			assertThrows(IllegalStateException.class, () -> uploads.abort(session.getId()));
+			assertTrue(session.isComplete());
+		} finally {
+			session.endCommit();
+		}
+
+		StoredFile stored = uploads.commit(session.getId());
+
+		assertArrayEquals(content, Files.readAllBytes(storageService.resolveOriginal(stored.getFileName())));
+	}
+
+	@Test
+	void idleSessionsExpireWithTheirData() throws IOException {
+		UploadSession session = upload("idle.bin", content(CHUNK + 10));
+		Path data = session.dataFile();
+		assertTrue(Files.exists(data));
+
+		uploads.expireSessions();
+		assertEquals(session, uploads.getSession(session.getId()));
+
+		ReflectionTestUtils.setField(uploads, "sessionTtlMinutes", -1L);
+		uploads.expireSessions();
+
+		assertThrows(NoSuchElementException.class, () -> uploads.getSession(session.getId()));
+		assertFalse(Files.exists(data));
+	}
+
+	@Test
+	void committingSessionsDoNotExpire() throws IOException {
+		UploadSession session = upload("slow.bin", content(CHUNK + 10));
+		ReflectionTestUtils.setField(uploads, "sessionTtlMinutes", -1L);
+		session.beginCommit();
+		try {
+			uploads.expireSessions();
+		} finally {
+			session.endCommit();
+		}
+
+		assertEquals(session, uploads.getSession(session.getId()));
+		assertTrue(Files.exists(session.dataFile()));
+	}
+
+	private UploadSession upload(String name, byte[] content) throws IOException {
+		UploadSession session = uploads.createSession(name, content.length, CHUNK);
+		for (int i = 0; i < session.getChunkCount(); i++) {
+			uploads.writeChunk(session.getId(), i, chunk(content, i), null);
+		}
+		return session;
+	}
+
+	private static ByteArrayInputStream chunk(byte[] content, int index) {
+		int from = index * CHUNK;
+		return new ByteArrayInputStream(Arrays.copyOfRange(content, from, Math.min(content.length, from + CHUNK)));
+	}
+
+	private static String sha256(byte[] bytes) {
+		try {
+			return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static byte[] content(int length) {
+		byte[] bytes = new byte[length];
+		for (int i = 0; i < length; i++) {
+			bytes[i] = (byte) (i * 31 + (i >>> 8));
+		}
+		return bytes;
+	}
+
+	// Remote store in memory; put fails while failPuts is positive
+	private static final class MemoryBackend implements StorageBackend {
+		private final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+		private final AtomicInteger failPuts = new AtomicInteger();
+
+		@Override
+		public void put(String key, Path source) throws IOException {
+			if (failPuts.getAndDecrement() > 0) {
+				throw new IOException("Simulated upload failure for " + key);
+			}
+			objects.put(key, Files.readAllBytes(source));
+		}
+
+		@Override
+		public void putBytes(String key, byte[] content) {
+			objects.put(key, content.clone());
+		}
+
+		@Override
+		public InputStream openRange(String key, long offset, long length) throws IOException {
+			byte[] object = get(key);
+			int end = length < 0 ? object.length : (int) Math.min(object.length, offset + length);
+			return new ByteArrayInputStream(Arrays.copyOfRange(object, (int) offset, end));
+		}
+
+		@Override
+		public long size(String key) throws IOException {
+			return get(key).length;
+		}
+
+		@Override
+		public boolean exists(String key) {
+			return objects.containsKey(key);
+		}
+
+		@Override
+		public void delete(String key) {
+			objects.remove(key);
+		}
+
+		private byte[] get(String key) throws IOException {
+			byte[] object = objects.get(key);
+			if (object == null) {
+				throw new NoSuchFileException(key);
+			}
+			return object;
+		}
+	}
+}
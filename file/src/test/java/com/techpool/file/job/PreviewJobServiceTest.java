@@ -0,0 +1,90 @@
+package com.techpool.file.job;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.techpool.file.BlockingTaskExecutor;
+import com.techpool.file.FileStorageService;
+import com.techpool.file.PreviewService;
+import com.techpool.file.StoredFile;
+import com.techpool.file.ThumbnailService;
+import com.techpool.file.cluster.ClusterPreviewService;
+import com.techpool.file.render.CompositeRenderer;
+import com.techpool.file.render.PngEncoder;
+import com.techpool.file.render.RenderLimiter;
+import com.techpool.file.render.RenderScheduler;
+import com.techpool.file.util.FileTypeHandlerFactory;
+import com.techpool.file.worker.RenderWorkerPool;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class PreviewJobServiceTest {
+
+	@TempDir
+	Path tempDir;
+
+	private FileStorageService storageService;
+	private RenderScheduler renderScheduler;
+	private BlockingTaskExecutor blockingTaskExecutor;
+	private PreviewJobService jobService;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		storageService = new FileStorageService(Optional.empty());
+		ReflectionTestUtils.setField(storageService, "storageDir", tempDir.resolve("storage").toString());
+		ReflectionTestUtils.setField(storageService, "maxStreamSize", 1L << 20);
+		ReflectionTestUtils.setField(storageService, "layoutName", "flat");
+		ReflectionTestUtils.setField(storageService, "shardDepth", 2);
+		storageService.init();
+
+		PngEncoder pngEncoder = new PngEncoder(6, "adaptive", 262144, 1048576, 1, true);
+		CompositeRenderer compositeRenderer = new CompositeRenderer(pngEncoder, 67108864,
+				tempDir.resolve("scratch").toString());
+		ThumbnailService thumbnailService = new ThumbnailService(storageService, pngEncoder, compositeRenderer);
+		renderScheduler = new RenderScheduler(1, 1, 0);
+		RenderWorkerPool workerPool = new RenderWorkerPool(new StandardEnvironment(), false, 1, "256m", 200,
+				180000, 30000, "");
+		PreviewService previewService = new PreviewService(storageService,
+				new FileTypeHandlerFactory(thumbnailService, "", 120000), renderScheduler, pngEncoder,
+				compositeRenderer, workerPool);
+		ClusterPreviewService clusterPreviewService = new ClusterPreviewService(previewService, storageService,
+				false, "http://localhost:8080", "", 16, "", 60000, 10000);
+		blockingTaskExecutor = new BlockingTaskExecutor(4);
+		jobService = new PreviewJobService(storageService, previewService, clusterPreviewService,
+				blockingTaskExecutor, new RenderLimiter(true, 8, 1, 64, 2.0, 0.75));
+		ReflectionTestUtils.setField(jobService, "deadlineMillis", 60000L);
+	}
+
+	@AfterEach
+	void tearDown() {
+		blockingTaskExecutor.shutdown();
+		renderScheduler.shutdown();
+	}
+
+	@Test
+	void failedRenderLeavesNoHashedPreview() throws Exception {
+		// Sniffed as a PDF, but PDFBox cannot parse it
+		byte[] broken = "%PDF-1.7\nthis is not a document\n".getBytes(StandardCharsets.US_ASCII);
+		StoredFile stored = storageService.storeStream(new ByteArrayInputStream(broken), "broken.pdf", 1 << 20);
+
+		ExecutionException failure = assertThrows(ExecutionException.class, () -> jobService
+				.render(stored.getFileName(), PreviewJob.Kind.PREVIEW, null, RenderScheduler.DEFAULT_TENANT)
+				.get(30, TimeUnit.SECONDS));
+
+		assertEquals(IllegalStateException.class, failure.getCause().getClass());
+		assertFalse(Files.exists(storageService.getHashedPreviewPath(stored.getSha256())));
+	}
+}
@@ -0,0 +1,125 @@
+package com.techpool.file.render;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CompositeRendererTest {
+
+	private static final int WIDTH = 301;
+	private static final int HEIGHT = 4500;
+
+	@TempDir
+	Path tempDir;
+
+	private final PngEncoder pngEncoder = new PngEncoder(6, "adaptive", 262144, 1048576, 1, false);
+
+	@Test
+	void mappedCompositeMatchesHeapCompositeInRgb() throws IOException {
+		assertArrayEquals(render(Long.MAX_VALUE, BufferedImage.TYPE_INT_RGB),
+				render(0, BufferedImage.TYPE_INT_RGB));
+	}
+
+	@Test
+	void mappedCompositeMatchesHeapCompositeInGray() throws IOException {
+		assertArrayEquals(render(Long.MAX_VALUE, BufferedImage.TYPE_BYTE_GRAY),
+				render(0, BufferedImage.TYPE_BYTE_GRAY));
+	}
+
+	@Test
+	void paintingStripByStripMatchesOnePass() throws IOException {
+		for (long offHeapMinBytes : new long[] { 0, Long.MAX_VALUE }) {
+			CompositeRenderer renderer = new CompositeRenderer(pngEncoder, offHeapMinBytes, tempDir.toString());
+			byte[] onePass = renderer.render(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB, CompositeRendererTest::draw);
+
+			byte[] strips;
+			try (Composite composite = renderer.open(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB)) {
+				// Uneven strips that cross the mapped image's bands
+				for (int top = 0; top < HEIGHT; top += 1234) {
+					composite.paint(top, Math.min(1234, HEIGHT - top), CompositeRendererTest::draw);
+				}
+				strips = composite.encode();
+			}
+
+			assertArrayEquals(onePass, strips, "off-heap from " + offHeapMinBytes);
+		}
+	}
+
+	@Test
+	void widenedGrayCompositeMatchesOnePaintedInRgb() throws IOException {
+		BufferedImage grayPage = new BufferedImage(WIDTH, 2000, BufferedImage.TYPE_BYTE_GRAY);
+		BufferedImage colourPage = new BufferedImage(WIDTH, HEIGHT - 2000, BufferedImage.TYPE_INT_RGB);
+		drawOn(grayPage);
+		drawOn(colourPage);
+		for (long offHeapMinBytes : new long[] { 0, Long.MAX_VALUE }) {
+			CompositeRenderer renderer = new CompositeRenderer(pngEncoder, offHeapMinBytes, tempDir.toString());
+			byte[] rgb;
+			try (Composite composite = renderer.open(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB)) {
+				composite.paint(0, 2000, g -> g.drawImage(grayPage, 0, 0, null));
+				composite.paint(2000, HEIGHT - 2000, g -> g.drawImage(colourPage, 0, 2000, null));
+				rgb = composite.encode();
+			}
+
+			byte[] widened;
+			try (Composite composite = renderer.open(WIDTH, HEIGHT, BufferedImage.TYPE_BYTE_GRAY)) {
+				composite.widenFor(grayPage);
+				composite.paint(0, 2000, g -> g.drawImage(grayPage, 0, 0, null));
+				assertEquals(BufferedImage.TYPE_BYTE_GRAY, composite.getType());
+				composite.widenFor(colourPage);
+				assertEquals(BufferedImage.TYPE_INT_RGB, composite.getType());
+				composite.paint(2000, HEIGHT - 2000, g -> g.drawImage(colourPage, 0, 2000, null));
+				widened = composite.encode();
+			}
+
+			assertArrayEquals(rgb, widened, "off-heap from " + offHeapMinBytes);
+		}
+	}
+
+	@Test
+	void readingAfterCloseFailsSafely() throws IOException {
+		MappedImage image = MappedImage.create(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB, tempDir);
+		image.paint(CompositeRendererTest::draw);
+		BufferedImage view = image.getImage();
+		image.close();
+
+		assertThrows(IllegalStateException.class, () -> view.getRGB(10, 10));
+		assertThrows(IllegalStateException.class, () -> image.readRow(0, new int[WIDTH]));
+		assertThrows(IllegalStateException.class, () -> image.paint(g -> g.fillRect(0, 0, 1, 1)));
+		assertThrows(IllegalStateException.class, () -> pngEncoder.encode(view));
+	}
+
+	private byte[] render(long offHeapMinBytes, int imageType) throws IOException {
+		return new CompositeRenderer(pngEncoder, offHeapMinBytes, tempDir.toString())
+				.render(WIDTH, HEIGHT, imageType, CompositeRendererTest::draw);
+	}
+
+	private static void drawOn(BufferedImage image) {
+		Graphics2D g = image.createGraphics();
+		try {
+			draw(g);
+		} finally {
+			g.dispose();
+		}
+	}
+
+	// Shapes, gradients and text that straddle band boundaries
+	private static void draw(Graphics2D g) {
+		g.setColor(Color.WHITE);
+		g.fillRect(0, 0, WIDTH, HEIGHT);
+		for (int y = 0; y < HEIGHT; y += 97) {
+			g.setPaint(new GradientPaint(0, y, Color.RED, WIDTH, y + 97, Color.BLUE));
+			g.fillOval(y % WIDTH / 2, y, WIDTH / 2, 150);
+			g.setColor(Color.DARK_GRAY);
+			g.drawString("Page " + y, 20, y + 40);
+		}
+	}
+}
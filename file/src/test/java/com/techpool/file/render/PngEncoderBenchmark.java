@@ -0,0 +1,136 @@
+package com.techpool.file.render;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import javax.imageio.ImageIO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+// ImageIO against PngEncoder on one thread and on all cores, for a three-page composite as
+// combinePages builds it and for a photo-like image. Not part of the test run; start it with
+//   mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt -Dmdep.includeScope=test
+//   java -cp target/classes:target/test-classes:$(cat target/cp.txt) com.techpool.file.render.PngEncoderBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PngEncoderBenchmark {
+
+	@Param({ "document", "photo" })
+	public String content;
+
+	@Param({ "1", "2", "6" })
+	public int level;
+
+	@Param({ "adaptive" })
+	public String filter;
+
+	private BufferedImage image;
+	private PngEncoder singleThreaded;
+	private PngEncoder parallel;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		image = content.equals("photo") ? photo(1600, 1200) : document(1000, 4260);
+		singleThreaded = new PngEncoder(level, filter, 262144, Long.MAX_VALUE, 1, true);
+		parallel = new PngEncoder(level, filter, 262144, 0, 0, true);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		singleThreaded.shutdown();
+		parallel.shutdown();
+	}
+
+	@Benchmark
+	public byte[] imageIo() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ImageIO.write(image, "png", out);
+		return out.toByteArray();
+	}
+
+	@Benchmark
+	public byte[] pngEncoderSingleThread() throws IOException {
+		return singleThreaded.encode(image);
+	}
+
+	@Benchmark
+	public byte[] pngEncoderBands() throws IOException {
+		return parallel.encode(image);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(PngEncoderBenchmark.class.getSimpleName()).build()).run();
+	}
+
+	// Text lines with the odd colour block, separated like combinePages separates pages
+	private static BufferedImage document(int width, int height) {
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = image.createGraphics();
+		g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+		g.setColor(Color.WHITE);
+		g.fillRect(0, 0, width, height);
+		g.setFont(new Font("Serif", Font.PLAIN, 14));
+		Random random = new Random(7);
+		for (int y = 60; y < height - 60; y += 18) {
+			if (y % 1420 < 18) {
+				y += 20;
+			}
+			StringBuilder line = new StringBuilder();
+			while (line.length() < width / 8) {
+				line.append("lorem ipsum dolor sit amet ".substring(random.nextInt(20)));
+			}
+			g.setColor(new Color(random.nextInt(40), random.nextInt(40), random.nextInt(40)));
+			g.drawString(line.toString(), 60, y);
+			if (random.nextInt(40) == 0) {
+				g.setColor(new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256)));
+				g.fillRect(60, y + 8, width / 2, 160);
+				y += 170;
+			}
+		}
+		g.dispose();
+		return image;
+	}
+
+	// Smooth gradients with sensor-like noise, where the row filters matter most
+	private static BufferedImage photo(int width, int height) {
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		Random random = new Random(3);
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				int red = channel(128 + 100 * Math.sin(x / 70.0) * Math.cos(y / 90.0), random);
+				int green = channel(128 + 90 * Math.sin((x + y) / 120.0), random);
+				int blue = channel(128 + 80 * Math.cos(x / 50.0 - y / 160.0), random);
+				image.setRGB(x, y, (red << 16) | (green << 8) | blue);
+			}
+		}
+		return image;
+	}
+
+	private static int channel(double value, Random random) {
+		return Math.max(0, Math.min(255, (int) value + random.nextInt(9) - 4));
+	}
+}
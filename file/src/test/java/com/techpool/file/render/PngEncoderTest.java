@@ -0,0 +1,258 @@
+package com.techpool.file.render;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.Adler32;
+import javax.imageio.ImageIO;
+import org.junit.jupiter.api.Test;
+
+class PngEncoderTest {
+
+	private static final int WIDTH = 301;
+	private static final int HEIGHT = 400;
+	private static final int[] LEVELS = { 0, 1, 2, 6, 9 };
+
+	// PNG colour types
+	private static final int GRAY = 0;
+	private static final int RGB = 2;
+	private static final int PALETTE = 3;
+	private static final int RGBA = 6;
+
+	@Test
+	void grayImagesRoundTrip() throws IOException {
+		roundTripAll(grayImage(), GRAY, 8);
+	}
+
+	@Test
+	void grayRgbImagesAreWrittenAsGray() throws IOException {
+		roundTripAll(grayRgbImage(), GRAY, 8);
+	}
+
+	@Test
+	void rgbImagesRoundTrip() throws IOException {
+		roundTripAll(noise(BufferedImage.TYPE_INT_RGB, 0xff), RGB, 8);
+	}
+
+	@Test
+	void translucentImagesRoundTripAsRgba() throws IOException {
+		roundTripAll(noise(BufferedImage.TYPE_INT_ARGB, 0x80), RGBA, 8);
+	}
+
+	@Test
+	void fewColoursRoundTripAsPalette() throws IOException {
+		roundTripAll(colours(100, 0xff, WIDTH, HEIGHT), PALETTE, 8);
+	}
+
+	@Test
+	void paletteBitDepthFollowsColourCount() throws IOException {
+		int[][] cases = { { 2, PALETTE, 1 }, { 4, PALETTE, 2 }, { 16, PALETTE, 4 }, { 17, PALETTE, 8 },
+				{ 256, PALETTE, 8 }, { 257, RGB, 8 } };
+		for (int[] c : cases) {
+			BufferedImage image = colours(c[0], 0xff, WIDTH, 2000);
+			byte[] png = roundTripSingleAndBanded(image, c[1], c[2], c[0] + " colours");
+			assertEquals(0, count(png, "tRNS"), c[0] + " opaque colours");
+		}
+	}
+
+	@Test
+	void translucentPalettesKeepTheirAlpha() throws IOException {
+		int[][] cases = { { 2, PALETTE, 1 }, { 4, PALETTE, 2 }, { 16, PALETTE, 4 }, { 17, PALETTE, 8 },
+				{ 256, PALETTE, 8 }, { 257, RGBA, 8 } };
+		for (int alpha : new int[] { 0, 0x80 }) {
+			for (int[] c : cases) {
+				String name = c[0] + " colours with alpha " + alpha;
+				byte[] png = roundTripSingleAndBanded(colours(c[0], alpha, WIDTH, 2000), c[1], c[2], name);
+				assertEquals(c[1] == PALETTE ? 1 : 0, count(png, "tRNS"), name);
+			}
+		}
+	}
+
+	@Test
+	void packedRowsThatEndMidByte() throws IOException {
+		int[][] cases = { { 2, 1 }, { 3, 2 }, { 4, 2 }, { 5, 4 }, { 16, 4 } };
+		for (int width = 1; width <= 17; width++) {
+			for (int[] c : cases) {
+				// Narrow images cannot show every colour in one row; taller ones do
+				BufferedImage image = colours(c[0], 0xff, width, 2 + c[0] / width);
+				roundTripSingleAndBanded(image, PALETTE, c[1], c[0] + " colours, " + width + " wide");
+			}
+		}
+	}
+
+	@Test
+	void withoutColourReductionRgbStaysRgb() throws IOException {
+		BufferedImage image = colours(100, 0xff, WIDTH, HEIGHT);
+		PngEncoder encoder = new PngEncoder(6, "adaptive", 262144, 1048576, 1, false);
+		try {
+			assertRoundTrip(image, encoder.encode(image), RGB, 8, "unreduced");
+		} finally {
+			encoder.shutdown();
+		}
+	}
+
+	@Test
+	void combinedAdlerMatchesAdler32OfTheWhole() {
+		byte[] data = new byte[200_000];
+		new Random(7).nextBytes(data);
+		for (int split : new int[] { 0, 1, 100, 65520, 65521, 65522, 131072, 199_999, 200_000 }) {
+			long first = adler(data, 0, split);
+			long second = adler(data, split, data.length - split);
+			assertEquals(adler(data, 0, data.length), PngEncoder.combineAdler(first, second, data.length - split),
+					"split at " + split);
+		}
+		// Chained the way encode() joins bands, starting from the empty checksum
+		long combined = 1;
+		for (int from = 0; from < data.length; from += 30_000) {
+			int length = Math.min(30_000, data.length - from);
+			combined = PngEncoder.combineAdler(combined, adler(data, from, length), length);
+		}
+		assertEquals(adler(data, 0, data.length), combined);
+	}
+
+	// Every filter and level, as one band and split into parallel bands; band size is the 32 KB
+	// minimum, which rows of this width do not divide, so each band's primed window starts mid-row
+	private static void roundTripAll(BufferedImage image, int colorType, int bitDepth) throws IOException {
+		for (PngEncoder.Filter filter : PngEncoder.Filter.values()) {
+			for (int level : LEVELS) {
+				PngEncoder single = new PngEncoder(level, filter.name(), 262144, Long.MAX_VALUE, 1, true);
+				PngEncoder banded = new PngEncoder(level, filter.name(), 32768, 0, 4, true);
+				try {
+					String name = filter + " at level " + level;
+					assertRoundTrip(image, single.encode(image), colorType, bitDepth, name);
+					byte[] png = banded.encode(image);
+					assertRoundTrip(image, png, colorType, bitDepth, name + " in bands");
+					assertTrue(count(png, "IDAT") > 1, name + " was not split into bands");
+				} finally {
+					single.shutdown();
+					banded.shutdown();
+				}
+			}
+		}
+	}
+
+	private static byte[] roundTripSingleAndBanded(BufferedImage image, int colorType, int bitDepth, String name)
+			throws IOException {
+		PngEncoder single = new PngEncoder(2, "adaptive", 262144, Long.MAX_VALUE, 1, true);
+		PngEncoder banded = new PngEncoder(2, "adaptive", 32768, 0, 4, true);
+		try {
+			assertRoundTrip(image, single.encode(image), colorType, bitDepth, name);
+			byte[] png = banded.encode(image);
+			assertRoundTrip(image, png, colorType, bitDepth, name + " in bands");
+			return png;
+		} finally {
+			single.shutdown();
+			banded.shutdown();
+		}
+	}
+
+	static void assertRoundTrip(BufferedImage expected, byte[] png, int colorType, int bitDepth, String name)
+			throws IOException {
+		assertEquals(bitDepth, png[24], name + ": bit depth");
+		assertEquals(colorType, png[25], name + ": colour type");
+		BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(png));
+		assertEquals(expected.getWidth(), decoded.getWidth(), name + ": width");
+		assertEquals(expected.getHeight(), decoded.getHeight(), name + ": height");
+		// ImageIO decodes gray PNGs into a linear gray raster whose getRGB applies a gamma curve, so
+		// those are compared by sample
+		boolean gray = decoded.getType() == BufferedImage.TYPE_BYTE_GRAY;
+		for (int y = 0; y < expected.getHeight(); y++) {
+			for (int x = 0; x < expected.getWidth(); x++) {
+				int want = !gray ? expected.getRGB(x, y)
+						: expected.getType() == BufferedImage.TYPE_BYTE_GRAY ? expected.getRaster().getSample(x, y, 0)
+						: expected.getRGB(x, y) & 0xff;
+				int got = gray ? decoded.getRaster().getSample(x, y, 0) : decoded.getRGB(x, y);
+				if (want != got) {
+					throw new AssertionError(name + ": pixel " + x + "," + y + " is " + Integer.toHexString(got)
+							+ ", expected " + Integer.toHexString(want));
+				}
+			}
+		}
+	}
+
+	// count distinct colours, each used at least once; with alpha below 0xff every third one has it
+	static BufferedImage colours(int count, int alpha, int width, int height) {
+		BufferedImage image = new BufferedImage(width, height, alpha == 0xff ? BufferedImage.TYPE_INT_RGB
+				: BufferedImage.TYPE_INT_ARGB);
+		Random random = new Random(count);
+		int[] palette = new int[count];
+		for (int i = 0; i < count; i++) {
+			palette[i] = (i % 3 == 0 ? alpha : 0xff) << 24 | (i * 97 & 0xff) << 16 | (i * 31 + 7 & 0xff) << 8 | (i >> 8 ^ i * 13) & 0xff;
+		}
+		int i = 0;
+		for (int y = 0; y < image.getHeight(); y++) {
+			for (int x = 0; x < width; x++) {
+				image.setRGB(x, y, palette[i < count ? i++ : random.nextInt(count)]);
+			}
+		}
+		return image;
+	}
+
+	private static BufferedImage grayImage() {
+		BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_BYTE_GRAY);
+		Random random = new Random(1);
+		byte[] samples = new byte[WIDTH];
+		for (int y = 0; y < HEIGHT; y++) {
+			for (int x = 0; x < WIDTH; x++) {
+				samples[x] = (byte) ((x + y) / 3 + random.nextInt(8));
+			}
+			image.getRaster().setDataElements(0, y, WIDTH, 1, samples);
+		}
+		return image;
+	}
+
+	private static BufferedImage grayRgbImage() {
+		BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+		for (int y = 0; y < HEIGHT; y++) {
+			for (int x = 0; x < WIDTH; x++) {
+				int level = (x * 7 + y) & 0xff;
+				image.setRGB(x, y, level << 16 | level << 8 | level);
+			}
+		}
+		return image;
+	}
+
+	// Smooth gradients with noise, like a photo; alpha below 0xff makes some pixels translucent
+	private static BufferedImage noise(int type, int minAlpha) {
+		BufferedImage image = new BufferedImage(WIDTH, HEIGHT, type);
+		Random random = new Random(type);
+		for (int y = 0; y < HEIGHT; y++) {
+			for (int x = 0; x < WIDTH; x++) {
+				int alpha = minAlpha + random.nextInt(256 - minAlpha);
+				int red = (x + random.nextInt(16)) & 0xff;
+				int green = (y + random.nextInt(16)) & 0xff;
+				int blue = (x ^ y) & 0xff;
+				image.setRGB(x, y, alpha << 24 | red << 16 | green << 8 | blue);
+			}
+		}
+		return image;
+	}
+
+	private static long adler(byte[] data, int offset, int length) {
+		Adler32 adler = new Adler32();
+		adler.update(data, offset, length);
+		return adler.getValue();
+	}
+
+	private static int count(byte[] png, String chunkType) {
+		byte[] type = chunkType.getBytes(StandardCharsets.US_ASCII);
+		int count = 0;
+		// Walks the chunk list: length, type, data, CRC
+		for (int offset = 8; offset + 8 <= png.length;) {
+			int length = (png[offset] & 0xff) << 24 | (png[offset + 1] & 0xff) << 16 | (png[offset + 2] & 0xff) << 8
+					| png[offset + 3] & 0xff;
+			boolean match = true;
+			for (int i = 0; i < 4; i++) {
+				match &= png[offset + 4 + i] == type[i];
+			}
+			count += match ? 1 : 0;
+			offset += 12 + length;
+		}
+		return count;
+	}
+}
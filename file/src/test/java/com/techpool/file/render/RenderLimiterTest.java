@@ -0,0 +1,133 @@
+package com.techpool.file.render;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class RenderLimiterTest {
+
+	private static final String TYPE = "PdfHandler";
+	private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	private RenderLimiter limiter;
+	private long now;
+
+	@BeforeEach
+	void setUp() {
+		limiter = new RenderLimiter(true, 8, 1, 64, 2.0, 0.75);
+		now = System.nanoTime();
+	}
+
+	@Test
+	void growsWhileLatencyIsSteady() {
+		run(200, 6, 100 * MS, 0);
+
+		assertTrue(limit() > 8, "limit " + limit());
+	}
+
+	@Test
+	void doesNotRatchetDownOnOrdinaryVariation() {
+		// Small and large documents mixed: a 3x spread around a steady mean is not overload
+		run(500, 6, 100 * MS, 50 * MS);
+
+		assertTrue(limit() >= 8, "limit " + limit());
+	}
+
+	@Test
+	void singleSlowRenderIsNotOverload() {
+		run(100, 6, 100 * MS, 0);
+		double before = limit();
+
+		run(1, 1, 400 * MS, 0);
+
+		assertTrue(limit() >= before, before + " -> " + limit());
+	}
+
+	@Test
+	void backsOffWhenLatencyStaysHigh() {
+		run(100, 6, 100 * MS, 0);
+		double before = limit();
+
+		run(20, 6, 500 * MS, 0);
+
+		assertTrue(limit() < before, before + " -> " + limit());
+	}
+
+	@Test
+	void recoversAfterLatencyReturnsToNormal() {
+		run(100, 6, 100 * MS, 0);
+		run(30, 1, 500 * MS, 0);
+		double backedOff = limit();
+
+		run(300, 1, 100 * MS, 0);
+
+		assertTrue(limit() > backedOff, backedOff + " -> " + limit());
+	}
+
+	@Test
+	void dropsBackOffOncePerGeneration() {
+		run(10, 4, 100 * MS, 0);
+		double before = limit();
+		RenderLimiter.Permit first = limiter.acquire(TYPE, now);
+		RenderLimiter.Permit second = limiter.acquire(TYPE, now);
+
+		now += 1000 * MS;
+		first.dropped(now);
+		second.dropped(now);
+
+		assertEquals(before * 0.75, limit(), 0.01);
+	}
+
+	@Test
+	void shedsOverTheLimitAndNeverGoesBelowMinimum() {
+		for (int i = 0; i < 20; i++) {
+			RenderLimiter.Permit permit = limiter.acquire(TYPE, now);
+			now += 10_000 * MS;
+			permit.dropped(now);
+		}
+		assertEquals(1, limit(), 0.001);
+
+		RenderLimiter.Permit held = limiter.acquire(TYPE, now);
+		RenderOverloadedException shed = assertThrows(RenderOverloadedException.class,
+				() -> limiter.acquire(TYPE, now));
+		assertTrue(shed.getRetryAfterSeconds() >= 1);
+		held.completed(now + MS);
+	}
+
+	// Keeps `concurrency` renders in flight; each takes latency +/- jitter
+	private void run(int renders, int concurrency, long latency, long jitter) {
+		Random random = new Random(renders * 31L + concurrency);
+		Deque<long[]> inFlight = new ArrayDeque<>();
+		Deque<RenderLimiter.Permit> permits = new ArrayDeque<>();
+		for (int i = 0; i < renders; i++) {
+			if (permits.size() == concurrency) {
+				finishOldest(inFlight, permits);
+			}
+			long duration = latency + (jitter == 0 ? 0 : (long) ((random.nextDouble() * 2 - 1) * jitter));
+			permits.add(limiter.acquire(TYPE, now));
+			inFlight.add(new long[] { now + duration });
+			// Renders start staggered across one latency
+			now += latency / concurrency;
+		}
+		while (!permits.isEmpty()) {
+			finishOldest(inFlight, permits);
+		}
+	}
+
+	private void finishOldest(Deque<long[]> inFlight, Deque<RenderLimiter.Permit> permits) {
+		long end = inFlight.poll()[0];
+		now = Math.max(now, end);
+		permits.poll().completed(end);
+	}
+
+	private double limit() {
+		return limiter.getStats().get(0).getLimit();
+	}
+}
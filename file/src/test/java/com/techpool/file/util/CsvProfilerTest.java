@@ -0,0 +1,57 @@
+package com.techpool.file.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.techpool.file.util.CsvProfile.ColumnProfile;
+import com.techpool.file.util.CsvProfile.ColumnType;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CsvProfilerTest {
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void integerRangeStaysExactPastDoublePrecision() throws IOException {
+		// 2^53 + 1 and its neighbours collapse to the same double
+		Path csv = tempDir.resolve("ids.csv");
+		Files.writeString(csv, "id,amount\n9007199254740993,1\n-9007199254740995,2\n"
+				+ "999999999999999999,3\n9007199254740992,4\n", StandardCharsets.US_ASCII);
+
+		ColumnProfile id = new CsvProfiler().profile(csv.toFile()).getColumns().get(0);
+
+		assertEquals(ColumnType.INTEGER, id.getType());
+		assertEquals("-9007199254740995", id.getMin());
+		assertEquals("999999999999999999", id.getMax());
+	}
+
+	@Test
+	void cursorReadsBackAndForthAcrossWindows() throws IOException {
+		Path data = tempDir.resolve("data.bin");
+		int size = 17 * 1024 * 1024;
+		byte[] bytes = new byte[size];
+		for (int i = 0; i < size; i++) {
+			bytes[i] = (byte) (i * 31 + (i >>> 12));
+		}
+		Files.write(data, bytes);
+
+		try (FileChannel channel = FileChannel.open(data, StandardOpenOption.READ)) {
+			CsvProfiler.MappedCursor cursor = new CsvProfiler.MappedCursor(channel);
+			long[] positions = { 0, size - 1, 16L * 1024 * 1024 - 1, 16L * 1024 * 1024, 5, size - 70000, 3,
+					16L * 1024 * 1024 + 1, 16L * 1024 * 1024 - 2, size - 1, 0 };
+			for (long pos : positions) {
+				assertEquals(bytes[(int) pos], cursor.get(pos), "byte " + pos);
+			}
+			for (long pos = size - 1; pos >= size - 200000; pos--) {
+				assertEquals(bytes[(int) pos], cursor.get(pos), "byte " + pos);
+			}
+		}
+	}
+}
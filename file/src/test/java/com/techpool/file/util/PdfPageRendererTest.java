@@ -0,0 +1,89 @@
+package com.techpool.file.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.junit.jupiter.api.Test;
+
+class PdfPageRendererTest {
+
+	@Test
+	void neutralPagesComeBackGray() {
+		BufferedImage page = page(0x404040);
+		// Chroma noise of a scanned JPEG stays within the tolerance
+		page.setRGB(3, 4, 0x7a7d78);
+
+		BufferedImage gray = PdfPageRenderer.toGrayIfNeutral(page);
+
+		assertEquals(BufferedImage.TYPE_BYTE_GRAY, gray.getType());
+		assertEquals(0x40, gray.getRaster().getSample(0, 0, 0));
+		assertEquals(0xff, gray.getRaster().getSample(9, 9, 0));
+		assertEquals(0x7c, gray.getRaster().getSample(3, 4, 0));
+	}
+
+	@Test
+	void anyColouredPixelKeepsThePageRgb() {
+		BufferedImage page = page(0x404040);
+		page.setRGB(9, 8, 0x408040);
+
+		assertSame(page, PdfPageRenderer.toGrayIfNeutral(page));
+	}
+
+	@Test
+	void neutralColourOperatorsMakeAGrayPage() throws IOException {
+		try (PDDocument document = new PDDocument()) {
+			PDPage page = new PDPage();
+			document.addPage(page);
+			try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+				content.setNonStrokingColor(0.25f);
+				content.addRect(10, 10, 50, 50);
+				content.fill();
+				// Gray text is often painted with rg
+				content.setNonStrokingColor(0.4f, 0.4f, 0.4f);
+				content.addRect(70, 10, 50, 50);
+				content.fill();
+				content.setNonStrokingColor(0f, 0f, 0f, 1f);
+				content.addRect(130, 10, 50, 50);
+				content.fill();
+			}
+
+			assertTrue(PdfPageRenderer.isGrayPage(page));
+		}
+	}
+
+	@Test
+	void oneColouredFillKeepsThePageRgb() throws IOException {
+		try (PDDocument document = new PDDocument()) {
+			PDPage page = new PDPage();
+			document.addPage(page);
+			try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+				content.setNonStrokingColor(0.4f, 0.4f, 0.4f);
+				content.addRect(10, 10, 50, 50);
+				content.fill();
+				content.setNonStrokingColor(0.8f, 0.1f, 0.1f);
+				content.addRect(70, 10, 50, 50);
+				content.fill();
+			}
+
+			assertFalse(PdfPageRenderer.isGrayPage(page));
+		}
+	}
+
+	// White with a block of the given colour in the top left corner
+	private static BufferedImage page(int rgb) {
+		BufferedImage page = new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB);
+		for (int y = 0; y < 10; y++) {
+			for (int x = 0; x < 10; x++) {
+				page.setRGB(x, y, x < 5 && y < 5 ? rgb : 0xffffff);
+			}
+		}
+		return page;
+	}
+}